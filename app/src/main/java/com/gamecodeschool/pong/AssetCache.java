@@ -0,0 +1,146 @@
+package com.gamecodeschool.pong;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads and decodes the game's assets on background threads and keeps the results for the life of the process, so the
+ * UI thread never waits on a decoder and an activity that is recreated (rotation, coming back from the background
+ * without the process dying) gets its sounds back straight from memory instead of decoding them again.
+ *
+ * Loading is asynchronous: loadSound() returns at once and the listener is told when the clip is ready, much like
+ * SoundPool.OnLoadCompleteListener. Asking for a clip that is already being loaded does not decode it twice, the
+ * listener just joins the ones waiting for it. A clip that failed to load is not cached, so asking again retries.
+ * @see AudioEngine
+ */
+public final class AssetCache {
+
+    /** Told when a clip asked for with loadSound() is ready (or could not be loaded). */
+    public interface OnLoadCompleteListener {
+        /**
+         * Called on a loader thread, or straight away on the calling thread if the clip was already cached.
+         * @param name the asset's file name.
+         * @param samples the decoded clip, null if it could not be loaded.
+         */
+        void onLoadComplete(String name, short[] samples);
+    }
+
+    /** One asset, loaded or on its way. Guarded by the cache's lock. */
+    private static final class Entry {
+        short[] samples;
+        List<OnLoadCompleteListener> waiting = new ArrayList<>();
+    }
+
+    private static AssetCache sInstance;
+
+    private final AssetManager mAssets;
+    private final ExecutorService mExecutor;
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+    private AssetCache(Context context) {
+        mAssets = context.getAssets();
+        // Two threads decode two clips at once on multi-core devices without crowding out the first frames.
+        int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+        mExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AssetLoader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param context any context, only its application context is kept.
+     * @return the process wide cache.
+     */
+    public static synchronized AssetCache get(Context context) {
+        if (sInstance == null) {
+            sInstance = new AssetCache(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Loads a sound clip, decoded to 16 bit mono PCM. Never blocks.
+     * @param name the asset's file name.
+     * @param sampleRate sample rate to decode to, in Hz. Cached separately per rate.
+     * @param listener told when the clip is ready.
+     * @see PcmDecoder#decode(android.content.res.AssetFileDescriptor, int)
+     */
+    public void loadSound(final String name, final int sampleRate, OnLoadCompleteListener listener) {
+        final String key = name + "@" + sampleRate;
+        short[] cached;
+
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+
+            if (entry == null) {
+                entry = new Entry();
+                entry.waiting.add(listener);
+                mEntries.put(key, entry);
+
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        decode(key, name, sampleRate);
+                    }
+                });
+                return;
+            }
+
+            if (entry.waiting != null) {
+                entry.waiting.add(listener);
+                return;
+            }
+
+            cached = entry.samples;
+        }
+
+        listener.onLoadComplete(name, cached);
+    }
+
+    private void decode(String key, String name, int sampleRate) {
+        short[] samples = null;
+
+        try {
+            samples = PcmDecoder.decode(mAssets.openFd(name), sampleRate);
+        }
+
+        catch (IOException | RuntimeException e) {
+            // MediaFormat and MediaCodec throw unchecked exceptions for some broken files, which must still reach the
+            // listeners (and leave the entry) rather than end the loader task with nobody told.
+            Log.e("Error", "Failed to load sound " + name, e);
+        }
+
+        List<OnLoadCompleteListener> waiting;
+
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            waiting = entry.waiting;
+            entry.waiting = null;
+            entry.samples = samples;
+
+            if (samples == null) {
+                // Forget the failure so the next request tries again.
+                mEntries.remove(key);
+            }
+        }
+
+        for (OnLoadCompleteListener listener : waiting) {
+            listener.onLoadComplete(name, samples);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.gamecodeschool.pong;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays the game's sound effects with as little delay as the device allows, replacing SoundPool. The clips are decoded
+ * to PCM in the background by AssetCache and handed to the mixer as each one is ready (a sound asked for before its
+ * clip has loaded is skipped), and a dedicated audio thread mixes whatever is playing into small buffers and streams
+ * them into one AudioTrack that stays open while the game runs. Asking for a sound is a non-blocking write into
+ * SoundMixer's request ring, so the simulation thread never waits on the audio system.
+ * @see SoundMixer
+ * @see AssetCache
+ *
+ * The AudioTrack runs at the device's native sample rate and writes one hardware burst at a time, which lets the
+ * platform put it on its fast mixer path. On API 26 and up it is also opened in low-latency performance mode.
+ *
+ * Also measures event to sound latency, from play() to when the first sample of the sound is due out of the speaker
+ * according to AudioTrack#getTimestamp (API 19 and up) or the playback head position on older devices.
+ */
+public class AudioEngine implements Runnable {
+
+    /** Ball hits the bat. */
+    public static final int BEEP = 0;
+    /** Ball hits the top of the screen. */
+    public static final int BOOP = 1;
+    /** Ball hits a side of the screen. */
+    public static final int BOP = 2;
+    /** Ball reaches the bottom of the screen. */
+    public static final int MISS = 3;
+
+    private static final String[] CLIP_FILES = {"beep.ogg", "boop.ogg", "bop.ogg", "miss.ogg"};
+    // Most clips heard at once and most play requests waiting for the audio thread.
+    private static final int MAX_VOICES = 8;
+    private static final int QUEUE_CAPACITY = 64;
+    // Used when the device does not report its burst size (before API 17).
+    private static final int DEFAULT_FRAMES_PER_BURST = 256;
+    private final long NANOS_IN_SECOND = 1000000000L;
+    // Longest stop() waits for the audio thread to finish writing.
+    private final long STOP_TIMEOUT_NANOS = 500000000L;
+
+    private final SoundMixer mMixer = new SoundMixer(CLIP_FILES.length, MAX_VOICES, QUEUE_CAPACITY);
+    private final int mSampleRate;
+    private final int mFramesPerBurst;
+    private final AtomicInteger mPendingClips = new AtomicInteger(CLIP_FILES.length);
+    // The audio thread, kept for the life of the engine and parked while the game is paused.
+    private final LoopThread mLoop = new LoopThread("Audio", this);
+    // Audio thread only.
+    private AudioTimestamp mTimestamp;
+
+    /**
+     * Starts loading the clips and returns straight away.
+     * @param context used to reach the assets and the audio service.
+     * @param onLoaded run once every clip has loaded or failed to, on whichever thread finished last (straight away
+     * on this one if they were all cached). May be null.
+     */
+    public AudioEngine(Context context, final Runnable onLoaded) {
+        mSampleRate = AudioTrack.getNativeOutputSampleRate(AudioManager.STREAM_MUSIC);
+        mFramesPerBurst = framesPerBurst(context);
+
+        AssetCache cache = AssetCache.get(context);
+
+        for (int i = 0; i < CLIP_FILES.length; i++) {
+            final int clip = i;
+
+            cache.loadSound(CLIP_FILES[i], mSampleRate, new AssetCache.OnLoadCompleteListener() {
+                @Override
+                public void onLoadComplete(String name, short[] samples) {
+                    // A clip that failed stays silent, the game still works.
+                    if (samples != null) {
+                        mMixer.setClip(clip, samples);
+                    }
+
+                    if (mPendingClips.decrementAndGet() == 0 && onLoaded != null) {
+                        onLoaded.run();
+                    }
+                }
+            });
+        }
+    }
+
+    private static int framesPerBurst(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+            String frames = audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER);
+
+            if (frames != null) {
+                try {
+                    return Integer.parseInt(frames);
+                }
+
+                catch (NumberFormatException e) {
+                    Log.w("Audio", "Bad frames per buffer: " + frames);
+                }
+            }
+        }
+
+        return DEFAULT_FRAMES_PER_BURST;
+    }
+
+    /**
+     * Asks for a sound to play. Never blocks. Must only be called from one thread (the simulation thread).
+     * @param clip BEEP, BOOP, BOP or MISS.
+     */
+    public void play(int clip) {
+        mMixer.play(clip, System.nanoTime());
+    }
+
+    /** Opens the audio output and sets the audio thread going, called when the game resumes. */
+    public void start() {
+        mLoop.start();
+    }
+
+    /**
+     * Closes the audio output and parks the audio thread, called when the game pauses. Waits at most one buffer, and
+     * never longer than STOP_TIMEOUT_NANOS.
+     */
+    public void stop() {
+        if (!mLoop.stop(STOP_TIMEOUT_NANOS)) {
+            Log.w("Audio", "Audio thread still running after " + STOP_TIMEOUT_NANOS / 1000000 + " ms");
+        }
+    }
+
+    /** Ends the audio thread for good, called when the game is destroyed. */
+    public void release() {
+        mLoop.quit(STOP_TIMEOUT_NANOS);
+    }
+
+    /**
+     * The audio thread. Mixes one burst, writes it (AudioTrack#write blocks until the track has room, which paces the
+     * loop to the hardware) and, if the burst started a sound, works out when it will be heard.
+     */
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+        AudioTrack track;
+
+        try {
+            track = createTrack();
+        }
+
+        catch (IllegalArgumentException | UnsupportedOperationException e) {
+            Log.e("Error", "Failed to open audio output.", e);
+            return;
+        }
+
+        if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+            Log.e("Error", "Failed to open audio output.");
+            track.release();
+            return;
+        }
+
+        short[] buffer = new short[mFramesPerBurst];
+        long framesWritten = 0;
+        track.play();
+
+        while (mLoop.isRunning()) {
+            int started = mMixer.mix(buffer, mFramesPerBurst);
+            int written = track.write(buffer, 0, mFramesPerBurst);
+
+            if (written < 0) {
+                Log.e("Error", "Audio write failed: " + written);
+                break;
+            }
+
+            if (started > 0) {
+                mMixer.onPresented(presentationNanos(track, framesWritten));
+            }
+
+            framesWritten += written;
+        }
+
+        track.pause();
+        track.flush();
+        track.release();
+    }
+
+    private AudioTrack createTrack() {
+        int minBytes = AudioTrack.getMinBufferSize(mSampleRate, AudioFormat.CHANNEL_OUT_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        // Two bursts: one playing while the next is written. 2 bytes per mono 16 bit frame.
+        int bytes = Math.max(minBytes, 2 * mFramesPerBurst * 2);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return createLowLatencyTrack(bytes);
+        }
+
+        return new AudioTrack(AudioManager.STREAM_MUSIC, mSampleRate, AudioFormat.CHANNEL_OUT_MONO,
+                AudioFormat.ENCODING_PCM_16BIT, bytes, AudioTrack.MODE_STREAM);
+    }
+
+    @TargetApi(Build.VERSION_CODES.O)
+    private AudioTrack createLowLatencyTrack(int bytes) {
+        return new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_GAME)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                        .setSampleRate(mSampleRate)
+                        .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                        .build())
+                .setBufferSizeInBytes(bytes)
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                .build();
+    }
+
+    /**
+     * Estimates when a frame written to the track will come out of the speaker.
+     * @param track the track it was written to.
+     * @param frame position of the frame in everything written since the track started.
+     * @return the time, System.nanoTime() time base.
+     */
+    private long presentationNanos(AudioTrack track, long frame) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            if (mTimestamp == null) {
+                mTimestamp = new AudioTimestamp();
+            }
+
+            // Pairs a frame position with the time it was presented, only available once the track is flowing.
+            if (track.getTimestamp(mTimestamp)) {
+                return mTimestamp.nanoTime + (frame - mTimestamp.framePosition) * NANOS_IN_SECOND / mSampleRate;
+            }
+        }
+
+        // The head position is where the track is reading, ignores the output latency after it.
+        long head = track.getPlaybackHeadPosition() & 0xffffffffL;
+        return System.nanoTime() + (frame - head) * NANOS_IN_SECOND / mSampleRate;
+    }
+
+    /** @return average event to sound latency, in nanoseconds, 0 before the first sound. */
+    public long getAverageLatencyNanos() {
+        return mMixer.getAverageLatencyNanos();
+    }
+
+    /** @return highest event to sound latency seen, in nanoseconds. */
+    public long getMaxLatencyNanos() {
+        return mMixer.getMaxLatencyNanos();
+    }
+
+    /** @return number of sounds dropped because the audio thread fell behind. */
+    public long getDroppedSounds() {
+        return mMixer.getDropped();
+    }
+}
@@ -0,0 +1,102 @@
+package com.gamecodeschool.pong;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.view.SurfaceHolder;
+
+/**
+ * The original way of drawing the game: SurfaceHolder#lockCanvas() hands us a Canvas backed by a CPU-side buffer,
+ * every draw call (including filling the whole screen with the background colour) is rasterised on the CPU, and
+ * unlockCanvasAndPost() sends the buffer to the display. Works on every API level, but the cost of a frame grows with
+ * the number of pixels, which hurts on high resolution tablets.
+ * @see Renderer
+ */
+public class CanvasRenderer implements Renderer {
+
+    protected final SurfaceHolder mHolder;
+    private Canvas mCanvas;
+    // Canvas save count to go back to before applying another transform.
+    private int mBaseSaveCount;
+
+    /**
+     * Parametrized constructor below.
+     * @param holder holder of the surface to draw on.
+     */
+    public CanvasRenderer(SurfaceHolder holder) {
+        mHolder = holder;
+    }
+
+    /**
+     * Locks the surface for drawing. Overridden by HardwareCanvasRenderer to get a GPU backed canvas instead.
+     * @return the canvas to draw this frame on, null if the surface could not be locked.
+     */
+    protected Canvas lockCanvas() {
+        return mHolder.lockCanvas();
+    }
+
+    /**
+     * Posts the frame drawn on canvas.
+     * @param canvas the canvas returned by lockCanvas().
+     */
+    protected void unlockCanvasAndPost(Canvas canvas) {
+        mHolder.unlockCanvasAndPost(canvas);
+    }
+
+    @Override
+    public boolean beginFrame(int backgroundColor) {
+        // Drawing happens asynchronously with the UI thread creating and destroying the surface, so check it exists.
+        if (!mHolder.getSurface().isValid()) {
+            return false;
+        }
+
+        mCanvas = lockCanvas();
+
+        if (mCanvas == null) {
+            return false;
+        }
+
+        mCanvas.drawColor(backgroundColor);
+        mBaseSaveCount = mCanvas.save();
+        return true;
+    }
+
+    @Override
+    public void setTransform(float scale, float dx, float dy) {
+        mCanvas.restoreToCount(mBaseSaveCount);
+        mBaseSaveCount = mCanvas.save();
+        mCanvas.translate(dx, dy);
+        mCanvas.scale(scale, scale);
+    }
+
+    @Override
+    public void drawRect(Aabb rect, Paint paint) {
+        mCanvas.drawRect(rect.left, rect.top, rect.right, rect.bottom, paint);
+    }
+
+    @Override
+    public void drawPoints(float[] points, int count, Paint paint) {
+        mCanvas.drawPoints(points, 0, count, paint);
+    }
+
+    @Override
+    public void drawText(char[] text, int start, int length, float x, float y, Paint paint) {
+        mCanvas.drawText(text, start, length, x, y, paint);
+    }
+
+    @Override
+    public void endFrame() {
+        mCanvas.restoreToCount(mBaseSaveCount);
+        unlockCanvasAndPost(mCanvas);
+        mCanvas = null;
+    }
+
+    @Override
+    public void redrawAll() {
+        // Every frame is drawn from scratch anyway.
+    }
+
+    @Override
+    public String getName() {
+        return "Canvas";
+    }
+}
@@ -0,0 +1,359 @@
+package com.gamecodeschool.pong;
+
+import java.util.Arrays;
+
+/**
+ * The bookkeeping half of DirtyRectRenderer, kept free of Android classes so it runs in local unit tests. Records the
+ * draw calls of a frame (beginFrame() to findDamage()) and works out which areas of the screen changed since the last
+ * frame drawn: the calls are compared one by one in drawing order, and every call whose box or contents changed
+ * damages the area it covered last frame and the area it covers now.
+ *
+ * The whole surface has to be redrawn instead when:
+ *  - no frame was drawn yet, or redrawAll() was called (the surface was recreated or resized, its old contents are
+ *    gone).
+ *  - the number of draw calls changed (a ball added or removed), or more than MAX_DAMAGE areas changed.
+ * A points call counts as one box around all its points, an empty one as no box at all. Boxes are kept in surface
+ * pixels (after setTransform), the transform of each call is kept to replay its points or text under it.
+ * @see DirtyRectRenderer
+ */
+final class DamageTracker {
+
+    // Past this many separate damaged areas one full redraw is cheaper than clipping and redrawing each.
+    static final int MAX_DAMAGE = 16;
+    static final int RECT = 0;
+    static final int TEXT = 1;
+    static final int POINTS = 2;
+
+    /** The draw calls of one frame, kept in parallel arrays so recording allocates nothing once grown. */
+    static final class Frame {
+        int count;
+        int[] type = new int[16];
+        // Compared by identity only, the renderer's Paint.
+        Object[] paint = new Object[16];
+        // Box covered by each call (for text: measured from the paint).
+        float[] left = new float[16];
+        float[] top = new float[16];
+        float[] right = new float[16];
+        float[] bottom = new float[16];
+        // Text and points calls: where their characters are in chars (or coordinates in points), and the baseline
+        // position of text.
+        int[] textStart = new int[16];
+        int[] textLength = new int[16];
+        float[] textX = new float[16];
+        float[] textY = new float[16];
+        // Transform each call was made under (see setTransform), for replaying points and text.
+        float[] scale = new float[16];
+        float[] dx = new float[16];
+        float[] dy = new float[16];
+        char[] chars = new char[256];
+        int charCount;
+        float[] points = new float[256];
+        int pointCount;
+
+        int add(int callType, Object callPaint, float l, float t, float r, float b) {
+            if (count == type.length) {
+                int c = count * 2;
+                type = Arrays.copyOf(type, c);
+                paint = Arrays.copyOf(paint, c);
+                left = Arrays.copyOf(left, c);
+                top = Arrays.copyOf(top, c);
+                right = Arrays.copyOf(right, c);
+                bottom = Arrays.copyOf(bottom, c);
+                textStart = Arrays.copyOf(textStart, c);
+                textLength = Arrays.copyOf(textLength, c);
+                textX = Arrays.copyOf(textX, c);
+                textY = Arrays.copyOf(textY, c);
+                scale = Arrays.copyOf(scale, c);
+                dx = Arrays.copyOf(dx, c);
+                dy = Arrays.copyOf(dy, c);
+            }
+
+            type[count] = callType;
+            paint[count] = callPaint;
+            left[count] = l;
+            top[count] = t;
+            right[count] = r;
+            bottom[count] = b;
+            return count++;
+        }
+
+        boolean sameCall(int i, Frame other) {
+            if (type[i] != other.type[i] || paint[i] != other.paint[i] || left[i] != other.left[i]
+                    || top[i] != other.top[i] || right[i] != other.right[i] || bottom[i] != other.bottom[i]
+                    || scale[i] != other.scale[i] || dx[i] != other.dx[i] || dy[i] != other.dy[i]) {
+                return false;
+            }
+
+            if (type[i] == TEXT) {
+                if (textLength[i] != other.textLength[i]) {
+                    return false;
+                }
+
+                for (int c = 0; c < textLength[i]; c++) {
+                    if (chars[textStart[i] + c] != other.chars[other.textStart[i] + c]) {
+                        return false;
+                    }
+                }
+            }
+
+            else if (type[i] == POINTS) {
+                if (textLength[i] != other.textLength[i]) {
+                    return false;
+                }
+
+                for (int c = 0; c < textLength[i]; c++) {
+                    if (points[textStart[i] + c] != other.points[other.textStart[i] + c]) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private Frame mFrame = new Frame();
+    private Frame mPrevious = new Frame();
+    // Current transform, see setTransform(float, float, float).
+    private float mScale = 1;
+    private float mDx;
+    private float mDy;
+    private boolean mFullRedraw = true;
+    // Damaged areas of the current frame.
+    private final float[] mDamageLeft = new float[MAX_DAMAGE];
+    private final float[] mDamageTop = new float[MAX_DAMAGE];
+    private final float[] mDamageRight = new float[MAX_DAMAGE];
+    private final float[] mDamageBottom = new float[MAX_DAMAGE];
+    private int mDamageCount;
+
+    /** Starts recording a frame, dropping the calls of one that was recorded but never drawn. */
+    void beginFrame() {
+        mFrame.count = 0;
+        mFrame.charCount = 0;
+        mFrame.pointCount = 0;
+        mScale = 1;
+        mDx = 0;
+        mDy = 0;
+    }
+
+    /** Same as Renderer#setTransform(float, float, float), for the calls recorded after it. */
+    void setTransform(float scale, float dx, float dy) {
+        mScale = scale;
+        mDx = dx;
+        mDy = dy;
+    }
+
+    /**
+     * Records a call with its box given before the transform, so the box is kept in surface pixels.
+     * @return the call's index.
+     */
+    private int add(int type, Object paint, float left, float top, float right, float bottom) {
+        Frame frame = mFrame;
+        int i = frame.add(type, paint, left * mScale + mDx, top * mScale + mDy, right * mScale + mDx,
+                bottom * mScale + mDy);
+        frame.scale[i] = mScale;
+        frame.dx[i] = mDx;
+        frame.dy[i] = mDy;
+        return i;
+    }
+
+    /** Records a Renderer#drawRect(Aabb, Paint) call. */
+    void addRect(Object paint, float left, float top, float right, float bottom) {
+        add(RECT, paint, left, top, right, bottom);
+    }
+
+    /**
+     * Records a Renderer#drawPoints(float[], int, Paint) call.
+     * @param size the paint's stroke width, the size of the squares.
+     */
+    void addPoints(Object paint, float[] points, int count, float size) {
+        Frame frame = mFrame;
+        // Empty box (right < left) when there are no points, see findDamage().
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+
+        for (int c = 0; c < count; c += 2) {
+            left = Math.min(left, points[c]);
+            right = Math.max(right, points[c]);
+            top = Math.min(top, points[c + 1]);
+            bottom = Math.max(bottom, points[c + 1]);
+        }
+
+        // Half a square either side, plus one pixel of slack for anti-aliasing.
+        float half = size / 2 + 1 / mScale;
+        int i = count == 0 ? add(POINTS, paint, 0, 0, -1, -1)
+                : add(POINTS, paint, left - half, top - half, right + half, bottom + half);
+
+        if (frame.pointCount + count > frame.points.length) {
+            frame.points = Arrays.copyOf(frame.points, Math.max(frame.points.length * 2, frame.pointCount + count));
+        }
+
+        System.arraycopy(points, 0, frame.points, frame.pointCount, count);
+        frame.textStart[i] = frame.pointCount;
+        frame.textLength[i] = count;
+        frame.pointCount += count;
+    }
+
+    /**
+     * Records a Renderer#drawText(char[], int, int, float, float, Paint) call.
+     * @param width width of the text, measured with the paint.
+     * @param ascent the paint's ascent (negative, above the baseline).
+     * @param descent the paint's descent.
+     */
+    void addText(Object paint, char[] text, int start, int length, float x, float y, float width, float ascent,
+                 float descent) {
+        Frame frame = mFrame;
+        // One pixel of slack for anti-aliasing.
+        float slack = 1 / mScale;
+        int i = add(TEXT, paint, x - slack, y + ascent - slack, x + width + slack, y + descent + slack);
+
+        if (frame.charCount + length > frame.chars.length) {
+            frame.chars = Arrays.copyOf(frame.chars, Math.max(frame.chars.length * 2, frame.charCount + length));
+        }
+
+        System.arraycopy(text, start, frame.chars, frame.charCount, length);
+        frame.textStart[i] = frame.charCount;
+        frame.textLength[i] = length;
+        frame.textX[i] = x;
+        frame.textY[i] = y;
+        frame.charCount += length;
+    }
+
+    /** @return the frame being recorded, to replay its calls. */
+    Frame getFrame() {
+        return mFrame;
+    }
+
+    /**
+     * Compares the recorded frame with the last one drawn and keeps the areas where they differ.
+     * @return true if the whole surface has to be redrawn, false if only the getDamageCount() damaged areas (maybe
+     * none) do.
+     */
+    boolean findDamage() {
+        Frame frame = mFrame;
+        Frame previous = mPrevious;
+        mDamageCount = 0;
+
+        if (mFullRedraw || frame.count != previous.count) {
+            return true;
+        }
+
+        for (int i = 0; i < frame.count; i++) {
+            if (frame.sameCall(i, previous)) {
+                continue;
+            }
+
+            if (mDamageCount == MAX_DAMAGE) {
+                return true;
+            }
+
+            boolean now = frame.left[i] <= frame.right[i];
+            boolean before = previous.left[i] <= previous.right[i];
+
+            // Where it was and where it is now, usually overlapping as things only move a few pixels per frame. An
+            // empty box (points call with no points) covers nothing.
+            if (now && before) {
+                mDamageLeft[mDamageCount] = Math.min(frame.left[i], previous.left[i]);
+                mDamageTop[mDamageCount] = Math.min(frame.top[i], previous.top[i]);
+                mDamageRight[mDamageCount] = Math.max(frame.right[i], previous.right[i]);
+                mDamageBottom[mDamageCount] = Math.max(frame.bottom[i], previous.bottom[i]);
+            }
+
+            else if (now || before) {
+                Frame from = now ? frame : previous;
+                mDamageLeft[mDamageCount] = from.left[i];
+                mDamageTop[mDamageCount] = from.top[i];
+                mDamageRight[mDamageCount] = from.right[i];
+                mDamageBottom[mDamageCount] = from.bottom[i];
+            }
+
+            else {
+                continue;
+            }
+
+            mDamageCount++;
+        }
+
+        return false;
+    }
+
+    /** @return number of damaged areas found by the last findDamage() that asked for no full redraw. */
+    int getDamageCount() {
+        return mDamageCount;
+    }
+
+    /** @return left edge of damaged area d, in surface pixels. */
+    float getDamageLeft(int d) {
+        return mDamageLeft[d];
+    }
+
+    /** @return top edge of damaged area d. */
+    float getDamageTop(int d) {
+        return mDamageTop[d];
+    }
+
+    /** @return right edge of damaged area d. */
+    float getDamageRight(int d) {
+        return mDamageRight[d];
+    }
+
+    /** @return bottom edge of damaged area d. */
+    float getDamageBottom(int d) {
+        return mDamageBottom[d];
+    }
+
+    /** @return left edge of the box around every damaged area, there has to be at least one. */
+    float getUnionLeft() {
+        return min(mDamageLeft);
+    }
+
+    /** @return top edge of the box around every damaged area. */
+    float getUnionTop() {
+        return min(mDamageTop);
+    }
+
+    /** @return right edge of the box around every damaged area. */
+    float getUnionRight() {
+        return max(mDamageRight);
+    }
+
+    /** @return bottom edge of the box around every damaged area. */
+    float getUnionBottom() {
+        return max(mDamageBottom);
+    }
+
+    /** The recorded frame is now on screen, the next one is compared with it. */
+    void frameDrawn() {
+        mFullRedraw = false;
+        Frame swap = mPrevious;
+        mPrevious = mFrame;
+        mFrame = swap;
+    }
+
+    /** Makes the next findDamage() ask for a full redraw, whatever changed. */
+    void redrawAll() {
+        mFullRedraw = true;
+    }
+
+    private float min(float[] values) {
+        float result = values[0];
+
+        for (int i = 1; i < mDamageCount; i++) {
+            result = Math.min(result, values[i]);
+        }
+
+        return result;
+    }
+
+    private float max(float[] values) {
+        float result = values[0];
+
+        for (int i = 1; i < mDamageCount; i++) {
+            result = Math.max(result, values[i]);
+        }
+
+        return result;
+    }
+}
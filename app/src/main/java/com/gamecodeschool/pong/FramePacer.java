@@ -0,0 +1,204 @@
+package com.gamecodeschool.pong;
+
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides how long our render thread waits between frames so it does not spin a full CPU core drawing frames nobody
+ * will ever see. Used by:
+ * @see PongGame#run()
+ *
+ * There are a few policies to choose from (see Mode). The capped modes sleep until the next frame is due, VSYNC waits
+ * for the display's own frame signal delivered by Choreographer, and UNCAPPED behaves like the original loop that
+ * draws as fast as it can. While the game is paused and nothing has changed, the thread can park itself completely
+ * until something wakes it up (a touch or the surface coming back). The vsync callbacks stop while it is parked, so
+ * neither the UI thread nor the render thread runs at the display rate for a game nobody is playing.
+ */
+public class FramePacer implements Choreographer.FrameCallback {
+
+    /** The available pacing policies. */
+    public enum Mode {
+        FPS_30(30),
+        FPS_60(60),
+        FPS_120(120),
+        UNCAPPED(0),
+        VSYNC(0);
+
+        private final int mTargetFps;
+
+        Mode(int targetFps) {
+            mTargetFps = targetFps;
+        }
+
+        /** @return frames per second this mode aims for, 0 when the rate is not fixed by us. */
+        public int getTargetFps() {
+            return mTargetFps;
+        }
+    }
+
+    private final long NANOS_IN_MILLI = 1000000L;
+    private final long NANOS_IN_SECOND = 1000000000L;
+    // Last stretch before a deadline is spent yielding instead of sleeping, Thread.sleep often oversleeps by a ms or so.
+    private final long SPIN_THRESHOLD_NANOS = 2 * NANOS_IN_MILLI;
+    // Never wait longer than this for a vsync, in case the callbacks stop (e.g. surface gone).
+    private final long VSYNC_TIMEOUT_NANOS = 50 * NANOS_IN_MILLI;
+    // How long a paused, unchanged game sleeps before checking again, even if nobody wakes it.
+    private final long IDLE_TIMEOUT_NANOS = 250 * NANOS_IN_MILLI;
+
+    private final Choreographer mChoreographer;
+    private volatile Mode mMode;
+    private volatile boolean mRunning;
+    private volatile Thread mWaiter;
+    // Whether a frame callback is waiting on Choreographer, so it is never posted twice.
+    private final AtomicBoolean mCallbackPosted = new AtomicBoolean();
+    // The render thread is in idle(), vsyncs are no reason to wake it.
+    private volatile boolean mIdling;
+    private volatile long mVsyncCount;
+    private long mLastSeenVsync;
+
+    /**
+     * Must be called on a thread with a Looper (the UI thread), as that is where Choreographer delivers its frame
+     * callbacks.
+     * @param mode the initial pacing policy.
+     */
+    public FramePacer(Mode mode) {
+        mChoreographer = Choreographer.getInstance();
+        mMode = mode;
+    }
+
+    /** @return the pacing policy currently in use. */
+    public Mode getMode() {
+        return mMode;
+    }
+
+    /**
+     * Switches the pacing policy, this can be done while the game loop is running.
+     * @param mode the new policy.
+     */
+    public void setMode(Mode mode) {
+        mMode = mode;
+        wake();
+    }
+
+    /**
+     * Called by the render thread when it starts running. Starts listening for vsync signals if needed.
+     * @see PongGame#run()
+     */
+    public void start() {
+        mWaiter = Thread.currentThread();
+        mRunning = true;
+        mLastSeenVsync = mVsyncCount;
+        postCallback();
+    }
+
+    /** Stops listening for vsync signals and releases a waiting render thread so it can exit. */
+    public void stop() {
+        mRunning = false;
+        mChoreographer.removeFrameCallback(this);
+        mCallbackPosted.set(false);
+        unpark();
+    }
+
+    /**
+     * Choreographer callback, runs on the UI thread once per display refresh while we are in VSYNC mode and the render
+     * thread is not idling. Posts itself again only while frames are wanted, wake() starts it again after an idle.
+     * @param frameTimeNanos time the display frame started, not used as we only need the signal.
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mCallbackPosted.set(false);
+
+        if (mIdling) {
+            return;
+        }
+
+        mVsyncCount++;
+        unpark();
+        postCallback();
+    }
+
+    /**
+     * Unparks the render thread if it is waiting on us, e.g. because a paused game changed, and starts the vsync
+     * callbacks again if they stopped while it was idling. Safe from any thread.
+     */
+    public void wake() {
+        mIdling = false;
+        postCallback();
+        unpark();
+    }
+
+    private void postCallback() {
+        if (mRunning && mMode == Mode.VSYNC && mCallbackPosted.compareAndSet(false, true)) {
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    private void unpark() {
+        Thread waiter = mWaiter;
+
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Blocks the render thread until the next frame should start, based off the current mode.
+     * @param frameStartTime System.nanoTime() taken at the start of the frame that just finished.
+     */
+    public void waitForNextFrame(long frameStartTime) {
+        Mode mode = mMode;
+
+        if (mode == Mode.UNCAPPED) {
+            return;
+        }
+
+        if (mode == Mode.VSYNC) {
+            long deadline = System.nanoTime() + VSYNC_TIMEOUT_NANOS;
+
+            while (mRunning && mVsyncCount == mLastSeenVsync) {
+                long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0) {
+                    break;
+                }
+
+                LockSupport.parkNanos(this, remaining);
+            }
+
+            mLastSeenVsync = mVsyncCount;
+            return;
+        }
+
+        long deadline = frameStartTime + NANOS_IN_SECOND / mode.getTargetFps();
+        long remaining = deadline - System.nanoTime();
+
+        while (mRunning && remaining > 0) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(this, remaining - SPIN_THRESHOLD_NANOS);
+            }
+
+            else {
+                Thread.yield();
+            }
+
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Parks the render thread while the game is paused and the screen does not need redrawing. Returns early when
+     * woken through wake(), vsyncs do not wake it (the callbacks stop until it returns).
+     * @see FramePacer#wake()
+     */
+    public void idle() {
+        if (mRunning) {
+            mIdling = true;
+            LockSupport.parkNanos(this, IDLE_TIMEOUT_NANOS);
+            mIdling = false;
+            // Back to drawing, so back to waiting for vsyncs if a frame callback was skipped meanwhile.
+            postCallback();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.gamecodeschool.pong;
+
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.util.Log;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+/**
+ * Same drawing code as CanvasRenderer, but the Canvas comes from Surface#lockHardwareCanvas() (API 26 and up), so the
+ * draw calls are recorded and rasterised by the GPU through the normal hardware accelerated pipeline. Clearing the
+ * screen and drawing the boxes then costs next to nothing on the CPU, whatever the resolution.
+ *
+ * Some devices and emulators can not give out a hardware canvas for a SurfaceView. If locking one fails, this renderer
+ * falls back to the software path for the rest of its life.
+ * @see Renderer
+ */
+@TargetApi(Build.VERSION_CODES.O)
+public class HardwareCanvasRenderer extends CanvasRenderer {
+
+    private boolean mFallback;
+
+    /**
+     * Parametrized constructor below.
+     * @param holder holder of the surface to draw on.
+     */
+    public HardwareCanvasRenderer(SurfaceHolder holder) {
+        super(holder);
+    }
+
+    @Override
+    protected Canvas lockCanvas() {
+        if (!mFallback) {
+            try {
+                return mHolder.getSurface().lockHardwareCanvas();
+            }
+
+            catch (IllegalStateException | Surface.OutOfResourcesException e) {
+                Log.w("Renderer", "Hardware canvas not available, using software canvas.", e);
+                mFallback = true;
+            }
+        }
+
+        return super.lockCanvas();
+    }
+
+    @Override
+    protected void unlockCanvasAndPost(Canvas canvas) {
+        if (mFallback) {
+            super.unlockCanvasAndPost(canvas);
+        }
+
+        else {
+            mHolder.getSurface().unlockCanvasAndPost(canvas);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return mFallback ? "Canvas (hardware unavailable)" : "Hardware canvas";
+    }
+}
@@ -0,0 +1,117 @@
+package com.gamecodeschool.pong;
+
+/**
+ * Small text formatter used for the score/lives line and the debugging FPS line drawn by:
+ * @see PongGame#draw(Snapshot, float, boolean)
+ *
+ * Building these lines with String concatenation creates new objects every frame, which the garbage collector later
+ * has to clean up (causing visible hitches). Instead this class holds fixed labels and integer values, and writes them
+ * into one reusable char array. The array is only rewritten when one of the values actually changes.
+ */
+public class HudText {
+
+    // Longest int is "-2147483648".
+    private static final int MAX_INT_CHARS = 11;
+
+    private final String[] mLabels;
+    private final int[] mValues;
+    private final char[] mChars;
+    private int mLength;
+    private boolean mDirty = true;
+
+    /**
+     * Parametrized constructor below.
+     * @param labels text placed before each value, e.g. "Score: " and "   Lives: " give "Score: 3   Lives: 2".
+     * One value slot is created per label.
+     */
+    public HudText(String... labels) {
+        mLabels = labels;
+        mValues = new int[labels.length];
+
+        int capacity = 0;
+
+        for (String label : labels) {
+            capacity += label.length() + MAX_INT_CHARS;
+        }
+
+        mChars = new char[capacity];
+    }
+
+    /**
+     * Updates one of the values. Only marks the text for re-formatting if the value is different.
+     * @param index which label the value belongs to (order given in the constructor).
+     * @param value the number to show.
+     */
+    public void setValue(int index, int value) {
+        if (mValues[index] != value) {
+            mValues[index] = value;
+            mDirty = true;
+        }
+    }
+
+    /**
+     * @return the characters of the formatted text, only valid up to length().
+     * @see HudText#length()
+     */
+    public char[] getChars() {
+        format();
+        return mChars;
+    }
+
+    /** @return how many characters of getChars() are in use. */
+    public int length() {
+        format();
+        return mLength;
+    }
+
+    /** Rewrites the char buffer from the labels and values, if anything changed since the last time. */
+    private void format() {
+        if (!mDirty) {
+            return;
+        }
+
+        int pos = 0;
+
+        for (int i = 0; i < mLabels.length; i++) {
+            String label = mLabels[i];
+            label.getChars(0, label.length(), mChars, pos);
+            pos += label.length();
+            pos = appendInt(mValues[i], pos);
+        }
+
+        mLength = pos;
+        mDirty = false;
+    }
+
+    /**
+     * Writes the decimal digits of value into the buffer without creating a String.
+     * @param value number to write.
+     * @param pos index to start writing at.
+     * @return index just after the last written character.
+     */
+    private int appendInt(int value, int pos) {
+        // Work with the negative value so Integer.MIN_VALUE does not overflow.
+        int remaining = value;
+
+        if (remaining >= 0) {
+            remaining = -remaining;
+        }
+
+        else {
+            mChars[pos++] = '-';
+        }
+
+        int digits = 1;
+
+        for (int v = remaining; v <= -10; v /= 10) {
+            digits++;
+        }
+
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            mChars[i] = (char) ('0' - (remaining % 10));
+            remaining /= 10;
+        }
+
+        return pos + digits;
+    }
+}
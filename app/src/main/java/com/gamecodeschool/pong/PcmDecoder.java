@@ -0,0 +1,159 @@
+package com.gamecodeschool.pong;
+
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodes a compressed sound file (our .ogg clips) into 16 bit mono PCM at the sample rate the audio output runs at,
+ * ready to be mixed by SoundMixer without any work per sample at play time. Uses the platform's MediaExtractor and
+ * MediaCodec, through the buffer array API that works all the way back to API 16.
+ * @see SoundMixer
+ */
+public final class PcmDecoder {
+
+    // How long to wait for a codec buffer before going round the loop again.
+    private static final long TIMEOUT_MICROS = 10000;
+    // Longest the codec may take to hand back the end of the stream once all the input is queued, a few clips' worth
+    // of decoding. A codec that never does would otherwise hold a loader thread for good.
+    private static final long END_OF_STREAM_TIMEOUT_NANOS = 2000000000L;
+
+    private PcmDecoder() {
+    }
+
+    /**
+     * Decodes a whole clip. Takes a few milliseconds per clip, so keep it off the render and simulation threads.
+     * @param descriptor the asset to decode, closed afterwards.
+     * @param sampleRate sample rate to convert the clip to, in Hz.
+     * @return the clip's samples, channels averaged down to mono.
+     * @throws IOException if the asset can not be read, has no audio track the device can decode, or the decoder does
+     * not finish within END_OF_STREAM_TIMEOUT_NANOS of being given the end of the input.
+     */
+    @SuppressWarnings("deprecation")
+    public static short[] decode(AssetFileDescriptor descriptor, int sampleRate) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+
+        try {
+            extractor.setDataSource(descriptor.getFileDescriptor(), descriptor.getStartOffset(),
+                    descriptor.getLength());
+            MediaFormat format = selectAudioTrack(extractor);
+            int rate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            ByteBuffer[] inputs = codec.getInputBuffers();
+            ByteBuffer[] outputs = codec.getOutputBuffers();
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            short[] samples = new short[rate];
+            int count = 0;
+            boolean inputDone = false;
+            long inputDoneNanos = 0;
+
+            while (true) {
+                if (!inputDone) {
+                    int index = codec.dequeueInputBuffer(TIMEOUT_MICROS);
+
+                    if (index >= 0) {
+                        int size = extractor.readSampleData(inputs[index], 0);
+
+                        if (size < 0) {
+                            codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                            inputDoneNanos = System.nanoTime();
+                        }
+
+                        else {
+                            codec.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int index = codec.dequeueOutputBuffer(info, TIMEOUT_MICROS);
+
+                if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                    outputs = codec.getOutputBuffers();
+                }
+
+                else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat output = codec.getOutputFormat();
+                    rate = output.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channels = output.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                }
+
+                else if (index >= 0) {
+                    ByteBuffer buffer = outputs[index];
+                    buffer.position(info.offset);
+                    buffer.limit(info.offset + info.size);
+                    ShortBuffer pcm = buffer.order(ByteOrder.nativeOrder()).asShortBuffer();
+                    int frames = pcm.remaining() / channels;
+
+                    if (count + frames > samples.length) {
+                        samples = Arrays.copyOf(samples, Math.max(samples.length * 2, count + frames));
+                    }
+
+                    for (int f = 0; f < frames; f++) {
+                        int sum = 0;
+
+                        for (int c = 0; c < channels; c++) {
+                            sum += pcm.get();
+                        }
+
+                        samples[count++] = (short) (sum / channels);
+                    }
+
+                    codec.releaseOutputBuffer(index, false);
+
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        break;
+                    }
+                }
+
+                if (inputDone && System.nanoTime() - inputDoneNanos > END_OF_STREAM_TIMEOUT_NANOS) {
+                    throw new IOException("Decoder did not end the stream");
+                }
+            }
+
+            return SoundMixer.resample(Arrays.copyOf(samples, count), rate, sampleRate);
+        }
+
+        catch (IllegalStateException e) {
+            // MediaCodec reports decoder failures this way.
+            throw new IOException("Failed to decode audio", e);
+        }
+
+        finally {
+            if (codec != null) {
+                codec.release();
+            }
+
+            extractor.release();
+            descriptor.close();
+        }
+    }
+
+    private static MediaFormat selectAudioTrack(MediaExtractor extractor) throws IOException {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat format = extractor.getTrackFormat(i);
+            String mime = format.getString(MediaFormat.KEY_MIME);
+
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+
+        throw new IOException("No audio track");
+    }
+}
@@ -7,6 +7,9 @@ import android.view.Window;
 import android.os.Bundle;
 import android.graphics.Point;
 import android.view.Display;
+import android.util.Log;
+
+import java.io.IOException;
 
 /**
  * This class serves as the main tool in how we interact and gain information from our user's Android device
@@ -16,6 +19,38 @@ import android.view.Display;
  */
 public class PongActivity extends Activity {
 
+    // Intent extra that starts the game in stress test mode with this many balls, e.g.
+    // adb shell am start -n com.gamecodeschool.pong/.PongActivity --ei stressBalls 2000
+    public static final String EXTRA_STRESS_BALLS = "stressBalls";
+    // Intent extra that forces the software canvas renderer instead of the best one for the device, e.g.
+    // adb shell am start -n com.gamecodeschool.pong/.PongActivity --ez softwareRenderer true
+    public static final String EXTRA_SOFTWARE_RENDERER = "softwareRenderer";
+    // Intent extra that makes the software canvas repaint the whole screen every frame instead of only what changed.
+    public static final String EXTRA_FULL_REDRAW = "fullRedraw";
+    // Intent extra that starts with the performance HUD showing (a three finger tap toggles it too).
+    public static final String EXTRA_PROFILER = "profiler";
+    // Intent extra that renders at a fraction of the display resolution, scaled up by the display hardware, e.g.
+    // adb shell am start -n com.gamecodeschool.pong/.PongActivity --ef renderScale 0.5
+    public static final String EXTRA_RENDER_SCALE = "renderScale";
+    // Intent extra that keeps everything at full quality instead of adapting it to the device, e.g. for comparable
+    // frame times in a stress test:
+    // adb shell am start -n com.gamecodeschool.pong/.PongActivity --ei stressBalls 2000 --ez adaptiveQuality false
+    public static final String EXTRA_ADAPTIVE_QUALITY = "adaptiveQuality";
+    // Intent extras that play a versus game against another device on the same network: one hosts on a UDP port, the
+    // other joins it by IP address and port, e.g.
+    // adb shell am start -n com.gamecodeschool.pong/.PongActivity --ei hostPort 7777
+    // adb shell am start -n com.gamecodeschool.pong/.PongActivity --es join 192.168.1.20:7777
+    public static final String EXTRA_HOST_PORT = "hostPort";
+    public static final String EXTRA_JOIN = "join";
+    // Intent extra that plays a versus game against the computer: easy, normal or hard, e.g.
+    // adb shell am start -n com.gamecodeschool.pong/.PongActivity --es ai hard
+    public static final String EXTRA_AI = "ai";
+    // Bundle key of the saved game state.
+    private static final String STATE_GAME = "game";
+    // Larger states (big stress tests) are left to the save state file, the whole Bundle has to fit in a binder
+    // transaction.
+    private static final int MAX_BUNDLE_STATE_BYTES = 64 * 1024;
+
     private PongGame mPongGame;
 
     /**
@@ -24,13 +59,25 @@ public class PongActivity extends Activity {
      * @param savedInstanceState contains information about our user's current device state. (Was there an ongoing game
      * that the user had and is now resuming?) This method firstly calls Activity's onCreate method and assigns our user
      * view to contain no title, so we have more space for game visuals. Additionally, we get display information and
-     * store those values in a point variable which is then passed into our PongGame constructor.
-     * @see PongGame#PongGame(Context, int, int)
+     * store those values in a point variable which is then passed into our PongGame constructor, along with a
+     * StartupTiming started first thing so the time to first frame covers all of onCreate.
+     * @see PongGame#PongGame(Context, int, int, StartupTiming)
      * Once our PongGame object has information regarding the current state of the user's OS and device, we then set
-     * content view (user view) to our PongGame object.
+     * content view (user view) to our PongGame object. If launched with EXTRA_STRESS_BALLS, a stress test starts
+     * straight away, EXTRA_SOFTWARE_RENDERER / EXTRA_FULL_REDRAW pick the software canvas renderer and how it
+     * repaints, EXTRA_PROFILER shows the performance HUD from the start, EXTRA_RENDER_SCALE lowers the resolution
+     * drawn at and EXTRA_ADAPTIVE_QUALITY set to false keeps full quality however slow the device. EXTRA_HOST_PORT
+     * and EXTRA_JOIN start a network game, see startNetworkGame(), EXTRA_AI one against the computer. Otherwise the
+     * game carries on where it was: from savedInstanceState if the activity is being recreated, else from the save
+     * state file the last session wrote when it paused (so even a killed process comes back to its game), else a new
+     * game starts.
+     * @see PongGame#restoreState(byte[])
+     * @see PongGame#restoreSavedState()
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTiming startup = new StartupTiming(this);
+
         super.onCreate(savedInstanceState);
         requestWindowFeature(Window.FEATURE_NO_TITLE);
 
@@ -40,11 +87,90 @@ public class PongActivity extends Activity {
 
         display.getSize(size);
 
-        mPongGame = new PongGame(this, size.x, size.y);
+        mPongGame = new PongGame(this, size.x, size.y, startup);
+        mPongGame.setRendering(getIntent().getBooleanExtra(EXTRA_SOFTWARE_RENDERER, false),
+                !getIntent().getBooleanExtra(EXTRA_FULL_REDRAW, false));
+        mPongGame.setProfiling(getIntent().getBooleanExtra(EXTRA_PROFILER, false));
+        mPongGame.setRenderScale(getIntent().getFloatExtra(EXTRA_RENDER_SCALE, 1f));
+        mPongGame.setAdaptiveQuality(getIntent().getBooleanExtra(EXTRA_ADAPTIVE_QUALITY, true));
+
+        int stressBalls = getIntent().getIntExtra(EXTRA_STRESS_BALLS, 0);
+
+        if (stressBalls > 0) {
+            mPongGame.startStressTest(stressBalls);
+        }
+
+        // Versus games have nothing to carry on from.
+        else if (!startNetworkGame() && !startAiGame()) {
+            byte[] state = savedInstanceState != null ? savedInstanceState.getByteArray(STATE_GAME) : null;
+
+            if (state == null || !mPongGame.restoreState(state)) {
+                mPongGame.restoreSavedState();
+            }
+        }
 
         setContentView(mPongGame);
     }
 
+    /**
+     * Starts a network game if asked for by EXTRA_HOST_PORT or EXTRA_JOIN. The join address must be a numeric IPv4
+     * address and port, anything else (a host name would need looking up on the UI thread) is rejected.
+     * @return true if a network game started.
+     * @see PongGame#startNetworkGame(UdpTransport, int)
+     * @see UdpTransport#parseAddress(String)
+     */
+    private boolean startNetworkGame() {
+        int port = getIntent().getIntExtra(EXTRA_HOST_PORT, -1);
+        String join = getIntent().getStringExtra(EXTRA_JOIN);
+
+        try {
+            if (port >= 0) {
+                UdpTransport transport = UdpTransport.host(port);
+                Log.i("Network", "Hosting on port " + transport.getLocalPort());
+                mPongGame.startNetworkGame(transport, NetSession.HOST);
+                return true;
+            }
+
+            if (join != null) {
+                mPongGame.startNetworkGame(UdpTransport.join(UdpTransport.parseAddress(join)), NetSession.CLIENT);
+                return true;
+            }
+        }
+
+        catch (IOException | IllegalArgumentException e) {
+            Log.e("Network", "Could not start network game, playing alone.", e);
+        }
+
+        return false;
+    }
+
+    /**
+     * Starts a game against the computer if asked for by EXTRA_AI.
+     * @return true if it started.
+     * @see PongGame#startAiGame(AiOpponent.Difficulty)
+     */
+    private boolean startAiGame() {
+        String level = getIntent().getStringExtra(EXTRA_AI);
+
+        if ("easy".equals(level)) {
+            mPongGame.startAiGame(AiOpponent.Difficulty.EASY);
+        }
+
+        else if ("normal".equals(level)) {
+            mPongGame.startAiGame(AiOpponent.Difficulty.NORMAL);
+        }
+
+        else if ("hard".equals(level)) {
+            mPongGame.startAiGame(AiOpponent.Difficulty.HARD);
+        }
+
+        else {
+            return false;
+        }
+
+        return true;
+    }
+
     /**
      * Another implementation of polymorphism below as we are overriding this stage within our Android lifecycle to also
      * call our user-defined resume method that controls thread stop-start.
@@ -72,4 +198,30 @@ public class PongActivity extends Activity {
         mPongGame.pause();
     }
 
+    /**
+     * The activity is going for good, so are the game threads.
+     * @see PongGame#release()
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mPongGame.release();
+    }
+
+    /**
+     * Saves the game in the Bundle the activity is recreated with, small enough states only.
+     * @param outState the Bundle.
+     * @see PongGame#saveState()
+     */
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+
+        byte[] state = mPongGame.saveState();
+
+        if (state != null && state.length <= MAX_BUNDLE_STATE_BYTES) {
+            outState.putByteArray(STATE_GAME, state);
+        }
+    }
+
 }
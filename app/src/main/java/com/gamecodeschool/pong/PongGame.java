@@ -1,56 +1,200 @@
 package com.gamecodeschool.pong;
 
 import android.content.Context;
-import android.content.res.AssetFileDescriptor;
-import android.content.res.AssetManager;
-import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.RectF;
-import android.media.AudioAttributes;
-import android.media.AudioManager;
-import android.media.SoundPool;
 import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
+import android.view.WindowManager;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class extends the SurfaceView class and implements the Runnable interface. Allowing us to provide a view to the
- * user and provide some context as to how we want our thread (game loop) to execute. PongGame pretty much runs the all of the
- * mechanics that comes with user game play (view, drawing, collision detection, game loop implementation, etc.) As you can see
- * below this class is composed of many different objects that contribute to the above discussed functionality.
+ * user and provide some context as to how we want our thread (game loop) to execute. The rules of the game themselves
+ * (movement, collision detection, score and lives) live in PongSimulation, PongGame is the Android side of things: it
+ * runs the game loop, turns touches into simulation input, draws the simulation's state and plays sounds for the
+ * events the simulation reports.
+ *
+ * The game is simulated in a fixed logical world of PongSimulation.WORLD_WIDTH x WORLD_HEIGHT units whatever the
+ * display, so it plays the same (and costs the same to simulate) on every device. Drawing maps the world onto the
+ * surface with one scale and offset (Renderer#setTransform), centred with bars either side if the display's shape
+ * differs. The surface itself can be smaller than the display (setRenderScale), the display hardware scales it up.
+ * Where frames are missed for a while the game gives up visual quality in steps to hold its frame rate, and takes it
+ * back once there is room again (setAdaptiveQuality).
+ *
+ * The game loop is split over two threads so simulating and drawing overlap instead of taking turns: the simulation
+ * thread steps the game at its fixed tick rate and publishes a Snapshot after every batch of steps, the render thread
+ * (this Runnable) draws the newest snapshot once per frame. They share nothing but a lock-free TripleBuffer, so a
+ * frame blocked waiting for the compositor to hand back a buffer no longer holds up the simulation, and a slow
+ * simulation step never delays a frame.
+ *
+ * Both threads (and the audio thread) live as long as the view: pausing parks them and resuming unparks them, see
+ * LoopThread. The render loop also only runs while the surface exists, started and stopped from the
+ * SurfaceHolder.Callback methods, so it never draws to a surface that is gone.
+ * @see PongGame#runSimulation()
+ * @see PongGame#run()
+ * @see PongSimulation
  */
 
-public class PongGame extends SurfaceView implements Runnable {
-    private final boolean DEBUGGING = true;
+public class PongGame extends SurfaceView implements Runnable, GameEvents, SurfaceHolder.Callback {
     private final SurfaceHolder mOurHolder;
-    private Canvas mCanvas;
-    private final Paint mPaint;
+    // Chosen for the device in the constructor, see setRendering(boolean, boolean). Only used on the render thread.
+    private Renderer mRenderer;
+    private String mRendererName;
+    private char[] mRendererChars;
+    // One Paint per kind of object, set up once so draw() never has to change colours or sizes mid-frame.
+    private final int mBackgroundColor = Color.argb(255, 26, 128, 182);
+    private final Paint mBallPaint;
+    private final Paint mBatPaint;
+    private final Paint mObstaclePaint;
+    private final Paint mHudPaint;
+    private final Paint mDebugPaint;
+    private final HudText mScoreText = new HudText("Score: ", "   Lives: ");
+    private final HudText mOpponentText = new HudText("Opponent: ", "   Lives: ");
+    private final HudText mFPSText = new HudText("FPS: ");
+    private final HudText mLatencyText = new HudText("Input latency (us): ", "   max: ", "   dropped: ");
+    private final HudText mAudioLatencyText = new HudText("Audio latency (us): ", "   max: ", "   dropped: ");
+    private final HudText mJankText = new HudText("Frames: ", "   janky: ");
+    private final HudText[] mPhaseText = new HudText[FrameProfiler.PHASE_COUNT];
+    private final Paint mGraphPaint;
+    private final Paint mJankPaint;
+    private final Paint mSparkPaint;
+    private final Paint mTrailPaint;
+    private final HudText mParticleText = new HudText("Particles: ", "   per ms: ", "   limit: ", "   dropped: ",
+            "   effects dropped: ");
+    // Particle kinds, each drawn in one batch.
+    private static final int SPARK = 0;
+    private static final int TRAIL = 1;
+    private static final int POPUP = 2;
+    private final int PARTICLE_CAPACITY = 4096;
+    // Longest step particles are moved in one go, e.g. after the render loop idled.
+    private final float MAX_PARTICLE_SECONDS = 0.1f;
+    private final char[] POPUP_TEXT = "+1".toCharArray();
+    // Sparks, score pop-ups and ball trails, render thread only.
+    private final ParticlePool mParticles = new ParticlePool(PARTICLE_CAPACITY);
+    private final float[] mParticlePoints = new float[PARTICLE_CAPACITY * 2];
+    private final Random mParticleRandom = new Random();
+    // Render thread: time spent on particles this frame, measured for the particle budget.
+    private long mParticleNanos;
+    // Effects from the simulation thread to the render thread, so no bounce is missed whichever snapshots the render
+    // thread skips.
+    private final EffectRing mEffects = new EffectRing(256);
+    private final EffectRing.Sink mEffectSink = new EffectRing.Sink() {
+        @Override
+        public void onEffect(int type, float x, float y) {
+            emitEffect(type, x, y);
+        }
+    };
+    // Simulation thread: where the ball was at the bounce being reported, see onBounce(float, float).
+    private float mBounceX;
+    private float mBounceY;
+    // Frame times kept for the percentiles, how often they are worked out and how many bars the frame time graph has.
+    private final int PROFILER_SAMPLES = 240;
+    private final int STATS_INTERVAL_FRAMES = 30;
+    private final int GRAPH_BARS = 120;
+    // The performance HUD and the timings behind it, off until switched on (three finger tap or setProfiling).
+    private final FrameProfiler mProfiler;
+    // Render thread only: whether the last frame was profiled, and the simulation's profiled steps seen so far.
+    private boolean mWasProfiling;
+    private long mLastProfiledSteps;
+    private final long[] mPhaseTotals = new long[FrameProfiler.COLLISION + 1];
+    private int mFramesSinceStats;
     private long mFPS;
-    private final int MILLIS_IN_SECOND = 1000;
+    // What each quality level (see QualityGovernor) sets, indexed by level. Cheapest to give up first: the frame time
+    // graph and how often the debugging text is updated, then the particles, then the resolution.
+    // Frame time particles may take, the pool caps live particles to fit it once it knows what they cost.
+    private final double[] QUALITY_PARTICLE_MILLIS = {1.0, 1.0, 0.5, 0.5, 0.25};
+    // The debugging text is updated every this many frames.
+    private final int[] QUALITY_HUD_FRAMES = {1, 4, 8, 8, 8};
+    // Fraction of the resolution asked for with setRenderScale that is rendered at.
+    private final float[] QUALITY_RENDER_SCALE = {1f, 1f, 1f, 0.75f, 0.5f};
+    // Frames per QualityGovernor window.
+    private final int QUALITY_WINDOW_FRAMES = 60;
+    private final QualityGovernor mGovernor = new QualityGovernor(QUALITY_WINDOW_FRAMES);
+    // Follows the device's thermal status (API 29 and up, else null).
+    private final ThermalMonitor mThermal;
+    private volatile boolean mAdaptiveQuality = true;
+    // Render thread: the quality level in effect and the settings it made.
+    private int mQualityLevel;
+    private double mParticleBudgetMillis = QUALITY_PARTICLE_MILLIS[0];
+    private int mHudInterval = QUALITY_HUD_FRAMES[0];
+    private int mHudFrames;
+    private boolean mFrameGraph = true;
+    private final HudText mQualityText = new HudText("Quality: ", "   floor: ", "   frame p90 (us): ",
+            "   work p90 (us): ");
+    // Render scale asked for (UI thread) and the part of it the quality level allows (render thread writes).
+    private float mRenderScale = 1f;
+    private volatile float mQualityRenderScale = 1f;
+    private final Runnable mApplyRenderScale = new Runnable() {
+        @Override
+        public void run() {
+            applyRenderScale();
+        }
+    };
+    private final long NANOS_IN_SECOND = 1000000000L;
+    // Upper bound on simulation steps run to catch up after one slow frame, stops a spiral of ever slower frames.
+    private final int MAX_CATCH_UP_STEPS = 5;
+    private long mNanosPerTick;
+    // Scratch rects holding the interpolated positions we draw, reused every frame.
+    private final Aabb mDrawRect = new Aabb();
     private final int mScreenX;
     private final int mScreenY;
+    // Size of the surface's buffer, the display size unless setRenderScale asked for less. Set on the UI thread.
+    private volatile int mSurfaceWidth;
+    private volatile int mSurfaceHeight;
+    // Render thread: the surface size the last frame was drawn at.
+    private int mDrawnWidth;
+    private int mDrawnHeight;
+    private final Paint mBarPaint;
+    private final Paint mPopupPaint;
     private final int mFontSize;
     private final int mFontMargin;
-    private int mScore;
-    private int mLives;
-    private Thread mGameThread = null;
-    // Volatile makes it safe to access variable from inside and outside of the thread.
-    private volatile boolean mPlaying;
-    private boolean mPaused = true;
-    private Bat mBat;
-    private Obstacle mObstacle;
-    private Obstacle mAddObstacle;
-    private Ball mBall;
-    private SoundPool mSP;
-    private int mBeepID = -1;
-    private int mBoopID = -1;
-    private int mBopID = -1;
-    private int mMissID = -1;
+    // How long a paused simulation thread sleeps before checking again, even if no touch wakes it.
+    private final long IDLE_TIMEOUT_NANOS = 250000000L;
+    // Longest a lifecycle change waits for a game thread to finish its current frame or step.
+    private final long STOP_TIMEOUT_NANOS = 500000000L;
+    private final LoopThread mRenderLoop = new LoopThread("Render", this);
+    private final LoopThread mSimulationLoop;
+    // Whether the last snapshot published showed a paused game, only touched by whoever publishes.
+    private boolean mPublishedPaused = true;
+    // Simulation thread writes, render thread reads. Holds three snapshots so neither ever waits for the other.
+    private final TripleBuffer<Snapshot> mSnapshots =
+            new TripleBuffer<>(new Snapshot(), new Snapshot(), new Snapshot());
+    // UI thread only: between resume() and pause(), and whether the surface exists. Rendering needs both.
+    private boolean mResumed;
+    private boolean mSurfaceReady;
+    // Set when a frame must be drawn even though no new snapshot arrived (the surface came back), so a paused game only
+    // redraws when it has to.
+    private volatile boolean mNeedsRedraw = true;
+    private final FramePacer mPacer;
+    private final PongSimulation mSimulation;
+    private final TouchInput mTouchInput;
+    // Where the session's input log is saved whenever the game pauses, see InputReplay for playing it back.
+    private final File mRecordingFile;
+    // Plays the sounds for the events the simulation reports, on its own audio thread.
+    private final AudioEngine mAudio;
+    private final StartupTiming mStartup;
+    // Session performance telemetry written to local storage, see TelemetryReport for reading it.
+    private final TelemetryCollector mTelemetry;
+    // The game state saved whenever the game pauses, so it can carry on after the process is killed.
+    private final SaveStateStore mSaveState;
+    // Versus game against another device, see startNetworkGame. Set on the UI thread before the simulation thread
+    // starts, cleared by the simulation thread if the connection fails.
+    private volatile NetSession mNet;
+    private UdpTransport mNetTransport;
 
     /**
      * Below we have our parametrized constructor.
@@ -60,81 +204,306 @@ public class PongGame extends SurfaceView implements Runnable {
      * @param x Contains resolution x-size (# of pixels).z
      * @param y Contains resolution y-size (# of pixels).
      * Both above parameters are used for formatting drawing activities.
+     * @see PongGame#PongGame(Context, int, int, StartupTiming)
+     */
+    public PongGame(Context context, int x, int y) {
+        this(context, x, y, new StartupTiming(null));
+    }
+
+    /**
+     * Same as above, reporting how long startup took.
+     * @param context Passes in information regarding our user's current device state and display information.
+     * @param x Contains resolution x-size (# of pixels).
+     * @param y Contains resolution y-size (# of pixels).
+     * @param startup told when the first frame is drawn and the sounds have loaded.
      *
      * This parametrized constructor essentially accomplishes setting the user's view based off their existing context,
-     * and properly initializes game objects/sounds based off screen resolution and device OS version. Once, all of
-     * the above is properly set up we call to start a new game.
-     * @exception IOException relates to attempting to load sound files through our asset manager (manages audio files).
-     * @see PongGame#startNewGame()
+     * and properly initializes the simulation based off screen resolution and device OS version. The sounds load in
+     * the background so the first frame is not held up by them, the game simply stays silent until they are ready.
+     * The simulation starts a new game as soon as it is created.
+     * @see PongSimulation#startNewGame()
+     * @see AudioEngine
      */
-    public PongGame(Context context, int x, int y){
+    public PongGame(Context context, int x, int y, final StartupTiming startup) {
 
         // of type view class that takes in type context class within activity class. Gives surface view information relating to object state.
         super(context);
         mScreenX = x;
         mScreenY = y;
+        mSurfaceWidth = x;
+        mSurfaceHeight = y;
 
         mFontSize = mScreenY / 20;
         mFontMargin = mScreenX / 75;
 
+        mSimulation = new PongSimulation(PongSimulation.WORLD_WIDTH, PongSimulation.WORLD_HEIGHT);
+        // Every session is recorded, so a bug or a frame time spike a player reports can be replayed offline.
+        mSimulation.startRecording();
+        mRecordingFile = new File(context.getFilesDir(), "last-session.pngr");
+        mSaveState = new SaveStateStore(new File(context.getFilesDir(), "savestate.bin"));
+        mTouchInput = new TouchInput(mScreenX);
+        mSimulation.setInputSource(mTouchInput);
+        mSimulation.setEvents(this);
+        setTickRate(mSimulation.getTickRate());
+        mPacer = new FramePacer(FramePacer.Mode.VSYNC);
+
+        mSimulationLoop = new LoopThread("Simulation", new Runnable() {
+            @Override
+            public void run() {
+                runSimulation();
+            }
+        });
+
         mOurHolder = getHolder();
-        mPaint = new Paint();
-        mBall = new Ball(mScreenX);
-        mBat = new Bat(mScreenX, mScreenY);
-        mObstacle = new Obstacle(mScreenX, mScreenY);
-        mAddObstacle = new Obstacle(mScreenX, mScreenY);
+        mOurHolder.addCallback(this);
+        mRenderer = createRenderer(false, true);
+        mBallPaint = createPaint(Color.argb(255, 255, 255, 255), 0);
+        mBatPaint = createPaint(Color.argb(255, 255, 255, 255), 0);
+        mObstaclePaint = createPaint(Color.argb(255, 0, 0, 0), 0);
+        mHudPaint = createPaint(Color.argb(255, 255, 255, 255), mFontSize);
+        mDebugPaint = createPaint(Color.argb(255, 255, 255, 255), mFontSize / 2);
+        mGraphPaint = createPaint(Color.argb(255, 0, 255, 0), 0);
+        mJankPaint = createPaint(Color.argb(255, 255, 64, 64), 0);
+        mSparkPaint = createPaint(Color.argb(255, 255, 224, 96), 0);
+        mSparkPaint.setStrokeWidth(PongSimulation.WORLD_WIDTH / 240f);
+        mSparkPaint.setStrokeCap(Paint.Cap.SQUARE);
+        mTrailPaint = createPaint(Color.argb(96, 255, 255, 255), 0);
+        mTrailPaint.setStrokeWidth(PongSimulation.WORLD_WIDTH / 150f);
+        mTrailPaint.setStrokeCap(Paint.Cap.SQUARE);
+        mBarPaint = createPaint(Color.argb(255, 0, 0, 0), 0);
+        mPopupPaint = createPaint(Color.argb(255, 255, 255, 255), PongSimulation.WORLD_HEIGHT / 40f);
+
+        float refreshRate = ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay()
+                .getRefreshRate();
+        mProfiler = new FrameProfiler(PROFILER_SAMPLES, (long) (NANOS_IN_SECOND / Math.max(1f, refreshRate)));
+
+        for (int i = 0; i < FrameProfiler.PHASE_COUNT; i++) {
+            mPhaseText[i] = new HudText(FrameProfiler.getPhaseName(i) + " (us) p50: ", "   p95: ", "   p99: ");
+        }
+
+        mTelemetry = new TelemetryCollector(context, mProfiler.getFrameBudgetNanos());
+        mThermal = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? new ThermalMonitor(context, mGovernor) : null;
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            AudioAttributes audioAttributes = new AudioAttributes.Builder().setUsage(AudioAttributes.USAGE_MEDIA).setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION).build();
-            mSP = new SoundPool.Builder().setMaxStreams(5).setAudioAttributes(audioAttributes).build();
+        mStartup = startup;
+        mAudio = new AudioEngine(context, new Runnable() {
+            @Override
+            public void run() {
+                startup.onAssetsLoaded();
+            }
+        });
+    }
+
+    /**
+     * Helper used by the constructor to build the Paint objects used for drawing.
+     * @param color colour to draw with.
+     * @param textSize text size in pixels, 0 when the paint is only used for shapes.
+     * @return the new Paint.
+     */
+    private static Paint createPaint(int color, float textSize) {
+        Paint paint = new Paint();
+        paint.setColor(color);
 
+        if (textSize > 0) {
+            paint.setTextSize(textSize);
         }
 
-        else {
-            Log.d("Error:", "Did not have updated version.\n");
-            mSP = new SoundPool(5, AudioManager.STREAM_MUSIC, 0);
+        return paint;
+    }
+
+    /**
+     * Creates the drawing backend picked for this device.
+     * @param software true to use the software canvas whatever the device supports.
+     * @param partialRedraw true to let the software canvas repaint only the changed areas.
+     * @return the renderer.
+     * @see RendererChoice
+     */
+    private Renderer createRenderer(boolean software, boolean partialRedraw) {
+        switch (RendererChoice.pick(Build.VERSION.SDK_INT, software, partialRedraw)) {
+            case RendererChoice.HARDWARE:
+                return new HardwareCanvasRenderer(mOurHolder);
+
+            case RendererChoice.PARTIAL_CANVAS:
+                return new DirtyRectRenderer(mOurHolder);
+
+            default:
+                return new CanvasRenderer(mOurHolder);
         }
+    }
 
-        try {
-            AssetManager assetManager = context.getAssets();
-            AssetFileDescriptor descriptor;
+    /**
+     * Forces the software canvas renderer (or goes back to the best one for the device), e.g. to compare frame times
+     * between them. Must be called while the game threads are not running (before resume()).
+     * @param software true for the software canvas.
+     * @param partialRedraw true for the software canvas to repaint only the changed areas, false to repaint everything.
+     */
+    public void setRendering(boolean software, boolean partialRedraw) {
+        mRenderer = createRenderer(software, partialRedraw);
+    }
+
+    /**
+     * Renders at a fraction of the display resolution, which the display hardware scales back up, e.g. to take load
+     * off a weak GPU or a software canvas on a large display. The game looks softer but plays exactly the same, it
+     * lives in world units anyway. The adaptive quality may lower it further. Must be called on the UI thread.
+     * @param scale fraction of the display size, 1 (or more) for full resolution.
+     * @see PongGame#setAdaptiveQuality(boolean)
+     */
+    public void setRenderScale(float scale) {
+        mRenderScale = scale;
+        applyRenderScale();
+    }
+
+    /** Sizes the surface for the render scale asked for and the one the quality level allows. UI thread. */
+    private void applyRenderScale() {
+        float scale = mRenderScale * mQualityRenderScale;
 
-            descriptor = assetManager.openFd("beep.ogg");
-            mBeepID = mSP.load(descriptor, 0);
+        if (scale >= 1) {
+            mOurHolder.setSizeFromLayout();
+        }
 
-            descriptor = assetManager.openFd("boop.ogg");
-            mBoopID = mSP.load(descriptor, 0);
+        else {
+            mOurHolder.setFixedSize(Math.max(1, Math.round(mScreenX * scale)),
+                    Math.max(1, Math.round(mScreenY * scale)));
+        }
+    }
 
-            descriptor = assetManager.openFd("bop.ogg");
-            mBopID = mSP.load(descriptor, 0);
+    /**
+     * Switches the adaptive quality on (the default) or off. While on, a QualityGovernor watches the frame times and
+     * gives up quality in steps when frames are missed for a while, and takes it back when there is headroom for a
+     * while: the frame time graph and debugging text updates, then the particle budget, then the resolution. On API
+     * 29 and up the device's thermal status puts a floor on how much is given up, see ThermalMonitor. Off, everything
+     * stays at full quality, e.g. to compare frame times between renderers. Can be called from any thread.
+     * @param adaptive true to adapt quality to the device.
+     */
+    public void setAdaptiveQuality(boolean adaptive) {
+        mAdaptiveQuality = adaptive;
+        mPacer.wake();
+    }
 
-            descriptor = assetManager.openFd("miss.ogg");
-            mMissID = mSP.load(descriptor, 0);
+    /**
+     * Puts the settings of a quality level into effect. Render thread, except the surface size which is changed on
+     * the UI thread.
+     * @param level from 0 (full quality) to QualityGovernor.MAX_LEVEL.
+     * @see QualityGovernor
+     */
+    private void applyQuality(int level) {
+        mQualityLevel = level;
+        mParticleBudgetMillis = QUALITY_PARTICLE_MILLIS[level];
+        mHudInterval = QUALITY_HUD_FRAMES[level];
+        mFrameGraph = level == 0;
 
+        float scale = QUALITY_RENDER_SCALE[level];
+
+        if (scale != mQualityRenderScale) {
+            mQualityRenderScale = scale;
+            post(mApplyRenderScale);
         }
 
-        catch (IOException e) {
-            Log.d("Error", "Failed to load sound files.");
+        Log.i("Quality", "Quality level " + level + " (frame p90 " + mGovernor.getFrameP90() / 1000 + " us, work p90 "
+                + mGovernor.getWorkP90() / 1000 + " us)");
+    }
+
+    /** @return time a frame should take at the frame rate the pacer aims for, in nanoseconds. */
+    private long getFrameTargetNanos() {
+        int fps = mPacer.getMode().getTargetFps();
+        return fps > 0 ? NANOS_IN_SECOND / fps : mProfiler.getFrameBudgetNanos();
+    }
+
+    /**
+     * Sets how many simulation steps are run per second of real time. Higher values give smoother, more precise
+     * collisions at the cost of more update work per frame.
+     * @param ticksPerSecond simulation rate in Hz (120 by default).
+     * @see PongGame#run()
+     */
+    public void setTickRate(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("Tick rate must be positive: " + ticksPerSecond);
         }
 
-        startNewGame();
+        mSimulation.setTickRate(ticksPerSecond);
+        mNanosPerTick = NANOS_IN_SECOND / ticksPerSecond;
+    }
+
+    /**
+     * Shows or hides the performance HUD: FPS, input and audio latency, the renderer in use, per phase timings with
+     * their percentiles, the jank count and a graph of recent frame times. Can be called from any thread at any time,
+     * a three finger tap does the same. While it is off no phase is timed and nothing extra is drawn.
+     * @param profiling true to show it.
+     * @see FrameProfiler
+     */
+    public void setProfiling(boolean profiling) {
+        mProfiler.setEnabled(profiling);
+        mSimulation.setProfiling(profiling);
+        // A paused game only redraws when it has to, and this changes what is on screen.
+        mNeedsRedraw = true;
+        mPacer.wake();
+    }
+
+    /**
+     * Starts a stress test with lots of balls bouncing around (misses cost no lives and sounds are muted), to check
+     * frame times stay steady under load. Lasts until the next new game. Must be called while the game threads are not
+     * running (before resume()).
+     * @param balls number of balls to put in play.
+     * @see PongSimulation#startStressTest(int)
+     */
+    public void startStressTest(int balls) {
+        checkStopped();
+        mSimulation.startStressTest(balls);
 
+        publishSnapshot(System.nanoTime());
     }
 
     /**
-     * Below method starts a new game. Which requires resetting user score and number of lives. Also resetting the
-     * positions of our objects in view (ball, and two obstacles used).
+     * Chooses how the game loop paces its frames (fixed frame rate caps, display vsync or as fast as possible).
+     * @param mode the pacing policy to use from now on.
+     * @see FramePacer.Mode
+     */
+    public void setPacingMode(FramePacer.Mode mode) {
+        mPacer.setMode(mode);
+    }
+
+    /**
+     * Starts a new game, resetting score, lives and the positions of our objects. Must be called while the game threads
+     * are not running (before resume()).
+     * @see PongSimulation#startNewGame()
      */
 
     public void startNewGame() {
+        checkStopped();
+        mSimulation.startNewGame();
 
-        mScore = 0;
-        mLives = 3;
+        publishSnapshot(System.nanoTime());
+    }
 
-        mBall.reset(mScreenX, mScreenY);
-        mObstacle.reset(0, 100);
-        mAddObstacle.reset(mScreenX - 225, (float) (mScreenY / 2.5));
+    /**
+     * Plays a versus game against the computer instead, which takes the top bat. Like a network game it is neither
+     * recorded nor saved. Must be called while the game threads are not running (before resume()).
+     * @param difficulty how good the computer player is.
+     * @see AiOpponent
+     */
+    public void startAiGame(AiOpponent.Difficulty difficulty) {
+        checkStopped();
+        mSimulation.startVersus();
+        mSimulation.setInputSource(new AiOpponent(mTouchInput, difficulty, System.nanoTime()));
 
+        publishSnapshot(System.nanoTime());
+    }
+
+    /**
+     * Plays a versus game against another device instead: our bat at the bottom if we host, at the top if we join.
+     * The game is neither recorded nor saved, there is no carrying it on without the other device. Must be called
+     * while the game threads are not running (before resume()).
+     * @param transport connection to the other device, closed in release().
+     * @param role NetSession.HOST or NetSession.CLIENT.
+     * @see NetSession
+     */
+    public void startNetworkGame(UdpTransport transport, int role) {
+        checkStopped();
+        NetSession net = new NetSession(mSimulation, transport, role);
+        net.setEvents(this);
+        mNetTransport = transport;
+        mNet = net;
+
+        publishSnapshot(System.nanoTime());
     }
 
     /**
@@ -143,224 +512,950 @@ public class PongGame extends SurfaceView implements Runnable {
      * Quick notes:
      * @see PongGame#mOurHolder Pretty much provides another layer to our user view which allows us to draw surfaces
      * from separate threads.
-     * @see PongGame#mOurHolder#getSurface()#isValid() Since asynchronous execution of game loop and OS interaction is
-     * occuring, we need to ensure the memory associated with our user's view or surface is not currently being manipulated before
-     * we begin to draw on it.
-     * @see PongGame#mOurHolder#lockCanvas() Locks surface to ensure no other component of our program tries to access
-     * that memory while we are manipulating it.
-     * @see PongGame#mOurHolder#unlockCanvasAndPost() Unlocks the memory associated with the surface and posts changes or
-     * new drawings to the overall user view.
+     * @see Renderer#beginFrame(int) Since asynchronous execution of game loop and OS interaction is occuring, the
+     * renderer checks the memory associated with our user's view or surface is available, locks it so no other
+     * component of our program tries to access that memory while we are manipulating it, and clears it.
+     * @see Renderer#endFrame() Unlocks the memory associated with the surface and posts changes or new drawings to the
+     * overall user view.
      *
-     * This method is drawing the current positions of our ball, bat, and obstacles.
+     * This method is drawing the positions of our ball, bat, and obstacles from the newest snapshot of the simulation.
+     * @param snapshot the simulation step to draw.
+     * @param alpha How far (0 to 1) we are between the previous and the snapshot's simulation step. Objects are drawn
+     * blended between the two so movement looks smooth even when the frame rate and tick rate do not line up.
+     * @param profiling true to time the lock, draw and post phases of this frame and show the performance HUD.
+     * @return true if a frame was actually posted, false if the surface was not available.
      */
 
-    private void draw() {
-        // Validates that area of memory that we want to manipulate to represent our frame of drawing is available.
-        // Drawing/processing takes place asynchronously with the code that detects player input and OS messages.
-        // Code executing 60 times a second, and we need to confirm that we have access to the memory before we access.
-        if (mOurHolder.getSurface().isValid()) {
-            // Lock the canvas (graphics memory) ready to draw.
-            // Ensures that while we are accessing the memory here, no other code can access it.
-            mCanvas = mOurHolder.lockCanvas();
-            mCanvas.drawColor(Color.argb(255, 26, 128, 182));
+    private boolean draw(Snapshot snapshot, float alpha, boolean profiling) {
+        Renderer renderer = mRenderer;
+        long start = profiling ? System.nanoTime() : 0;
+
+        // Validates that area of memory that we want to manipulate to represent our frame of drawing is available,
+        // then locks it ready to draw. Drawing/processing takes place asynchronously with the code that detects player
+        // input and OS messages.
+        int width = mSurfaceWidth;
+        int height = mSurfaceHeight;
+
+        if (width != mDrawnWidth || height != mDrawnHeight) {
+            // A resized surface (render scale changed) has new buffers, nothing of the old frames is left on them.
+            mDrawnWidth = width;
+            mDrawnHeight = height;
+            renderer.redrawAll();
+        }
 
-            mPaint.setTextSize(mFontSize);
+        if (renderer.beginFrame(mBackgroundColor)) {
+            long locked = profiling ? System.nanoTime() : 0;
+            float worldScale = Math.min((float) width / PongSimulation.WORLD_WIDTH,
+                    (float) height / PongSimulation.WORLD_HEIGHT);
+            float dx = (width - PongSimulation.WORLD_WIDTH * worldScale) / 2;
+            float dy = (height - PongSimulation.WORLD_HEIGHT * worldScale) / 2;
 
-            mPaint.setColor(Color.argb(255, 255, 255, 255));
-            mCanvas.drawRect(mBall.getRect(), mPaint);
-            mCanvas.drawRect(mBat.getRect(), mPaint);
+            drawBars(renderer, width, height, dx, dy);
 
-            mPaint.setColor(Color.argb(255, 0, 0, 0));
-            mCanvas.drawRect(mObstacle.getObstacle(), mPaint);
-            mCanvas.drawRect(mAddObstacle.getObstacle(), mPaint);
-            mPaint.setColor(Color.argb(255, 255, 255, 255));
+            // The game itself in world units.
+            renderer.setTransform(worldScale, dx, dy);
 
-            mCanvas.drawText("Score: " + mScore + "   Lives: " + mLives, mFontMargin, mFontSize, mPaint);
+            // Under everything else, so trails sit behind the balls.
+            drawParticles(renderer);
 
-            if (DEBUGGING){
-                printDebuggingText();
+            for (int i = 0; i < snapshot.getBallCount(); i++) {
+                snapshot.interpolateBall(i, alpha, mDrawRect);
+                renderer.drawRect(mDrawRect, mBallPaint);
             }
 
-            // Frees up the memory to be accessed again, and posts the new canvas.
+            snapshot.interpolateBat(alpha, mDrawRect);
+            renderer.drawRect(mDrawRect, mBatPaint);
+
+            if (snapshot.isVersus()) {
+                snapshot.interpolateOpponentBat(alpha, mDrawRect);
+                renderer.drawRect(mDrawRect, mBatPaint);
+            }
+
+            for (int i = 0; i < snapshot.getObstacleCount(); i++) {
+                snapshot.interpolateObstacle(i, alpha, mDrawRect);
+                renderer.drawRect(mDrawRect, mObstaclePaint);
+            }
+
+            // The HUD in display pixels, scaled down with the surface if it is smaller.
+            renderer.setTransform((float) width / mScreenX, 0, 0);
+
+            // HudText only re-formats when the score or lives actually changed, and never creates Strings.
+            mScoreText.setValue(0, snapshot.getScore());
+            mScoreText.setValue(1, snapshot.getLives());
+            renderer.drawText(mScoreText.getChars(), 0, mScoreText.length(), mFontMargin, mFontSize, mHudPaint);
+
+            if (snapshot.isVersus()) {
+                mOpponentText.setValue(0, snapshot.getOpponentScore());
+                mOpponentText.setValue(1, snapshot.getOpponentLives());
+                renderer.drawText(mOpponentText.getChars(), 0, mOpponentText.length(), mScreenX / 2 + mFontMargin,
+                        mFontSize, mHudPaint);
+            }
+
+            if (profiling) {
+                printDebuggingText(renderer);
+
+                if (mFrameGraph) {
+                    drawFrameGraph(renderer);
+                }
+            }
+
+            long drawn = profiling ? System.nanoTime() : 0;
+
+            // Frees up the memory to be accessed again, and posts the new frame.
             // Happens every single frame of animation.
-            mOurHolder.unlockCanvasAndPost(mCanvas);
+            renderer.endFrame();
+
+            if (profiling) {
+                // Renderers that only lock once they know what changed (DirtyRectRenderer) do it in endFrame(), so
+                // their lock time shows up as post time.
+                mProfiler.record(FrameProfiler.LOCK, locked - start);
+                mProfiler.record(FrameProfiler.DRAW, drawn - locked);
+                mProfiler.record(FrameProfiler.POST, System.nanoTime() - drawn);
+            }
 
+            return true;
         }
+
+        return false;
     }
 
     /**
-     * Method used for debugging purposes. Displays our user's FPS to the screen as well.
+     * Fills the parts of the surface the world does not cover (its shape differs from the display's), in surface
+     * pixels. Nothing is drawn when the world fills the surface.
+     * @param renderer the renderer drawing the current frame.
+     * @param width surface width.
+     * @param height surface height.
+     * @param dx width of each bar left and right of the world.
+     * @param dy height of each bar above and below the world.
+     */
+    private void drawBars(Renderer renderer, int width, int height, float dx, float dy) {
+        if (dx >= 1) {
+            mDrawRect.set(0, 0, dx, height);
+            renderer.drawRect(mDrawRect, mBarPaint);
+            mDrawRect.set(width - dx, 0, width, height);
+            renderer.drawRect(mDrawRect, mBarPaint);
+        }
+
+        if (dy >= 1) {
+            mDrawRect.set(0, 0, width, dy);
+            renderer.drawRect(mDrawRect, mBarPaint);
+            mDrawRect.set(0, height - dy, width, height);
+            renderer.drawRect(mDrawRect, mBarPaint);
+        }
+    }
+
+    /**
+     * Method used for debugging purposes. Displays our user's FPS, the input and audio latency, the dropped touches and
+     * sounds, the renderer in use, the profiler's statistics and the quality level to the screen as well. The numbers
+     * are only updated every mHudInterval frames (more often at better quality levels), the text is drawn every frame.
      * @see PongGame#mFPS
+     * @see FrameProfiler
+     * @param renderer the renderer drawing the current frame.
      */
 
-    private void printDebuggingText() {
-        int debugSize = mFontSize / 2;
+    private void printDebuggingText(Renderer renderer) {
         int debugStart = 150;
 
-        mPaint.setTextSize(debugSize);
+        if (++mHudFrames >= mHudInterval) {
+            mHudFrames = 0;
+            updateDebuggingText();
+        }
+
+        renderer.drawText(mFPSText.getChars(), 0, mFPSText.length(), 25, debugStart - 50, mDebugPaint);
+        renderer.drawText(mLatencyText.getChars(), 0, mLatencyText.length(), 25, debugStart, mDebugPaint);
+        renderer.drawText(mAudioLatencyText.getChars(), 0, mAudioLatencyText.length(), 25, debugStart + 50,
+                mDebugPaint);
+
+        // The name only changes if the renderer had to fall back, so the chars are rarely rebuilt.
+        String name = renderer.getName();
+
+        if (!name.equals(mRendererName)) {
+            mRendererName = name;
+            mRendererChars = name.toCharArray();
+        }
+
+        renderer.drawText(mRendererChars, 0, mRendererChars.length, 25, debugStart + 100, mDebugPaint);
+        renderer.drawText(mJankText.getChars(), 0, mJankText.length(), 25, debugStart + 150, mDebugPaint);
+
+        for (int i = 0; i < FrameProfiler.PHASE_COUNT; i++) {
+            HudText text = mPhaseText[i];
+            renderer.drawText(text.getChars(), 0, text.length(), 25, debugStart + 200 + i * 50, mDebugPaint);
+        }
+
+        int y = debugStart + 200 + FrameProfiler.PHASE_COUNT * 50;
+        renderer.drawText(mParticleText.getChars(), 0, mParticleText.length(), 25, y, mDebugPaint);
+        renderer.drawText(mQualityText.getChars(), 0, mQualityText.length(), 25, y + 50, mDebugPaint);
+
+    }
+
+    /** Puts the current numbers into the debugging text, see printDebuggingText(Renderer). */
+    private void updateDebuggingText() {
+        mFPSText.setValue(0, (int) mFPS);
+
+        mLatencyText.setValue(0, (int) (mTouchInput.getAverageLatencyNanos() / 1000));
+        mLatencyText.setValue(1, (int) (mTouchInput.getMaxLatencyNanos() / 1000));
+        mLatencyText.setValue(2, (int) mTouchInput.getDroppedEvents());
+
+        mAudioLatencyText.setValue(0, (int) (mAudio.getAverageLatencyNanos() / 1000));
+        mAudioLatencyText.setValue(1, (int) (mAudio.getMaxLatencyNanos() / 1000));
+        mAudioLatencyText.setValue(2, (int) mAudio.getDroppedSounds());
+
+        mJankText.setValue(0, (int) mProfiler.getFrames());
+        mJankText.setValue(1, (int) mProfiler.getJankFrames());
+
+        for (int i = 0; i < FrameProfiler.PHASE_COUNT; i++) {
+            HudText text = mPhaseText[i];
+            text.setValue(0, (int) (mProfiler.getP50(i) / 1000));
+            text.setValue(1, (int) (mProfiler.getP95(i) / 1000));
+            text.setValue(2, (int) (mProfiler.getP99(i) / 1000));
+        }
+
+        mParticleText.setValue(0, mParticles.getLiveCount());
+        mParticleText.setValue(1, (int) mParticles.getParticlesPerMilli());
+        mParticleText.setValue(2, mParticles.getLimit());
+        mParticleText.setValue(3, (int) mParticles.getDropped());
+        mParticleText.setValue(4, (int) mEffects.getDropped());
+
+        mQualityText.setValue(0, mQualityLevel);
+        mQualityText.setValue(1, mGovernor.getFloor());
+        mQualityText.setValue(2, (int) (mGovernor.getFrameP90() / 1000));
+        mQualityText.setValue(3, (int) (mGovernor.getWorkP90() / 1000));
+    }
+
+    /**
+     * Draws the most recent frame times as a bar graph along the bottom left of the screen, newest on the right. The
+     * frame budget sits half way up, bars of janky frames are drawn in red and anything over twice the budget is cut
+     * off at the top.
+     * @param renderer the renderer drawing the current frame.
+     */
+    private void drawFrameGraph(Renderer renderer) {
+        float barWidth = Math.max(1f, mScreenX / 3f / GRAPH_BARS);
+        float height = mScreenY / 6f;
+        float bottom = mScreenY - 25;
+        long budget = mProfiler.getFrameBudgetNanos();
+        int bars = Math.min(GRAPH_BARS, mProfiler.getSampleCount(FrameProfiler.FRAME));
+
+        for (int age = 0; age < bars; age++) {
+            long nanos = mProfiler.getSample(FrameProfiler.FRAME, age);
+            float right = 25 + (GRAPH_BARS - age) * barWidth;
+
+            mDrawRect.left = right - barWidth;
+            mDrawRect.right = right;
+            mDrawRect.bottom = bottom;
+            mDrawRect.top = bottom - Math.min(height, height * nanos / (2f * budget));
+            renderer.drawRect(mDrawRect, nanos * 2 > budget * 3 ? mJankPaint : mGraphPaint);
+        }
+
+        // The frame budget line.
+        mDrawRect.left = 25;
+        mDrawRect.right = 25 + GRAPH_BARS * barWidth;
+        mDrawRect.top = bottom - height / 2 - 1;
+        mDrawRect.bottom = bottom - height / 2 + 1;
+        renderer.drawRect(mDrawRect, mDebugPaint);
+    }
+
+    /**
+     * Records the phases of the frame about to be drawn: the frame time, and per step averages of the simulation's
+     * phases for the steps run since the last snapshot seen. Works out new percentiles every STATS_INTERVAL_FRAMES.
+     * @param snapshot the snapshot about to be drawn.
+     * @param timeThisFrame time since the previous frame started, in nanoseconds.
+     */
+    private void profileFrame(Snapshot snapshot, long timeThisFrame) {
+        long steps = snapshot.getProfiledSteps();
+
+        if (!mWasProfiling) {
+            // Just switched on, start from clean statistics.
+            mProfiler.reset();
+            mLastProfiledSteps = steps;
+            mFramesSinceStats = 0;
+        }
+
+        else {
+            mProfiler.record(FrameProfiler.FRAME, timeThisFrame);
+        }
+
+        long newSteps = steps - mLastProfiledSteps;
+
+        if (newSteps > 0) {
+            for (int phase = FrameProfiler.INPUT; phase <= FrameProfiler.COLLISION; phase++) {
+                mProfiler.record(phase, (snapshot.getPhaseNanos(phase) - mPhaseTotals[phase]) / newSteps);
+            }
+        }
+
+        for (int phase = FrameProfiler.INPUT; phase <= FrameProfiler.COLLISION; phase++) {
+            mPhaseTotals[phase] = snapshot.getPhaseNanos(phase);
+        }
 
-        mCanvas.drawText("FPS: " + mFPS, 25, debugStart - 50, mPaint);
+        mLastProfiledSteps = steps;
 
+        if (++mFramesSinceStats >= STATS_INTERVAL_FRAMES) {
+            mFramesSinceStats = 0;
+            mProfiler.updateStats();
+        }
     }
 
     /**
-     * Below is our game loop that is overridden through implementing the Runnable interface.
-     * Our game loop consists of:
-     * 1. Updating objects (moving them, collision detection)
-     * 2. Drawing updated position of objects
-     * @see PongGame#draw()
-     * 3. Responding to any touches from the user.
+     * Below is our render loop that is overridden through implementing the Runnable interface. It runs on
+     * mRenderLoop's thread, the simulation itself runs on its own thread:
+     * @see PongGame#runSimulation()
+     * Our render loop consists of:
+     * 1. Taking the newest snapshot the simulation published.
+     * 2. Drawing it
+     * @see PongGame#draw(Snapshot, float, boolean)
+     * 3. Waiting for the next frame as the FramePacer tells it to.
+     * @see FramePacer#waitForNextFrame(long)
+     *
+     * Objects are drawn blended between the snapshot's step and the one before, by how much real time has passed since
+     * the snapshot's step was due, so movement looks smooth whatever the frame rate and tick rate are. While the game
+     * is paused with nothing new to show it does not draw at all.
      *
+     * Every frame drawn is timed for the QualityGovernor (unless the adaptive quality is off), and the quality level it
+     * decides on is put into effect at the start of the next frame.
+     * @see PongGame#setAdaptiveQuality(boolean)
      */
     @Override
     public void run() {
-        while (mPlaying) {
-            long frameStartTime = System.currentTimeMillis();
+        // Slightly above normal so background work does not steal frames from us.
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+        mPacer.start();
+
+        long previousTime = System.nanoTime();
+
+        while (mRenderLoop.isRunning()) {
+            boolean fresh = mSnapshots.update();
+            Snapshot snapshot = mSnapshots.getFront();
+            boolean paused = snapshot.isPaused();
+
+            int level = mAdaptiveQuality ? mGovernor.getLevel() : 0;
+
+            if (level != mQualityLevel) {
+                applyQuality(level);
+            }
+
+            if (paused && !fresh && !mNeedsRedraw && mParticles.getLiveCount() == 0) {
+                mPacer.idle();
+                // The time spent idle says nothing about how quick frames are.
+                mGovernor.restartWindow();
 
-            if (!mPaused){
-                update();
+                previousTime = System.nanoTime();
+                continue;
+            }
+
+            long frameStartTime = System.nanoTime();
+            long timeThisFrame = frameStartTime - previousTime;
+            previousTime = frameStartTime;
 
-                detectCollisions();
+            float alpha = paused ? 1f : (float) (frameStartTime - snapshot.getTimeNanos()) / mNanosPerTick;
+            boolean profiling = mProfiler.isEnabled();
 
+            if (profiling) {
+                profileFrame(snapshot, timeThisFrame);
             }
 
-            draw();
+            mWasProfiling = profiling;
+            alpha = Math.max(0f, Math.min(1f, alpha));
+            updateParticles(snapshot, alpha, timeThisFrame, paused);
+
+            boolean drawn = draw(snapshot, alpha, profiling);
 
-            long timeThisFrame = System.currentTimeMillis() - frameStartTime;
+            if (drawn) {
+                mStartup.onFrameDrawn();
+                mTelemetry.onFrame(timeThisFrame, snapshot.isStressTest());
+
+                if (paused) {
+                    mNeedsRedraw = false;
+                }
+            }
+
+            mParticles.recordCost(mParticles.getLiveCount(), mParticleNanos);
+            mParticles.setBudget(mParticleBudgetMillis);
+
+            if (drawn && mAdaptiveQuality) {
+                mGovernor.onFrame(timeThisFrame, System.nanoTime() - frameStartTime, getFrameTargetNanos());
+            }
+
+            mPacer.waitForNextFrame(frameStartTime);
 
             if (timeThisFrame > 0) {
-                mFPS = MILLIS_IN_SECOND / timeThisFrame;
+                mFPS = NANOS_IN_SECOND / timeThisFrame;
             }
         }
+
+        mPacer.stop();
     }
 
     /**
-     * This method will be called within our game loop.
-     * @see PongGame#run()
+     * The simulation loop, runs on mSimulationLoop's thread.
+     *
+     * The simulation runs in fixed steps of 1/tick rate seconds, each one due at a set point in real time. The thread
+     * runs every step that is due (at most MAX_CATCH_UP_STEPS at once, after a stall the steps it could not run are
+     * dropped rather than fast forwarded later), publishes a snapshot of the result for the render thread and sleeps
+     * until the next step is due. This keeps game speed the same on fast and slow devices.
+     * @see PongGame#setTickRate(int)
      *
-     * These update methods are individual to each type of object and pretty much move our objects' coordinates based
-     * off movement velocity and FPS. Notice how an FPS value is passed into each update method.
+     * While the game is paused it only wakes up when touched (or every IDLE_TIMEOUT_NANOS), to pick up the input.
+     * Not in a network game: the other device needs our packets every tick, paused or not.
      */
-    private void update() {
-        mBall.update(mFPS);
-        mBat.update(mFPS);
-        mObstacle.update(mFPS);
-        mAddObstacle.update(mFPS);
+    private void runSimulation() {
+        // Same priority as the render thread, a late step is as visible as a late frame.
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+
+        long nextTick = System.nanoTime();
+
+        while (mSimulationLoop.isRunning()) {
+            long now = System.nanoTime();
+            int steps = 0;
+
+            NetSession net = mNet;
+
+            while (now - nextTick >= 0 && steps < MAX_CATCH_UP_STEPS) {
+                if (net != null) {
+                    net = tickNetwork(net);
+                }
+
+                else {
+                    mSimulation.step();
+                }
+
+                nextTick += mNanosPerTick;
+                steps++;
+            }
+
+            // Too far behind to catch up, drop the steps we could not run.
+            if (now - nextTick >= 0) {
+                nextTick = now + mNanosPerTick;
+            }
+
+            if (steps > 0) {
+                publishSnapshot(nextTick - mNanosPerTick);
+            }
+
+            if (mSimulation.isPaused() && net == null) {
+                LockSupport.parkNanos(this, IDLE_TIMEOUT_NANOS);
+
+                // Time spent paused is not simulation time, run one step straight away to pick up any input.
+                nextTick = System.nanoTime();
+                continue;
+            }
+
+            long remaining = nextTick - System.nanoTime();
+
+            if (remaining > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
     }
 
     /**
-     * This method controls all collision detection and further needed actions upon a collision. Such as a ball hitting
-     * the left boundary of the surface, and then reversing it's x velocity to keep it within the screen view. We are
-     * also updating score and number of lives for the user based off collisions occurring (if ball hits bottom of screen,
-     * then the player loses a life, etc.)
-     * @see Ball#batBounce(RectF)
-     * @see Ball#increaseVelocity()
-     * @see Ball#reverseXVelocity()
-     * @see Ball#reverseYVelocity()
-     * @see Obstacle#reverseVelocity()
+     * Runs one tick of the network game with the player's touches. If the connection fails for good, goes back to a
+     * single player game. Simulation thread.
+     * @param net the session.
+     * @return the session, null if it ended.
      */
-    private void detectCollisions() {
+    private NetSession tickNetwork(NetSession net) {
+        try {
+            net.tick(mTouchInput.pollInput());
+            return net;
+        }
 
-        if(RectF.intersects(mBat.getRect(), mBall.getRect())) {
-            mBall.batBounce(mBat.getRect());
-            mBall.increaseVelocity();
-            mScore++;
-            mSP.play(mBeepID, 1, 1, 0, 0, 1);
+        catch (IOException e) {
+            Log.e("Error", "Network game ended.", e);
+            mNet = null;
+            mSimulation.setInputSource(mTouchInput);
+            mSimulation.startNewGame();
+            return null;
         }
+    }
 
-        if (RectF.intersects(mObstacle.getObstacle(), mBall.getRect())) {
-            mBall.batBounce(mObstacle.getObstacle());
+    /**
+     * Makes sure the UI thread may change the simulation and publish a snapshot of it: only before resume() (or after
+     * pause()), while the simulation thread is not running.
+     * @throws IllegalStateException if the simulation thread is running, or still returning from a pause() that timed
+     * out.
+     */
+    private void checkStopped() {
+        if (mSimulationLoop.isActive()) {
+            throw new IllegalStateException("Simulation thread running, games can only be started before resume()");
         }
+    }
 
-        if (RectF.intersects(mAddObstacle.getObstacle(), mBall.getRect())) {
-            mBall.batBounce(mAddObstacle.getObstacle());
+    /**
+     * Copies the simulation's current state into the triple buffer for the render thread. The triple buffer takes a
+     * single writer, so this is only called by the simulation thread while it runs and by the UI thread while it does
+     * not, see checkStopped().
+     * @param timeNanos when the current step was due in real time.
+     */
+    private void publishSnapshot(long timeNanos) {
+        Snapshot snapshot = mSnapshots.getBack();
+        mSimulation.copyTo(snapshot);
+        snapshot.setTimeNanos(timeNanos);
+        mSnapshots.publish();
+
+        if (snapshot.isPaused() || mPublishedPaused) {
+            // The render thread may be idling on a paused game, which has now changed (or started) so needs drawing.
+            mPacer.wake();
         }
 
-        if (mBall.getRect().bottom > mScreenY) {
-            mBall.reverseYVelocity();
-            mLives--;
-            mSP.play(mMissID, 1, 1, 0, 0, 1);
+        mPublishedPaused = snapshot.isPaused();
+    }
 
-            if (mLives == 0) {
-                mPaused = true;
+    /**
+     * Remembers where the ball bounced, for the effect of the call that follows (onBatHit and so on). Simulation
+     * thread.
+     */
+    @Override
+    public void onBounce(float x, float y) {
+        mBounceX = x;
+        mBounceY = y;
+    }
 
-                startNewGame();
+    /**
+     * Moves the particles on by the frame time, adds the effects the simulation reported since the last frame and a
+     * trail square behind every moving ball. Time spent here and in drawParticles(Renderer) is what the particle
+     * budget is based on.
+     * @param snapshot the snapshot about to be drawn.
+     * @param alpha how far between the snapshot's previous and current step to place the balls.
+     * @param timeThisFrame time since the previous frame, in nanoseconds.
+     * @param paused true if the game is paused, the balls are not moving.
+     */
+    private void updateParticles(Snapshot snapshot, float alpha, long timeThisFrame, boolean paused) {
+        long start = System.nanoTime();
+
+        mParticles.update(Math.min(MAX_PARTICLE_SECONDS, timeThisFrame / (float) NANOS_IN_SECOND),
+                PongSimulation.WORLD_HEIGHT);
+        mEffects.drain(mEffectSink);
+
+        if (!paused) {
+            for (int i = 0; i < snapshot.getBallCount(); i++) {
+                snapshot.interpolateBall(i, alpha, mDrawRect);
+                mParticles.emit(TRAIL, mDrawRect.centerX(), mDrawRect.centerY(), 0, 0, 0.1f);
             }
         }
 
-        if (mBall.getRect().top < 0) {
-            mBall.reverseYVelocity();
-            mSP.play(mBoopID, 1, 1, 0, 0, 1);
+        mParticleNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Puts the particles for one effect into the pool: a burst of sparks thrown up and out, plus a "+1" that floats
+     * up for a point.
+     * @param effect EffectRing.BAT, OBSTACLE or WALL.
+     * @param x where it happened.
+     * @param y where it happened.
+     */
+    private void emitEffect(int effect, float x, float y) {
+        int sparks = effect == EffectRing.BAT ? 12 : effect == EffectRing.OBSTACLE ? 8 : 4;
+        float speed = PongSimulation.WORLD_HEIGHT / 2f;
+
+        for (int i = 0; i < sparks; i++) {
+            float angle = mParticleRandom.nextFloat() * (float) (2 * Math.PI);
+            float v = speed * (0.3f + 0.7f * mParticleRandom.nextFloat());
+            mParticles.emit(SPARK, x, y, v * (float) Math.cos(angle), v * (float) Math.sin(angle) - speed / 2,
+                    0.25f + 0.25f * mParticleRandom.nextFloat());
         }
 
-        if (mBall.getRect().left < 0) {
-            mBall.reverseXVelocity();
-            mSP.play(mBopID, 1, 1, 0, 0, 1);
+        if (effect == EffectRing.BAT) {
+            mParticles.emit(POPUP, x, y - PongSimulation.WORLD_HEIGHT / 20f, 0, -PongSimulation.WORLD_HEIGHT / 8f, 0.8f);
         }
+    }
+
+    /**
+     * Draws every particle: the sparks and trails each in one batched call, the few pop-ups as text.
+     * @param renderer the renderer drawing the current frame.
+     */
+    private void drawParticles(Renderer renderer) {
+        long start = System.nanoTime();
+        ParticlePool particles = mParticles;
 
-        if (mBall.getRect().right > mScreenX) {
-            mBall.reverseXVelocity();
-            mSP.play(mBopID, 1, 1, 0, 0, 1);
+        renderer.drawPoints(mParticlePoints, particles.writePoints(TRAIL, mParticlePoints, PARTICLE_CAPACITY),
+                mTrailPaint);
+        renderer.drawPoints(mParticlePoints, particles.writePoints(SPARK, mParticlePoints, PARTICLE_CAPACITY),
+                mSparkPaint);
+
+        for (int n = 0; n < particles.getLiveCount(); n++) {
+            int i = particles.getLive(n);
+
+            if (particles.kind[i] == POPUP) {
+                renderer.drawText(POPUP_TEXT, 0, POPUP_TEXT.length, particles.x[i], particles.y[i], mPopupPaint);
+            }
         }
 
-        if (mObstacle.getObstacle().right > mScreenX) {
-            mObstacle.reverseVelocity();
+        mParticleNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Sound for the ball hitting the bat, called by the simulation through the GameEvents interface. Runs on the
+     * simulation thread, AudioEngine#play only queues the sound for the audio thread.
+     * @see PongSimulation#step()
+     * @see AudioEngine#play(int)
+     */
+    @Override
+    public void onBatHit(int score) {
+        mTelemetry.onCollision();
+        mTelemetry.onPoint();
+        mEffects.offer(EffectRing.BAT, mBounceX, mBounceY);
+
+        if (mSimulation.isStressTest()) {
+            return;
         }
 
-        if (mObstacle.getObstacle().left < 0) {
-            mObstacle.reverseVelocity();
+        mAudio.play(AudioEngine.BEEP);
+    }
+
+    /** Counted for telemetry, obstacles make no sound but do give off sparks. */
+    @Override
+    public void onObstacleHit() {
+        mTelemetry.onCollision();
+        mEffects.offer(EffectRing.OBSTACLE, mBounceX, mBounceY);
+    }
+
+    /** Sound for the ball hitting the top of the screen. */
+    @Override
+    public void onTopWallBounce() {
+        mTelemetry.onCollision();
+        mEffects.offer(EffectRing.WALL, mBounceX, mBounceY);
+
+        if (mSimulation.isStressTest()) {
+            return;
         }
 
-        if (mAddObstacle.getObstacle().right > mScreenX) {
-            mAddObstacle.reverseVelocity();
+        mAudio.play(AudioEngine.BOOP);
+    }
+
+    /** Sound for the ball hitting the left/right side of the screen. */
+    @Override
+    public void onSideWallBounce() {
+        mTelemetry.onCollision();
+        mEffects.offer(EffectRing.WALL, mBounceX, mBounceY);
+
+        if (mSimulation.isStressTest()) {
+            return;
         }
 
-        if (mAddObstacle.getObstacle().left < 0) {
-            mAddObstacle.reverseVelocity();
+        mAudio.play(AudioEngine.BOP);
+    }
+
+    /** Same as onBatHit, for the other player's bat in a versus game. */
+    @Override
+    public void onOpponentBatHit(int score) {
+        mTelemetry.onCollision();
+        mEffects.offer(EffectRing.BAT, mBounceX, mBounceY);
+        mAudio.play(AudioEngine.BEEP);
+    }
+
+    /** Sound for the ball getting past the other player's bat in a versus game. */
+    @Override
+    public void onOpponentMiss(int livesLeft) {
+        mAudio.play(AudioEngine.MISS);
+    }
+
+    /** Sound for the ball reaching the bottom of the screen (a life lost). */
+    @Override
+    public void onMiss(int livesLeft) {
+        mTelemetry.onLifeLost();
+
+        if (mSimulation.isStressTest()) {
+            return;
         }
+
+        mAudio.play(AudioEngine.MISS);
+    }
+
+    /**
+     * Counted for telemetry. The simulation restarts and pauses itself on game over, the snapshot published after this
+     * step shows it.
+     */
+    @Override
+    public void onGameOver(int finalScore) {
+        mTelemetry.onGameOver(finalScore);
     }
 
     /**
      * Pause method that is called within:
      * @see PongActivity#onPause()
      *
-     * This method pauses or tries to pause the game loop if the user exits the app.
-     * @exception InterruptedException in case error occurs with stopping thread or game loop.
+     * This method pauses the game loop (both threads) and the audio thread when the user leaves the app. The threads
+     * are parked, not ended, so the next resume() only has to wake them. Each is given STOP_TIMEOUT_NANOS to finish
+     * what it is doing, the game state is only saved if the simulation thread really stopped. How long pausing took is
+     * logged in microseconds under the "Lifecycle" tag. Safe to call whether or not resume() ever ran.
      */
     public void pause() {
-        mPlaying = false;
+        long start = System.nanoTime();
+        mResumed = false;
+
+        boolean rendering = stopRendering();
+        boolean simulating = mSimulationLoop.stop(STOP_TIMEOUT_NANOS);
+
+        if (!rendering || !simulating) {
+            Log.w("Lifecycle", "Game thread still running after " + STOP_TIMEOUT_NANOS / 1000000 + " ms");
+        }
+
+        mAudio.stop();
+        long stopped = System.nanoTime();
+
+        if (mThermal != null) {
+            mThermal.stop();
+        }
+
+        mTelemetry.flush();
+
+        // Versus games (network or computer player) can not be carried on from the state alone.
+        if (simulating && !mSimulation.isVersus()) {
+            saveRecording();
+
+            try {
+                mSaveState.save(mSimulation);
+            }
+
+            catch (IOException e) {
+                Log.e("Error", "Failed to save game state.", e);
+            }
+        }
+
+        Log.i("Lifecycle", "Paused in " + (System.nanoTime() - start) / 1000 + " us (threads stopped in "
+                + (stopped - start) / 1000 + " us)");
+    }
+
+    /**
+     * Ends the game threads for good, called when the activity is destroyed. The view can not be resumed afterwards.
+     * @see PongActivity#onDestroy()
+     */
+    public void release() {
+        pause();
+
+        mRenderLoop.quit(STOP_TIMEOUT_NANOS);
+        mSimulationLoop.quit(STOP_TIMEOUT_NANOS);
+        mAudio.release();
+
+        if (mNetTransport != null) {
+            try {
+                mNetTransport.close();
+            }
+
+            catch (IOException e) {
+                Log.w("Error", "Failed to close network game connection.", e);
+            }
+        }
+    }
+
+    /**
+     * Saves the complete game state for the activity's instance state Bundle.
+     * @return the state, or null while the game threads are running (onSaveInstanceState can come before onPause on
+     * older Android versions), the copy pause() keeps in the save state file covers that case. Also null in a versus
+     * game, which needs its network session or computer player to carry on.
+     * @see PongSimulation#saveState(ByteBuffer)
+     */
+    public byte[] saveState() {
+        if (mSimulationLoop.isActive() || mSimulation.isVersus()) {
+            return null;
+        }
+
+        byte[] state = new byte[mSimulation.getStateBytes()];
+        mSimulation.saveState(ByteBuffer.wrap(state));
+        return state;
+    }
+
+    /**
+     * Carries on a game from a state saved by saveState(). Must be called while the game threads are not running
+     * (before resume()).
+     * @param state the saved state.
+     * @return false if the state does not fit this game (another screen size or version), which then starts afresh.
+     */
+    public boolean restoreState(byte[] state) {
+        checkStopped();
+        long start = System.nanoTime();
 
         try {
-            // stopping the thread.
-            mGameThread.join();
+            mSimulation.restoreState(ByteBuffer.wrap(state));
         }
 
-        catch (InterruptedException e){
-            Log.e("Error:", "joining thread");
+        catch (IllegalArgumentException e) {
+            Log.w("SaveState", "Instance state not restored: " + e.getMessage());
+            return false;
         }
+
+        onRestored(start, "instance state");
+        return true;
+    }
+
+    /**
+     * Carries on the game saved the last time the game paused, possibly by a process that has since been killed. Must
+     * be called while the game threads are not running (before resume()).
+     * @return false if there is no usable save state, the game is then left as it was.
+     * @see SaveStateStore
+     */
+    public boolean restoreSavedState() {
+        checkStopped();
+        long start = System.nanoTime();
+
+        try {
+            if (!mSaveState.restore(mSimulation)) {
+                return false;
+            }
+        }
+
+        catch (IOException | IllegalArgumentException e) {
+            Log.w("SaveState", "Saved state not restored: " + e.getMessage());
+            // Not going to fit next time either.
+            mSaveState.clear();
+            return false;
+        }
+
+        onRestored(start, "saved state");
+        return true;
+    }
+
+    /** Brings the loop in line with a restored simulation and logs how long restoring took. */
+    private void onRestored(long startNanos, String from) {
+        // The restored game may run at another tick rate.
+        setTickRate(mSimulation.getTickRate());
+        publishSnapshot(System.nanoTime());
+
+        Log.i("SaveState", "Restored " + from + " (" + mSimulation.getStateBytes() + " bytes) in "
+                + (System.nanoTime() - startNanos) / 1000 + " us");
+    }
+
+    /**
+     * Writes the input log of this session to mRecordingFile. The game threads have stopped, so the log is copied here
+     * and the (slow) file write happens on a thread of its own rather than holding up the UI thread.
+     * @see InputLog
+     */
+    private void saveRecording() {
+        InputLog log = mSimulation.getRecording();
+
+        if (log == null) {
+            return;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(log.size());
+
+        try {
+            log.writeTo(bytes);
+        }
+
+        catch (IOException e) {
+            // Can not happen writing to memory.
+            return;
+        }
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (OutputStream out = new FileOutputStream(mRecordingFile)) {
+                    bytes.writeTo(out);
+                }
+
+                catch (IOException e) {
+                    Log.e("Error", "Failed to save input recording.", e);
+                }
+            }
+        }, "SaveRecording").start();
     }
 
     /**
      * Just like the above method:
      * @see PongGame#pause()
      *
-     * We are implementing functionality to start execution of our thread (game loop) when the game is resumed or started.
+     * We are implementing functionality to start execution of our threads (game loop) when the game is resumed or
+     * started. The render loop waits for the surface if it is not there yet.
      * @see PongActivity#onResume()
+     * @see PongGame#surfaceCreated(SurfaceHolder)
      */
     public void resume() {
-        mPlaying = true;
+        if (mResumed) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        mResumed = true;
+
+        // Still returning from a pause() that timed out, it carries on publishing by itself.
+        if (!mSimulationLoop.isActive()) {
+            publishSnapshot(System.nanoTime());
+        }
+
+        mAudio.start();
+        mSimulationLoop.start();
+        startRendering();
+
+        if (mThermal != null) {
+            mThermal.start();
+        }
+
+        Log.i("Lifecycle", "Resumed in " + (System.nanoTime() - start) / 1000 + " us");
+    }
+
+    /** Starts the render loop if the game is resumed and has a surface to draw on. */
+    private void startRendering() {
+        if (!mResumed || !mSurfaceReady) {
+            return;
+        }
 
-        mGameThread = new Thread(this);
+        // The surface is new (or was lost), so draw at least one whole frame even if paused.
+        mNeedsRedraw = true;
+        mRenderer.redrawAll();
+        mRenderLoop.start();
+    }
 
-        mGameThread.start();
+    /**
+     * Stops the render loop, releasing it if it is waiting for a frame.
+     * @return false if it was still drawing after STOP_TIMEOUT_NANOS.
+     */
+    private boolean stopRendering() {
+        mPacer.stop();
+        return mRenderLoop.stop(STOP_TIMEOUT_NANOS);
+    }
+
+    /**
+     * SurfaceHolder.Callback: the surface can be drawn on, start rendering if the game is resumed.
+     * @param holder our holder.
+     */
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        mSurfaceReady = true;
+        startRendering();
+    }
+
+    /**
+     * SurfaceHolder.Callback: the surface changed size or format, its contents must be drawn again.
+     * @param holder our holder.
+     * @param format new pixel format.
+     * @param width new width.
+     * @param height new height.
+     */
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        mSurfaceWidth = width;
+        mSurfaceHeight = height;
+        mNeedsRedraw = true;
+        mPacer.wake();
+    }
+
+    /**
+     * SurfaceHolder.Callback: the surface is about to go. The render loop is stopped before this returns, as nothing
+     * may draw on the surface afterwards. The simulation carries on until pause().
+     * @param holder our holder.
+     */
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        mSurfaceReady = false;
+        long start = System.nanoTime();
+
+        if (!stopRendering()) {
+            Log.w("Lifecycle", "Render thread still running after " + STOP_TIMEOUT_NANOS / 1000000 + " ms");
+        }
+
+        Log.i("Lifecycle", "Rendering stopped in " + (System.nanoTime() - start) / 1000 + " us");
     }
 
     /**
      * Overridden method within the view class that detects user interactions with our surface (current view).
      *
      * This method, based off the location and nature in which the user touches the screen, indicates whether the bat
-     * needs to be updated left/right or not moved.
-     * @see Bat#SetMovementState(int)
+     * needs to be updated left/right or not moved. Every finger going down or up (including extra fingers,
+     * ACTION_POINTER_DOWN/UP) is offered to mTouchInput as a timestamped event and applied by the simulation thread at
+     * the start of the next simulation step. A third finger going down switches the performance HUD on or off.
+     * @see PongGame#setProfiling(boolean)
+     * @see TouchInput
      * @param motionEvent Is the actual event of the user touching the screen. Contains information about the touch, such
      * as where it happened. We can filter the information in this variable through bitwise comparison to get the
      * information we want.
@@ -368,23 +1463,35 @@ public class PongGame extends SurfaceView implements Runnable {
      */
     @Override
     public boolean onTouchEvent(MotionEvent motionEvent) {
+        int index = motionEvent.getActionIndex();
+        // The event may have waited in the queue before reaching us, date it back to when it actually happened.
+        long timeNanos = System.nanoTime()
+                - (SystemClock.uptimeMillis() - motionEvent.getEventTime()) * 1000000L;
 
-        switch(motionEvent.getAction() & MotionEvent.ACTION_MASK) {
+        switch(motionEvent.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
-                mPaused = false;
-
-                if (motionEvent.getX() > mScreenX / 2) {
-                    mBat.SetMovementState(mBat.RIGHT);
+            case MotionEvent.ACTION_POINTER_DOWN:
+                if (motionEvent.getPointerCount() == 3) {
+                    setProfiling(!mProfiler.isEnabled());
                 }
 
-                else {
-                    mBat.SetMovementState(mBat.LEFT);
-                }
+                mTouchInput.offer(timeNanos, InputEventRing.DOWN, motionEvent.getPointerId(index),
+                        motionEvent.getX(index), motionEvent.getY(index));
+
+                // The game may be idle while paused, make sure it runs a step to pick the touch up.
+                mSimulationLoop.wake();
 
                 break;
 
             case MotionEvent.ACTION_UP:
-                mBat.SetMovementState(mBat.STOPPED);
+            case MotionEvent.ACTION_POINTER_UP:
+                mTouchInput.offer(timeNanos, InputEventRing.UP, motionEvent.getPointerId(index),
+                        motionEvent.getX(index), motionEvent.getY(index));
+
+                break;
+
+            case MotionEvent.ACTION_CANCEL:
+                mTouchInput.offer(timeNanos, InputEventRing.CANCEL, 0, 0, 0);
 
                 break;
         }
@@ -392,5 +1499,4 @@ public class PongGame extends SurfaceView implements Runnable {
         return true;
     }
 
-
 }
@@ -0,0 +1,69 @@
+package com.gamecodeschool.pong;
+
+import android.graphics.Paint;
+
+/**
+ * Draws one frame of the game onto the screen. PongGame#draw(Snapshot, float, boolean) only talks to this interface,
+ * so the way pixels get onto the surface can be swapped without touching the drawing code. Implementations:
+ * @see CanvasRenderer software rasterised Canvas from SurfaceHolder#lockCanvas(), works everywhere.
+ * @see DirtyRectRenderer software Canvas that only repaints what changed since the last frame.
+ * @see HardwareCanvasRenderer GPU rasterised Canvas from Surface#lockHardwareCanvas(), API 26 and up.
+ *
+ * All methods are called on the render thread, drawing calls only between a successful beginFrame() and endFrame().
+ */
+public interface Renderer {
+
+    /**
+     * Starts a frame and clears it to the background colour.
+     * @param backgroundColor colour to fill the frame with.
+     * @return false if the surface is not available (nothing may be drawn and endFrame() must not be called).
+     */
+    boolean beginFrame(int backgroundColor);
+
+    /**
+     * Sets how the coordinates of the draw calls that follow map onto the surface: x * scale + dx, y * scale + dy, sizes
+     * (text, point size) scaled too. Each frame starts with scale 1 and no offset, i.e. surface pixels.
+     * @param scale surface pixels per unit.
+     * @param dx where x = 0 lands on the surface.
+     * @param dy where y = 0 lands on the surface.
+     */
+    void setTransform(float scale, float dx, float dy);
+
+    /**
+     * Draws a filled box.
+     * @param rect position and size.
+     * @param paint colour to draw with.
+     */
+    void drawRect(Aabb rect, Paint paint);
+
+    /**
+     * Draws many small squares in one call, e.g. all the particles of one kind.
+     * @param points x, y pairs of the square centres.
+     * @param count number of floats of points to use (twice the number of squares), may be 0.
+     * @param paint colour to draw with, its stroke width is the size of the squares.
+     */
+    void drawPoints(float[] points, int count, Paint paint);
+
+    /**
+     * Draws text without needing a String (see HudText).
+     * @param text characters to draw from.
+     * @param start first character to draw.
+     * @param length number of characters to draw.
+     * @param x left edge of the text.
+     * @param y baseline of the text.
+     * @param paint colour and size to draw with.
+     */
+    void drawText(char[] text, int start, int length, float x, float y, Paint paint);
+
+    /** Finishes the frame and shows it on screen. */
+    void endFrame();
+
+    /**
+     * Makes the next frame repaint the whole surface, e.g. because the surface was recreated and lost its contents.
+     * Only matters to renderers that keep pixels from earlier frames.
+     */
+    void redrawAll();
+
+    /** @return short name of the backend, shown in the debug overlay. */
+    String getName();
+}
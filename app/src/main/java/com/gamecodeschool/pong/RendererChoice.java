@@ -0,0 +1,36 @@
+package com.gamecodeschool.pong;
+
+import android.os.Build;
+
+/**
+ * Which Renderer a device gets, worked out from its API level alone so the choice runs in local unit tests. The GPU
+ * backed hardware canvas where the device has it (API 26 and up), otherwise the software canvas, which by default only
+ * repaints what changed each frame.
+ * @see PongGame#setRendering(boolean, boolean)
+ */
+final class RendererChoice {
+
+    /** HardwareCanvasRenderer. */
+    static final int HARDWARE = 0;
+    /** DirtyRectRenderer. */
+    static final int PARTIAL_CANVAS = 1;
+    /** CanvasRenderer. */
+    static final int CANVAS = 2;
+
+    private RendererChoice() {
+    }
+
+    /**
+     * @param sdkInt the device's API level, Build.VERSION.SDK_INT.
+     * @param software true to use the software canvas whatever the device supports.
+     * @param partialRedraw true to let the software canvas repaint only the changed areas.
+     * @return HARDWARE, PARTIAL_CANVAS or CANVAS.
+     */
+    static int pick(int sdkInt, boolean software, boolean partialRedraw) {
+        if (!software && sdkInt >= Build.VERSION_CODES.O) {
+            return HARDWARE;
+        }
+
+        return partialRedraw ? PARTIAL_CANVAS : CANVAS;
+    }
+}
@@ -0,0 +1,123 @@
+package com.gamecodeschool.pong;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the latest save state of the game in a memory mapped file, so saving is a copy into memory (the kernel writes
+ * it out in its own time, and still does if the process is killed straight after) and restoring is a read straight out
+ * of the page cache, with no file system calls on either path once the file is mapped.
+ *
+ * The file is a header of the state's length and a CRC32 of it, followed by the state. The length is cleared before
+ * the state is written and set again last, and the CRC has to match on reading, so a save cut short by the process
+ * dying is recognised and ignored rather than restored half written.
+ * @see PongSimulation#saveState(java.nio.ByteBuffer)
+ */
+public final class SaveStateStore {
+
+    private static final int HEADER_BYTES = 8;
+    // Mapped size is rounded up to this so a game growing by a few balls does not remap every time.
+    private static final int MAP_STEP_BYTES = 16 * 1024;
+
+    private final File mFile;
+    private MappedByteBuffer mMap;
+    // Scratch for the CRC, CRC32 only takes a ByteBuffer from API 26.
+    private final byte[] mCrcScratch = new byte[4096];
+    private final CRC32 mCrc = new CRC32();
+
+    /**
+     * Parametrized constructor below. The file is opened and mapped on first use.
+     * @param file where the save state lives.
+     */
+    public SaveStateStore(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Writes the simulation's state to the file, replacing the one there. The simulation must not be stepping.
+     * @param simulation the game to save.
+     * @throws IOException if the file can not be mapped (or made bigger).
+     */
+    public void save(PongSimulation simulation) throws IOException {
+        int length = simulation.getStateBytes();
+        MappedByteBuffer map = map(HEADER_BYTES + length);
+
+        map.putInt(0, 0);
+        map.position(HEADER_BYTES);
+        simulation.saveState(map);
+
+        map.putInt(4, crc(map, length));
+        map.putInt(0, length);
+    }
+
+    /**
+     * Puts the simulation back in the state last saved to the file.
+     * @param simulation the game to restore.
+     * @return false if there is no complete save state to restore, the game is then left as it was.
+     * @throws IOException if the file can not be mapped.
+     * @throws IllegalArgumentException if the state is for another screen size or version, see
+     * PongSimulation#restoreState(ByteBuffer).
+     */
+    public boolean restore(PongSimulation simulation) throws IOException {
+        if (mMap == null && mFile.length() < HEADER_BYTES) {
+            return false;
+        }
+
+        MappedByteBuffer map = map(HEADER_BYTES);
+        int length = map.getInt(0);
+
+        if (length <= 0 || length > map.capacity() - HEADER_BYTES || crc(map, length) != map.getInt(4)) {
+            return false;
+        }
+
+        map.position(HEADER_BYTES);
+        simulation.restoreState(map);
+        return true;
+    }
+
+    /** Throws away the saved state, e.g. once the game it came from is over. */
+    public void clear() {
+        if (mMap != null) {
+            mMap.putInt(0, 0);
+        }
+    }
+
+    /**
+     * @param bytes size needed.
+     * @return the file mapped with at least that many bytes (more if the file is already bigger).
+     */
+    private MappedByteBuffer map(int bytes) throws IOException {
+        if (mMap != null && mMap.capacity() >= bytes) {
+            return mMap;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            long size = Math.max(file.length(), (bytes + MAP_STEP_BYTES - 1) / MAP_STEP_BYTES * MAP_STEP_BYTES);
+            // The mapping stays valid after the channel is closed.
+            mMap = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        return mMap;
+    }
+
+    /** @return CRC32 of the length bytes of state following the header. */
+    private int crc(ByteBuffer map, int length) {
+        ByteBuffer state = map.duplicate();
+        state.position(HEADER_BYTES);
+        mCrc.reset();
+
+        while (length > 0) {
+            int chunk = Math.min(length, mCrcScratch.length);
+            state.get(mCrcScratch, 0, chunk);
+            mCrc.update(mCrcScratch, 0, chunk);
+            length -= chunk;
+        }
+
+        return (int) mCrc.getValue();
+    }
+}
@@ -0,0 +1,105 @@
+package com.gamecodeschool.pong;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures how long the game takes to start, so cold start time can be tracked from one release to the next:
+ *  - process start to activity creation (API 24 and up, which can tell when the process started).
+ *  - activity creation to the first frame on screen.
+ *  - activity creation to every asset being loaded.
+ *
+ * Once both the first frame is up and the assets are loaded the numbers are logged under the "Startup" tag, and the
+ * activity calls Activity#reportFullyDrawn() so the system's own "Fully drawn" time in logcat lines up with ours, e.g.
+ *  adb logcat -s Startup ActivityTaskManager
+ */
+public class StartupTiming {
+
+    private final long NANOS_IN_MILLI = 1000000L;
+
+    private final Activity mActivity;
+    private final long mCreateNanos = System.nanoTime();
+    private final long mProcessToCreateMillis;
+    private volatile long mFirstFrameNanos;
+    private volatile long mAssetsLoadedNanos;
+    private final AtomicBoolean mReported = new AtomicBoolean();
+
+    /**
+     * Starts timing, create it as early as possible in Activity#onCreate.
+     * @param activity the activity to report fully drawn for, or null for none.
+     */
+    public StartupTiming(Activity activity) {
+        mActivity = activity;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            mProcessToCreateMillis = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+        }
+
+        else {
+            mProcessToCreateMillis = -1;
+        }
+    }
+
+    /** Called by the render thread after every frame it posts, only the first one counts. */
+    public void onFrameDrawn() {
+        if (mFirstFrameNanos == 0) {
+            mFirstFrameNanos = System.nanoTime();
+            reportIfDone();
+        }
+    }
+
+    /** Called once every asset has been loaded (or failed to), from any thread. */
+    public void onAssetsLoaded() {
+        if (mAssetsLoadedNanos == 0) {
+            mAssetsLoadedNanos = System.nanoTime();
+            reportIfDone();
+        }
+    }
+
+    private void reportIfDone() {
+        if (mFirstFrameNanos == 0 || mAssetsLoadedNanos == 0 || !mReported.compareAndSet(false, true)) {
+            return;
+        }
+
+        Log.i("Startup", "process to create: " + mProcessToCreateMillis + " ms, first frame: "
+                + getFirstFrameMillis() + " ms, assets loaded: " + getAssetsLoadedMillis() + " ms");
+
+        if (mActivity != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            mActivity.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        mActivity.reportFullyDrawn();
+                    }
+
+                    catch (SecurityException e) {
+                        // API 19 wrongly asked for a permission here, the timing is still in our own log.
+                        Log.w("Startup", "reportFullyDrawn not allowed", e);
+                    }
+                }
+            });
+        }
+    }
+
+    /** @return milliseconds from process start to activity creation, -1 if the device can not tell. */
+    public long getProcessToCreateMillis() {
+        return mProcessToCreateMillis;
+    }
+
+    /** @return milliseconds from activity creation to the first frame, -1 until it is drawn. */
+    public long getFirstFrameMillis() {
+        long firstFrame = mFirstFrameNanos;
+        return firstFrame == 0 ? -1 : (firstFrame - mCreateNanos) / NANOS_IN_MILLI;
+    }
+
+    /** @return milliseconds from activity creation to every asset loaded, -1 until they are. */
+    public long getAssetsLoadedMillis() {
+        long loaded = mAssetsLoadedNanos;
+        return loaded == 0 ? -1 : (loaded - mCreateNanos) / NANOS_IN_MILLI;
+    }
+}
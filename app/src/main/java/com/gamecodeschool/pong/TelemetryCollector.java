@@ -0,0 +1,167 @@
+package com.gamecodeschool.pong;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Debug;
+
+import java.util.Random;
+
+/**
+ * Gathers a session's performance telemetry from the game loop and hands it to the TelemetryWriter one batch at a time,
+ * every BATCH_NANOS of play and whenever the game pauses. Collecting costs a histogram increment per frame and a counter
+ * increment per game event, nothing is allocated apart from one batch per flush.
+ *
+ * The render thread reports frames and flushes, the simulation thread reports game events through counters only it
+ * writes (volatile, so the render thread sees them when it flushes).
+ * @see TelemetryBatch
+ * @see TelemetryWriter
+ */
+public class TelemetryCollector {
+
+    private static final long BATCH_NANOS = 60 * 1000000000L;
+
+    private final TelemetryWriter mWriter;
+    private final long mSessionId = new Random().nextLong();
+    private final String mDevice = Build.MANUFACTURER + " " + Build.MODEL;
+    private final long mFrameBudgetNanos;
+    // Batch being filled, render thread only (or the UI thread while the game threads are stopped).
+    private TelemetryBatch mBatch;
+    private long mBatchStartNanos;
+    private int mBatchIndex;
+    private long mGcAtStart;
+    private long mBlockingGcAtStart;
+    private long mCollisionsAtStart;
+    private long mPointsAtStart;
+    private long mLivesLostAtStart;
+    private long mGamesOverAtStart;
+    // Session totals, written by the simulation thread only.
+    private volatile long mCollisions;
+    private volatile long mPoints;
+    private volatile long mLivesLost;
+    private volatile long mGamesOver;
+    private volatile int mBestScore;
+
+    /**
+     * Parametrized constructor below.
+     * @param context used to reach the process wide TelemetryWriter.
+     * @param frameBudgetNanos time between display refreshes, stored with each batch to judge jank by.
+     */
+    public TelemetryCollector(Context context, long frameBudgetNanos) {
+        mWriter = TelemetryWriter.get(context);
+        mFrameBudgetNanos = frameBudgetNanos;
+    }
+
+    /** Simulation thread: the ball bounced off something. */
+    public void onCollision() {
+        mCollisions++;
+    }
+
+    /** Simulation thread: the player scored. */
+    public void onPoint() {
+        mPoints++;
+    }
+
+    /** Simulation thread: the player lost a life. */
+    public void onLifeLost() {
+        mLivesLost++;
+    }
+
+    /**
+     * Simulation thread: a game ended.
+     * @param finalScore its score.
+     */
+    public void onGameOver(int finalScore) {
+        mGamesOver++;
+        mBestScore = Math.max(mBestScore, finalScore);
+    }
+
+    /**
+     * Render thread: counts one frame, and sends the batch off once it covers BATCH_NANOS.
+     * @param frameNanos time since the previous frame.
+     * @param stressTest true if the frame showed a stress test.
+     */
+    public void onFrame(long frameNanos, boolean stressTest) {
+        long now = System.nanoTime();
+
+        if (mBatch == null) {
+            startBatch(now);
+        }
+
+        mBatch.mFrames.record(frameNanos);
+        mBatch.mStressTest |= stressTest;
+
+        if (now - mBatchStartNanos >= BATCH_NANOS) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends off whatever has been collected since the last batch. Called by the render thread, or once the game
+     * threads have stopped.
+     */
+    public void flush() {
+        TelemetryBatch batch = mBatch;
+
+        if (batch == null) {
+            return;
+        }
+
+        mBatch = null;
+        batch.mDurationNanos = System.nanoTime() - mBatchStartNanos;
+
+        long gc = gcStat("art.gc.gc-count");
+
+        if (gc >= 0 && mGcAtStart >= 0) {
+            batch.mGcCount = gc - mGcAtStart;
+            batch.mBlockingGcCount = gcStat("art.gc.blocking-gc-count") - mBlockingGcAtStart;
+        }
+
+        batch.mCollisions = mCollisions - mCollisionsAtStart;
+        batch.mPoints = mPoints - mPointsAtStart;
+        batch.mLivesLost = mLivesLost - mLivesLostAtStart;
+        batch.mGamesOver = mGamesOver - mGamesOverAtStart;
+        batch.mBestScore = mBestScore;
+        batch.mDroppedBatches = mWriter.getDropped();
+
+        mWriter.offer(batch);
+    }
+
+    private void startBatch(long now) {
+        TelemetryBatch batch = new TelemetryBatch();
+        batch.mSessionId = mSessionId;
+        batch.mDevice = mDevice;
+        batch.mSdk = Build.VERSION.SDK_INT;
+        batch.mBatchIndex = mBatchIndex++;
+        batch.mStartMillis = System.currentTimeMillis();
+        batch.mFrameBudgetNanos = mFrameBudgetNanos;
+
+        mBatch = batch;
+        mBatchStartNanos = now;
+        mGcAtStart = gcStat("art.gc.gc-count");
+        mBlockingGcAtStart = gcStat("art.gc.blocking-gc-count");
+        mCollisionsAtStart = mCollisions;
+        mPointsAtStart = mPoints;
+        mLivesLostAtStart = mLivesLost;
+        mGamesOverAtStart = mGamesOver;
+    }
+
+    /**
+     * @param name an ART runtime statistic.
+     * @return its value, -1 before API 23 or if the runtime does not report it.
+     */
+    private static long gcStat(String name) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return -1;
+        }
+
+        String value = Debug.getRuntimeStat(name);
+
+        try {
+            return value == null ? -1 : Long.parseLong(value);
+        }
+
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
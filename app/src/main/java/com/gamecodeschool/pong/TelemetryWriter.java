@@ -0,0 +1,124 @@
+package com.gamecodeschool.pong;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends telemetry batches to telemetry.pngt in the app's files directory, on a background thread of its own so the
+ * game threads never touch storage. Memory and storage are both bounded: at most MAX_PENDING batches wait to be written
+ * (more are dropped and counted, never blocking the caller), and once the file passes MAX_FILE_BYTES it is moved to
+ * telemetry-old.pngt, replacing the one before, so the two files never hold much more than twice that. If it cannot
+ * be moved, batches are dropped (and counted) until it can.
+ * @see TelemetryBatch
+ * @see TelemetryCollector
+ */
+public final class TelemetryWriter implements Runnable {
+
+    private static final int MAX_PENDING = 8;
+    private static final long MAX_FILE_BYTES = 512 * 1024;
+
+    private static TelemetryWriter sInstance;
+
+    private final File mFile;
+    private final File mOldFile;
+    private final BlockingQueue<TelemetryBatch> mPending = new ArrayBlockingQueue<>(MAX_PENDING);
+    private final AtomicLong mDropped = new AtomicLong();
+
+    private TelemetryWriter(File directory) {
+        mFile = new File(directory, "telemetry.pngt");
+        mOldFile = new File(directory, "telemetry-old.pngt");
+
+        Thread thread = new Thread(this, "TelemetryWriter");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * @param context any context, used for the files directory.
+     * @return the process wide writer, started on first use.
+     */
+    public static synchronized TelemetryWriter get(Context context) {
+        if (sInstance == null) {
+            sInstance = new TelemetryWriter(context.getApplicationContext().getFilesDir());
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Queues a batch for writing. Never blocks, safe from any thread.
+     * @param batch the batch, not to be changed afterwards.
+     * @return false if too many batches were already waiting and this one was dropped.
+     */
+    public boolean offer(TelemetryBatch batch) {
+        if (mPending.offer(batch)) {
+            return true;
+        }
+
+        mDropped.incrementAndGet();
+        return false;
+    }
+
+    /** @return number of batches dropped since the process started, for a full queue or a file that won't rotate. */
+    public long getDropped() {
+        return mDropped.get();
+    }
+
+    /** The writer thread: takes batches as they come and appends them. */
+    @Override
+    public void run() {
+        while (true) {
+            TelemetryBatch batch;
+
+            try {
+                batch = mPending.take();
+            }
+
+            catch (InterruptedException e) {
+                return;
+            }
+
+            if (mFile.length() > MAX_FILE_BYTES && !rotate()) {
+                // Keep to the storage bound rather than let the file grow, the batch counts as dropped.
+                mDropped.incrementAndGet();
+                continue;
+            }
+
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(mFile, true))) {
+                batch.appendTo(out);
+            }
+
+            catch (IOException e) {
+                Log.e("Error", "Failed to write telemetry.", e);
+            }
+        }
+    }
+
+    /**
+     * Moves the full file over the old one.
+     * @return false, after logging why, if either file could not be moved out of the way.
+     */
+    private boolean rotate() {
+        if (mOldFile.exists() && !mOldFile.delete()) {
+            Log.w("Telemetry", "Could not delete " + mOldFile);
+            return false;
+        }
+
+        if (!mFile.renameTo(mOldFile)) {
+            Log.w("Telemetry", "Could not rotate " + mFile);
+            return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+package com.gamecodeschool.pong;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+/**
+ * Listens to the device's thermal status (API 29 and up) and puts a floor on the quality level of a QualityGovernor
+ * to match, so the game gives up quality as soon as the device heats up rather than waiting for throttling to show in
+ * the frame times (by which point the device is already slow and still heating).
+ *
+ * Thermal status to floor:
+ *  - NONE, LIGHT: no floor.
+ *  - MODERATE: 1.
+ *  - SEVERE: 3.
+ *  - CRITICAL and worse: QualityGovernor.MAX_LEVEL.
+ *
+ * start() and stop() must be called on the UI thread, which is also where the status changes are delivered.
+ * @see PongGame#applyQuality(int)
+ */
+@TargetApi(Build.VERSION_CODES.Q)
+public class ThermalMonitor implements PowerManager.OnThermalStatusChangedListener {
+
+    private final PowerManager mPowerManager;
+    private final QualityGovernor mGovernor;
+    private volatile int mStatus;
+    private boolean mListening;
+
+    /**
+     * Parametrized constructor below.
+     * @param context to get the PowerManager from.
+     * @param governor whose floor follows the thermal status.
+     */
+    public ThermalMonitor(Context context, QualityGovernor governor) {
+        mPowerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        mGovernor = governor;
+    }
+
+    /** Starts following the thermal status, starting with the current one. */
+    public void start() {
+        if (mListening || mPowerManager == null) {
+            return;
+        }
+
+        mListening = true;
+        // Also called straight away with the current status.
+        mPowerManager.addThermalStatusListener(this);
+    }
+
+    /** Stops following the thermal status, the floor stays where it was. */
+    public void stop() {
+        if (!mListening) {
+            return;
+        }
+
+        mListening = false;
+        mPowerManager.removeThermalStatusListener(this);
+    }
+
+    @Override
+    public void onThermalStatusChanged(int status) {
+        mStatus = status;
+        mGovernor.setFloor(toFloor(status));
+
+        Log.i("Quality", "Thermal status " + status + ", quality level at least " + mGovernor.getFloor());
+    }
+
+    /** @return the last thermal status reported, one of the PowerManager.THERMAL_STATUS_ constants. */
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * @param status one of the PowerManager.THERMAL_STATUS_ constants.
+     * @return the quality level floor for it.
+     */
+    private static int toFloor(int status) {
+        if (status >= PowerManager.THERMAL_STATUS_CRITICAL) {
+            return QualityGovernor.MAX_LEVEL;
+        }
+
+        if (status >= PowerManager.THERMAL_STATUS_SEVERE) {
+            return 3;
+        }
+
+        return status >= PowerManager.THERMAL_STATUS_MODERATE ? 1 : 0;
+    }
+}
@@ -0,0 +1,155 @@
+package com.gamecodeschool.pong;
+
+/**
+ * Bridges touches (received on the UI thread in PongGame#onTouchEvent) to the simulation (stepped on the simulation
+ * thread). The UI thread offers each touch as a timestamped event into a lock-free ring, the simulation thread drains
+ * every event at the start of the next step, so even a tap shorter than one frame reaches the simulation.
+ * @see InputSource
+ * @see InputEventRing
+ *
+ * Several fingers can be down at once. Each one steers towards the half of the screen it went down in, and the bat
+ * follows the most recent finger still down: hold left, press right and the bat goes right, lift the right finger and
+ * it goes left again.
+ *
+ * Also measures input latency: the time from a touch to the start of the simulation step that applied it.
+ */
+public class TouchInput implements InputSource, InputEventRing.Sink {
+
+    // Android tracks at most 10 pointers on most devices.
+    private static final int MAX_POINTERS = 10;
+
+    private final InputEventRing mEvents = new InputEventRing(256);
+    private final float mScreenX;
+    // Fingers currently down in press order (oldest first) and the bat direction each asks for. Simulation thread only.
+    private final int[] mPointerIds = new int[MAX_POINTERS];
+    private final int[] mPointerStates = new int[MAX_POINTERS];
+    private int mPointerCount;
+    private boolean mStartRequested;
+    // Start of the step being applied, for latency measurement.
+    private long mStepStartNanos;
+    // Written by the simulation thread, volatile so the render thread can show them.
+    private volatile long mLastLatencyNanos;
+    private volatile long mMaxLatencyNanos;
+    private volatile long mAverageLatencyNanos;
+    private long mLatencySumNanos;
+    private long mLatencyCount;
+
+    /**
+     * Parametrized constructor below.
+     * @param screenX width of the screen, touches left of the middle steer left.
+     */
+    public TouchInput(int screenX) {
+        mScreenX = screenX;
+    }
+
+    /**
+     * Called from the UI thread for every touch change. Never blocks.
+     * @param timeNanos when the touch happened, System.nanoTime() time base.
+     * @param type InputEventRing.DOWN, UP or CANCEL.
+     * @param pointerId the finger's pointer id.
+     * @param x horizontal position of the finger.
+     * @param y vertical position of the finger.
+     */
+    public void offer(long timeNanos, int type, int pointerId, float x, float y) {
+        mEvents.offer(timeNanos, type, pointerId, x, y);
+    }
+
+    @Override
+    public void applyInput(long tick, PongSimulation simulation) {
+        int input = pollInput();
+
+        if ((input & NetSession.INPUT_START) != 0) {
+            simulation.unpause();
+        }
+
+        simulation.setBatMovement(input & ~NetSession.INPUT_START);
+    }
+
+    /**
+     * Takes in the touches since the last call, for a game stepped by a NetSession rather than through applyInput.
+     * Simulation thread.
+     * @return the bat direction asked for (Bat.STOPPED, LEFT or RIGHT), plus NetSession.INPUT_START if a finger went
+     * down.
+     */
+    public int pollInput() {
+        mStepStartNanos = System.nanoTime();
+        mEvents.drain(this);
+        int input = mPointerCount == 0 ? Bat.STOPPED : mPointerStates[mPointerCount - 1];
+
+        if (mStartRequested) {
+            mStartRequested = false;
+            input |= NetSession.INPUT_START;
+        }
+
+        return input;
+    }
+
+    /** Applies one drained touch to the pointer list, on the simulation thread. */
+    @Override
+    public void onInputEvent(long timeNanos, int type, int pointerId, float x, float y) {
+        switch (type) {
+            case InputEventRing.DOWN:
+                removePointer(pointerId);
+
+                if (mPointerCount == MAX_POINTERS) {
+                    removeAt(0);
+                }
+
+                mPointerIds[mPointerCount] = pointerId;
+                mPointerStates[mPointerCount] = x > mScreenX / 2 ? Bat.RIGHT : Bat.LEFT;
+                mPointerCount++;
+                mStartRequested = true;
+                break;
+
+            case InputEventRing.UP:
+                removePointer(pointerId);
+                break;
+
+            case InputEventRing.CANCEL:
+                mPointerCount = 0;
+                break;
+        }
+
+        long latency = mStepStartNanos - timeNanos;
+        mLastLatencyNanos = latency;
+        mMaxLatencyNanos = Math.max(mMaxLatencyNanos, latency);
+        mLatencySumNanos += latency;
+        mLatencyCount++;
+        mAverageLatencyNanos = mLatencySumNanos / mLatencyCount;
+    }
+
+    private void removePointer(int pointerId) {
+        for (int i = 0; i < mPointerCount; i++) {
+            if (mPointerIds[i] == pointerId) {
+                removeAt(i);
+                return;
+            }
+        }
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(mPointerIds, index + 1, mPointerIds, index, mPointerCount - index - 1);
+        System.arraycopy(mPointerStates, index + 1, mPointerStates, index, mPointerCount - index - 1);
+        mPointerCount--;
+    }
+
+    /** @return touch to simulation step latency of the most recent touch, in nanoseconds. */
+    public long getLastLatencyNanos() {
+        return mLastLatencyNanos;
+    }
+
+    /** @return highest touch to simulation step latency seen, in nanoseconds. */
+    public long getMaxLatencyNanos() {
+        return mMaxLatencyNanos;
+    }
+
+    /** @return average touch to simulation step latency, in nanoseconds, 0 before the first touch. */
+    public long getAverageLatencyNanos() {
+        return mAverageLatencyNanos;
+    }
+
+    /** @return number of touches lost because the simulation thread did not drain the ring in time. */
+    public long getDroppedEvents() {
+        return mEvents.getDropped();
+    }
+}
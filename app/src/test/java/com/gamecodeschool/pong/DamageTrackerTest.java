@@ -0,0 +1,179 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the damage tracking behind DirtyRectRenderer: which areas it repaints, when it gives up and
+ * repaints everything, and when it does not lock the surface at all.
+ */
+public class DamageTrackerTest {
+
+    // Stand-ins for the renderer's Paints, only compared by identity.
+    private static final Object BALL = new Object();
+    private static final Object TEXT = new Object();
+
+    private final DamageTracker mTracker = new DamageTracker();
+
+    /** Records a frame of one text call and balls at the given lefts, all 10 wide at y 100, and finds the damage. */
+    private boolean frame(String text, float... balls) {
+        mTracker.beginFrame();
+        mTracker.addText(TEXT, text.toCharArray(), 0, text.length(), 20, 50, 10 * text.length(), -20, 5);
+
+        for (float left : balls) {
+            mTracker.addRect(BALL, left, 100, left + 10, 110);
+        }
+
+        return mTracker.findDamage();
+    }
+
+    /** Same as frame(String, float...), drawn straight away like the renderer does. */
+    private boolean drawn(String text, float... balls) {
+        boolean full = frame(text, balls);
+        mTracker.frameDrawn();
+        return full;
+    }
+
+    @Test
+    public void firstFrameIsAFullRedraw() {
+        assertTrue(drawn("Score: 0", 100));
+    }
+
+    @Test
+    public void unchangedFrameNeedsNoLock() {
+        drawn("Score: 0", 100, 300);
+
+        assertFalse(drawn("Score: 0", 100, 300));
+        assertEquals(0, mTracker.getDamageCount());
+    }
+
+    @Test
+    public void movedCallDamagesWhereItWasAndWhereItIs() {
+        drawn("Score: 0", 100, 300);
+
+        assertFalse(frame("Score: 0", 100, 304));
+        assertEquals(1, mTracker.getDamageCount());
+        assertEquals(300, mTracker.getDamageLeft(0), 0);
+        assertEquals(100, mTracker.getDamageTop(0), 0);
+        assertEquals(314, mTracker.getDamageRight(0), 0);
+        assertEquals(110, mTracker.getDamageBottom(0), 0);
+    }
+
+    @Test
+    public void changedTextInTheSameBoxIsDamaged() {
+        drawn("Score: 1", 100);
+
+        assertFalse(frame("Score: 2", 100));
+        assertEquals(1, mTracker.getDamageCount());
+        // The text box with one pixel of slack, around the baseline at 50.
+        assertEquals(19, mTracker.getDamageLeft(0), 0);
+        assertEquals(29, mTracker.getDamageTop(0), 0);
+        assertEquals(101, mTracker.getDamageRight(0), 0);
+        assertEquals(56, mTracker.getDamageBottom(0), 0);
+    }
+
+    @Test
+    public void unionCoversEveryDamagedArea() {
+        drawn("Score: 0", 100, 300, 500);
+
+        assertFalse(frame("Score: 0", 98, 300, 510));
+        assertEquals(2, mTracker.getDamageCount());
+        assertEquals(98, mTracker.getUnionLeft(), 0);
+        assertEquals(100, mTracker.getUnionTop(), 0);
+        assertEquals(520, mTracker.getUnionRight(), 0);
+        assertEquals(110, mTracker.getUnionBottom(), 0);
+    }
+
+    @Test
+    public void moreThanMaxDamageIsAFullRedraw() {
+        float[] before = new float[DamageTracker.MAX_DAMAGE + 1];
+        float[] after = new float[DamageTracker.MAX_DAMAGE + 1];
+
+        for (int i = 0; i < before.length; i++) {
+            before[i] = i * 50;
+            after[i] = i * 50 + 5;
+        }
+
+        drawn("Score: 0", before);
+
+        // One area per moved call, up to the limit.
+        after[DamageTracker.MAX_DAMAGE] = before[DamageTracker.MAX_DAMAGE];
+        assertFalse(frame("Score: 0", after));
+        assertEquals(DamageTracker.MAX_DAMAGE, mTracker.getDamageCount());
+
+        // One more and it is cheaper to redraw everything.
+        after[DamageTracker.MAX_DAMAGE] = before[DamageTracker.MAX_DAMAGE] + 5;
+        assertTrue(frame("Score: 0", after));
+    }
+
+    @Test
+    public void changedCallCountIsAFullRedraw() {
+        drawn("Score: 0", 100);
+
+        assertTrue(drawn("Score: 0", 100, 300));
+        assertTrue(drawn("Score: 0", 100));
+    }
+
+    @Test
+    public void redrawAllAfterAResizeIsAFullRedraw() {
+        drawn("Score: 0", 100);
+
+        // The same scene on a bigger surface: the calls all move, but the new buffers hold nothing of the old frame.
+        mTracker.redrawAll();
+        mTracker.beginFrame();
+        mTracker.setTransform(2, 0, 0);
+        mTracker.addRect(BALL, 100, 100, 110, 110);
+        assertTrue(mTracker.findDamage());
+        mTracker.frameDrawn();
+
+        // Back to partial redraws from the frame after, in surface pixels.
+        mTracker.beginFrame();
+        mTracker.setTransform(2, 0, 0);
+        mTracker.addRect(BALL, 101, 100, 111, 110);
+        assertFalse(mTracker.findDamage());
+        assertEquals(1, mTracker.getDamageCount());
+        assertEquals(200, mTracker.getDamageLeft(0), 0);
+        assertEquals(222, mTracker.getDamageRight(0), 0);
+    }
+
+    @Test
+    public void frameNeverDrawnIsNotComparedWith() {
+        drawn("Score: 0", 100);
+
+        // Recorded but the surface could not be locked: the renderer asks for a full redraw and records again.
+        frame("Score: 0", 200);
+        mTracker.redrawAll();
+
+        assertTrue(drawn("Score: 0", 200));
+        assertFalse(drawn("Score: 0", 200));
+    }
+
+    @Test
+    public void emptyPointsCoverNothing() {
+        float[] points = { 400, 400, 420, 430 };
+
+        mTracker.beginFrame();
+        mTracker.addPoints(BALL, points, 0, 4);
+        mTracker.findDamage();
+        mTracker.frameDrawn();
+
+        // Particles appearing damage only their own box: half a square and a pixel of slack either side.
+        mTracker.beginFrame();
+        mTracker.addPoints(BALL, points, 4, 4);
+        assertFalse(mTracker.findDamage());
+        assertEquals(1, mTracker.getDamageCount());
+        assertEquals(397, mTracker.getDamageLeft(0), 0);
+        assertEquals(397, mTracker.getDamageTop(0), 0);
+        assertEquals(423, mTracker.getDamageRight(0), 0);
+        assertEquals(433, mTracker.getDamageBottom(0), 0);
+        mTracker.frameDrawn();
+
+        // And gone again, only where they were is damaged.
+        mTracker.beginFrame();
+        mTracker.addPoints(BALL, points, 0, 4);
+        assertFalse(mTracker.findDamage());
+        assertEquals(1, mTracker.getDamageCount());
+        assertEquals(397, mTracker.getDamageLeft(0), 0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Local unit tests for HudText, the score/FPS formatter used by PongGame's draw path.
+ */
+public class HudTextTest {
+
+    private static String text(HudText hud) {
+        return new String(hud.getChars(), 0, hud.length());
+    }
+
+    @Test
+    public void formatsLabelsAndValues() {
+        HudText hud = new HudText("Score: ", "   Lives: ");
+        hud.setValue(0, 12);
+        hud.setValue(1, 3);
+
+        assertEquals("Score: 12   Lives: 3", text(hud));
+
+        hud.setValue(0, 0);
+        assertEquals("Score: 0   Lives: 3", text(hud));
+    }
+
+    @Test
+    public void formatsNegativeAndExtremeValues() {
+        HudText hud = new HudText("FPS: ");
+
+        hud.setValue(0, -7);
+        assertEquals("FPS: -7", text(hud));
+
+        hud.setValue(0, Integer.MIN_VALUE);
+        assertEquals("FPS: -2147483648", text(hud));
+
+        hud.setValue(0, Integer.MAX_VALUE);
+        assertEquals("FPS: 2147483647", text(hud));
+    }
+
+    @Test
+    public void steadyStateFrameDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        HudText score = new HudText("Score: ", "   Lives: ");
+        HudText fps = new HudText("FPS: ");
+        long id = Thread.currentThread().getId();
+
+        // Warm up so class loading and JIT compilation are not counted.
+        int checksum = runFrames(score, fps, 20000);
+
+        long overhead = threads.getThreadAllocatedBytes(id);
+        overhead = threads.getThreadAllocatedBytes(id) - overhead;
+
+        long before = threads.getThreadAllocatedBytes(id);
+        checksum += runFrames(score, fps, 20000);
+        long allocated = threads.getThreadAllocatedBytes(id) - before - overhead;
+
+        assertTrue(checksum != 0);
+        assertEquals(0, allocated);
+    }
+
+    /** Mimics what draw() does with the HUD every frame: set the values, then read the chars. */
+    private static int runFrames(HudText score, HudText fps, int frames) {
+        int checksum = 0;
+
+        for (int i = 0; i < frames; i++) {
+            score.setValue(0, i / 100);
+            score.setValue(1, 3);
+            fps.setValue(0, 60 + (i & 1));
+            checksum += score.getChars()[0] + score.length() + fps.getChars()[0] + fps.length();
+        }
+
+        return checksum;
+    }
+}
@@ -0,0 +1,30 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the renderer each device gets, see RendererChoice.
+ */
+public class RendererChoiceTest {
+
+    @Test
+    public void hardwareCanvasFromApi26() {
+        assertEquals(RendererChoice.HARDWARE, RendererChoice.pick(26, false, true));
+        assertEquals(RendererChoice.HARDWARE, RendererChoice.pick(30, false, false));
+    }
+
+    @Test
+    public void partialRedrawSoftwareCanvasBelowApi26() {
+        assertEquals(RendererChoice.PARTIAL_CANVAS, RendererChoice.pick(16, false, true));
+        assertEquals(RendererChoice.PARTIAL_CANVAS, RendererChoice.pick(25, false, true));
+    }
+
+    @Test
+    public void softwareCanvasCanBeForcedEverywhere() {
+        assertEquals(RendererChoice.PARTIAL_CANVAS, RendererChoice.pick(30, true, true));
+        assertEquals(RendererChoice.CANVAS, RendererChoice.pick(30, true, false));
+        assertEquals(RendererChoice.CANVAS, RendererChoice.pick(16, false, false));
+    }
+}
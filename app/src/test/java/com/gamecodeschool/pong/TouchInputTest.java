@@ -0,0 +1,62 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for TouchInput's multi-touch handling.
+ */
+public class TouchInputTest {
+
+    private static final int SCREEN_X = 1920;
+    private static final int SCREEN_Y = 1080;
+    private static final float LEFT = 100;
+    private static final float RIGHT = 1800;
+
+    private final PongSimulation mSimulation = new PongSimulation(SCREEN_X, SCREEN_Y);
+    private final TouchInput mInput = new TouchInput(SCREEN_X);
+
+    private int step() {
+        mInput.applyInput(mSimulation.getTick(), mSimulation);
+        return mSimulation.getBat().getMovementState();
+    }
+
+    @Test
+    public void tapShorterThanAStepStillStartsTheGame() {
+        mInput.offer(System.nanoTime(), InputEventRing.DOWN, 0, LEFT, 500);
+        mInput.offer(System.nanoTime(), InputEventRing.UP, 0, LEFT, 500);
+
+        assertEquals(Bat.STOPPED, step());
+        assertFalse(mSimulation.isPaused());
+    }
+
+    @Test
+    public void batFollowsTheLatestFingerStillDown() {
+        mInput.offer(System.nanoTime(), InputEventRing.DOWN, 0, LEFT, 500);
+        assertEquals(Bat.LEFT, step());
+
+        mInput.offer(System.nanoTime(), InputEventRing.DOWN, 1, RIGHT, 500);
+        assertEquals(Bat.RIGHT, step());
+
+        mInput.offer(System.nanoTime(), InputEventRing.UP, 1, RIGHT, 500);
+        assertEquals(Bat.LEFT, step());
+
+        mInput.offer(System.nanoTime(), InputEventRing.DOWN, 2, RIGHT, 500);
+        mInput.offer(System.nanoTime(), InputEventRing.UP, 0, LEFT, 500);
+        assertEquals(Bat.RIGHT, step());
+
+        mInput.offer(System.nanoTime(), InputEventRing.CANCEL, 0, 0, 0);
+        assertEquals(Bat.STOPPED, step());
+    }
+
+    @Test
+    public void measuresTouchToStepLatency() {
+        mInput.offer(System.nanoTime() - 5000000, InputEventRing.DOWN, 0, LEFT, 500);
+        step();
+
+        assertTrue(mInput.getLastLatencyNanos() >= 5000000);
+        assertEquals(mInput.getLastLatencyNanos(), mInput.getMaxLatencyNanos());
+        assertEquals(mInput.getLastLatencyNanos(), mInput.getAverageLatencyNanos());
+    }
+}
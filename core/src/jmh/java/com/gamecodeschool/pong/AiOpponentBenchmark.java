@@ -0,0 +1,76 @@
+package com.gamecodeschool.pong;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Times the computer player: one decision of AiOpponent (picking the ball that arrives first out of all of them and
+ * predicting where) in a versus game with more and more balls, and a single TrajectoryPredictor intercept. A decision
+ * runs once per tick, so ns/op for decide has to stay far below the tick (8.3 ms at 120 Hz), and should grow with the
+ * ball count but not with how far or how often the balls bounce.
+ */
+@State(Scope.Thread)
+public class AiOpponentBenchmark {
+
+    private static final int PREDICTIONS = 1024;
+
+    @Param({"1", "100", "2000"})
+    public int balls;
+
+    private PongSimulation mSimulation;
+    private AiOpponent mAi;
+    private long mTick;
+    // Random ball states for the intercept benchmark, from slow to fast and near to far.
+    private final float[] mX = new float[PREDICTIONS];
+    private final float[] mY = new float[PREDICTIONS];
+    private final float[] mVx = new float[PREDICTIONS];
+    private final float[] mVy = new float[PREDICTIONS];
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        mSimulation = new PongSimulation(PongSimulation.WORLD_WIDTH, PongSimulation.WORLD_HEIGHT);
+        mSimulation.startVersus();
+
+        for (int i = 1; i < balls; i++) {
+            mSimulation.addBall();
+        }
+
+        mSimulation.unpause();
+        mAi = new AiOpponent(null, AiOpponent.Difficulty.HARD, 1);
+
+        Random random = new Random(1);
+
+        for (int i = 0; i < PREDICTIONS; i++) {
+            mX[i] = random.nextFloat() * PongSimulation.WORLD_WIDTH;
+            mY[i] = random.nextFloat() * PongSimulation.WORLD_HEIGHT;
+            mVx[i] = (random.nextFloat() * 2 - 1) * PongSimulation.WORLD_WIDTH * 8;
+            mVy[i] = (random.nextFloat() * 2 - 1) * PongSimulation.WORLD_HEIGHT * 4;
+        }
+    }
+
+    @Benchmark
+    public int decide() {
+        mAi.applyInput(mTick++, mSimulation);
+        return mSimulation.getOpponentBat().getMovementState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PREDICTIONS)
+    public float intercept() {
+        float sum = 0;
+
+        for (int i = 0; i < PREDICTIONS; i++) {
+            sum += TrajectoryPredictor.interceptX(mX[i], mY[i], mVx[i], mVy[i], 0, PongSimulation.WORLD_WIDTH - 16,
+                    22.5f, PongSimulation.WORLD_HEIGHT - 38.5f);
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,44 @@
+package com.gamecodeschool.pong;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Times a batch of headless games on pools of different sizes. ns/op is the wall-clock cost of one game, so with
+ * linear scaling it halves each time the thread count doubles (up to the number of cores).
+ */
+@State(Scope.Benchmark)
+public class BatchRunnerBenchmark {
+
+    private static final int GAMES = 64;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ForkJoinPool mPool;
+    private BatchRunner mRunner;
+
+    @Setup
+    public void setUp() {
+        mPool = new ForkJoinPool(threads);
+        mRunner = new BatchRunner(mPool, 1920, 1080, Tuning.DEFAULT, 120 * 60 * 10);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public GameStats[] batch() {
+        return mRunner.run(1, GAMES);
+    }
+}
@@ -0,0 +1,39 @@
+package com.gamecodeschool.pong;
+
+/**
+ * Shared helpers for the JMH benchmarks in this source set.
+ */
+final class BenchmarkSetup {
+
+    private BenchmarkSetup() {
+    }
+
+    /**
+     * Parses a resolution parameter such as "1920x1080".
+     * @param resolution width and height separated by an 'x'.
+     * @return {width, height}.
+     */
+    static int[] parseResolution(String resolution) {
+        int split = resolution.indexOf('x');
+        return new int[] {
+                Integer.parseInt(resolution.substring(0, split)),
+                Integer.parseInt(resolution.substring(split + 1))
+        };
+    }
+
+    /**
+     * Keeps a benchmarked simulation in play: starts the game on every step and keeps the bat under the ball, so the
+     * collision pass sees bat hits and misses instead of an idle game that paused itself.
+     */
+    static class FollowBall implements InputSource {
+        @Override
+        public void applyInput(long tick, PongSimulation simulation) {
+            simulation.unpause();
+
+            float ball = simulation.getBall().getRect().centerX();
+            float bat = simulation.getBat().getRect().centerX();
+
+            simulation.setBatMovement(ball < bat ? Bat.LEFT : Bat.RIGHT);
+        }
+    }
+}
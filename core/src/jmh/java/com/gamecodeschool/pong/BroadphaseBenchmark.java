@@ -0,0 +1,44 @@
+package com.gamecodeschool.pong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Times one step of a stress test (many balls, many obstacles). With the grid broadphase the cost should grow roughly
+ * in line with balls + obstacles, not balls * obstacles.
+ */
+@State(Scope.Thread)
+public class BroadphaseBenchmark {
+
+    @Param({"256", "4096"})
+    public int balls;
+
+    @Param({"2", "256"})
+    public int obstacles;
+
+    @Param({"1920x1080"})
+    public String resolution;
+
+    private PongSimulation mSimulation;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        int[] size = BenchmarkSetup.parseResolution(resolution);
+        mSimulation = new PongSimulation(size[0], size[1]);
+
+        for (int i = 2; i < obstacles; i++) {
+            mSimulation.addObstacle((i * 97) % size[0], (i * 53) % (size[1] * 3 / 4));
+        }
+
+        mSimulation.startStressTest(balls);
+    }
+
+    @Benchmark
+    public void stressStep() {
+        mSimulation.step();
+    }
+}
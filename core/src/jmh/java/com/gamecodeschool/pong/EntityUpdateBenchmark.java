@@ -0,0 +1,83 @@
+package com.gamecodeschool.pong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Times moving one object through a step: a ball through the swept collision pass (PongSimulation.moveBall, on the
+ * balls' EntityStore, the way the game moves them), a bat and an obstacle through their update methods. Each benchmark
+ * is normalised with OperationsPerInvocation, so the reported ns/op is the cost of moving one object.
+ */
+@State(Scope.Thread)
+public class EntityUpdateBenchmark {
+
+    private static final int TICK_RATE = 120;
+
+    @Param({"1", "64", "1024"})
+    public int entities;
+
+    @Param({"1280x720", "1920x1080", "2560x1600"})
+    public String resolution;
+
+    // A stress test holding every ball, misses cost no lives so it never ends.
+    private PongSimulation mBalls;
+    private Bat[] mBats;
+    private Obstacle[] mObstacles;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        int[] size = BenchmarkSetup.parseResolution(resolution);
+
+        mBalls = new PongSimulation(size[0], size[1]);
+        mBalls.startStressTest(entities);
+        // Builds the obstacle grid moveBall queries.
+        mBalls.detectCollisions();
+
+        mBats = new Bat[entities];
+        mObstacles = new Obstacle[entities];
+
+        for (int i = 0; i < entities; i++) {
+            mBats[i] = new Bat(size[0], size[1]);
+            mBats[i].SetMovementState(i % 2 == 0 ? Bat.LEFT : Bat.RIGHT);
+
+            mObstacles[i] = new Obstacle(size[0], size[1]);
+            mObstacles[i].reset(i % 2 == 0 ? 0 : size[0], size[1] / 4f);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void ballMove() {
+        // Fixed number of calls per invocation so OperationsPerInvocation stays accurate for every entity count.
+        PongSimulation balls = mBalls;
+
+        for (int i = 0; i < 1024; i++) {
+            balls.moveBall(i % entities);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void batUpdate() {
+        Bat[] bats = mBats;
+
+        for (int i = 0; i < 1024; i++) {
+            bats[i % bats.length].update(TICK_RATE);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void obstacleUpdate() {
+        Obstacle[] obstacles = mObstacles;
+
+        for (int i = 0; i < 1024; i++) {
+            obstacles[i % obstacles.length].update(TICK_RATE);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.gamecodeschool.pong;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the two ways of laying out many moving objects in memory for the same work (save previous position, move by
+ * velocity, read back the bounds):
+ *  - objects: one Java object per ball holding its own Aabb and velocity, the way Ball used to be stored. They are
+ *    allocated in a shuffled order, so walking the array hops around the heap like a long-running game does.
+ *  - store: one EntityStore with a float array per property, walked front to back (its savePreviousPositions() kernel,
+ *    then a plain loop over the position and velocity arrays).
+ * Normalised with OperationsPerInvocation, so ns/op is the cost per object. Run with the gc profiler to see that
+ * neither allocates.
+ */
+@State(Scope.Thread)
+public class LayoutBenchmark {
+
+    private static final int TICK_RATE = 120;
+    private static final int MAX_ENTITIES = 16384;
+
+    @Param({"64", "1024", "16384"})
+    public int entities;
+
+    private ObjectBall[] mObjects;
+    private EntityStore mStore;
+
+    /** A ball stored the old way, a box object plus velocity fields. */
+    private static final class ObjectBall {
+        final Aabb rect = new Aabb();
+        final Aabb prevRect = new Aabb();
+        float xVelocity;
+        float yVelocity;
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        ArrayList<ObjectBall> objects = new ArrayList<>();
+        mStore = new EntityStore(entities);
+
+        for (int i = 0; i < entities; i++) {
+            float left = random.nextFloat() * 1900;
+            float top = random.nextFloat() * 1000;
+            float xVelocity = random.nextFloat() * 960 - 480;
+            float yVelocity = random.nextFloat() * 720 - 360;
+
+            ObjectBall ball = new ObjectBall();
+            ball.rect.set(left, top, left + 19, top + 19);
+            ball.xVelocity = xVelocity;
+            ball.yVelocity = yVelocity;
+            objects.add(ball);
+
+            int slot = mStore.add(19, 19);
+            mStore.x[slot] = left;
+            mStore.y[slot] = top;
+            mStore.vx[slot] = xVelocity;
+            mStore.vy[slot] = yVelocity;
+        }
+
+        Collections.shuffle(objects, random);
+        mObjects = objects.toArray(new ObjectBall[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MAX_ENTITIES)
+    public float objects() {
+        float sum = 0;
+
+        // Same number of object updates per invocation for every entity count.
+        for (int pass = 0; pass < MAX_ENTITIES / entities; pass++) {
+            for (ObjectBall ball : mObjects) {
+                ball.prevRect.left = ball.rect.left;
+                ball.prevRect.top = ball.rect.top;
+
+                ball.rect.left = ball.rect.left + (ball.xVelocity / TICK_RATE);
+                ball.rect.top = ball.rect.top + (ball.yVelocity / TICK_RATE);
+                ball.rect.right = ball.rect.left + 19;
+                ball.rect.bottom = ball.rect.top + 19;
+
+                sum += ball.rect.right;
+            }
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MAX_ENTITIES)
+    public float store() {
+        EntityStore store = mStore;
+        float sum = 0;
+
+        for (int pass = 0; pass < MAX_ENTITIES / entities; pass++) {
+            store.savePreviousPositions();
+            integrate(store);
+
+            float[] x = store.x;
+            float[] w = store.w;
+
+            for (int i = 0; i < store.size(); i++) {
+                sum += x[i] + w[i];
+            }
+        }
+
+        return sum;
+    }
+
+    /** Moves every object in the store in a straight line by its velocity, for one step at TICK_RATE. */
+    private static void integrate(EntityStore store) {
+        float dt = 1f / TICK_RATE;
+        float[] x = store.x;
+        float[] y = store.y;
+        float[] vx = store.vx;
+        float[] vy = store.vy;
+
+        for (int i = 0; i < store.size(); i++) {
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+        }
+    }
+}
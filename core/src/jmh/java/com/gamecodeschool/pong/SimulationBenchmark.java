@@ -0,0 +1,63 @@
+package com.gamecodeschool.pong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Times the collision pass (PongSimulation.detectCollisions) and a full headless tick (PongSimulation.step) over a
+ * number of independent games. ns/op is the cost for one game.
+ */
+@State(Scope.Thread)
+public class SimulationBenchmark {
+
+    @Param({"1", "64", "1024"})
+    public int entities;
+
+    @Param({"1280x720", "1920x1080", "2560x1600"})
+    public String resolution;
+
+    private PongSimulation[] mSimulations;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        int[] size = BenchmarkSetup.parseResolution(resolution);
+        InputSource input = new BenchmarkSetup.FollowBall();
+
+        mSimulations = new PongSimulation[entities];
+
+        for (int i = 0; i < entities; i++) {
+            mSimulations[i] = new PongSimulation(size[0], size[1]);
+            mSimulations[i].setInputSource(input);
+
+            // Spread the games out so they are not all colliding on the same step.
+            for (int t = 0; t < i % 240; t++) {
+                mSimulations[i].step();
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void collisionPass() {
+        PongSimulation[] simulations = mSimulations;
+
+        for (int i = 0; i < 1024; i++) {
+            simulations[i % simulations.length].detectCollisions();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void fullTick() {
+        PongSimulation[] simulations = mSimulations;
+
+        for (int i = 0; i < 1024; i++) {
+            simulations[i % simulations.length].step();
+        }
+    }
+}
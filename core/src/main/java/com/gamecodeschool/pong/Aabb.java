@@ -0,0 +1,86 @@
+package com.gamecodeschool.pong;
+
+/**
+ * Axis aligned bounding box (a plain rectangle that is never rotated) used by every game object for its position and
+ * size. It mirrors the parts of android.graphics.RectF the game used, so the simulation does not depend on Android
+ * and can run on any JVM (unit tests, benchmarks, batch runs).
+ *
+ * Fields are public on purpose, exactly like RectF, as they are read and written many times per step.
+ */
+public class Aabb {
+    public float left;
+    public float top;
+    public float right;
+    public float bottom;
+
+    /** Creates an empty box at (0, 0). */
+    public Aabb() {
+    }
+
+    /**
+     * Parametrized constructor below.
+     * @param left x coordinate of the left edge.
+     * @param top y coordinate of the top edge.
+     * @param right x coordinate of the right edge.
+     * @param bottom y coordinate of the bottom edge.
+     */
+    public Aabb(float left, float top, float right, float bottom) {
+        set(left, top, right, bottom);
+    }
+
+    /**
+     * Copy constructor.
+     * @param other box whose coordinates are copied.
+     */
+    public Aabb(Aabb other) {
+        set(other);
+    }
+
+    /** Sets all four edges at once. */
+    public void set(float left, float top, float right, float bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /** Copies the edges of another box into this one. */
+    public void set(Aabb other) {
+        set(other.left, other.top, other.right, other.bottom);
+    }
+
+    /** @return horizontal size of the box. */
+    public float width() {
+        return right - left;
+    }
+
+    /** @return vertical size of the box. */
+    public float height() {
+        return bottom - top;
+    }
+
+    /** @return x coordinate of the middle of the box. */
+    public float centerX() {
+        return (left + right) * 0.5f;
+    }
+
+    /** @return y coordinate of the middle of the box. */
+    public float centerY() {
+        return (top + bottom) * 0.5f;
+    }
+
+    /**
+     * Same test as RectF.intersects(a, b): true when the boxes overlap, boxes that only touch do not count.
+     * @param a first box.
+     * @param b second box.
+     * @return true if a and b overlap.
+     */
+    public static boolean intersects(Aabb a, Aabb b) {
+        return a.left < b.right && b.left < a.right && a.top < b.bottom && b.top < a.bottom;
+    }
+
+    @Override
+    public String toString() {
+        return "Aabb(" + left + ", " + top + ", " + right + ", " + bottom + ")";
+    }
+}
@@ -0,0 +1,177 @@
+package com.gamecodeschool.pong;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A computer player for the top bat of a versus game (see PongSimulation#startVersus()), unlike the obstacles it
+ * actually plays: it works out where the ball will cross its end with TrajectoryPredictor and moves there. Every
+ * decision is O(1) per ball, whatever the ball's path looks like, so it can run every tick even with lots of balls in
+ * play (it goes for whichever one reaches it first).
+ *
+ * How good it is comes from a Difficulty:
+ *  - reaction delay: it acts on what it predicted that long ago, so it is late for a change of direction (a bounce off
+ *    the player's bat) and overshoots it.
+ *  - aiming error: it aims up to that fraction of its bat length away from the predicted point, picked again for
+ *    every ball coming its way. Past half the bat length it can miss even a ball it reaches in time.
+ * Everything random comes from its own seeded Random, so a seed always gives the same game.
+ *
+ * Wraps the InputSource of the player at the bottom, which still starts the game and moves the bottom bat. The game
+ * has to be a versus game already, the AI only moves the top bat through PongSimulation#setOpponentMovement(int).
+ */
+public class AiOpponent implements InputSource {
+
+    /** How good the computer player is. Immutable, like Tuning. */
+    public static final class Difficulty {
+
+        /** Slow to react and often off target. */
+        public static final Difficulty EASY = new Difficulty(250, 0.75f);
+        /** Reacts about as fast as a person and misses now and then. */
+        public static final Difficulty NORMAL = new Difficulty(120, 0.55f);
+        /** Quick and accurate, only the fastest balls get past it. */
+        public static final Difficulty HARD = new Difficulty(40, 0.2f);
+
+        // Delay between the ball changing course and the bat responding.
+        public final int reactionMillis;
+        // Largest aiming error as a fraction of the bat length.
+        public final float error;
+
+        /**
+         * Parametrized constructor below.
+         * @param reactionMillis reaction delay in milliseconds, 0 or more.
+         * @param error largest aiming error as a fraction of the bat length, 0 or more.
+         */
+        public Difficulty(int reactionMillis, float error) {
+            if (reactionMillis < 0 || error < 0) {
+                throw new IllegalArgumentException("Difficulty values must not be negative");
+            }
+
+            this.reactionMillis = reactionMillis;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return "reaction=" + reactionMillis + "ms error=" + error;
+        }
+    }
+
+    private final InputSource mPlayer;
+    private final Difficulty mDifficulty;
+    private final Random mRandom;
+    // Targets (bat centre) predicted in the last reaction delay's worth of ticks, a ring indexed by decision count.
+    private float[] mTargets = new float[1];
+    private int mReactionTicks = -1;
+    private long mDecisions;
+    // The ball being played and whether it was coming our way, to pick a new aiming error for every approach.
+    private int mBall = -1;
+    private boolean mApproaching;
+    private float mOffset;
+
+    /**
+     * Parametrized constructor below.
+     * @param player input for the bottom bat, null for none.
+     * @param difficulty how good the computer player is.
+     * @param seed seed for the aiming errors.
+     */
+    public AiOpponent(InputSource player, Difficulty difficulty, long seed) {
+        mPlayer = player;
+        mDifficulty = difficulty;
+        mRandom = new Random(seed);
+    }
+
+    @Override
+    public void applyInput(long tick, PongSimulation simulation) {
+        if (mPlayer != null) {
+            mPlayer.applyInput(tick, simulation);
+        }
+
+        if (!simulation.isVersus()) {
+            return;
+        }
+
+        Aabb bat = simulation.getOpponentBat().getRect();
+        float target = predict(simulation, bat);
+        float aim = delay(simulation.getTickRate(), target) + mOffset;
+
+        // Within one tick's move of the aim counts as there, or the bat would jitter either side of it.
+        float deadZone = simulation.getScreenX() / (float) simulation.getTickRate();
+        float centre = bat.centerX();
+
+        if (simulation.isPaused() || Math.abs(aim - centre) <= deadZone) {
+            simulation.setOpponentMovement(Bat.STOPPED);
+        }
+
+        else {
+            simulation.setOpponentMovement(aim < centre ? Bat.LEFT : Bat.RIGHT);
+        }
+    }
+
+    /**
+     * Picks the ball that will reach our end first and predicts where.
+     * @return where the centre of the bat should be when it gets there.
+     */
+    private float predict(PongSimulation simulation, Aabb bat) {
+        Aabb otherBat = simulation.getBat().getRect();
+        float soonest = Float.POSITIVE_INFINITY;
+        int chosen = 0;
+
+        for (int i = 0; i < simulation.getBallCount(); i++) {
+            Ball ball = simulation.getBall(i);
+            Aabb rect = ball.getRect();
+            float time = TrajectoryPredictor.timeToLine(rect.top, ball.getYVelocity(), bat.bottom,
+                    otherBat.top - rect.height());
+
+            if (time < soonest) {
+                soonest = time;
+                chosen = i;
+            }
+        }
+
+        Ball ball = simulation.getBall(chosen);
+        Aabb rect = ball.getRect();
+        boolean approaching = ball.getYVelocity() < 0;
+
+        if (chosen != mBall || (approaching && !mApproaching)) {
+            mOffset = (mRandom.nextFloat() * 2 - 1) * mDifficulty.error * bat.width();
+        }
+
+        mBall = chosen;
+        mApproaching = approaching;
+
+        float x = TrajectoryPredictor.interceptX(rect.left, rect.top, ball.getXVelocity(), ball.getYVelocity(), 0,
+                simulation.getScreenX() - rect.width(), bat.bottom, otherBat.top - rect.height());
+        return x + rect.width() / 2;
+    }
+
+    /**
+     * Stores this tick's target and returns the one from a reaction delay ago (or the first one, until there is one
+     * that old).
+     */
+    private float delay(int tickRate, float target) {
+        int reactionTicks = Math.round(mDifficulty.reactionMillis * tickRate / 1000f);
+
+        if (reactionTicks != mReactionTicks) {
+            // New tick rate, start the delay afresh.
+            mReactionTicks = reactionTicks;
+            mTargets = new float[reactionTicks + 1];
+            mDecisions = 0;
+        }
+
+        if (mDecisions == 0) {
+            Arrays.fill(mTargets, target);
+        }
+
+        int size = mTargets.length;
+        mTargets[(int) (mDecisions % size)] = target;
+        mDecisions++;
+
+        // The oldest slot, about to be overwritten next tick.
+        return mTargets[(int) (mDecisions % size)];
+    }
+
+    /** @return how good this computer player is. */
+    public Difficulty getDifficulty() {
+        return mDifficulty;
+    }
+}
@@ -0,0 +1,129 @@
+package com.gamecodeschool.pong;
+
+/**
+ * The Ball class is used within our PongSimulation class. Technically, it's existence would be composition since the
+ * PongSimulation class controls the lifetime of the Ball object. This object is the ball that floats around the screen and determines
+ * player score. (If ball hits bottom of screen -> lose a life, if ball hits bat -> player gains a point)
+ *
+ * The ball's numbers (position, size, velocity) are not stored in this object but in one slot of an EntityStore,
+ * shared by every ball in the simulation so they can be processed in fast batch loops. A Ball is a view onto that
+ * slot. A Ball made with the public constructor gets a store of its own.
+ * @see EntityStore
+ */
+public class Ball {
+    private final EntityStore mStore;
+    private final int mIndex;
+    // Filled in by getRect(), so callers still get a familiar box to read.
+    private final Aabb mRect = new Aabb();
+
+    /**
+     * Parametrized constructor below.
+     * @param screenX Width of the playing area. (Used to assign ball width/height)
+     * The above is important so the ball is the same size relative to the playing area whatever its size.
+     */
+    public Ball(int screenX) {
+        this(new EntityStore(1), screenX);
+    }
+
+    /**
+     * Creates a ball in a new slot of a shared store.
+     * @param store the store holding every ball's numbers.
+     * @param screenX Width of the playing area. (Used to assign ball width/height)
+     */
+    Ball(EntityStore store, int screenX) {
+        mStore = store;
+        mIndex = store.add(screenX / 100f, screenX / 100f);
+    }
+
+    /** Accessor method below.
+     * @see Bat#getRect()
+     * @return Returns the ball (x, y coordinates). This is a copy taken when called, writing to it does not move the ball.
+     */
+    public Aabb getRect() {
+        mStore.getBounds(mIndex, mRect);
+        return mRect;
+    }
+
+    /** Stores where the ball currently is, so the renderer can blend between the last two simulation steps.
+     * @see Snapshot#interpolateBall(int, float, Aabb)
+     */
+    void savePreviousPosition() {
+        mStore.prevX[mIndex] = mStore.x[mIndex];
+        mStore.prevY[mIndex] = mStore.y[mIndex];
+    }
+
+    /** @return horizontal speed in pixels per second (negative when moving left). */
+    float getXVelocity() {
+        return mStore.vx[mIndex];
+    }
+
+    /** @return vertical speed in pixels per second (negative when moving up). */
+    float getYVelocity() {
+        return mStore.vy[mIndex];
+    }
+
+    /** Resets the position of the ball upon a new game starting, starting position all relative to screen resolution */
+    void reset(int x, int y) {
+        mStore.x[mIndex] = x / 2f;
+        mStore.y[mIndex] = 0;
+
+        mStore.vy[mIndex] = -(y / 3f);
+        mStore.vx[mIndex] = (x / 2f);
+
+        // No blending from wherever the ball was before the reset.
+        savePreviousPosition();
+    }
+
+    /** Places the ball at a given position with a given velocity, used for the extra balls of multi-ball play.
+     * @param left x coordinate of the left edge.
+     * @param top y coordinate of the top edge.
+     * @param xVelocity horizontal speed in pixels per second.
+     * @param yVelocity vertical speed in pixels per second.
+     */
+    void launch(float left, float top, float xVelocity, float yVelocity) {
+        mStore.x[mIndex] = left;
+        mStore.y[mIndex] = top;
+
+        mStore.vx[mIndex] = xVelocity;
+        mStore.vy[mIndex] = yVelocity;
+
+        savePreviousPosition();
+    }
+
+    /** Increases the ball velocity whenever it collides with the user's bat (point gained -> increased difficulty),
+     * for any ball in a store, used by the simulation's batch loops.
+     * @param balls store holding the ball.
+     * @param i the ball's slot.
+     * @param speedUp factor to multiply the velocity by, see Tuning#ballSpeedUp.
+     */
+    static void increaseVelocity(EntityStore balls, int i, float speedUp) {
+        balls.vx[i] = balls.vx[i] * speedUp;
+
+        balls.vy[i] = balls.vy[i] * speedUp;
+    }
+
+    /** Method that designates the x/y velocity whenever a bat/ball collision occurs
+     * if the ball collides with the left side of the bat -> bounce left and up, etc. For any ball in a store, used by
+     * the simulation's batch loops.
+     * @param balls store holding the ball.
+     * @param i the ball's slot.
+     * @param batPosition the bat (or obstacle) that was hit.
+     */
+    static void batBounce(EntityStore balls, int i, Aabb batPosition) {
+        float batCenter = batPosition.left + (batPosition.width() / 2);
+        float ballCenter = balls.x[i] + (balls.w[i] / 2);
+
+        float relativeIntersect = (batCenter - ballCenter);
+
+        if (relativeIntersect < 0) {
+            balls.vx[i] = Math.abs(balls.vx[i]);
+        }
+
+        else {
+            balls.vx[i] = -Math.abs(balls.vx[i]);
+        }
+
+        balls.vy[i] = -balls.vy[i];
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.gamecodeschool.pong;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class controls movement and the instantiation/creation of the Bat object used in our:
+ * @see PongSimulation class -> example of composition - lifetime of bat controlled by PongSimulation.
+ */
+
+public class Bat {
+
+    private Aabb mRect;
+    private Aabb mPrevRect;
+    private float mLength;
+    private float mXCoord;
+    private float mBatSpeed;
+    private int mScreenX;
+
+    public static final int STOPPED = 0;
+    public static final int LEFT = 1;
+    public static final int RIGHT = 2;
+
+    private int mBatMoving = STOPPED;
+
+    /**
+     * Parametrized constructor below.
+     * @param sx Used to assign bat length based off width of screen.
+     * @param sy Used to assign bat height based off height of screen.
+     */
+    public Bat(int sx, int sy) {
+        this(sx, sy, Tuning.DEFAULT);
+    }
+
+    /**
+     * Same as Bat(int, int) with the bat length taken from tuning.
+     * @param tuning difficulty constants, see Tuning#batLengthDivisor.
+     */
+    public Bat(int sx, int sy, Tuning tuning) {
+        this(sx, sy, tuning, false);
+    }
+
+    /**
+     * Same as Bat(int, int, Tuning), along the top of the screen instead of the bottom if asked, for the second player
+     * of a versus game.
+     * @param top true to put the bat along the top.
+     * @see PongSimulation#startVersus()
+     */
+    public Bat(int sx, int sy, Tuning tuning, boolean top) {
+        mScreenX = sx;
+
+        mLength = (float) mScreenX / tuning.batLengthDivisor;
+
+        float height = sy / 40f;
+
+        mXCoord = mScreenX / 2f;
+
+        float mYCoord = top ? 0 : sy - height;
+
+        mRect = new Aabb(mXCoord, mYCoord, mXCoord + mLength, mYCoord + height);
+        mPrevRect = new Aabb(mRect);
+
+        mBatSpeed = mScreenX;
+
+    }
+
+    /**
+     * Accessor used to return our mRect instance variable which is the bat itself, used in drawing/collision detection.
+     * @return returns the rect (x, y coordinates)
+     */
+    public Aabb getRect() {
+        return mRect;
+    }
+
+    /**
+     * Method that sets movement state based off touch event realized in:
+     * @see PongSimulation#setBatMovement(int)
+     * @param state is passed in as an integer that corresponds with our instance variables that communicates state of the bat.
+     * @see Bat#mBatMoving stores the current state of the bat and is used in:
+     * @see Bat#update(long)
+     * @see Bat#LEFT
+     * @see Bat#RIGHT
+     * @see Bat#STOPPED
+     */
+    public void SetMovementState(int state) {
+        mBatMoving = state;
+    }
+
+    /** @return the current movement state, Bat.STOPPED, Bat.LEFT or Bat.RIGHT. */
+    public int getMovementState() {
+        return mBatMoving;
+    }
+
+    /**
+     * Stores where the bat currently is, so the renderer can blend between the last two simulation steps.
+     * @see Snapshot#interpolateBat(float, Aabb)
+     */
+    public void savePreviousPosition() {
+        mPrevRect.set(mRect);
+    }
+
+    /** @return x coordinate of the bat's left edge at the start of the current simulation step. */
+    public float getPreviousLeft() {
+        return mPrevRect.left;
+    }
+
+    /** Bytes writeTo(ByteBuffer) takes. */
+    static final int STATE_BYTES = 4 * 4 + 4;
+
+    /**
+     * Writes where the bat is, was at the start of the step and which way it is moving. Its size comes from the screen
+     * and tuning, so it is not saved.
+     * @param out where to write.
+     * @see PongSimulation#saveState(ByteBuffer)
+     */
+    void writeTo(ByteBuffer out) {
+        out.putFloat(mXCoord);
+        out.putFloat(mPrevRect.left);
+        out.putFloat(mRect.top);
+        out.putFloat(mRect.bottom);
+        out.putInt(mBatMoving);
+    }
+
+    /**
+     * Puts the bat back where writeTo(ByteBuffer) found it.
+     * @param in where to read from.
+     */
+    void readFrom(ByteBuffer in) {
+        mXCoord = in.getFloat();
+        float prevLeft = in.getFloat();
+        float top = in.getFloat();
+        float bottom = in.getFloat();
+        mBatMoving = in.getInt();
+
+        mRect.set(mXCoord, top, mXCoord + mLength, bottom);
+        mPrevRect.set(prevLeft, top, prevLeft + mLength, bottom);
+    }
+
+    /**
+     * Below method controls moving operations for the bat by changing the x coordinate locations of it.
+     * Coordinates are changed based off the mBatMoving instance variable that is set through:
+     * @see Bat#SetMovementState(int) 
+     * @see PongSimulation#setBatMovement(int)
+     * @param fps Simulation steps per second, important in designating how many pixels need to be moved per step based off bat speed.
+     */
+    public void update(long fps) {
+        if (mBatMoving == LEFT) {
+            mXCoord = mXCoord - (mBatSpeed / fps);
+        }
+
+        if (mBatMoving == RIGHT) {
+            mXCoord = mXCoord + (mBatSpeed / fps);
+        }
+
+        if (mXCoord < 0) {
+            mXCoord = 0;
+        }
+
+        else if (mXCoord + mLength > mScreenX) {
+            mXCoord = mScreenX - mLength;
+        }
+
+        mRect.left = mXCoord;
+        mRect.right = mXCoord + mLength;
+    }
+}
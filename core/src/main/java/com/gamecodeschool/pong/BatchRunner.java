@@ -0,0 +1,110 @@
+package com.gamecodeschool.pong;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Plays many independent headless games at once on a ForkJoinPool, e.g. to see how a change to the Tuning constants
+ * affects rally lengths. Game i is played with seed firstSeed + i by a SeededPlayer, so a batch gives the same results
+ * however many threads run it.
+ *
+ * Every game gets its own PongSimulation, player and GameStats and writes only its own slot of the results array, so
+ * the threads share nothing mutable and throughput grows with the number of cores.
+ */
+public class BatchRunner {
+
+    // Games per fork/join leaf, enough to outweigh the cost of forking a task.
+    private static final int GAMES_PER_TASK = 4;
+    // Aiming error of the computer player, see SeededPlayer.
+    private static final float PLAYER_ERROR = 0.75f;
+
+    private final ForkJoinPool mPool;
+    private final int mScreenX;
+    private final int mScreenY;
+    private final Tuning mTuning;
+    private final long mMaxTicks;
+
+    /**
+     * Parametrized constructor below.
+     * @param pool pool to run the games on, its parallelism sets how many run at once.
+     * @param screenX width of the playing area.
+     * @param screenY height of the playing area.
+     * @param tuning difficulty constants for every game in the batch.
+     * @param maxTicks a game still running after this many steps is stopped.
+     */
+    public BatchRunner(ForkJoinPool pool, int screenX, int screenY, Tuning tuning, long maxTicks) {
+        mPool = pool;
+        mScreenX = screenX;
+        mScreenY = screenY;
+        mTuning = tuning;
+        mMaxTicks = maxTicks;
+    }
+
+    /**
+     * Plays a batch of games and waits for all of them to finish.
+     * @param firstSeed seed of the first game, the others count up from it.
+     * @param games number of games to play.
+     * @return stats of every game, index i is the game played with seed firstSeed + i.
+     */
+    public GameStats[] run(long firstSeed, int games) {
+        GameStats[] results = new GameStats[games];
+        mPool.invoke(new Games(this, results, firstSeed, 0, games));
+        return results;
+    }
+
+    /**
+     * Plays one game until the player loses every life or maxTicks steps have run.
+     * @param seed seed for the simulation and the player.
+     * @return what happened.
+     */
+    public GameStats play(long seed) {
+        PongSimulation simulation = new PongSimulation(mScreenX, mScreenY, mTuning, seed);
+        GameStats stats = new GameStats(seed);
+        simulation.setInputSource(new SeededPlayer(seed, PLAYER_ERROR));
+        simulation.setEvents(stats);
+
+        long ticks = 0;
+
+        while (!stats.isGameOver() && ticks < mMaxTicks) {
+            simulation.step();
+            ticks++;
+        }
+
+        stats.finish(ticks);
+        return stats;
+    }
+
+    /** Splits a range of games in half until it is small enough to play on one thread. */
+    private static class Games extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BatchRunner mRunner;
+        private final GameStats[] mResults;
+        private final long mFirstSeed;
+        private final int mFrom;
+        private final int mTo;
+
+        Games(BatchRunner runner, GameStats[] results, long firstSeed, int from, int to) {
+            mRunner = runner;
+            mResults = results;
+            mFirstSeed = firstSeed;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom <= GAMES_PER_TASK) {
+                for (int i = mFrom; i < mTo; i++) {
+                    mResults[i] = mRunner.play(mFirstSeed + i);
+                }
+
+                return;
+            }
+
+            int middle = (mFrom + mTo) >>> 1;
+            invokeAll(new Games(mRunner, mResults, mFirstSeed, mFrom, middle),
+                    new Games(mRunner, mResults, mFirstSeed, middle, mTo));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.gamecodeschool.pong;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands visual effects (a bounce worth some sparks) from exactly one producer thread to exactly one consumer thread
+ * without locks: in the app the simulation thread offers one from its GameEvents callbacks and the render thread
+ * drains them before moving the particles, so no bounce is missed whichever snapshots the render thread skips.
+ *
+ * Works like InputEventRing (parallel primitive arrays, a head counter written only by the consumer and a tail
+ * counter written only by the producer, both published with lazySet), but carries what an effect needs rather than a
+ * touch. If the render thread falls so far behind that the ring fills up, new effects are dropped and counted.
+ * @see InputEventRing
+ */
+public class EffectRing {
+
+    /** The ball hit a bat, the player scored. */
+    public static final int BAT = 0;
+    /** The ball hit an obstacle. */
+    public static final int OBSTACLE = 1;
+    /** The ball bounced off a wall. */
+    public static final int WALL = 2;
+
+    /** Receives drained effects, one call per effect in the order they were offered. */
+    public interface Sink {
+        /**
+         * @param type BAT, OBSTACLE or WALL.
+         * @param x where it happened, horizontally.
+         * @param y where it happened, vertically.
+         */
+        void onEffect(int type, float x, float y);
+    }
+
+    private final int mMask;
+    private final int[] mType;
+    private final float[] mX;
+    private final float[] mY;
+    // Next slot the consumer reads, only written by the consumer.
+    private final AtomicLong mHead = new AtomicLong();
+    // Next slot the producer writes, only written by the producer.
+    private final AtomicLong mTail = new AtomicLong();
+    // Producer's last look at mHead, saves reading the consumer's counter on every offer.
+    private long mCachedHead;
+    private final AtomicLong mDropped = new AtomicLong();
+
+    /**
+     * Parametrized constructor below.
+     * @param capacity most effects held at once, rounded up to a power of two.
+     */
+    public EffectRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mMask = size - 1;
+        mType = new int[size];
+        mX = new float[size];
+        mY = new float[size];
+    }
+
+    /**
+     * Producer side: adds an effect. Never blocks.
+     * @return false if the ring was full and the effect was dropped.
+     * @see Sink#onEffect(int, float, float)
+     */
+    public boolean offer(int type, float x, float y) {
+        long tail = mTail.get();
+
+        if (tail - mCachedHead > mMask) {
+            mCachedHead = mHead.get();
+
+            if (tail - mCachedHead > mMask) {
+                mDropped.lazySet(mDropped.get() + 1);
+                return false;
+            }
+        }
+
+        int slot = (int) tail & mMask;
+        mType[slot] = type;
+        mX[slot] = x;
+        mY[slot] = y;
+
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side: passes every effect offered so far to sink, oldest first. Never blocks.
+     * @param sink receives the effects.
+     * @return number of effects drained.
+     */
+    public int drain(Sink sink) {
+        long head = mHead.get();
+        long tail = mTail.get();
+
+        for (long i = head; i < tail; i++) {
+            int slot = (int) i & mMask;
+            sink.onEffect(mType[slot], mX[slot], mY[slot]);
+        }
+
+        mHead.lazySet(tail);
+        return (int) (tail - head);
+    }
+
+    /** @return number of effects the ring can hold. */
+    public int capacity() {
+        return mMask + 1;
+    }
+
+    /** @return number of effects dropped so far because the ring was full. */
+    public long getDropped() {
+        return mDropped.get();
+    }
+}
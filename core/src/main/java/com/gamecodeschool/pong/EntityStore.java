@@ -0,0 +1,205 @@
+package com.gamecodeschool.pong;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Holds the position, size and velocity of many objects of one kind (all the balls, or all the obstacles) in parallel
+ * float arrays, one array per property, instead of one Java object per ball with its own fields and Aabb. Walking one
+ * array from start to end reads memory in order, which is much kinder to the CPU cache than hopping between objects
+ * scattered around the heap, and it is what the batch loops in PongSimulation do every step.
+ * @see PongSimulation#update()
+ * @see PongSimulation#detectCollisions()
+ *
+ * Ball and Obstacle are thin views onto one slot of a store, so code using getRect()/getObstacle() keeps working.
+ *
+ * Fields are package-private arrays on purpose, the simulation's loops index them directly. Only the first size()
+ * entries are in use.
+ */
+public class EntityStore {
+    // Top-left corner.
+    float[] x;
+    float[] y;
+    // Width and height.
+    float[] w;
+    float[] h;
+    // Velocity in pixels per second.
+    float[] vx;
+    float[] vy;
+    // Top-left corner at the start of the current step, for interpolated drawing and swept collisions.
+    float[] prevX;
+    float[] prevY;
+    private int mSize;
+
+    /**
+     * Parametrized constructor below.
+     * @param capacity number of objects to make room for up front, the arrays grow if more are added.
+     */
+    public EntityStore(int capacity) {
+        int c = Math.max(1, capacity);
+        x = new float[c];
+        y = new float[c];
+        w = new float[c];
+        h = new float[c];
+        vx = new float[c];
+        vy = new float[c];
+        prevX = new float[c];
+        prevY = new float[c];
+    }
+
+    /** @return number of objects in the store. */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Adds an object of the given size at (0, 0), standing still.
+     * @param width width of the object.
+     * @param height height of the object.
+     * @return index of the new object.
+     */
+    public int add(float width, float height) {
+        if (mSize == x.length) {
+            int c = mSize * 2;
+            x = Arrays.copyOf(x, c);
+            y = Arrays.copyOf(y, c);
+            w = Arrays.copyOf(w, c);
+            h = Arrays.copyOf(h, c);
+            vx = Arrays.copyOf(vx, c);
+            vy = Arrays.copyOf(vy, c);
+            prevX = Arrays.copyOf(prevX, c);
+            prevY = Arrays.copyOf(prevY, c);
+        }
+
+        int i = mSize++;
+        x[i] = 0;
+        y[i] = 0;
+        w[i] = width;
+        h[i] = height;
+        vx[i] = 0;
+        vy[i] = 0;
+        prevX[i] = 0;
+        prevY[i] = 0;
+
+        return i;
+    }
+
+    /**
+     * Makes this store an exact copy of another one (growing the arrays if needed).
+     * @param other the store to copy.
+     */
+    public void copyFrom(EntityStore other) {
+        int size = other.mSize;
+        makeRoom(size);
+
+        System.arraycopy(other.x, 0, x, 0, size);
+        System.arraycopy(other.y, 0, y, 0, size);
+        System.arraycopy(other.w, 0, w, 0, size);
+        System.arraycopy(other.h, 0, h, 0, size);
+        System.arraycopy(other.vx, 0, vx, 0, size);
+        System.arraycopy(other.vy, 0, vy, 0, size);
+        System.arraycopy(other.prevX, 0, prevX, 0, size);
+        System.arraycopy(other.prevY, 0, prevY, 0, size);
+        mSize = size;
+    }
+
+    /**
+     * Writes every object's numbers to out, as the object count followed by each array in turn. Bulk float copies, so
+     * even thousands of objects take a few microseconds.
+     * @param out buffer with at least getStateBytes() bytes remaining.
+     */
+    public void writeTo(ByteBuffer out) {
+        int size = mSize;
+        out.putInt(size);
+
+        for (float[] array : new float[][] {x, y, w, h, vx, vy, prevX, prevY}) {
+            out.asFloatBuffer().put(array, 0, size);
+            out.position(out.position() + size * 4);
+        }
+    }
+
+    /**
+     * Replaces the contents of this store with objects written by writeTo(ByteBuffer).
+     * @param in buffer positioned at the start of the store's data.
+     * @throws java.nio.BufferUnderflowException if in ends before the store's data does.
+     */
+    public void readFrom(ByteBuffer in) {
+        int size = in.getInt();
+
+        if (size < 0 || in.remaining() < size * 4L * 8) {
+            throw new BufferUnderflowException();
+        }
+
+        makeRoom(size);
+
+        for (float[] array : new float[][] {x, y, w, h, vx, vy, prevX, prevY}) {
+            in.asFloatBuffer().get(array, 0, size);
+            in.position(in.position() + size * 4);
+        }
+
+        mSize = size;
+    }
+
+    /**
+     * @param size number of objects.
+     * @return bytes writeTo(ByteBuffer) takes for that many objects.
+     */
+    public static int getStateBytes(int size) {
+        return 4 + size * 4 * 8;
+    }
+
+    /** Makes sure the arrays hold at least size objects. Existing contents are not kept. */
+    private void makeRoom(int size) {
+        if (x.length < size) {
+            int c = Math.max(size, x.length * 2);
+            x = new float[c];
+            y = new float[c];
+            w = new float[c];
+            h = new float[c];
+            vx = new float[c];
+            vy = new float[c];
+            prevX = new float[c];
+            prevY = new float[c];
+        }
+    }
+
+    /**
+     * Drops every object from index size onwards.
+     * @param size number of objects to keep.
+     */
+    public void truncate(int size) {
+        mSize = Math.min(mSize, size);
+    }
+
+    /** Batch kernel: remembers every object's position as its position at the start of the step. */
+    public void savePreviousPositions() {
+        System.arraycopy(x, 0, prevX, 0, mSize);
+        System.arraycopy(y, 0, prevY, 0, mSize);
+    }
+
+    /**
+     * Copies one object's current bounds into out.
+     * @param index which object.
+     * @param out box to write into.
+     */
+    public void getBounds(int index, Aabb out) {
+        out.left = x[index];
+        out.top = y[index];
+        out.right = x[index] + w[index];
+        out.bottom = y[index] + h[index];
+    }
+
+    /**
+     * Writes one object's position part way between the previous and current step into out.
+     * @param index which object.
+     * @param alpha 0 gives the previous position, 1 the current position.
+     * @param out box to write into.
+     */
+    public void interpolate(int index, float alpha, Aabb out) {
+        out.left = prevX[index] + (x[index] - prevX[index]) * alpha;
+        out.top = prevY[index] + (y[index] - prevY[index]) * alpha;
+        out.right = out.left + w[index];
+        out.bottom = out.top + h[index];
+    }
+}
@@ -0,0 +1,144 @@
+package com.gamecodeschool.pong;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Counts frame times in fixed 0.25 ms buckets up to 100 ms, with one last bucket for everything slower. Unlike the
+ * FrameProfiler's rings it keeps every frame of a session in a fixed amount of memory, and histograms from any number
+ * of sessions and devices can be added together to get fleet wide percentiles.
+ * @see TelemetryBatch
+ * @see TelemetryReport
+ */
+public class FrameHistogram {
+
+    /** Width of one bucket, in nanoseconds. */
+    public static final long BUCKET_NANOS = 250000L;
+    /** Number of regular buckets, frames of BUCKETS * BUCKET_NANOS or more all go in the overflow bucket. */
+    public static final int BUCKETS = 400;
+
+    private final long[] mCounts = new long[BUCKETS + 1];
+    private long mTotal;
+
+    /**
+     * Counts one frame.
+     * @param nanos how long the frame took.
+     */
+    public void record(long nanos) {
+        mCounts[(int) Math.max(0, Math.min(BUCKETS, nanos / BUCKET_NANOS))]++;
+        mTotal++;
+    }
+
+    /**
+     * Adds every frame counted by another histogram to this one.
+     * @param other the histogram to merge in, left unchanged.
+     */
+    public void add(FrameHistogram other) {
+        for (int i = 0; i <= BUCKETS; i++) {
+            mCounts[i] += other.mCounts[i];
+        }
+
+        mTotal += other.mTotal;
+    }
+
+    /** Forgets every frame counted. */
+    public void clear() {
+        for (int i = 0; i <= BUCKETS; i++) {
+            mCounts[i] = 0;
+        }
+
+        mTotal = 0;
+    }
+
+    /** @return number of frames counted. */
+    public long getCount() {
+        return mTotal;
+    }
+
+    /**
+     * @param percent 0 to 100.
+     * @return upper edge of the bucket holding that percentile, in nanoseconds, 0 when empty. Frames in the overflow
+     * bucket report BUCKETS * BUCKET_NANOS, read it as "at least".
+     */
+    public long percentile(double percent) {
+        if (mTotal == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(mTotal * percent / 100));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts[i];
+
+            if (seen >= rank) {
+                return (i + 1) * BUCKET_NANOS;
+            }
+        }
+
+        return BUCKETS * BUCKET_NANOS;
+    }
+
+    /**
+     * @param nanos a frame time.
+     * @return number of frames in buckets that lie wholly above it, e.g. the janky frames for a budget.
+     */
+    public long countAbove(long nanos) {
+        long count = 0;
+
+        for (int i = (int) Math.min(BUCKETS + 1, nanos / BUCKET_NANOS + 1); i <= BUCKETS; i++) {
+            count += mCounts[i];
+        }
+
+        return count;
+    }
+
+    /**
+     * Writes only the buckets in use, as index and count pairs. A session's frames sit in a handful of buckets, so this
+     * is a few dozen bytes.
+     * @param out where to write.
+     * @throws IOException if the write fails.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        int used = 0;
+
+        for (long count : mCounts) {
+            if (count != 0) {
+                used++;
+            }
+        }
+
+        out.writeShort(used);
+
+        for (int i = 0; i <= BUCKETS; i++) {
+            if (mCounts[i] != 0) {
+                out.writeShort(i);
+                out.writeLong(mCounts[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a histogram written by writeTo(DataOutput), replacing what this one held.
+     * @param in where to read from.
+     * @throws IOException if the read fails or a bucket index is out of range.
+     */
+    public void readFrom(DataInput in) throws IOException {
+        clear();
+
+        int used = in.readUnsignedShort();
+
+        for (int i = 0; i < used; i++) {
+            int bucket = in.readUnsignedShort();
+
+            if (bucket > BUCKETS) {
+                throw new IOException("Bad histogram bucket " + bucket);
+            }
+
+            long count = in.readLong();
+            mCounts[bucket] += count;
+            mTotal += count;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.gamecodeschool.pong;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent timings of each phase of the game loop, in nanoseconds, and works out percentiles and jank
+ * counts from them for the performance HUD. Every phase has a fixed size ring of samples allocated up front, so
+ * recording a sample is a couple of array writes and nothing is allocated while profiling, and nothing at all is done
+ * while the profiler is switched off (callers check isEnabled() before reading the clock).
+ *
+ * The phases are the simulation's (INPUT, UPDATE and COLLISION, per step, measured on the simulation thread by
+ * PongSimulation and passed over in each Snapshot) and the render thread's (LOCK, DRAW, POST), plus FRAME, the time
+ * from one frame to the next. A frame counts as janky when it took more than one and a half frame budgets, i.e. it
+ * missed at least one display refresh.
+ *
+ * Only to be used from one thread (the render thread).
+ * @see PongSimulation#setProfiling(boolean)
+ */
+public class FrameProfiler {
+
+    /** Applying the input of a simulation step. */
+    public static final int INPUT = 0;
+    /** Moving the bat and obstacles in a simulation step. */
+    public static final int UPDATE = 1;
+    /** Broadphase and swept ball movement in a simulation step. */
+    public static final int COLLISION = 2;
+    /** Getting a canvas to draw on. */
+    public static final int LOCK = 3;
+    /** Issuing the draw calls. */
+    public static final int DRAW = 4;
+    /** Handing the frame to the compositor. */
+    public static final int POST = 5;
+    /** Time from the start of one frame to the start of the next. */
+    public static final int FRAME = 6;
+    /** Number of phases. */
+    public static final int PHASE_COUNT = 7;
+
+    private static final String[] PHASE_NAMES = {"input", "update", "collision", "lock", "draw", "post", "frame"};
+
+    private volatile boolean mEnabled;
+    private final int mCapacity;
+    private final long mFrameBudgetNanos;
+    // One ring of samples per phase, mCount[phase] samples written so far in total.
+    private final long[][] mSamples;
+    private final long[] mCount = new long[PHASE_COUNT];
+    // Percentiles worked out by updateStats(), [phase][0 = p50, 1 = p95, 2 = p99].
+    private final long[][] mPercentiles = new long[PHASE_COUNT][3];
+    private final long[] mSorted;
+    private long mFrames;
+    private long mJankFrames;
+
+    /**
+     * Parametrized constructor below.
+     * @param capacity samples kept per phase.
+     * @param frameBudgetNanos time between two display refreshes, frames longer than 1.5 of these are janky.
+     */
+    public FrameProfiler(int capacity, long frameBudgetNanos) {
+        mCapacity = capacity;
+        mFrameBudgetNanos = frameBudgetNanos;
+        mSamples = new long[PHASE_COUNT][capacity];
+        mSorted = new long[capacity];
+    }
+
+    /** @return whether timings should be taken at all. Safe to call from any thread. */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Switches profiling on or off, from any thread.
+     * @param enabled true to profile.
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /** Forgets every sample and the jank count. */
+    public void reset() {
+        Arrays.fill(mCount, 0);
+
+        for (long[] percentiles : mPercentiles) {
+            Arrays.fill(percentiles, 0);
+        }
+
+        mFrames = 0;
+        mJankFrames = 0;
+    }
+
+    /**
+     * Adds one timing of a phase, pushing out the oldest once the ring is full.
+     * @param phase one of the phase constants.
+     * @param nanos how long the phase took.
+     */
+    public void record(int phase, long nanos) {
+        mSamples[phase][(int) (mCount[phase] % mCapacity)] = nanos;
+        mCount[phase]++;
+
+        if (phase == FRAME) {
+            mFrames++;
+
+            if (nanos * 2 > mFrameBudgetNanos * 3) {
+                mJankFrames++;
+            }
+        }
+    }
+
+    /** @return number of samples of a phase held, at most the capacity. */
+    public int getSampleCount(int phase) {
+        return (int) Math.min(mCount[phase], mCapacity);
+    }
+
+    /**
+     * @param phase one of the phase constants.
+     * @param age 0 for the newest sample, up to getSampleCount(phase) - 1 for the oldest.
+     * @return the sample, in nanoseconds.
+     */
+    public long getSample(int phase, int age) {
+        return mSamples[phase][(int) ((mCount[phase] - 1 - age) % mCapacity)];
+    }
+
+    /**
+     * Works out the percentiles of every phase from the samples held. Sorts a copy of each ring, so call it every so
+     * often (a few times a second) rather than every frame.
+     */
+    public void updateStats() {
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            int count = getSampleCount(phase);
+
+            if (count == 0) {
+                continue;
+            }
+
+            System.arraycopy(mSamples[phase], 0, mSorted, 0, count);
+            Arrays.sort(mSorted, 0, count);
+            mPercentiles[phase][0] = mSorted[rank(count, 50)];
+            mPercentiles[phase][1] = mSorted[rank(count, 95)];
+            mPercentiles[phase][2] = mSorted[rank(count, 99)];
+        }
+    }
+
+    // Nearest rank percentile.
+    private static int rank(int count, int percent) {
+        return Math.max(0, (count * percent + 99) / 100 - 1);
+    }
+
+    /** @return median of a phase as of the last updateStats(), in nanoseconds. */
+    public long getP50(int phase) {
+        return mPercentiles[phase][0];
+    }
+
+    /** @return 95th percentile of a phase as of the last updateStats(), in nanoseconds. */
+    public long getP95(int phase) {
+        return mPercentiles[phase][1];
+    }
+
+    /** @return 99th percentile of a phase as of the last updateStats(), in nanoseconds. */
+    public long getP99(int phase) {
+        return mPercentiles[phase][2];
+    }
+
+    /** @return frames recorded since the last reset. */
+    public long getFrames() {
+        return mFrames;
+    }
+
+    /** @return frames that missed at least one display refresh since the last reset. */
+    public long getJankFrames() {
+        return mJankFrames;
+    }
+
+    /** @return the frame budget given to the constructor, in nanoseconds. */
+    public long getFrameBudgetNanos() {
+        return mFrameBudgetNanos;
+    }
+
+    /**
+     * @param phase one of the phase constants.
+     * @return short lower case name of the phase, for display.
+     */
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+}
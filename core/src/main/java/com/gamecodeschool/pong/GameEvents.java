@@ -0,0 +1,70 @@
+package com.gamecodeschool.pong;
+
+/**
+ * Receives the things that happen during a simulation step which the outside world may want to react to, such as
+ * playing a sound or updating statistics. Called from:
+ * @see PongSimulation#step()
+ *
+ * Every method has an empty default, so listeners only override what they care about. Methods are called on the
+ * thread running the simulation, so they should return quickly.
+ */
+public interface GameEvents {
+
+    /**
+     * A ball bounced off something (or reached the bottom), called just before the call saying what it hit, e.g. to
+     * put a visual effect where it happened.
+     * @param x horizontal centre of the ball at the bounce.
+     * @param y vertical centre of the ball at the bounce.
+     */
+    default void onBounce(float x, float y) {
+    }
+
+    /**
+     * The ball bounced off the player's bat.
+     * @param score the player's score after the point was added.
+     */
+    default void onBatHit(int score) {
+    }
+
+    /**
+     * The ball bounced off the second player's bat in a versus game.
+     * @param score the second player's score after the point was added.
+     * @see PongSimulation#startVersus()
+     */
+    default void onOpponentBatHit(int score) {
+    }
+
+    /** The ball bounced off one of the obstacles. */
+    default void onObstacleHit() {
+    }
+
+    /** The ball bounced off the top of the screen (not in a versus game, the top is the second player's). */
+    default void onTopWallBounce() {
+    }
+
+    /** The ball bounced off the left or right side of the screen. */
+    default void onSideWallBounce() {
+    }
+
+    /**
+     * The ball reached the bottom of the screen and the player lost a life.
+     * @param livesLeft lives remaining after the miss.
+     */
+    default void onMiss(int livesLeft) {
+    }
+
+    /**
+     * The ball got past the second player's bat in a versus game, who lost a life.
+     * @param livesLeft the second player's lives remaining after the miss.
+     */
+    default void onOpponentMiss(int livesLeft) {
+    }
+
+    /**
+     * The player (or in a versus game either player) ran out of lives. A new game is started and paused straight after
+     * this call.
+     * @param finalScore score reached in the game that just ended.
+     */
+    default void onGameOver(int finalScore) {
+    }
+}
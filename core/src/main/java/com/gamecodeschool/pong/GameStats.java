@@ -0,0 +1,108 @@
+package com.gamecodeschool.pong;
+
+/**
+ * What happened during one headless game, filled in from the simulation's events while the game runs. A rally is the
+ * run of bat hits between two misses (or between the start and the first miss).
+ * @see BatchRunner
+ */
+public final class GameStats implements GameEvents {
+
+    private final long mSeed;
+    private int mScore;
+    private int mLivesLost;
+    private int mRallies;
+    private int mLongestRally;
+    private int mCurrentRally;
+    private long mTicks;
+    private boolean mGameOver;
+
+    /**
+     * Parametrized constructor below.
+     * @param seed seed the game was played with, kept so an interesting game can be replayed.
+     */
+    public GameStats(long seed) {
+        mSeed = seed;
+    }
+
+    @Override
+    public void onBatHit(int score) {
+        mScore = score;
+        mCurrentRally++;
+    }
+
+    @Override
+    public void onMiss(int livesLeft) {
+        mLivesLost++;
+        endRally();
+    }
+
+    @Override
+    public void onGameOver(int finalScore) {
+        mScore = finalScore;
+        mGameOver = true;
+    }
+
+    /**
+     * Called by the runner once the game is over or ran out of time. A rally still going counts as well.
+     * @param ticks number of simulation steps the game took.
+     */
+    void finish(long ticks) {
+        mTicks = ticks;
+
+        if (mCurrentRally > 0) {
+            endRally();
+        }
+    }
+
+    private void endRally() {
+        mRallies++;
+        mLongestRally = Math.max(mLongestRally, mCurrentRally);
+        mCurrentRally = 0;
+    }
+
+    /** @return seed the game was played with. */
+    public long getSeed() {
+        return mSeed;
+    }
+
+    /** @return score at the end of the game (number of bat hits). */
+    public int getScore() {
+        return mScore;
+    }
+
+    /** @return number of misses. */
+    public int getLivesLost() {
+        return mLivesLost;
+    }
+
+    /** @return number of rallies played. */
+    public int getRallies() {
+        return mRallies;
+    }
+
+    /** @return most bat hits in one rally. */
+    public int getLongestRally() {
+        return mLongestRally;
+    }
+
+    /** @return average bat hits per rally, 0 if no rally was played. */
+    public float getMeanRally() {
+        return mRallies == 0 ? 0 : (float) mScore / mRallies;
+    }
+
+    /** @return number of simulation steps the game took. */
+    public long getTicks() {
+        return mTicks;
+    }
+
+    /** @return true if the game ended by losing every life, false if it ran out of time first. */
+    public boolean isGameOver() {
+        return mGameOver;
+    }
+
+    @Override
+    public String toString() {
+        return "seed=" + mSeed + " score=" + mScore + " livesLost=" + mLivesLost + " rallies=" + mRallies
+                + " longestRally=" + mLongestRally + " ticks=" + mTicks + (mGameOver ? "" : " (timed out)");
+    }
+}
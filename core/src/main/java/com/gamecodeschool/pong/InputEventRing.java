@@ -0,0 +1,119 @@
+package com.gamecodeschool.pong;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands timestamped input events (touches) from exactly one producer thread to exactly one consumer thread without
+ * locks: on a device the UI thread offers events from onTouchEvent and the game thread drains them at the start of
+ * each simulation step. Every event reaches the game thread in order, however many arrive between two steps.
+ *
+ * A fixed size ring of parallel primitive arrays, so nothing is allocated per event. The producer only writes the
+ * tail counter and the consumer only writes the head counter. Each publishes with lazySet (a release store) after
+ * writing or reading the slots, which is enough for the other side to see the slot contents without a full fence.
+ * If the game thread falls so far behind that the ring fills up, new events are dropped and counted.
+ */
+public class InputEventRing {
+
+    /** A finger went down. */
+    public static final int DOWN = 0;
+    /** A finger was lifted. */
+    public static final int UP = 1;
+    /** The gesture was cancelled, every finger counts as lifted. */
+    public static final int CANCEL = 2;
+
+    /** Receives drained events, one call per event in the order they were offered. */
+    public interface Sink {
+        /**
+         * @param timeNanos when the event happened, System.nanoTime() time base.
+         * @param type DOWN, UP or CANCEL.
+         * @param pointerId id of the finger, stays the same while it is down.
+         * @param x horizontal position of the finger.
+         * @param y vertical position of the finger.
+         */
+        void onInputEvent(long timeNanos, int type, int pointerId, float x, float y);
+    }
+
+    private final int mMask;
+    private final long[] mTime;
+    private final int[] mType;
+    private final int[] mPointerId;
+    private final float[] mX;
+    private final float[] mY;
+    // Next slot the consumer reads, only written by the consumer.
+    private final AtomicLong mHead = new AtomicLong();
+    // Next slot the producer writes, only written by the producer.
+    private final AtomicLong mTail = new AtomicLong();
+    // Producer's last look at mHead, saves reading the consumer's counter on every offer.
+    private long mCachedHead;
+    private final AtomicLong mDropped = new AtomicLong();
+
+    /**
+     * Parametrized constructor below.
+     * @param capacity most events held at once, rounded up to a power of two.
+     */
+    public InputEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mMask = size - 1;
+        mTime = new long[size];
+        mType = new int[size];
+        mPointerId = new int[size];
+        mX = new float[size];
+        mY = new float[size];
+    }
+
+    /**
+     * Producer side: adds an event. Never blocks.
+     * @return false if the ring was full and the event was dropped.
+     * @see Sink#onInputEvent(long, int, int, float, float)
+     */
+    public boolean offer(long timeNanos, int type, int pointerId, float x, float y) {
+        long tail = mTail.get();
+
+        if (tail - mCachedHead > mMask) {
+            mCachedHead = mHead.get();
+
+            if (tail - mCachedHead > mMask) {
+                mDropped.lazySet(mDropped.get() + 1);
+                return false;
+            }
+        }
+
+        int slot = (int) tail & mMask;
+        mTime[slot] = timeNanos;
+        mType[slot] = type;
+        mPointerId[slot] = pointerId;
+        mX[slot] = x;
+        mY[slot] = y;
+
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side: passes every event offered so far to sink, oldest first. Never blocks.
+     * @param sink receives the events.
+     * @return number of events drained.
+     */
+    public int drain(Sink sink) {
+        long head = mHead.get();
+        long tail = mTail.get();
+
+        for (long i = head; i < tail; i++) {
+            int slot = (int) i & mMask;
+            sink.onInputEvent(mTime[slot], mType[slot], mPointerId[slot], mX[slot], mY[slot]);
+        }
+
+        mHead.lazySet(tail);
+        return (int) (tail - head);
+    }
+
+    /** @return number of events the ring can hold. */
+    public int capacity() {
+        return mMask + 1;
+    }
+
+    /** @return number of events dropped so far because the ring was full. */
+    public long getDropped() {
+        return mDropped.get();
+    }
+}
@@ -0,0 +1,298 @@
+package com.gamecodeschool.pong;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A compact recording of every command given to one simulation, enough to play the whole session again bit for bit.
+ * The simulation itself is deterministic (fixed time step, seeded randomness), so all that needs storing is which
+ * command arrived at which tick. Recorded by:
+ * @see PongSimulation#startRecording()
+ * and played back by:
+ * @see InputReplay
+ *
+ * Commands are kept in memory as they arrive (a few bytes each, only when something changes, e.g. the bat starting or
+ * stopping) and written out in one go with writeTo(). The file format is:
+ *  header: magic "PNGR", version byte, screen width and height (int), seed (long), Tuning (float, int, int).
+ *  events: tick since the previous event (varint), command byte, argument (varint) for commands that take one.
+ *  end: an END event at the session's last tick, followed by the simulation's checksum() (long) at that point and
+ *  whether the log was truncated (boolean).
+ */
+public final class InputLog {
+
+    static final int CMD_BAT = 0;
+    static final int CMD_UNPAUSE = 1;
+    static final int CMD_NEW_GAME = 2;
+    static final int CMD_STRESS_TEST = 3;
+    static final int CMD_TICK_RATE = 4;
+    static final int CMD_END = 5;
+
+    private static final int MAGIC = 0x504E4752;
+    private static final int VERSION = 1;
+    // Stops a runaway session using unbounded memory, about an hour of very busy play.
+    private static final int MAX_EVENT_BYTES = 1 << 20;
+
+    private final int mScreenX;
+    private final int mScreenY;
+    private final long mSeed;
+    private final Tuning mTuning;
+    private byte[] mEvents = new byte[256];
+    private int mEventBytes;
+    private long mLastEventTick;
+    private long mLength;
+    private long mChecksum;
+    private boolean mTruncated;
+
+    /**
+     * Parametrized constructor below. Takes the same values the recorded simulation was created with.
+     * @see PongSimulation#PongSimulation(int, int, Tuning, long)
+     */
+    public InputLog(int screenX, int screenY, Tuning tuning, long seed) {
+        mScreenX = screenX;
+        mScreenY = screenY;
+        mTuning = tuning;
+        mSeed = seed;
+    }
+
+    /**
+     * Appends one command, called by the simulation while recording. Commands must arrive in tick order.
+     * @param tick tick the command was given at.
+     * @param command one of the CMD_ constants.
+     * @param argument the command's argument, ignored by commands without one.
+     */
+    void record(long tick, int command, int argument) {
+        if (mTruncated) {
+            return;
+        }
+
+        // Worst case: two 10 byte varints and the command byte.
+        if (mEventBytes + 21 > MAX_EVENT_BYTES) {
+            mTruncated = true;
+            return;
+        }
+
+        if (mEventBytes + 21 > mEvents.length) {
+            mEvents = Arrays.copyOf(mEvents, Math.min(MAX_EVENT_BYTES, mEvents.length * 2));
+        }
+
+        putVarLong(tick - mLastEventTick);
+        mEvents[mEventBytes++] = (byte) command;
+
+        if (hasArgument(command)) {
+            putVarLong(argument);
+        }
+
+        mLastEventTick = tick;
+    }
+
+    /**
+     * Marks where the session ends, called by the simulation after every recorded step.
+     * @param ticks number of steps run so far.
+     * @param checksum the simulation's checksum() after those steps.
+     */
+    void setEnd(long ticks, long checksum) {
+        mLength = ticks;
+        mChecksum = checksum;
+    }
+
+    /** @return number of steps in the session. */
+    public long getLength() {
+        return mLength;
+    }
+
+    /** @return the simulation's checksum at the end of the session, a replay must end with the same value. */
+    public long getChecksum() {
+        return mChecksum;
+    }
+
+    /** @return true if recording stopped early because the log was full, a replay then drifts after that point. */
+    public boolean isTruncated() {
+        return mTruncated;
+    }
+
+    /** @return number of bytes writeTo() writes. */
+    public int size() {
+        // Header (4 + 1 + 4 + 4 + 8 + 4 + 4 + 4), events, then the END event, checksum and truncated flag.
+        return 33 + mEventBytes + varLongSize(mLength - mLastEventTick) + 1 + 8 + 1;
+    }
+
+    /**
+     * Creates a fresh simulation set up exactly like the one that was recorded, ready for an InputReplay.
+     * @return the new simulation, with no input source set.
+     */
+    public PongSimulation createSimulation() {
+        return new PongSimulation(mScreenX, mScreenY, mTuning, mSeed);
+    }
+
+    /**
+     * Writes the whole log in the binary format described above.
+     * @param out stream to write to, not closed.
+     * @throws IOException if the stream fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(mScreenX);
+        data.writeInt(mScreenY);
+        data.writeLong(mSeed);
+        data.writeFloat(mTuning.ballSpeedUp);
+        data.writeInt(mTuning.obstacleSpeedDivisor);
+        data.writeInt(mTuning.batLengthDivisor);
+        data.write(mEvents, 0, mEventBytes);
+
+        byte[] end = new byte[10];
+        int endBytes = putVarLong(end, 0, mLength - mLastEventTick);
+        data.write(end, 0, endBytes);
+        data.writeByte(CMD_END);
+        data.writeLong(mChecksum);
+        data.writeBoolean(mTruncated);
+        data.flush();
+    }
+
+    /**
+     * Reads a log written by writeTo().
+     * @param in stream to read from, not closed.
+     * @return the log.
+     * @throws IOException if the stream fails or does not hold a valid log.
+     */
+    public static InputLog readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not an input log");
+        }
+
+        int version = data.readUnsignedByte();
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported input log version " + version);
+        }
+
+        int screenX = data.readInt();
+        int screenY = data.readInt();
+        long seed = data.readLong();
+        Tuning tuning = new Tuning(data.readFloat(), data.readInt(), data.readInt());
+        InputLog log = new InputLog(screenX, screenY, tuning, seed);
+
+        long tick = 0;
+
+        while (true) {
+            tick += readVarLong(data);
+            int command = data.readUnsignedByte();
+
+            if (command == CMD_END) {
+                log.setEnd(tick, data.readLong());
+                log.mTruncated = data.readBoolean();
+                return log;
+            }
+
+            if (command > CMD_END) {
+                throw new IOException("Unknown command " + command + " at tick " + tick);
+            }
+
+            int argument = hasArgument(command) ? (int) readVarLong(data) : 0;
+            log.record(tick, command, argument);
+        }
+    }
+
+    /** Walks the recorded events in order, used by InputReplay. */
+    final class Cursor {
+        private int mPosition;
+        private long mTick;
+        private int mCommand;
+        private int mArgument;
+
+        /** @return false once every event has been read. */
+        boolean next() {
+            if (mPosition >= mEventBytes) {
+                return false;
+            }
+
+            mTick += getVarLong();
+            mCommand = mEvents[mPosition++];
+            mArgument = hasArgument(mCommand) ? (int) getVarLong() : 0;
+            return true;
+        }
+
+        long tick() {
+            return mTick;
+        }
+
+        int command() {
+            return mCommand;
+        }
+
+        int argument() {
+            return mArgument;
+        }
+
+        private long getVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+
+            do {
+                b = mEvents[mPosition++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            return value;
+        }
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    private static boolean hasArgument(int command) {
+        return command == CMD_BAT || command == CMD_STRESS_TEST || command == CMD_TICK_RATE;
+    }
+
+    private void putVarLong(long value) {
+        mEventBytes = putVarLong(mEvents, mEventBytes, value);
+    }
+
+    // Little endian base 128: 7 bits per byte, top bit set on every byte but the last. Small values take one byte.
+    private static int putVarLong(byte[] out, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+
+        return size;
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new EOFException("Malformed varint");
+    }
+}
@@ -0,0 +1,117 @@
+package com.gamecodeschool.pong;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Plays a recorded InputLog back into a simulation, giving each command at the tick it was recorded at. With a
+ * simulation from InputLog#createSimulation() the session then plays out exactly as it did on the device.
+ * @see InputLog
+ *
+ * Can also be run from the command line to replay a session pulled off a device as fast as the machine allows, with no
+ * rendering, e.g. to profile it or to check a bug report:
+ *  adb pull /data/data/com.gamecodeschool.pong/files/last-session.pngr
+ *  java -cp core.jar com.gamecodeschool.pong.InputReplay last-session.pngr
+ */
+public class InputReplay implements InputSource {
+
+    private final InputLog.Cursor mCursor;
+    private boolean mHasNext;
+
+    /**
+     * Parametrized constructor below.
+     * @param log the recording to play.
+     */
+    public InputReplay(InputLog log) {
+        mCursor = log.cursor();
+        mHasNext = mCursor.next();
+    }
+
+    @Override
+    public void applyInput(long tick, PongSimulation simulation) {
+        while (mHasNext && mCursor.tick() <= tick) {
+            apply(mCursor.command(), mCursor.argument(), simulation);
+            mHasNext = mCursor.next();
+        }
+    }
+
+    private static void apply(int command, int argument, PongSimulation simulation) {
+        switch (command) {
+            case InputLog.CMD_BAT:
+                simulation.setBatMovement(argument);
+                break;
+
+            case InputLog.CMD_UNPAUSE:
+                simulation.unpause();
+                break;
+
+            case InputLog.CMD_NEW_GAME:
+                simulation.startNewGame();
+                break;
+
+            case InputLog.CMD_STRESS_TEST:
+                simulation.startStressTest(argument);
+                break;
+
+            case InputLog.CMD_TICK_RATE:
+                simulation.setTickRate(argument);
+                break;
+        }
+    }
+
+    /**
+     * Replays a whole log headless, as fast as possible.
+     * @param log the recording.
+     * @return the simulation in its state at the end of the session.
+     */
+    public static PongSimulation replay(InputLog log) {
+        PongSimulation simulation = log.createSimulation();
+        simulation.setInputSource(new InputReplay(log));
+
+        for (long i = 0; i < log.getLength(); i++) {
+            simulation.step();
+        }
+
+        return simulation;
+    }
+
+    /**
+     * Command line entry point: replays each file given and prints how long it took and whether it matched.
+     * @param args paths of recorded sessions.
+     * @throws IOException if a file can not be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: InputReplay <session.pngr>...");
+            System.exit(2);
+        }
+
+        boolean allMatched = true;
+
+        for (String path : args) {
+            InputLog log;
+
+            try (InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+                log = InputLog.readFrom(in);
+            }
+
+            long start = System.nanoTime();
+            PongSimulation simulation = replay(log);
+            long nanos = System.nanoTime() - start;
+
+            boolean matched = simulation.checksum() == log.getChecksum();
+            allMatched &= matched || log.isTruncated();
+
+            System.out.println(path + ": " + log.getLength() + " ticks in " + nanos / 1000000 + " ms ("
+                    + (log.getLength() == 0 ? 0 : nanos / log.getLength()) + " ns/tick), score "
+                    + simulation.getScore() + ", lives " + simulation.getLives() + ", "
+                    + (matched ? "matches the recording" : log.isTruncated() ? "log was truncated" : "DIVERGED"));
+        }
+
+        if (!allMatched) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.gamecodeschool.pong;
+
+/**
+ * Where the simulation gets its player commands from. Polled once at the start of every simulation step by:
+ * @see PongSimulation#step()
+ *
+ * On a device this is fed by touch events, in tests and batch runs it can be a script, a recording or a computer
+ * player. Implementations apply commands through PongSimulation#setBatMovement(int) and PongSimulation#unpause().
+ */
+public interface InputSource {
+
+    /**
+     * Applies whatever input is pending for this step.
+     * @param tick number of the step about to run (counts up from 0 for every step, paused or not).
+     * @param simulation the simulation to send commands to.
+     */
+    void applyInput(long tick, PongSimulation simulation);
+}
@@ -0,0 +1,212 @@
+package com.gamecodeschool.pong;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One long lived thread that runs a loop body whenever it is started and parks in between, so pausing and resuming a
+ * game loop costs an unpark and a flag instead of creating, starting and joining a new Thread each time. The app
+ * uses one each for its render, simulation and audio loops.
+ *
+ * The body runs while isRunning() is true and must check it often, returning soon after it turns false. A body that
+ * returns by itself (e.g. because it could not open something) is not run again until the next start(). start() and
+ * stop() may be called any number of times, in any order, from one controlling thread (the UI thread). stop() waits a
+ * bounded time for the body to return, so a stuck body can not hang the caller, and reports whether it did. The
+ * thread itself is only created by the first start(), and ends with quit(), or as soon as the body returns if quit()
+ * timed out waiting for it. A body that throws ends the thread too: the exception goes on to the thread's uncaught
+ * exception handler (which logs it) and start() fails from then on, rather than waking a thread that is gone.
+ */
+public final class LoopThread {
+
+    // The body is not running and not asked to.
+    private static final int IDLE = 0;
+    // start() asked for the body to run, the thread has not picked it up yet.
+    private static final int REQUESTED = 1;
+    // The body is running (or returning).
+    private static final int ACTIVE = 2;
+    // The thread has ended or is about to.
+    private static final int QUIT = 3;
+
+    private final String mName;
+    private final Runnable mBody;
+    private final AtomicInteger mState = new AtomicInteger(IDLE);
+    private volatile boolean mRunning;
+    private volatile Thread mThread;
+    // Whoever is waiting in stop() or quit(), unparked when the body returns.
+    private volatile Thread mWaiter;
+    private volatile long mStarts;
+    // Bumped by every start(), tells the thread whether a start() came in while the body was returning.
+    private volatile int mGeneration;
+    // Set by quit() or a body that threw, the thread ends once the body has returned.
+    private volatile boolean mQuit;
+
+    /**
+     * Parametrized constructor below. No thread is created until the first start().
+     * @param name name of the thread, as it shows in traces and ANR reports.
+     * @param body the loop, run on the thread from each start() until it returns after stop().
+     */
+    public LoopThread(String name, Runnable body) {
+        mName = name;
+        mBody = body;
+    }
+
+    /**
+     * Asks for the body to run. Returns straight away, the body starts as soon as the thread is scheduled.
+     * @throws IllegalStateException after quit(), or after the body threw.
+     */
+    public void start() {
+        if (mQuit) {
+            throw new IllegalStateException(mName + " has quit");
+        }
+
+        mGeneration++;
+        mRunning = true;
+        // Already ACTIVE if a stop() timed out and the body has not returned yet, it just carries on.
+        mState.compareAndSet(IDLE, REQUESTED);
+
+        Thread thread = mThread;
+
+        if (thread == null) {
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop();
+                }
+            }, mName);
+            thread.setDaemon(true);
+            mThread = thread;
+            thread.start();
+        }
+
+        else {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Asks the body to return and waits until it has, or the timeout passes. Anything the body itself waits on
+     * (besides LockSupport.parkNanos on its own thread, which this unparks) must be released by the caller first.
+     * @param timeoutNanos longest time to wait.
+     * @return true if the body is not running any more, false if it was still running when the timeout passed.
+     */
+    public boolean stop(long timeoutNanos) {
+        mRunning = false;
+
+        // Not picked up yet, so it never runs.
+        if (mState.compareAndSet(REQUESTED, IDLE)) {
+            return true;
+        }
+
+        wake();
+        return await(timeoutNanos);
+    }
+
+    /**
+     * Stops the body as stop(long) does, then ends the thread. If the body is still running when the timeout passes
+     * the thread ends whenever it does return. start() may not be called again.
+     * @param timeoutNanos longest time to wait for the body to return.
+     * @return true if the body is not running any more.
+     */
+    public boolean quit(long timeoutNanos) {
+        mQuit = true;
+        boolean stopped = stop(timeoutNanos);
+
+        mState.compareAndSet(IDLE, QUIT);
+        wake();
+        return stopped;
+    }
+
+    /** @return true from start() until stop(), the body's loop condition. */
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /** @return true while the body is running or about to, i.e. the data it touches is not safe to use elsewhere. */
+    public boolean isActive() {
+        int state = mState.get();
+        return state == REQUESTED || state == ACTIVE;
+    }
+
+    /** @return how many times the body has been started. */
+    public long getStarts() {
+        return mStarts;
+    }
+
+    /** Unparks the thread, e.g. so a body parked waiting for work notices something changed. */
+    public void wake() {
+        Thread thread = mThread;
+
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private boolean await(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        mWaiter = Thread.currentThread();
+
+        try {
+            while (mState.get() == ACTIVE) {
+                long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                LockSupport.parkNanos(this, remaining);
+            }
+
+            return true;
+        }
+
+        finally {
+            mWaiter = null;
+        }
+    }
+
+    /** The thread: waits for a start, runs the body, and again, until quit. */
+    private void loop() {
+        while (true) {
+            if (mState.compareAndSet(REQUESTED, ACTIVE)) {
+                int generation = mGeneration;
+                mStarts++;
+
+                try {
+                    mBody.run();
+                }
+
+                catch (Throwable t) {
+                    // Nothing would run the body again, so the thread ends and the handler gets to report it.
+                    mQuit = true;
+                    mThread = null;
+                    throw t;
+                }
+
+                finally {
+                    // Quit while the body was running, a stop() that timed out, means the thread ends now.
+                    mState.set(mQuit ? QUIT : IDLE);
+
+                    // Started again while the body was on its way out, go round again.
+                    if (!mQuit && mRunning && mGeneration != generation) {
+                        mState.compareAndSet(IDLE, REQUESTED);
+                    }
+
+                    Thread waiter = mWaiter;
+
+                    if (waiter != null) {
+                        LockSupport.unpark(waiter);
+                    }
+                }
+            }
+
+            else if (mState.get() == QUIT) {
+                mThread = null;
+                return;
+            }
+
+            else {
+                LockSupport.park(this);
+            }
+        }
+    }
+}
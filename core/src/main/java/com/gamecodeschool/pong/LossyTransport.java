@@ -0,0 +1,108 @@
+package com.gamecodeschool.pong;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Wraps another NetTransport and makes the packets it sends arrive the way they might over a bad mobile network:
+ * late, by a varying amount (so sometimes out of order), and sometimes not at all. Used to test NetSession headless
+ * over loopback, where packets would otherwise arrive at once and in order.
+ *
+ * Time is counted in ticks (calls to tick()), so a test runs just as fast whatever latency it asks for and gives the
+ * same results every run. Every packet sent is held for latency ticks (at least one, it goes out on a later tick())
+ * plus a random 0 to jitter ticks, or dropped with the given probability. Receiving goes straight through to the
+ * wrapped transport.
+ *
+ * Only to be used from one thread.
+ */
+public class LossyTransport implements NetTransport {
+
+    // Most packets held at once, more are dropped as if the network were congested.
+    private static final int MAX_PENDING = 256;
+    private static final int MAX_PACKET_BYTES = 2048;
+
+    private final NetTransport mInner;
+    private final int mLatency;
+    private final int mJitter;
+    private final double mLoss;
+    private final Random mRandom;
+    private final byte[][] mPending = new byte[MAX_PENDING][MAX_PACKET_BYTES];
+    private final int[] mPendingLengths = new int[MAX_PENDING];
+    private final long[] mDue = new long[MAX_PENDING];
+    private int mPendingCount;
+    private final ByteBuffer mOut = ByteBuffer.allocate(MAX_PACKET_BYTES);
+    private long mNow;
+    private long mDropped;
+
+    /**
+     * Parametrized constructor below.
+     * @param inner the transport to send through.
+     * @param latency ticks every packet is held for.
+     * @param jitter most extra ticks a packet is held for, chosen at random per packet.
+     * @param loss probability (0 to 1) of a packet being dropped.
+     * @param seed seed for the random delays and losses.
+     */
+    public LossyTransport(NetTransport inner, int latency, int jitter, double loss, long seed) {
+        mInner = inner;
+        mLatency = latency;
+        mJitter = jitter;
+        mLoss = loss;
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * Moves time on one tick and sends every held packet that is now due.
+     * @throws IOException if the wrapped transport failed.
+     */
+    public void tick() throws IOException {
+        mNow++;
+        int i = 0;
+
+        while (i < mPendingCount) {
+            if (mDue[i] > mNow) {
+                i++;
+                continue;
+            }
+
+            mOut.clear();
+            mOut.put(mPending[i], 0, mPendingLengths[i]);
+            mOut.flip();
+            mInner.send(mOut);
+
+            // Fill the gap with the last held packet, keeping the arrays dense.
+            mPendingCount--;
+            byte[] sent = mPending[i];
+            mPending[i] = mPending[mPendingCount];
+            mPending[mPendingCount] = sent;
+            mPendingLengths[i] = mPendingLengths[mPendingCount];
+            mDue[i] = mDue[mPendingCount];
+        }
+    }
+
+    @Override
+    public void send(ByteBuffer packet) {
+        int length = packet.remaining();
+
+        if (mRandom.nextDouble() < mLoss || mPendingCount == MAX_PENDING || length > MAX_PACKET_BYTES) {
+            packet.position(packet.limit());
+            mDropped++;
+            return;
+        }
+
+        packet.get(mPending[mPendingCount], 0, length);
+        mPendingLengths[mPendingCount] = length;
+        mDue[mPendingCount] = mNow + Math.max(1, mLatency) + (mJitter > 0 ? mRandom.nextInt(mJitter + 1) : 0);
+        mPendingCount++;
+    }
+
+    @Override
+    public boolean receive(ByteBuffer packet) throws IOException {
+        return mInner.receive(packet);
+    }
+
+    /** @return packets dropped so far. */
+    public long getDropped() {
+        return mDropped;
+    }
+}
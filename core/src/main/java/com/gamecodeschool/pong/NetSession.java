@@ -0,0 +1,612 @@
+package com.gamecodeschool.pong;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Plays a versus game (see PongSimulation#startVersus()) between two devices over a NetTransport. Each device runs its
+ * own PongSimulation at the same fixed tick rate and calls tick() once per step instead of step(), with its own
+ * player's input. The host plays the bottom bat, the client the top one.
+ *
+ * The host is authoritative: its simulation is the real game. The client sends it its inputs, tagged with the tick
+ * they are for, and the host sends back the game state every STATE_INTERVAL ticks.
+ *
+ * Packets:
+ *  - input (client to host): type, the newest state tick the client has (its ack), the tick of the first input, the
+ *    number of inputs and one byte per input (Bat movement and INPUT_START). Every packet repeats the last
+ *    REDUNDANT_INPUTS inputs, so a lost packet only matters if that many in a row are lost.
+ *  - state (host to client): type, tick, baseline tick, lead, then the state encoded with StateDelta against the
+ *    newest state the client acknowledged (the baseline), so only what changed since is sent. Without an ack (or once
+ *    it is too old) the whole state is sent.
+ *
+ * The client does not wait for the host. It predicts: it saves its state every tick, applies its own input straight
+ * away and assumes the host's bat keeps doing what it last did. When a state arrives from the host it compares it
+ * with what it predicted for that tick. If they differ (the host changed direction, an input of ours arrived too late)
+ * it rolls back: restores the host's state and runs its own saved inputs again up to where it was. Game events are
+ * muted while it does, the sounds were already played the first time.
+ *
+ * Inputs have to reach the host before it simulates their tick, so the client runs ahead of the host by the one way
+ * latency plus a few ticks. The host keeps early inputs in a buffer until their tick comes (the jitter buffer) and
+ * reports in every state packet how far ahead the newest input was, the lead. The client looks at the smallest lead
+ * over LEAD_WINDOW states (the worst case the jitter allowed) and runs an extra step or skips one until it is back
+ * around TARGET_LEAD. A missing input is replaced by the last one the host had.
+ *
+ * The statistics (bytes per tick, rollbacks, ticks simulated again and the time it took) are there to measure the
+ * cost of the network code.
+ *
+ * Only to be used from the thread running the simulation.
+ */
+public class NetSession {
+
+    /** Role of the device that owns the real game and plays the bottom bat. */
+    public static final int HOST = 0;
+    /** Role of the device that predicts the game and plays the top bat. */
+    public static final int CLIENT = 1;
+    /** Added to the Bat movement passed to tick(int) when the player touched to start play. */
+    public static final int INPUT_START = 4;
+
+    private static final int MOVEMENT_MASK = 3;
+    private static final byte PACKET_STATE = 1;
+    private static final byte PACKET_INPUT = 2;
+    // Ticks of states and inputs kept, a power of two (a tick's slot is tick & HISTORY_MASK). Two seconds at 120 Hz.
+    private static final int HISTORY = 256;
+    private static final int HISTORY_MASK = HISTORY - 1;
+    private static final int REDUNDANT_INPUTS = 8;
+    // The host sends a state every this many ticks.
+    private static final int STATE_INTERVAL = 2;
+    // Ticks the client's inputs should arrive ahead of when the host needs them, the depth of the jitter buffer.
+    private static final int TARGET_LEAD = 2;
+    // The lead may stray this far above TARGET_LEAD before the client slows down.
+    private static final int LEAD_SLACK = 3;
+    // State packets looked at before the client corrects its lead, and the largest correction made in one go.
+    private static final int LEAD_WINDOW = 30;
+    private static final int MAX_LEAD_CORRECTION = HISTORY / 4;
+    // Large enough for the state of a versus game (about 200 bytes) sent whole.
+    private static final int MAX_PACKET_BYTES = 2048;
+    private static final long NO_TICK = -1;
+
+    private final PongSimulation mSimulation;
+    private final NetTransport mTransport;
+    private final int mRole;
+    private final ByteBuffer mPacket = ByteBuffer.allocate(MAX_PACKET_BYTES);
+    private GameEvents mEvents;
+    // States by tick. Host: the states it sent, the baselines of later deltas. Client: the states it received.
+    private final ByteBuffer[] mStates = new ByteBuffer[HISTORY];
+    private final long[] mStateTicks = new long[HISTORY];
+    // Client only: the states it predicted, to compare with the host's.
+    private final ByteBuffer[] mPredicted = new ByteBuffer[HISTORY];
+    private final long[] mPredictedTicks = new long[HISTORY];
+    // Inputs by tick. Host: the client's inputs waiting for their tick (the jitter buffer). Client: its own inputs,
+    // sent (again and again) to the host and run again in a rollback.
+    private final byte[] mInputs = new byte[HISTORY];
+    private final long[] mInputTicks = new long[HISTORY];
+
+    // Host: the client input applied last, used again while the next is missing, and what the client told us.
+    private int mRemoteInput;
+    private long mNewestInputTick = NO_TICK;
+    private long mAckedTick = NO_TICK;
+
+    // Client: whether the game has been taken from the host yet, the newest state received and the one last compared.
+    private boolean mSynced;
+    private long mNewestStateTick = NO_TICK;
+    private long mReconciledTick = NO_TICK;
+    private int mLastInput;
+    // Client: smallest lead seen in the current window, and steps still to add (positive) or skip (negative).
+    private int mLeadMin = Integer.MAX_VALUE;
+    private int mLeadSamples;
+    private int mLeadCorrection;
+
+    private long mTicks;
+    private long mLastReceiveTicks;
+    private long mPacketsSent;
+    private long mBytesSent;
+    private long mPacketsReceived;
+    private long mBytesReceived;
+    private long mBadPackets;
+    private long mLateInputs;
+    private long mMissingInputs;
+    private long mPredictionHits;
+    private long mRollbacks;
+    private long mResimulatedTicks;
+    private long mRollbackNanos;
+    private long mMaxRollbackNanos;
+
+    /**
+     * Parametrized constructor below. The session feeds the simulation its input from now on, any InputSource it had
+     * is removed. The host starts a new versus game, the client's game is replaced by the host's as soon as the first
+     * state arrives.
+     * @param simulation the game, created with the same size and tuning on both devices.
+     * @param transport connection to the other device.
+     * @param role HOST or CLIENT.
+     */
+    public NetSession(PongSimulation simulation, NetTransport transport, int role) {
+        if (role != HOST && role != CLIENT) {
+            throw new IllegalArgumentException("Unknown role " + role);
+        }
+
+        mSimulation = simulation;
+        mTransport = transport;
+        mRole = role;
+
+        Arrays.fill(mStateTicks, NO_TICK);
+        Arrays.fill(mPredictedTicks, NO_TICK);
+        Arrays.fill(mInputTicks, NO_TICK);
+
+        simulation.setInputSource(null);
+
+        if (role == HOST) {
+            simulation.startVersus();
+        }
+    }
+
+    /**
+     * Sets who gets told about bounces, misses and game overs, use this rather than the simulation's own setEvents so
+     * the events can be muted during a rollback.
+     * @param events the listener, null to stop listening.
+     */
+    public void setEvents(GameEvents events) {
+        mEvents = events;
+        mSimulation.setEvents(events);
+    }
+
+    /**
+     * Runs one tick: takes in whatever packets arrived, steps the simulation with this player's input and sends our
+     * packet. The client may run two steps or none while it corrects how far ahead of the host it runs, and none at
+     * all until the first state from the host arrives.
+     * @param input this player's input: Bat.STOPPED, LEFT or RIGHT, plus INPUT_START to start play.
+     * @return number of simulation steps run.
+     * @throws IOException if the transport failed for good.
+     */
+    public int tick(int input) throws IOException {
+        mTicks++;
+        receive();
+
+        return mRole == HOST ? hostTick(input) : clientTick(input);
+    }
+
+    private void receive() throws IOException {
+        while (mTransport.receive(mPacket)) {
+            mPacketsReceived++;
+            mBytesReceived += mPacket.remaining();
+            mLastReceiveTicks = mTicks;
+
+            try {
+                byte type = mPacket.get();
+
+                if (type == PACKET_INPUT && mRole == HOST) {
+                    onInput(mPacket);
+                }
+
+                else if (type == PACKET_STATE && mRole == CLIENT) {
+                    onState(mPacket);
+                }
+
+                else {
+                    mBadPackets++;
+                }
+            }
+
+            catch (RuntimeException e) {
+                // Cut short, malformed or anything else: a bad packet from the peer only costs that packet, it must
+                // never end the simulation thread.
+                mBadPackets++;
+            }
+        }
+    }
+
+    private void send() throws IOException {
+        mPacket.flip();
+        mPacketsSent++;
+        mBytesSent += mPacket.remaining();
+        mTransport.send(mPacket);
+    }
+
+    private static int slot(long tick) {
+        return (int) (tick & HISTORY_MASK);
+    }
+
+    /**
+     * Host: puts the inputs of a client packet in the jitter buffer. Inputs for ticks already simulated are too late
+     * and dropped.
+     */
+    private void onInput(ByteBuffer in) {
+        long ack = in.getLong();
+        long first = in.getLong();
+        int count = in.get() & 0xFF;
+        long now = mSimulation.getTick();
+
+        if (count > REDUNDANT_INPUTS || in.remaining() < count) {
+            throw new IllegalArgumentException("Bad input count " + count);
+        }
+
+        for (int n = 0; n < count; n++) {
+            long tick = first + n;
+            byte input = in.get();
+
+            if (tick >= now && tick < now + HISTORY) {
+                mInputs[slot(tick)] = input;
+                mInputTicks[slot(tick)] = tick;
+            }
+        }
+
+        if (count > 0) {
+            long newest = first + count - 1;
+
+            if (newest < now) {
+                mLateInputs++;
+            }
+
+            mNewestInputTick = Math.max(mNewestInputTick, newest);
+        }
+
+        if (ack > mAckedTick && ack <= now) {
+            mAckedTick = ack;
+        }
+    }
+
+    private int hostTick(int input) throws IOException {
+        long tick = mSimulation.getTick();
+        int slot = slot(tick);
+
+        if (mInputTicks[slot] == tick) {
+            mRemoteInput = mInputs[slot];
+        }
+
+        else {
+            // Lost or late, carry on as before (but only start play when asked).
+            mRemoteInput &= MOVEMENT_MASK;
+
+            if (mNewestInputTick != NO_TICK) {
+                mMissingInputs++;
+            }
+        }
+
+        int lead = mNewestInputTick == NO_TICK ? TARGET_LEAD
+                : (int) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, mNewestInputTick - tick));
+
+        mSimulation.setBatMovement(input & MOVEMENT_MASK);
+        mSimulation.setOpponentMovement(mRemoteInput & MOVEMENT_MASK);
+
+        if (((input | mRemoteInput) & INPUT_START) != 0) {
+            mSimulation.unpause();
+        }
+
+        mSimulation.step();
+
+        if (mSimulation.getTick() % STATE_INTERVAL == 0) {
+            sendState(lead);
+        }
+
+        return 1;
+    }
+
+    /** Host: sends the current state, as a delta from the newest state the client has if there is one. */
+    private void sendState(int lead) throws IOException {
+        long tick = mSimulation.getTick();
+        int slot = slot(tick);
+        ByteBuffer state = saveState(mStates, slot);
+        mStateTicks[slot] = tick;
+
+        long baseline = mAckedTick;
+
+        if (baseline == NO_TICK || mStateTicks[slot(baseline)] != baseline) {
+            baseline = NO_TICK;
+        }
+
+        mPacket.clear();
+        mPacket.put(PACKET_STATE);
+        mPacket.putLong(tick);
+        mPacket.putLong(baseline);
+        mPacket.put((byte) lead);
+
+        if (baseline == NO_TICK) {
+            StateDelta.encode(state.array(), state.limit(), null, 0, mPacket);
+        }
+
+        else {
+            ByteBuffer base = mStates[slot(baseline)];
+            StateDelta.encode(state.array(), state.limit(), base.array(), base.limit(), mPacket);
+        }
+
+        send();
+    }
+
+    /**
+     * Saves the simulation's state into a slot of a ring, growing the slot's buffer if needed.
+     * @return the slot's buffer, from 0 to the state's length.
+     */
+    private ByteBuffer saveState(ByteBuffer[] ring, int slot) {
+        int length = mSimulation.getStateBytes();
+        ByteBuffer buffer = ensure(ring, slot, length);
+        mSimulation.saveState(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /** @return the slot's buffer, cleared and limited to length bytes. */
+    private static ByteBuffer ensure(ByteBuffer[] ring, int slot, int length) {
+        if (ring[slot] == null || ring[slot].capacity() < length) {
+            ring[slot] = ByteBuffer.allocate(Math.max(length, 256));
+        }
+
+        ring[slot].clear();
+        ring[slot].limit(length);
+        return ring[slot];
+    }
+
+    /**
+     * Client: decodes a state from the host into the received ring. Anything older than the newest state already
+     * received is dropped, as is a delta from a baseline we no longer have (the host falls back to an older baseline or
+     * the whole state once our ack tells it).
+     */
+    private void onState(ByteBuffer in) {
+        long tick = in.getLong();
+        long baseline = in.getLong();
+        int lead = in.get();
+
+        if (tick <= mNewestStateTick) {
+            return;
+        }
+
+        int slot = slot(tick);
+        byte[] base = null;
+        int baseLength = 0;
+
+        if (baseline != NO_TICK) {
+            // The host never uses a baseline as old as the ring (it would have overwritten it itself).
+            if (mStateTicks[slot(baseline)] != baseline || slot(baseline) == slot) {
+                return;
+            }
+
+            base = mStates[slot(baseline)].array();
+            baseLength = mStates[slot(baseline)].limit();
+        }
+
+        int length = StateDelta.decodedLength(in);
+        // Until decoded, the slot holds no tick.
+        mStateTicks[slot] = NO_TICK;
+        ByteBuffer state = ensure(mStates, slot, length);
+        StateDelta.decode(in, base, baseLength, state.array());
+        mStateTicks[slot] = tick;
+        mNewestStateTick = tick;
+
+        onLead(lead);
+    }
+
+    /** Client: keeps the smallest lead of the window and decides on a correction at its end. */
+    private void onLead(int lead) {
+        mLeadMin = Math.min(mLeadMin, lead);
+
+        if (++mLeadSamples < LEAD_WINDOW) {
+            return;
+        }
+
+        if (mLeadMin < TARGET_LEAD || mLeadMin > TARGET_LEAD + LEAD_SLACK) {
+            mLeadCorrection = Math.max(-MAX_LEAD_CORRECTION, Math.min(MAX_LEAD_CORRECTION, TARGET_LEAD - mLeadMin));
+        }
+
+        mLeadMin = Integer.MAX_VALUE;
+        mLeadSamples = 0;
+    }
+
+    private int clientTick(int input) throws IOException {
+        if (mNewestStateTick != mReconciledTick) {
+            reconcile();
+        }
+
+        if (!mSynced) {
+            // Tells the host where we are while we wait for the game.
+            sendInputs();
+            return 0;
+        }
+
+        int steps = 1;
+
+        if (mLeadCorrection > 0) {
+            steps = 2;
+            mLeadCorrection--;
+        }
+
+        else if (mLeadCorrection < 0) {
+            steps = 0;
+            mLeadCorrection++;
+        }
+
+        for (int i = 0; i < steps; i++) {
+            predict(input);
+        }
+
+        sendInputs();
+        return steps;
+    }
+
+    /** Client: saves the state we are about to leave, then steps with our input. */
+    private void predict(int input) {
+        long tick = mSimulation.getTick();
+        int slot = slot(tick);
+
+        saveState(mPredicted, slot);
+        mPredictedTicks[slot] = tick;
+        mInputs[slot] = (byte) input;
+        mInputTicks[slot] = tick;
+        mLastInput = input;
+
+        // Ours is the top bat. The host's bat is left moving the way it last did.
+        mSimulation.setOpponentMovement(input & MOVEMENT_MASK);
+
+        if ((input & INPUT_START) != 0) {
+            mSimulation.unpause();
+        }
+
+        mSimulation.step();
+    }
+
+    /**
+     * Client: checks the newest state from the host against what we predicted for its tick, rolling back and running
+     * our inputs again from it if they differ. The first state (and one from ahead of us, if we fell behind) is taken
+     * as it is, running TARGET_LEAD ticks past it.
+     */
+    private void reconcile() {
+        long tick = mNewestStateTick;
+        mReconciledTick = tick;
+        int slot = slot(tick);
+        ByteBuffer state = mStates[slot];
+        long now = mSimulation.getTick();
+
+        if (mSynced && tick <= now && mPredictedTicks[slot] == tick && mPredicted[slot].equals(state)) {
+            mPredictionHits++;
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean rollback = mSynced && tick <= now;
+
+        if (!rollback) {
+            now = tick + TARGET_LEAD;
+        }
+
+        mSimulation.setEvents(null);
+
+        try {
+            mSimulation.restoreState(state.duplicate());
+        }
+
+        catch (IllegalArgumentException e) {
+            // Another game size or version, nothing we can play.
+            mBadPackets++;
+            mSimulation.setEvents(mEvents);
+            return;
+        }
+
+        mSynced = true;
+
+        for (long k = tick; k < now; k++) {
+            int s = slot(k);
+
+            // Ticks we never ran (we jumped ahead) get the last input we had.
+            if (mInputTicks[s] != k) {
+                mInputs[s] = (byte) (mLastInput & MOVEMENT_MASK);
+                mInputTicks[s] = k;
+            }
+
+            predict(mInputs[s]);
+        }
+
+        mSimulation.setEvents(mEvents);
+
+        if (rollback) {
+            long nanos = System.nanoTime() - start;
+            mRollbacks++;
+            mResimulatedTicks += now - tick;
+            mRollbackNanos += nanos;
+            mMaxRollbackNanos = Math.max(mMaxRollbackNanos, nanos);
+        }
+    }
+
+    /** Client: sends our newest inputs (up to REDUNDANT_INPUTS of them) with our ack. */
+    private void sendInputs() throws IOException {
+        long newest = mSimulation.getTick() - 1;
+        int count = 0;
+
+        while (mSynced && count < REDUNDANT_INPUTS && newest - count >= 0
+                && mInputTicks[slot(newest - count)] == newest - count) {
+            count++;
+        }
+
+        mPacket.clear();
+        mPacket.put(PACKET_INPUT);
+        mPacket.putLong(mNewestStateTick);
+        mPacket.putLong(newest - count + 1);
+        mPacket.put((byte) count);
+
+        for (long k = newest - count + 1; k <= newest; k++) {
+            mPacket.put(mInputs[slot(k)]);
+        }
+
+        send();
+    }
+
+    /** @return the game this session plays. */
+    public PongSimulation getSimulation() {
+        return mSimulation;
+    }
+
+    /** @return HOST or CLIENT. */
+    public int getRole() {
+        return mRole;
+    }
+
+    /**
+     * @return true if a packet arrived within the last HISTORY ticks, and for the client once it has the game from the
+     * host.
+     */
+    public boolean isConnected() {
+        return mPacketsReceived > 0 && mTicks - mLastReceiveTicks < HISTORY && (mRole == HOST || mSynced);
+    }
+
+    /** @return calls to tick() so far. */
+    public long getTicks() {
+        return mTicks;
+    }
+
+    /** @return packets sent so far. */
+    public long getPacketsSent() {
+        return mPacketsSent;
+    }
+
+    /** @return bytes sent so far, packet contents without UDP/IP headers. */
+    public long getBytesSent() {
+        return mBytesSent;
+    }
+
+    /** @return packets received so far. */
+    public long getPacketsReceived() {
+        return mPacketsReceived;
+    }
+
+    /** @return bytes received so far. */
+    public long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    /** @return packets that could not be read (malformed, or a game that does not fit ours). */
+    public long getBadPackets() {
+        return mBadPackets;
+    }
+
+    /** @return host: packets from the client whose newest input was already too late. */
+    public long getLateInputs() {
+        return mLateInputs;
+    }
+
+    /** @return host: ticks for which no client input had arrived, the previous one was used. */
+    public long getMissingInputs() {
+        return mMissingInputs;
+    }
+
+    /** @return client: states from the host that matched our prediction. */
+    public long getPredictionHits() {
+        return mPredictionHits;
+    }
+
+    /** @return client: states from the host that did not match our prediction, each one a rollback. */
+    public long getRollbacks() {
+        return mRollbacks;
+    }
+
+    /** @return client: ticks simulated again in rollbacks. */
+    public long getResimulatedTicks() {
+        return mResimulatedTicks;
+    }
+
+    /** @return client: total time spent in rollbacks (restoring and simulating again), in nanoseconds. */
+    public long getRollbackNanos() {
+        return mRollbackNanos;
+    }
+
+    /** @return client: longest single rollback, in nanoseconds. */
+    public long getMaxRollbackNanos() {
+        return mMaxRollbackNanos;
+    }
+}
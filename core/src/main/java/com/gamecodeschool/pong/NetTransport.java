@@ -0,0 +1,29 @@
+package com.gamecodeschool.pong;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Carries the packets of a network game between two peers, unreliably: a packet may arrive late, out of order, twice
+ * or not at all, NetSession copes with all of that. Neither method ever blocks, so the simulation thread can poll the
+ * transport once per step.
+ * @see UdpTransport the real thing, over UDP.
+ * @see LossyTransport adds latency, jitter and loss to another transport, for testing.
+ */
+public interface NetTransport {
+
+    /**
+     * Sends one packet, or drops it if it can not be sent right now.
+     * @param packet the bytes from its position to its limit. Its position is moved to its limit.
+     * @throws IOException if the transport failed for good.
+     */
+    void send(ByteBuffer packet) throws IOException;
+
+    /**
+     * Takes the next packet that has arrived, if any.
+     * @param packet cleared and filled with the packet, flipped ready to read. Packets longer than it are cut short.
+     * @return false if nothing has arrived (packet is then empty).
+     * @throws IOException if the transport failed for good.
+     */
+    boolean receive(ByteBuffer packet) throws IOException;
+}
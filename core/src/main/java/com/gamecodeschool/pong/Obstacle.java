@@ -0,0 +1,138 @@
+package com.gamecodeschool.pong;
+
+/**
+ * Additional class to "increase" difficulty for the user. As there are two moving Obstacles that float near the top
+ * of the screen to randomly hit the ball back to the user (not to be considered AI at all). The lowest obstacle effectively
+ * reduces the response time needed for the user to hit the ball back up towards the top of the screen. For a computer
+ * player that does play, see AiOpponent.
+ *
+ * Strongly relates to the bat class. Did not inherit from the class however as there were some differences in how movement
+ * is determined. An interface used across all game objects probably would have been best, but currently short on time.
+ */
+
+public class Obstacle {
+    private final EntityStore mStore;
+    private final int mIndex;
+    private float mScreenX;
+    // Filled in by getObstacle(), so callers still get a familiar box to read.
+    private final Aabb mRect = new Aabb();
+
+    /** Parametrized constructor used below
+     * Assigns obstacle width/height based off of screen resolution. Starting positions are given afterwards through
+     * reset(float, float), so the obstacles do not overlap. (There is deliberately no static state in this class, so
+     * separate simulations can run on separate threads.)
+     * A normal game uses two obstacles, more can be added through PongSimulation#addObstacle(float, float).
+     * The obstacle gets an EntityStore of its own, see the other constructor.
+     * @param sx screen x size. (pixels)
+     * @param sy screen y size. (pixels)
+     */
+    public Obstacle(int sx, int sy) {
+        this(new EntityStore(1), sx, sy);
+    }
+
+    /**
+     * Creates an obstacle in a new slot of a store shared by every obstacle in the simulation. Like Ball, an Obstacle
+     * is only a view, its numbers live in the store so the simulation can process them in batch loops.
+     * @see EntityStore
+     * @param store the store holding every obstacle's numbers.
+     * @param sx screen x size. (pixels)
+     * @param sy screen y size. (pixels)
+     */
+    Obstacle(EntityStore store, int sx, int sy) {
+        this(store, sx, sy, Tuning.DEFAULT);
+    }
+
+    /**
+     * Same as Obstacle(EntityStore, int, int) with the speed taken from tuning.
+     * @param tuning difficulty constants, see Tuning#obstacleSpeedDivisor.
+     */
+    Obstacle(EntityStore store, int sx, int sy, Tuning tuning) {
+        mStore = store;
+        mIndex = store.add(sx / 8f, sy / 20f);
+        mStore.vx[mIndex] = ((float) sx / tuning.obstacleSpeedDivisor);
+        mScreenX = sx;
+    }
+
+     /** Accessor method used below. Used in drawing/collision detection.
+     * @return of type Aabb, returns information on location of object. This is a copy taken when called, writing to it
+     * does not move the obstacle.
+     */
+    public Aabb getObstacle() {
+        mStore.getBounds(mIndex, mRect);
+        return mRect;
+    }
+
+    /** Reverses velocity (x velocity) - as the obstacles will not move up/down
+     * In the case one of the obstacles hits left/right boundary of screen */
+    public void reverseVelocity() {
+        mStore.vx[mIndex] = -mStore.vx[mIndex];
+    }
+
+    /** Method that resets obstacles based off passed in coordinates - same concept could have followed with approach to
+     * use another parametrized constructor, or alter the existing to pass in coordinates for the starting position of
+     * each obstacle.
+     * @param sx Starting x location of obstacle.
+     * @param sy Starting y location of obstacle.
+     */
+    public void reset(float sx, float sy) {
+
+        if (sx == 0) {
+            mStore.x[mIndex] = sx;
+        }
+
+        else {
+            reverseVelocity();
+            mStore.x[mIndex] = sx - mStore.w[mIndex];
+        }
+
+        mStore.y[mIndex] = sy;
+
+        savePreviousPosition();
+
+    }
+
+    /**
+     * Stores where the obstacle currently is, so the renderer can blend between the last two simulation steps.
+     * @see Snapshot#interpolateObstacle(int, float, Aabb)
+     */
+    public void savePreviousPosition() {
+        mStore.prevX[mIndex] = mStore.x[mIndex];
+        mStore.prevY[mIndex] = mStore.y[mIndex];
+    }
+
+    /**
+     * Updates the position of the obstacles indefinitely (they never stop).
+     * @param fps - simulation steps per second, designates amount of pixels the obstacle needs to be moved per step.
+     */
+    public void update(long fps) {
+        update(mStore, mIndex, mScreenX, fps);
+    }
+
+    /**
+     * Batch version of update(long), moves every obstacle in a store in one pass.
+     * @param obstacles store holding the obstacles.
+     * @param screenX screen x size. (pixels)
+     * @param fps simulation steps per second.
+     */
+    static void updateAll(EntityStore obstacles, float screenX, long fps) {
+        for (int i = 0; i < obstacles.size(); i++) {
+            update(obstacles, i, screenX, fps);
+        }
+    }
+
+    private static void update(EntityStore obstacles, int i, float screenX, long fps) {
+        // Notice how the y coordinate is not updated as the obstacles never move up/down.
+        // An obstacle past the right edge is pulled back onto the screen before moving. (Past the left edge it moves
+        // from where it is, the new left edge is always worked out from the right edge.)
+        float right = obstacles.x[i] + obstacles.w[i];
+
+        if (obstacles.x[i] >= 0 && right > screenX) {
+            right = screenX;
+        }
+
+        right += (obstacles.vx[i] / fps);
+        obstacles.x[i] = right - obstacles.w[i];
+
+    }
+
+}
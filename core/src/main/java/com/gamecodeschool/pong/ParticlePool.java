@@ -0,0 +1,221 @@
+package com.gamecodeschool.pong;
+
+/**
+ * A fixed number of short lived visual particles (sparks, score pop-ups, ball trails), held in parallel primitive
+ * arrays allocated up front, so emitting, moving and drawing them allocates nothing however many come and go.
+ *
+ * Free slots are kept on a stack (the free-list): emitting pops a slot, a particle that runs out of life is pushed
+ * back. Live slots are kept in a dense list of their own, so update() and writePoints() only walk the live particles,
+ * never the whole capacity. Culling swaps the last live slot into the gap.
+ *
+ * The pool also measures what particles cost on the device: the caller reports how long a frame's particle work took
+ * (recordCost), and the pool keeps a running average of particles handled per millisecond. setBudget() turns that into
+ * a cap on live particles, so a low end device sheds effects instead of frames. Emitting past the cap or the capacity
+ * drops the particle and counts it.
+ *
+ * Only to be used from one thread (the render thread).
+ */
+public class ParticlePool {
+
+    // Smoothing of the particles per millisecond average, weight of the newest sample.
+    private static final double COST_WEIGHT = 0.1;
+    // Frames with fewer particles than this are too quick to time meaningfully.
+    private static final int MIN_COST_SAMPLE = 32;
+    // The cap never goes below this, so effects never disappear altogether.
+    private static final int MIN_LIMIT = 64;
+
+    final float[] x;
+    final float[] y;
+    final float[] vx;
+    final float[] vy;
+    // Seconds left to live.
+    final float[] life;
+    // What the particle is, decides how it is drawn (see the caller's kinds).
+    final int[] kind;
+    private final int mCapacity;
+    // Free-list: mFree[0 .. mFreeCount) are unused slots.
+    private final int[] mFree;
+    private int mFreeCount;
+    // Dense list of live slots, mLive[0 .. mLiveCount).
+    private final int[] mLive;
+    private int mLiveCount;
+    private int mLimit;
+    private long mDropped;
+    private long mEmitted;
+    private double mParticlesPerMilli;
+
+    /**
+     * Parametrized constructor below.
+     * @param capacity most particles alive at once.
+     */
+    public ParticlePool(int capacity) {
+        mCapacity = capacity;
+        x = new float[capacity];
+        y = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        life = new float[capacity];
+        kind = new int[capacity];
+        mFree = new int[capacity];
+        mLive = new int[capacity];
+        mLimit = capacity;
+
+        clear();
+    }
+
+    /** Removes every particle. */
+    public void clear() {
+        // Highest slot at the bottom of the stack, so slots are handed out from 0 upwards.
+        for (int i = 0; i < mCapacity; i++) {
+            mFree[i] = mCapacity - 1 - i;
+        }
+
+        mFreeCount = mCapacity;
+        mLiveCount = 0;
+    }
+
+    /**
+     * Adds a particle.
+     * @param particleKind what it is, see writePoints(int, float[], int).
+     * @param px horizontal position.
+     * @param py vertical position.
+     * @param pvx horizontal velocity, per second.
+     * @param pvy vertical velocity, per second.
+     * @param seconds how long it lives.
+     * @return its slot, or -1 if the pool is at its limit and the particle was dropped.
+     */
+    public int emit(int particleKind, float px, float py, float pvx, float pvy, float seconds) {
+        if (mLiveCount >= mLimit || mFreeCount == 0) {
+            mDropped++;
+            return -1;
+        }
+
+        int i = mFree[--mFreeCount];
+        x[i] = px;
+        y[i] = py;
+        vx[i] = pvx;
+        vy[i] = pvy;
+        life[i] = seconds;
+        kind[i] = particleKind;
+        mLive[mLiveCount++] = i;
+        mEmitted++;
+        return i;
+    }
+
+    /**
+     * Moves every live particle on and returns the ones whose life ran out to the free-list.
+     * @param seconds time since the last update.
+     * @param gravity added to vertical velocity per second.
+     */
+    public void update(float seconds, float gravity) {
+        int n = 0;
+
+        while (n < mLiveCount) {
+            int i = mLive[n];
+            float left = life[i] - seconds;
+
+            if (left <= 0) {
+                mFree[mFreeCount++] = i;
+                mLive[n] = mLive[--mLiveCount];
+                continue;
+            }
+
+            life[i] = left;
+            vy[i] += gravity * seconds;
+            x[i] += vx[i] * seconds;
+            y[i] += vy[i] * seconds;
+            n++;
+        }
+    }
+
+    /**
+     * Copies the positions of the live particles of one kind into out as x, y pairs, the layout Canvas#drawPoints
+     * takes, so a whole kind is drawn with one call.
+     * @param particleKind which particles.
+     * @param out where to write, room for two floats per live particle is always enough.
+     * @param max most particles to write.
+     * @return number of floats written.
+     */
+    public int writePoints(int particleKind, float[] out, int max) {
+        int written = 0;
+        int end = Math.min(max * 2, out.length);
+
+        for (int n = 0; n < mLiveCount && written < end; n++) {
+            int i = mLive[n];
+
+            if (kind[i] == particleKind) {
+                out[written++] = x[i];
+                out[written++] = y[i];
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * @param n from 0 to getLiveCount() - 1.
+     * @return slot of the nth live particle, for kinds drawn one at a time (e.g. text).
+     */
+    public int getLive(int n) {
+        return mLive[n];
+    }
+
+    /** @return number of live particles. */
+    public int getLiveCount() {
+        return mLiveCount;
+    }
+
+    /** @return most particles alive at once. */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /** @return current cap on live particles, see setBudget(double). */
+    public int getLimit() {
+        return mLimit;
+    }
+
+    /** @return particles emitted so far. */
+    public long getEmitted() {
+        return mEmitted;
+    }
+
+    /** @return particles dropped so far because the pool was at its limit. */
+    public long getDropped() {
+        return mDropped;
+    }
+
+    /**
+     * Reports how long a frame's particle work (updating and drawing) took, to keep the particles per millisecond
+     * average up to date.
+     * @param particles particles handled in that time.
+     * @param nanos time taken.
+     */
+    public void recordCost(int particles, long nanos) {
+        if (particles < MIN_COST_SAMPLE || nanos <= 0) {
+            return;
+        }
+
+        double rate = particles * 1000000.0 / nanos;
+        mParticlesPerMilli = mParticlesPerMilli == 0 ? rate
+                : mParticlesPerMilli + (rate - mParticlesPerMilli) * COST_WEIGHT;
+    }
+
+    /** @return average particles handled per millisecond on this device, 0 until measured. */
+    public double getParticlesPerMilli() {
+        return mParticlesPerMilli;
+    }
+
+    /**
+     * Caps live particles at what the device handles in the given time, going by getParticlesPerMilli(). Particles
+     * already alive are left to run out. Nothing changes until the rate has been measured.
+     * @param millis time per frame particles may take.
+     */
+    public void setBudget(double millis) {
+        if (mParticlesPerMilli == 0) {
+            return;
+        }
+
+        mLimit = (int) Math.max(MIN_LIMIT, Math.min(mCapacity, mParticlesPerMilli * millis));
+    }
+}
@@ -0,0 +1,1044 @@
+package com.gamecodeschool.pong;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * The rules of the game with nothing Android related in it: moving the balls, bat and obstacles, detecting collisions,
+ * keeping score and counting lives. PongGame owns one of these, feeds it input and draws its state, but it can just as
+ * well run on its own (unit tests, benchmarks, batch runs on a build server).
+ *
+ * The simulation only advances when step() is called, one fixed step of 1/tickRate seconds at a time.
+ * @see PongSimulation#step()
+ * @see InputSource commands coming in.
+ * @see GameEvents things happening going out (sounds, scoring).
+ *
+ * A normal game has one ball and two obstacles, but any number of either can be added (multi-ball play, the stress
+ * test). Balls are only tested against the obstacles near them, found through a UniformGrid, so the collision cost
+ * grows with the number of objects rather than with the number of ball/obstacle pairs.
+ *
+ * The numbers for all balls and all obstacles live in two EntityStores (parallel float arrays), and the loops in
+ * update() and detectCollisions() work on those arrays directly. The Ball and Obstacle objects handed out by the
+ * getters are views onto them.
+ * @see EntityStore
+ *
+ * A versus game (startVersus()) is for two players: a second bat along the top of the screen takes the place of the
+ * obstacles and the top wall, and each player scores off their own bat and loses a life when the ball gets past it.
+ * The second bat is steered with setOpponentMovement(int), see NetSession for playing it over a network.
+ */
+public class PongSimulation {
+
+    /** Width of the logical world the app simulates in, whatever the display (PongGame scales it to fit). */
+    public static final int WORLD_WIDTH = 1600;
+    /** Height of the logical world, 16:9 with WORLD_WIDTH. */
+    public static final int WORLD_HEIGHT = 900;
+
+    private final int DEFAULT_TICK_RATE = 120;
+    // Where the two obstacles start, as fractions of the playing area: the spots the game was laid out with on a
+    // 1920x1080 screen (100 pixels down, 225 pixels in from the right).
+    private static final float TOP_OBSTACLE_Y = 100 / 1080f;
+    private static final float SIDE_OBSTACLE_INSET = 225 / 1920f;
+    // Most bounces a ball can make within one step (e.g. bat then side wall in a corner).
+    private final int MAX_CONTACTS_PER_STEP = 4;
+    // What the ball hit first during a sweep.
+    private final int HIT_NONE = 0;
+    private final int HIT_BAT = 1;
+    private final int HIT_OBSTACLE = 2;
+    private final int HIT_TOP = 3;
+    private final int HIT_SIDE = 4;
+    private final int HIT_BOTTOM = 5;
+    private final int HIT_OPPONENT_BAT = 6;
+    // Save state header: "PNGS" and the format version.
+    private static final int STATE_MAGIC = 0x504e4753;
+    private static final int STATE_VERSION = 2;
+    private static final int STATE_HEADER_BYTES = 4 + 4 + 4 * 2 + 4 * 3 + 4 + 8 + 4 * 2 + 2 + 1 + 4 * 2;
+    private final int mScreenX;
+    private final int mScreenY;
+    private int mTickRate;
+    private long mTick;
+    private int mScore;
+    private int mLives;
+    private boolean mPaused = true;
+    private boolean mStressTest;
+    // Versus game: the second player's bat along the top, their score and lives.
+    private boolean mVersus;
+    private int mOpponentScore;
+    private int mOpponentLives;
+    private final Tuning mTuning;
+    private final long mSeed;
+    private final Bat mBat;
+    private final Bat mOpponentBat;
+    private final EntityStore mBallStore = new EntityStore(16);
+    private final EntityStore mObstacleStore = new EntityStore(16);
+    // Views onto the stores, index i of each list is slot i of its store.
+    private final ArrayList<Ball> mBalls = new ArrayList<>();
+    private final ArrayList<Obstacle> mObstacles = new ArrayList<>();
+    private InputSource mInput;
+    private InputLog mRecorder;
+    private GameEvents mEvents = new GameEvents() { };
+    // Reused by every sweep so the collision pass does not allocate.
+    private final SweptAabb mSweep = new SweptAabb();
+    private final Aabb mSweptBounds = new Aabb();
+    private final Aabb mHitRect = new Aabb();
+    private final UniformGrid mGrid;
+    private int[] mNearby = new int[16];
+    // Seeded, so extra balls appear in the same places every run.
+    private final Random mRandom;
+    // Phase timing for the profiler, see setProfiling(boolean). Running totals, indexed by the FrameProfiler phases.
+    private volatile boolean mProfiling;
+    private final long[] mPhaseNanos = new long[FrameProfiler.COLLISION + 1];
+    private long mProfiledSteps;
+
+    /**
+     * Parametrized constructor below. Creates all the game objects sized to the playing area and starts a new (paused)
+     * game. Everything is sized and placed in proportion to the playing area, in floats, so any size plays the same
+     * game, only scaled. The app always uses WORLD_WIDTH x WORLD_HEIGHT, whatever the display.
+     * @param x width of the playing area.
+     * @param y height of the playing area.
+     * @see PongSimulation#startNewGame()
+     */
+    public PongSimulation(int x, int y) {
+        this(x, y, Tuning.DEFAULT, 1);
+    }
+
+    /**
+     * Same as PongSimulation(int, int) with other difficulty constants and random seed, used for batch runs. Nothing is
+     * shared between simulations, so separate instances may run on separate threads.
+     * @param tuning difficulty constants.
+     * @param seed seed for everything random in the game (where extra balls appear).
+     * @see BatchRunner
+     */
+    public PongSimulation(int x, int y, Tuning tuning, long seed) {
+        mScreenX = x;
+        mScreenY = y;
+        mTickRate = DEFAULT_TICK_RATE;
+        mTuning = tuning;
+        mSeed = seed;
+        mRandom = new Random(seed);
+
+        mBat = new Bat(mScreenX, mScreenY, mTuning);
+        mOpponentBat = new Bat(mScreenX, mScreenY, mTuning, true);
+        mBalls.add(new Ball(mBallStore, mScreenX));
+        mObstacles.add(new Obstacle(mObstacleStore, mScreenX, mScreenY, mTuning));
+        mObstacles.add(new Obstacle(mObstacleStore, mScreenX, mScreenY, mTuning));
+
+        // Cells about the size of an obstacle.
+        mGrid = new UniformGrid(mScreenX, mScreenY, Math.max(1, mScreenX / 8f));
+
+        startNewGame();
+    }
+
+    /**
+     * Sets how many steps make up one second of game time.
+     * @param ticksPerSecond simulation rate in Hz (120 by default).
+     */
+    public void setTickRate(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("Tick rate must be positive: " + ticksPerSecond);
+        }
+
+        mTickRate = ticksPerSecond;
+        record(InputLog.CMD_TICK_RATE, ticksPerSecond);
+    }
+
+    /** @return simulation steps per second of game time. */
+    public int getTickRate() {
+        return mTickRate;
+    }
+
+    /**
+     * Sets where player commands come from, polled at the start of each step. Null means no input at all.
+     * @param input the source of commands.
+     */
+    public void setInputSource(InputSource input) {
+        mInput = input;
+    }
+
+    /**
+     * Starts recording every command given to this simulation, so the session can be played again exactly.
+     * Must be called before the first step, commands must then only be given on the thread running the simulation.
+     * @return the log being recorded into.
+     * @see InputReplay
+     */
+    public InputLog startRecording() {
+        if (mTick != 0) {
+            throw new IllegalStateException("Recording must start before the first step");
+        }
+
+        mRecorder = new InputLog(mScreenX, mScreenY, mTuning, mSeed);
+
+        if (mTickRate != DEFAULT_TICK_RATE) {
+            record(InputLog.CMD_TICK_RATE, mTickRate);
+        }
+
+        return mRecorder;
+    }
+
+    /**
+     * Brings the recording's end marker up to date (current tick and checksum()) and returns it, ready to be written.
+     * Call between steps, recording carries on afterwards.
+     * @return the log, null if not recording.
+     */
+    public InputLog getRecording() {
+        if (mRecorder != null) {
+            mRecorder.setEnd(mTick, checksum());
+        }
+
+        return mRecorder;
+    }
+
+    private void record(int command, int argument) {
+        if (mRecorder != null) {
+            mRecorder.record(mTick, command, argument);
+        }
+    }
+
+    /**
+     * Sets who gets told about bounces, misses and game overs.
+     * @param events the listener, null to stop listening.
+     */
+    public void setEvents(GameEvents events) {
+        mEvents = events != null ? events : new GameEvents() { };
+    }
+
+    /**
+     * Below method starts a new game. Which requires resetting user score and number of lives. Also resetting the
+     * positions of our objects in view (back to one ball, and the two standard obstacles). Ends a stress test or a
+     * versus game.
+     */
+    public void startNewGame() {
+        record(InputLog.CMD_NEW_GAME, 0);
+        mVersus = false;
+        resetGame();
+    }
+
+    /**
+     * Starts a (paused) versus game for two players: one ball served from the middle towards the bottom player, a bat
+     * for each player and no obstacles. Games after a game over stay versus games until startNewGame().
+     *
+     * Versus games are not recorded (the log has no commands for the second bat), starting one ends any recording.
+     * @see PongSimulation#setOpponentMovement(int)
+     */
+    public void startVersus() {
+        mRecorder = null;
+        mVersus = true;
+        mPaused = true;
+        resetGame();
+    }
+
+    /** @return true while a versus game is being played. */
+    public boolean isVersus() {
+        return mVersus;
+    }
+
+    private void resetGame() {
+
+        mScore = 0;
+        mLives = 3;
+        mOpponentScore = 0;
+        mOpponentLives = 3;
+        mStressTest = false;
+
+        while (mBalls.size() > 1) {
+            mBalls.remove(mBalls.size() - 1);
+        }
+
+        mBallStore.truncate(1);
+
+        if (mVersus) {
+            // The second bat is the opponent, no obstacles.
+            mObstacles.clear();
+            mObstacleStore.truncate(0);
+
+            mBalls.get(0).launch(mScreenX / 2f, mScreenY / 2f, mScreenX / 2f, mScreenY / 3f);
+            return;
+        }
+
+        while (mObstacles.size() < 2) {
+            mObstacles.add(new Obstacle(mObstacleStore, mScreenX, mScreenY, mTuning));
+        }
+
+        mBalls.get(0).reset(mScreenX, mScreenY);
+        mObstacles.get(0).reset(0, mScreenY * TOP_OBSTACLE_Y);
+        mObstacles.get(1).reset(mScreenX * (1 - SIDE_OBSTACLE_INSET), mScreenY / 2.5f);
+
+    }
+
+    /**
+     * Adds another ball at a random spot in the top half of the screen, heading down at normal speed.
+     * @return the new ball.
+     */
+    public Ball addBall() {
+        Ball ball = new Ball(mBallStore, mScreenX);
+        float left = mRandom.nextFloat() * (mScreenX - mScreenX / 100f);
+        float top = mRandom.nextFloat() * mScreenY / 2;
+        float xVelocity = (mRandom.nextBoolean() ? 1 : -1) * (mScreenX / 2f);
+
+        ball.launch(left, top, xVelocity, mScreenY / 3f);
+        mBalls.add(ball);
+
+        return ball;
+    }
+
+    /**
+     * Adds another obstacle.
+     * @param sx starting x location, see Obstacle#reset(float, float).
+     * @param sy starting y location.
+     * @return the new obstacle.
+     */
+    public Obstacle addObstacle(float sx, float sy) {
+        Obstacle obstacle = new Obstacle(mObstacleStore, mScreenX, mScreenY, mTuning);
+        obstacle.reset(sx, sy);
+        mObstacles.add(obstacle);
+
+        return obstacle;
+    }
+
+    /**
+     * Starts a stress test: a new game with the given number of balls in play where misses cost no lives, so it runs
+     * until a new game is started. Used to check frame times stay steady with lots of objects on screen.
+     * @param balls total number of balls to put in play.
+     */
+    public void startStressTest(int balls) {
+        record(InputLog.CMD_STRESS_TEST, balls);
+        mVersus = false;
+        resetGame();
+
+        for (int i = 1; i < balls; i++) {
+            addBall();
+        }
+
+        mStressTest = true;
+        mPaused = false;
+    }
+
+    /** @return true while a stress test is running. */
+    public boolean isStressTest() {
+        return mStressTest;
+    }
+
+    /**
+     * Runs one fixed simulation step: applies input, then (unless paused) moves every object and resolves collisions.
+     * @see PongSimulation#update()
+     * @see PongSimulation#detectCollisions()
+     */
+    public void step() {
+        if (mProfiling) {
+            profiledStep();
+            return;
+        }
+
+        if (mInput != null) {
+            mInput.applyInput(mTick, this);
+        }
+
+        if (!mPaused) {
+            update();
+
+            detectCollisions();
+        }
+
+        mTick++;
+    }
+
+    /** Same as step(), timing each phase. Kept apart so an unprofiled step does not read the clock at all. */
+    private void profiledStep() {
+        long start = System.nanoTime();
+
+        if (mInput != null) {
+            mInput.applyInput(mTick, this);
+        }
+
+        long inputDone = System.nanoTime();
+        long updateDone = inputDone;
+        long collisionsDone = inputDone;
+
+        if (!mPaused) {
+            update();
+            updateDone = System.nanoTime();
+
+            detectCollisions();
+            collisionsDone = System.nanoTime();
+        }
+
+        mPhaseNanos[FrameProfiler.INPUT] += inputDone - start;
+        mPhaseNanos[FrameProfiler.UPDATE] += updateDone - inputDone;
+        mPhaseNanos[FrameProfiler.COLLISION] += collisionsDone - updateDone;
+        mProfiledSteps++;
+        mTick++;
+    }
+
+    /**
+     * Switches timing of the phases of each step on or off, the totals are handed out through copyTo(Snapshot). Can be
+     * called from any thread.
+     * @param profiling true to time each step.
+     * @see FrameProfiler
+     */
+    public void setProfiling(boolean profiling) {
+        mProfiling = profiling;
+    }
+
+    /**
+     * Command: sets which way the player's bat is moving.
+     * @param state one of Bat.STOPPED, Bat.LEFT or Bat.RIGHT.
+     */
+    public void setBatMovement(int state) {
+        if (state != mBat.getMovementState()) {
+            record(InputLog.CMD_BAT, state);
+        }
+
+        mBat.SetMovementState(state);
+    }
+
+    /**
+     * Command: sets which way the second player's bat is moving in a versus game.
+     * @param state one of Bat.STOPPED, Bat.LEFT or Bat.RIGHT.
+     */
+    public void setOpponentMovement(int state) {
+        mOpponentBat.SetMovementState(state);
+    }
+
+    /** Command: starts or continues play, e.g. when the player touches the screen. */
+    public void unpause() {
+        if (mPaused) {
+            record(InputLog.CMD_UNPAUSE, 0);
+        }
+
+        mPaused = false;
+    }
+
+    /**
+     * These update methods are individual to each type of object and pretty much move our objects' coordinates based
+     * off movement velocity and the fixed tick rate. Positions are saved first so the renderer can interpolate.
+     * The balls are not moved here, they are moved by the swept collision pass so they can stop at whatever they hit.
+     * Package-private (like detectCollisions()) so the benchmarks can time it on its own.
+     */
+    void update() {
+        mBallStore.savePreviousPositions();
+
+        mBat.savePreviousPosition();
+        mBat.update(mTickRate);
+
+        if (mVersus) {
+            mOpponentBat.savePreviousPosition();
+            mOpponentBat.update(mTickRate);
+        }
+
+        mObstacleStore.savePreviousPositions();
+        Obstacle.updateAll(mObstacleStore, mScreenX, mTickRate);
+    }
+
+    /**
+     * This method controls all collision detection and further needed actions upon a collision. Such as a ball hitting
+     * the left boundary of the surface, and then reversing it's x velocity to keep it within the screen view. We are
+     * also updating score and number of lives for the user based off collisions occurring (if ball hits bottom of screen,
+     * then the player loses a life, etc.)
+     *
+     * First every obstacle is put in the grid covering everywhere it was during this step (broadphase). Then each ball
+     * is moved with a swept test against the bat, the obstacles the grid says are nearby, and the screen edges.
+     * @see PongSimulation#moveBall(int)
+     * @see UniformGrid
+     */
+    void detectCollisions() {
+        EntityStore obstacles = mObstacleStore;
+        int obstacleCount = obstacles.size();
+
+        mGrid.clear();
+
+        for (int i = 0; i < obstacleCount; i++) {
+            // Everywhere the obstacle was during the step, from its previous to its current position.
+            mSweptBounds.set(
+                    Math.min(obstacles.prevX[i], obstacles.x[i]),
+                    Math.min(obstacles.prevY[i], obstacles.y[i]),
+                    Math.max(obstacles.prevX[i], obstacles.x[i]) + obstacles.w[i],
+                    Math.max(obstacles.prevY[i], obstacles.y[i]) + obstacles.h[i]);
+            mGrid.insert(i, mSweptBounds);
+        }
+
+        if (mNearby.length < obstacleCount) {
+            mNearby = new int[obstacleCount * 2];
+        }
+
+        for (int i = 0; i < mBallStore.size(); i++) {
+            if (!moveBall(i)) {
+                // The game ended and everything was reset.
+                break;
+            }
+        }
+
+        for (int i = 0; i < obstacleCount; i++) {
+            if (obstacles.x[i] + obstacles.w[i] > mScreenX) {
+                obstacles.vx[i] = -obstacles.vx[i];
+            }
+
+            if (obstacles.x[i] < 0) {
+                obstacles.vx[i] = -obstacles.vx[i];
+            }
+        }
+    }
+
+    /**
+     * Moves one ball through this step with a swept test: we find the first thing it touches along its path, move it
+     * exactly there, bounce it, and carry on with whatever is left of the step (up to MAX_CONTACTS_PER_STEP times).
+     * A fast ball therefore can not skip over the bat or an obstacle between two steps. Package-private so the
+     * benchmarks can time it on its own, it uses the grid built by the last detectCollisions().
+     * @param i the ball's slot in mBallStore.
+     * @return false if the ball's miss ended the game (everything has been reset).
+     * @see SweptAabb
+     * @see Ball#batBounce(EntityStore, int, Aabb)
+     * @see Ball#increaseVelocity(EntityStore, int, float)
+     */
+    boolean moveBall(int i) {
+        EntityStore balls = mBallStore;
+        EntityStore obstacles = mObstacleStore;
+        float width = balls.w[i];
+        float height = balls.h[i];
+
+        // Everywhere the ball could reach this step, whichever way it bounces.
+        float reachX = Math.abs(balls.vx[i] / mTickRate);
+        float reachY = Math.abs(balls.vy[i] / mTickRate);
+        mSweptBounds.set(balls.x[i] - reachX, balls.y[i] - reachY,
+                balls.x[i] + width + reachX, balls.y[i] + height + reachY);
+        int nearby = mGrid.query(mSweptBounds, mNearby);
+
+        Aabb bat = mBat.getRect();
+        float batStartLeft = mBat.getPreviousLeft();
+        Aabb opponentBat = mOpponentBat.getRect();
+        float opponentStartLeft = mOpponentBat.getPreviousLeft();
+
+        // Fraction of this step the ball has already travelled.
+        float elapsed = 0;
+
+        for (int contacts = 0; contacts <= MAX_CONTACTS_PER_STEP; contacts++) {
+            float remaining = 1 - elapsed;
+            float dx = balls.vx[i] / mTickRate * remaining;
+            float dy = balls.vy[i] / mTickRate * remaining;
+            float left = balls.x[i];
+            float top = balls.y[i];
+            float right = left + width;
+            float bottom = top + height;
+
+            int hit = HIT_NONE;
+            float hitTime = 1;
+            boolean hitFromSide = false;
+            int hitObstacle = -1;
+
+            // Bat and obstacles move during the step too, so sweep against them relative to their own movement
+            // over the rest of the step.
+            float batLeft = batStartLeft + (bat.left - batStartLeft) * elapsed;
+            if (mSweep.sweep(left, top, right, bottom, dx - (bat.left - batLeft), dy,
+                    batLeft, bat.top, batLeft + bat.width(), bat.bottom) && mSweep.getTime() < hitTime) {
+                hit = HIT_BAT;
+                hitTime = mSweep.getTime();
+                hitFromSide = mSweep.getNormalX() != 0;
+            }
+
+            if (mVersus) {
+                float opponentLeft = opponentStartLeft + (opponentBat.left - opponentStartLeft) * elapsed;
+
+                if (mSweep.sweep(left, top, right, bottom, dx - (opponentBat.left - opponentLeft), dy,
+                        opponentLeft, opponentBat.top, opponentLeft + opponentBat.width(), opponentBat.bottom)
+                        && mSweep.getTime() < hitTime) {
+                    hit = HIT_OPPONENT_BAT;
+                    hitTime = mSweep.getTime();
+                    hitFromSide = mSweep.getNormalX() != 0;
+                }
+            }
+
+            for (int n = 0; n < nearby; n++) {
+                int o = mNearby[n];
+                float startX = obstacles.prevX[o] + (obstacles.x[o] - obstacles.prevX[o]) * elapsed;
+                float startY = obstacles.prevY[o] + (obstacles.y[o] - obstacles.prevY[o]) * elapsed;
+
+                if (mSweep.sweep(left, top, right, bottom,
+                        dx - (obstacles.x[o] - startX), dy - (obstacles.y[o] - startY),
+                        startX, startY, startX + obstacles.w[o], startY + obstacles.h[o])
+                        && mSweep.getTime() < hitTime) {
+                    hit = HIT_OBSTACLE;
+                    hitTime = mSweep.getTime();
+                    hitFromSide = mSweep.getNormalX() != 0;
+                    hitObstacle = o;
+                }
+            }
+
+            // Screen edges, only when the ball is heading towards them.
+            if (dy < 0 && top + dy < 0 && wallTime(top, 0, dy) < hitTime) {
+                hit = HIT_TOP;
+                hitTime = wallTime(top, 0, dy);
+            }
+
+            if (dy > 0 && bottom + dy > mScreenY && wallTime(bottom, mScreenY, dy) < hitTime) {
+                hit = HIT_BOTTOM;
+                hitTime = wallTime(bottom, mScreenY, dy);
+            }
+
+            if (dx < 0 && left + dx < 0 && wallTime(left, 0, dx) < hitTime) {
+                hit = HIT_SIDE;
+                hitTime = wallTime(left, 0, dx);
+            }
+
+            if (dx > 0 && right + dx > mScreenX && wallTime(right, mScreenX, dx) < hitTime) {
+                hit = HIT_SIDE;
+                hitTime = wallTime(right, mScreenX, dx);
+            }
+
+            if (hit == HIT_NONE) {
+                balls.x[i] = left + dx;
+                balls.y[i] = top + dy;
+                break;
+            }
+
+            balls.x[i] = left + dx * hitTime;
+            balls.y[i] = top + dy * hitTime;
+            elapsed += remaining * hitTime;
+
+            if (contacts == MAX_CONTACTS_PER_STEP) {
+                // Out of contacts for this step, the ball waits at the contact point until the next one.
+                break;
+            }
+
+            Aabb hitRect = null;
+
+            if (hit == HIT_BAT) {
+                hitRect = bat;
+            }
+
+            else if (hit == HIT_OPPONENT_BAT) {
+                hitRect = opponentBat;
+            }
+
+            else if (hit == HIT_OBSTACLE) {
+                obstacles.getBounds(hitObstacle, mHitRect);
+                hitRect = mHitRect;
+            }
+
+            if (!resolveHit(i, hit, hitFromSide, hitRect)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param edge the ball's leading edge (e.g. its top when moving up).
+     * @param wall coordinate of the screen edge.
+     * @param distance how far the ball moves along that axis in the rest of the step.
+     * @return fraction of the move at which the edge reaches the wall, 0 if already past it.
+     */
+    private static float wallTime(float edge, float wall, float distance) {
+        return Math.max(0, (wall - edge) / distance);
+    }
+
+    /**
+     * Bounces the ball off what it hit and applies the game rules for it (score, lives, sounds).
+     * @param i slot of the ball that hit something.
+     * @param hit one of the HIT_ constants.
+     * @param fromSide true if a bat/obstacle was hit on its left or right face rather than its top or bottom.
+     * @param rect the bat/obstacle that was hit, null for walls.
+     * @return false if this ended the game, in which case everything has been reset.
+     */
+    private boolean resolveHit(int i, int hit, boolean fromSide, Aabb rect) {
+        EntityStore balls = mBallStore;
+        mEvents.onBounce(balls.x[i] + balls.w[i] / 2, balls.y[i] + balls.h[i] / 2);
+
+        switch (hit) {
+            case HIT_BAT:
+                bounceOff(i, rect, fromSide);
+                Ball.increaseVelocity(balls, i, mTuning.ballSpeedUp);
+                mScore++;
+                mEvents.onBatHit(mScore);
+                break;
+
+            case HIT_OPPONENT_BAT:
+                bounceOff(i, rect, fromSide);
+                Ball.increaseVelocity(balls, i, mTuning.ballSpeedUp);
+                mOpponentScore++;
+                mEvents.onOpponentBatHit(mOpponentScore);
+                break;
+
+            case HIT_OBSTACLE:
+                bounceOff(i, rect, fromSide);
+                mEvents.onObstacleHit();
+                break;
+
+            case HIT_TOP:
+                balls.vy[i] = -balls.vy[i];
+
+                if (!mVersus) {
+                    mEvents.onTopWallBounce();
+                    break;
+                }
+
+                // Past the second player's bat.
+                mOpponentLives--;
+                mEvents.onOpponentMiss(mOpponentLives);
+
+                if (mOpponentLives == 0) {
+                    return endGame();
+                }
+
+                break;
+
+            case HIT_SIDE:
+                balls.vx[i] = -balls.vx[i];
+                mEvents.onSideWallBounce();
+                break;
+
+            case HIT_BOTTOM:
+                balls.vy[i] = -balls.vy[i];
+
+                if (mStressTest) {
+                    break;
+                }
+
+                mLives--;
+                mEvents.onMiss(mLives);
+
+                if (mLives == 0) {
+                    return endGame();
+                }
+
+                break;
+        }
+
+        return true;
+    }
+
+    /**
+     * Someone ran out of lives: pauses, reports the game over and starts the next game.
+     * @return false, for resolveHit to pass on.
+     */
+    private boolean endGame() {
+        mPaused = true;
+        mEvents.onGameOver(mScore);
+
+        resetGame();
+        return false;
+    }
+
+    /** Top/bottom face hits use the usual bat bounce, side hits just send the ball back the way it came. */
+    private void bounceOff(int i, Aabb rect, boolean fromSide) {
+        if (fromSide) {
+            mBallStore.vx[i] = -mBallStore.vx[i];
+        }
+
+        else {
+            Ball.batBounce(mBallStore, i, rect);
+        }
+    }
+
+    /**
+     * Copies what is needed to draw the current step into a snapshot, so another thread can draw it while the
+     * simulation carries on.
+     * @param out the snapshot to fill.
+     */
+    public void copyTo(Snapshot out) {
+        out.mBalls.copyFrom(mBallStore);
+        out.mObstacles.copyFrom(mObstacleStore);
+        out.mBat.set(mBat.getRect());
+        out.mBatPrevLeft = mBat.getPreviousLeft();
+        out.mVersus = mVersus;
+        out.mOpponentBat.set(mOpponentBat.getRect());
+        out.mOpponentBatPrevLeft = mOpponentBat.getPreviousLeft();
+        out.mOpponentScore = mOpponentScore;
+        out.mOpponentLives = mOpponentLives;
+        out.mTick = mTick;
+        out.mScore = mScore;
+        out.mLives = mLives;
+        out.mPaused = mPaused;
+        out.mStressTest = mStressTest;
+        System.arraycopy(mPhaseNanos, 0, out.mPhaseNanos, 0, mPhaseNanos.length);
+        out.mProfiledSteps = mProfiledSteps;
+    }
+
+    /** @return bytes saveState(ByteBuffer) needs for the game as it is now. */
+    public int getStateBytes() {
+        return STATE_HEADER_BYTES + Bat.STATE_BYTES * 2 + EntityStore.getStateBytes(mBallStore.size())
+                + EntityStore.getStateBytes(mObstacleStore.size());
+    }
+
+    /**
+     * Writes the complete game state (every ball, obstacle and both bats with their velocities, scores, lives, tick
+     * and the paused flag) to a compact binary form, so the game can carry on later exactly where it was, e.g. after
+     * the activity is recreated or the process is killed in the background. A normal game takes a few hundred bytes
+     * and a few microseconds. NetSession also sends it, and rolls back to it.
+     * @param out buffer with at least getStateBytes() bytes remaining, written from its position onwards.
+     * @see PongSimulation#restoreState(ByteBuffer)
+     */
+    public void saveState(ByteBuffer out) {
+        out.putInt(STATE_MAGIC);
+        out.putInt(STATE_VERSION);
+        out.putInt(mScreenX);
+        out.putInt(mScreenY);
+        out.putFloat(mTuning.ballSpeedUp);
+        out.putInt(mTuning.obstacleSpeedDivisor);
+        out.putInt(mTuning.batLengthDivisor);
+        out.putInt(mTickRate);
+        out.putLong(mTick);
+        out.putInt(mScore);
+        out.putInt(mLives);
+        out.put((byte) (mPaused ? 1 : 0));
+        out.put((byte) (mStressTest ? 1 : 0));
+        out.put((byte) (mVersus ? 1 : 0));
+        out.putInt(mOpponentScore);
+        out.putInt(mOpponentLives);
+        mBat.writeTo(out);
+        mOpponentBat.writeTo(out);
+        mBallStore.writeTo(out);
+        mObstacleStore.writeTo(out);
+    }
+
+    /**
+     * Puts the game back in a state written by saveState(ByteBuffer). The state must come from a simulation of the same
+     * screen size and tuning, otherwise nothing is changed.
+     *
+     * A recording can not span a restore (the log would replay from a fresh game), so restoring ends any recording.
+     * The random numbers for extra balls carry on from a seed derived from the saved tick rather than from where the
+     * saved game's sequence was.
+     * @param in buffer positioned at the start of the state.
+     * @throws IllegalArgumentException if the data is not a save state, is of another version, screen size or tuning,
+     * or is cut short. The game is left as it was.
+     */
+    public void restoreState(ByteBuffer in) {
+        try {
+            if (in.getInt() != STATE_MAGIC || in.getInt() != STATE_VERSION) {
+                throw new IllegalArgumentException("Not a save state of this version");
+            }
+
+            if (in.getInt() != mScreenX || in.getInt() != mScreenY || in.getFloat() != mTuning.ballSpeedUp
+                    || in.getInt() != mTuning.obstacleSpeedDivisor || in.getInt() != mTuning.batLengthDivisor) {
+                throw new IllegalArgumentException("Save state is for another screen size or tuning");
+            }
+
+            int tickRate = in.getInt();
+            long tick = in.getLong();
+            int score = in.getInt();
+            int lives = in.getInt();
+            boolean paused = in.get() != 0;
+            boolean stressTest = in.get() != 0;
+            boolean versus = in.get() != 0;
+            int opponentScore = in.getInt();
+            int opponentLives = in.getInt();
+
+            if (tickRate <= 0) {
+                throw new IllegalArgumentException("Bad tick rate " + tickRate);
+            }
+
+            // Check everything is there before touching the game, so a bad state leaves it as it was.
+            ByteBuffer check = in.duplicate();
+
+            if (check.remaining() < Bat.STATE_BYTES * 2) {
+                throw new BufferUnderflowException();
+            }
+
+            check.position(check.position() + Bat.STATE_BYTES * 2);
+            int balls = skipStore(check);
+            int obstacles = skipStore(check);
+
+            if (balls < 1 || (obstacles < 1 && !versus)) {
+                throw new IllegalArgumentException("Save state has no ball or obstacles");
+            }
+
+            // One view per store slot. A new view adds a slot, the store's contents are then replaced wholesale.
+            while (mBalls.size() > balls) {
+                mBalls.remove(mBalls.size() - 1);
+            }
+
+            mBallStore.truncate(mBalls.size());
+
+            while (mBalls.size() < balls) {
+                mBalls.add(new Ball(mBallStore, mScreenX));
+            }
+
+            while (mObstacles.size() > obstacles) {
+                mObstacles.remove(mObstacles.size() - 1);
+            }
+
+            mObstacleStore.truncate(mObstacles.size());
+
+            while (mObstacles.size() < obstacles) {
+                mObstacles.add(new Obstacle(mObstacleStore, mScreenX, mScreenY, mTuning));
+            }
+
+            mBat.readFrom(in);
+            mOpponentBat.readFrom(in);
+            mBallStore.readFrom(in);
+            mObstacleStore.readFrom(in);
+            mTickRate = tickRate;
+            mTick = tick;
+            mScore = score;
+            mLives = lives;
+            mPaused = paused;
+            mStressTest = stressTest;
+            mVersus = versus;
+            mOpponentScore = opponentScore;
+            mOpponentLives = opponentLives;
+        }
+
+        catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Save state is cut short", e);
+        }
+
+        mRandom.setSeed(mSeed ^ mTick);
+        mRecorder = null;
+    }
+
+    /**
+     * Steps over one EntityStore's data, checking it is all there.
+     * @return its object count.
+     */
+    private static int skipStore(ByteBuffer in) {
+        int size = in.getInt();
+
+        if (size < 0 || in.remaining() < size * 4L * 8) {
+            throw new BufferUnderflowException();
+        }
+
+        in.position(in.position() + size * 4 * 8);
+        return size;
+    }
+
+    /**
+     * Hash of everything that makes up the game state (every position and velocity bit for bit, score, lives, tick).
+     * Two simulations with the same checksum are, for all practical purposes, in the same state.
+     * @return the hash.
+     */
+    public long checksum() {
+        long hash = mTick;
+        hash = hash * 31 + mScore;
+        hash = hash * 31 + mLives;
+        hash = hash * 31 + (mPaused ? 1 : 0);
+        hash = hash * 31 + Float.floatToIntBits(mBat.getRect().left);
+        hash = hash * 31 + mBat.getMovementState();
+        hash = hash * 31 + hash(mBallStore);
+        hash = hash * 31 + hash(mObstacleStore);
+
+        // Only for versus games, so single player checksums (and recordings made before versus games) still match.
+        if (mVersus) {
+            hash = hash * 31 + mOpponentScore;
+            hash = hash * 31 + mOpponentLives;
+            hash = hash * 31 + Float.floatToIntBits(mOpponentBat.getRect().left);
+            hash = hash * 31 + mOpponentBat.getMovementState();
+        }
+
+        return hash;
+    }
+
+    private static long hash(EntityStore store) {
+        long hash = store.size();
+
+        for (int i = 0; i < store.size(); i++) {
+            hash = hash * 31 + Float.floatToIntBits(store.x[i]);
+            hash = hash * 31 + Float.floatToIntBits(store.y[i]);
+            hash = hash * 31 + Float.floatToIntBits(store.vx[i]);
+            hash = hash * 31 + Float.floatToIntBits(store.vy[i]);
+        }
+
+        return hash;
+    }
+
+    /** @return width of the playing area. */
+    public int getScreenX() {
+        return mScreenX;
+    }
+
+    /** @return height of the playing area. */
+    public int getScreenY() {
+        return mScreenY;
+    }
+
+    /** @return number of steps run so far. */
+    public long getTick() {
+        return mTick;
+    }
+
+    /** @return current score. */
+    public int getScore() {
+        return mScore;
+    }
+
+    /** @return lives left in the current game. */
+    public int getLives() {
+        return mLives;
+    }
+
+    /** @return true while the game waits for the player to start (at launch and after a game over). */
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    /** @return the first ball (the only one in a normal game). */
+    public Ball getBall() {
+        return mBalls.get(0);
+    }
+
+    /** @return number of balls in play. */
+    public int getBallCount() {
+        return mBalls.size();
+    }
+
+    /**
+     * @param index 0 to getBallCount() - 1.
+     * @return the ball at that index.
+     */
+    public Ball getBall(int index) {
+        return mBalls.get(index);
+    }
+
+    /** @return the difficulty constants this game is played with. */
+    public Tuning getTuning() {
+        return mTuning;
+    }
+
+    /** @return the player's bat. */
+    public Bat getBat() {
+        return mBat;
+    }
+
+    /** @return the second player's bat, along the top. Only in play in a versus game. */
+    public Bat getOpponentBat() {
+        return mOpponentBat;
+    }
+
+    /** @return the second player's score in a versus game. */
+    public int getOpponentScore() {
+        return mOpponentScore;
+    }
+
+    /** @return the second player's lives left in a versus game. */
+    public int getOpponentLives() {
+        return mOpponentLives;
+    }
+
+    /**
+     * @return the top obstacle, null in a versus game (which has none).
+     * @see PongSimulation#getObstacle(int)
+     */
+    public Obstacle getObstacle() {
+        return mObstacles.isEmpty() ? null : mObstacles.get(0);
+    }
+
+    /**
+     * @return the lower obstacle, null in a versus game (which has none).
+     * @see PongSimulation#getObstacle(int)
+     */
+    public Obstacle getAddObstacle() {
+        return mObstacles.size() < 2 ? null : mObstacles.get(1);
+    }
+
+    /** @return number of obstacles. */
+    public int getObstacleCount() {
+        return mObstacles.size();
+    }
+
+    /**
+     * @param index 0 to getObstacleCount() - 1.
+     * @return the obstacle at that index.
+     */
+    public Obstacle getObstacle(int index) {
+        return mObstacles.get(index);
+    }
+}
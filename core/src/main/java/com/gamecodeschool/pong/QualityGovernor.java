@@ -0,0 +1,185 @@
+package com.gamecodeschool.pong;
+
+import java.util.Arrays;
+
+/**
+ * Decides how much visual quality the game can afford on the device it runs on, from the frame times the render loop
+ * measures. Quality is a level from 0 (everything on) to MAX_LEVEL (everything that can be given up, given up), the
+ * caller decides what each level turns down (see PongGame#applyQuality(int)).
+ *
+ * Frames are looked at in windows of a fixed number of frames. At the end of every window the 90th percentile of two
+ * timings is worked out: the frame time (start of one frame to the start of the next, which includes waiting for
+ * vsync) and the work time (start of a frame to the point it starts waiting). A window is overloaded when the frame
+ * time percentile misses the target by more than DOWN_RATIO, and has headroom when the work time percentile is under
+ * UP_RATIO of the target. The work time is what shows headroom, as with vsync pacing the frame time never drops below
+ * the target however little work a frame does.
+ *
+ * Levels only change with hysteresis, so quality does not flicker between two levels:
+ *  - the thresholds for going down and going up are far apart,
+ *  - quality goes down after DOWN_WINDOWS overloaded windows in a row, but only goes up after a longer run of windows
+ *    with headroom, and that run doubles (up to MAX_UP_WINDOWS) every time quality has to go straight back down after
+ *    going up,
+ *  - after every change the counts start again, so the next decision is based on frames drawn at the new level only.
+ *
+ * A floor can be put on the level from outside (e.g. while the device is hot), the level is never below it.
+ *
+ * onFrame() and the getters are only to be used from one thread (the render thread), setFloor() from any.
+ */
+public class QualityGovernor {
+
+    /** Lowest quality there is. */
+    public static final int MAX_LEVEL = 4;
+
+    // A window is overloaded when its 90th percentile frame time is over this many targets.
+    private static final double DOWN_RATIO = 1.2;
+    // A window has headroom when its 90th percentile work time is under this many targets.
+    private static final double UP_RATIO = 0.6;
+    // Overloaded windows in a row before quality goes down.
+    private static final int DOWN_WINDOWS = 2;
+    // Windows with headroom in a row before quality goes up, to begin with and at most.
+    private static final int UP_WINDOWS = 5;
+    private static final int MAX_UP_WINDOWS = 40;
+
+    private final int mWindow;
+    private final long[] mFrameNanos;
+    private final long[] mWorkNanos;
+    private final long[] mSorted;
+    private int mCount;
+    private int mLevel;
+    private volatile int mFloor;
+    private int mOverloaded;
+    private int mHeadroom;
+    private int mUpWindows = UP_WINDOWS;
+    // Whether the last change was quality going up, so going down next means it went up too soon.
+    private boolean mWentUp;
+    private long mFrameP90;
+    private long mWorkP90;
+    private int mChanges;
+
+    /**
+     * Parametrized constructor below.
+     * @param window frames per window, e.g. one second's worth.
+     */
+    public QualityGovernor(int window) {
+        mWindow = window;
+        mFrameNanos = new long[window];
+        mWorkNanos = new long[window];
+        mSorted = new long[window];
+    }
+
+    /**
+     * Adds the timings of one frame, deciding on the level whenever a window is complete.
+     * @param frameNanos time from the start of the previous frame to the start of this one.
+     * @param workNanos time this frame spent before waiting for the next.
+     * @param targetNanos time a frame should take at the frame rate aimed for.
+     * @return true if the level changed.
+     */
+    public boolean onFrame(long frameNanos, long workNanos, long targetNanos) {
+        int floor = mFloor;
+
+        if (mLevel < floor) {
+            setLevel(floor);
+            return true;
+        }
+
+        mFrameNanos[mCount] = frameNanos;
+        mWorkNanos[mCount] = workNanos;
+
+        if (++mCount < mWindow) {
+            return false;
+        }
+
+        mCount = 0;
+        mFrameP90 = p90(mFrameNanos);
+        mWorkP90 = p90(mWorkNanos);
+
+        if (mFrameP90 > targetNanos * DOWN_RATIO) {
+            mHeadroom = 0;
+
+            if (++mOverloaded >= DOWN_WINDOWS && mLevel < MAX_LEVEL) {
+                if (mWentUp) {
+                    mUpWindows = Math.min(MAX_UP_WINDOWS, mUpWindows * 2);
+                }
+
+                mWentUp = false;
+                setLevel(mLevel + 1);
+                return true;
+            }
+        }
+
+        else if (mWorkP90 < targetNanos * UP_RATIO) {
+            mOverloaded = 0;
+
+            if (++mHeadroom >= mUpWindows && mLevel > floor) {
+                mWentUp = true;
+                setLevel(mLevel - 1);
+                return true;
+            }
+        }
+
+        else {
+            // Neither, the level is about right.
+            mOverloaded = 0;
+            mHeadroom = 0;
+        }
+
+        return false;
+    }
+
+    // 90th percentile (nearest rank) of a full window.
+    private long p90(long[] samples) {
+        System.arraycopy(samples, 0, mSorted, 0, mWindow);
+        Arrays.sort(mSorted);
+        return mSorted[Math.max(0, (mWindow * 90 + 99) / 100 - 1)];
+    }
+
+    private void setLevel(int level) {
+        mLevel = level;
+        mChanges++;
+        mCount = 0;
+        mOverloaded = 0;
+        mHeadroom = 0;
+    }
+
+    /**
+     * Starts a fresh window, e.g. after the render loop idled, so frames from before the gap are not mixed with frames
+     * after it. The level and the hysteresis state are kept.
+     */
+    public void restartWindow() {
+        mCount = 0;
+    }
+
+    /** @return current quality level, 0 is the best. */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * Puts a floor on the level (raising the level at the next frame if it is below it), from any thread. Lowering
+     * the floor does not raise quality by itself, that needs frames with headroom as usual.
+     * @param floor from 0 (no floor) to MAX_LEVEL.
+     */
+    public void setFloor(int floor) {
+        mFloor = Math.max(0, Math.min(MAX_LEVEL, floor));
+    }
+
+    /** @return the floor on the level. */
+    public int getFloor() {
+        return mFloor;
+    }
+
+    /** @return times the level changed so far. */
+    public int getChanges() {
+        return mChanges;
+    }
+
+    /** @return 90th percentile frame time of the last complete window, in nanoseconds. */
+    public long getFrameP90() {
+        return mFrameP90;
+    }
+
+    /** @return 90th percentile work time of the last complete window, in nanoseconds. */
+    public long getWorkP90() {
+        return mWorkP90;
+    }
+}
@@ -0,0 +1,61 @@
+package com.gamecodeschool.pong;
+
+import java.util.Random;
+
+/**
+ * A simple computer player for headless runs: it starts the game and chases the ball, but aims a random distance to
+ * the side of it (picked again after every bat hit or miss), so it misses now and then and every seed plays a
+ * different game. Everything random comes from its own seeded Random, so a seed always gives the same game.
+ * @see BatchRunner
+ */
+public class SeededPlayer implements InputSource {
+
+    // Bat does not move while its centre is this close to where it aims.
+    private static final float DEAD_ZONE = 5;
+
+    private final Random mRandom;
+    // Largest aiming error as a fraction of the bat length, 0.5 never misses a slow ball.
+    private final float mError;
+    private float mOffset;
+    private int mScore = -1;
+    private int mLives = -1;
+
+    /**
+     * Parametrized constructor below.
+     * @param seed seed for the aiming errors.
+     * @param error largest aiming error as a fraction of the bat length, e.g. 0.75.
+     */
+    public SeededPlayer(long seed, float error) {
+        mRandom = new Random(seed);
+        mError = error;
+    }
+
+    @Override
+    public void applyInput(long tick, PongSimulation simulation) {
+        simulation.unpause();
+
+        Aabb bat = simulation.getBat().getRect();
+
+        if (simulation.getScore() != mScore || simulation.getLives() != mLives) {
+            // The last rally ended or the ball was hit, aim somewhere new.
+            mScore = simulation.getScore();
+            mLives = simulation.getLives();
+            mOffset = (mRandom.nextFloat() * 2 - 1) * mError * bat.width();
+        }
+
+        float target = simulation.getBall().getRect().centerX() + mOffset;
+        float centre = bat.centerX();
+
+        if (target < centre - DEAD_ZONE) {
+            simulation.setBatMovement(Bat.LEFT);
+        }
+
+        else if (target > centre + DEAD_ZONE) {
+            simulation.setBatMovement(Bat.RIGHT);
+        }
+
+        else {
+            simulation.setBatMovement(Bat.STOPPED);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.gamecodeschool.pong;
+
+/**
+ * Everything needed to draw one simulation step (positions at this and the previous step, score, lives), copied out
+ * of the simulation so another thread can draw it while the simulation carries on. Filled by:
+ * @see PongSimulation#copyTo(Snapshot)
+ * and handed between threads through a TripleBuffer. Once published a snapshot is not changed until the reader is
+ * done with it, so the reader needs no locking.
+ *
+ * Filling a snapshot only copies arrays into arrays it already has, so nothing is allocated once they are big enough.
+ */
+public final class Snapshot {
+
+    final EntityStore mBalls = new EntityStore(16);
+    final EntityStore mObstacles = new EntityStore(16);
+    final Aabb mBat = new Aabb();
+    float mBatPrevLeft;
+    boolean mVersus;
+    final Aabb mOpponentBat = new Aabb();
+    float mOpponentBatPrevLeft;
+    int mOpponentScore;
+    int mOpponentLives;
+    long mTick;
+    int mScore;
+    int mLives;
+    boolean mPaused;
+    boolean mStressTest;
+    // Running totals of the simulation's phase times, only counted while profiling.
+    final long[] mPhaseNanos = new long[FrameProfiler.COLLISION + 1];
+    long mProfiledSteps;
+    private long mTimeNanos;
+
+    /** @return number of the simulation step this snapshot was taken after. */
+    public long getTick() {
+        return mTick;
+    }
+
+    /** @return score at this step. */
+    public int getScore() {
+        return mScore;
+    }
+
+    /** @return lives left at this step. */
+    public int getLives() {
+        return mLives;
+    }
+
+    /** @return true if the game was waiting for the player at this step. */
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    /** @return true if a versus game was being played at this step, the second bat is then in play. */
+    public boolean isVersus() {
+        return mVersus;
+    }
+
+    /** @return the second player's score at this step. */
+    public int getOpponentScore() {
+        return mOpponentScore;
+    }
+
+    /** @return the second player's lives left at this step. */
+    public int getOpponentLives() {
+        return mOpponentLives;
+    }
+
+    /** @return true if a stress test was running at this step. */
+    public boolean isStressTest() {
+        return mStressTest;
+    }
+
+    /**
+     * @param phase FrameProfiler.INPUT, UPDATE or COLLISION.
+     * @return total time the simulation spent in that phase over all profiled steps, in nanoseconds.
+     * @see PongSimulation#setProfiling(boolean)
+     */
+    public long getPhaseNanos(int phase) {
+        return mPhaseNanos[phase];
+    }
+
+    /** @return number of steps the simulation has profiled so far. */
+    public long getProfiledSteps() {
+        return mProfiledSteps;
+    }
+
+    /** @return when this step was due in real time (System.nanoTime()), as set by whoever took the snapshot. */
+    public long getTimeNanos() {
+        return mTimeNanos;
+    }
+
+    /**
+     * Records when this step was due in real time, used by the reader to work out how far between this step and the
+     * previous one to draw.
+     * @param timeNanos System.nanoTime() time base.
+     */
+    public void setTimeNanos(long timeNanos) {
+        mTimeNanos = timeNanos;
+    }
+
+    /** @return number of balls. */
+    public int getBallCount() {
+        return mBalls.size();
+    }
+
+    /** @return number of obstacles. */
+    public int getObstacleCount() {
+        return mObstacles.size();
+    }
+
+    /**
+     * Writes a ball's position part way between the previous and this step into out.
+     * @param index 0 to getBallCount() - 1.
+     * @param alpha 0 gives the previous position, 1 the position at this step.
+     * @param out box to write into.
+     */
+    public void interpolateBall(int index, float alpha, Aabb out) {
+        mBalls.interpolate(index, alpha, out);
+    }
+
+    /** Same as interpolateBall(int, float, Aabb) for an obstacle. */
+    public void interpolateObstacle(int index, float alpha, Aabb out) {
+        mObstacles.interpolate(index, alpha, out);
+    }
+
+    /** Same as interpolateBall(int, float, Aabb) for the bat. */
+    public void interpolateBat(float alpha, Aabb out) {
+        out.left = mBatPrevLeft + (mBat.left - mBatPrevLeft) * alpha;
+        out.right = out.left + mBat.width();
+        out.top = mBat.top;
+        out.bottom = mBat.bottom;
+    }
+
+    /** Same as interpolateBall(int, float, Aabb) for the second player's bat. */
+    public void interpolateOpponentBat(float alpha, Aabb out) {
+        out.left = mOpponentBatPrevLeft + (mOpponentBat.left - mOpponentBatPrevLeft) * alpha;
+        out.right = out.left + mOpponentBat.width();
+        out.top = mOpponentBat.top;
+        out.bottom = mOpponentBat.bottom;
+    }
+}
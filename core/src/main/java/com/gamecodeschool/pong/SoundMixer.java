@@ -0,0 +1,280 @@
+package com.gamecodeschool.pong;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Mixes short sound clips (16 bit mono PCM, already at the output sample rate) into buffers for an audio device. On a
+ * device the simulation thread asks for sounds with play() and a dedicated audio thread calls mix() for every buffer it
+ * hands to the audio output, so a sound starts in the very next buffer rather than waiting on a SoundPool binder call.
+ *
+ * Play requests travel from the one producer thread to the audio thread through a fixed size lock-free ring, the same
+ * way touches do in InputEventRing: play() never blocks or allocates, and if the audio thread falls behind so far that
+ * the ring fills up the request is dropped and counted. Up to maxVoices clips play at once, a new sound beyond that
+ * replaces the one closest to finishing.
+ *
+ * Also measures event to sound latency: the time from play() to when the first sample of that sound is due out of the
+ * speaker, which the audio thread reports with onPresented() after writing each buffer.
+ * @see InputEventRing
+ */
+public class SoundMixer {
+
+    private final AtomicReferenceArray<short[]> mClips;
+    // Play requests, a single producer single consumer ring of parallel arrays.
+    private final int mMask;
+    private final int[] mRequestClip;
+    private final long[] mRequestNanos;
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mTail = new AtomicLong();
+    private long mCachedHead;
+    private final AtomicLong mDropped = new AtomicLong();
+    // Voices playing, audio thread only. A voice is a clip's samples and how far into them we are.
+    private final short[][] mVoiceSamples;
+    private final int[] mVoicePosition;
+    private int mVoiceCount;
+    // Request times of the voices the last mix() started, waiting for onPresented().
+    private final long[] mStartedNanos;
+    private int mStartedCount;
+    private int[] mSum = new int[0];
+    // Written by the audio thread, volatile so the render thread can show them.
+    private volatile long mLastLatencyNanos;
+    private volatile long mMaxLatencyNanos;
+    private volatile long mAverageLatencyNanos;
+    private long mLatencySumNanos;
+    private long mLatencyCount;
+
+    /**
+     * Parametrized constructor below.
+     * @param clipCount number of clip slots, clip ids go from 0 to clipCount - 1.
+     * @param maxVoices most clips mixed at once.
+     * @param queueCapacity most play requests waiting at once, rounded up to a power of two.
+     */
+    public SoundMixer(int clipCount, int maxVoices, int queueCapacity) {
+        if (maxVoices <= 0) {
+            throw new IllegalArgumentException("Need at least one voice: " + maxVoices);
+        }
+
+        mClips = new AtomicReferenceArray<>(clipCount);
+        int size = Integer.highestOneBit(Math.max(2, queueCapacity - 1)) << 1;
+        mMask = size - 1;
+        mRequestClip = new int[size];
+        mRequestNanos = new long[size];
+        mVoiceSamples = new short[maxVoices][];
+        mVoicePosition = new int[maxVoices];
+        mStartedNanos = new long[size];
+    }
+
+    /**
+     * Sets the samples of a clip. Safe to call from any thread at any time, e.g. as clips finish loading, a voice
+     * already playing the old samples finishes with them.
+     * @param clip the clip id.
+     * @param samples 16 bit mono PCM at the output sample rate.
+     */
+    public void setClip(int clip, short[] samples) {
+        mClips.set(clip, samples);
+    }
+
+    /**
+     * Producer side: asks for a clip to start in the next buffer mixed. Never blocks. Requests for a clip that has not
+     * been set yet are skipped by the mixer.
+     * @param clip the clip id.
+     * @param timeNanos when the sound was asked for, System.nanoTime() time base.
+     * @return false if the request ring was full and the request dropped.
+     */
+    public boolean play(int clip, long timeNanos) {
+        long tail = mTail.get();
+
+        if (tail - mCachedHead > mMask) {
+            mCachedHead = mHead.get();
+
+            if (tail - mCachedHead > mMask) {
+                mDropped.lazySet(mDropped.get() + 1);
+                return false;
+            }
+        }
+
+        int slot = (int) tail & mMask;
+        mRequestClip[slot] = clip;
+        mRequestNanos[slot] = timeNanos;
+
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side: starts every clip asked for so far and mixes the next frames of all voices into out, silence
+     * where nothing plays. Samples that add up past the 16 bit range are clipped.
+     * @param out buffer to fill.
+     * @param frames number of samples to fill.
+     * @return number of voices started by this call, see onPresented(long).
+     */
+    public int mix(short[] out, int frames) {
+        startRequested();
+
+        if (mSum.length < frames) {
+            mSum = new int[frames];
+        }
+
+        int[] sum = mSum;
+
+        for (int i = 0; i < frames; i++) {
+            sum[i] = 0;
+        }
+
+        for (int v = 0; v < mVoiceCount; v++) {
+            short[] samples = mVoiceSamples[v];
+            int position = mVoicePosition[v];
+            int count = Math.min(frames, samples.length - position);
+
+            for (int i = 0; i < count; i++) {
+                sum[i] += samples[position + i];
+            }
+
+            mVoicePosition[v] = position + count;
+        }
+
+        for (int i = 0; i < frames; i++) {
+            out[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sum[i]));
+        }
+
+        removeFinished();
+        return mStartedCount;
+    }
+
+    /**
+     * Consumer side: reports when the first sample of the buffer last mixed is due out of the speaker, which completes
+     * the latency measurement of the voices that buffer started.
+     * @param firstFrameNanos presentation time of the buffer's first sample, System.nanoTime() time base.
+     */
+    public void onPresented(long firstFrameNanos) {
+        for (int i = 0; i < mStartedCount; i++) {
+            long latency = firstFrameNanos - mStartedNanos[i];
+            mLastLatencyNanos = latency;
+            mMaxLatencyNanos = Math.max(mMaxLatencyNanos, latency);
+            mLatencySumNanos += latency;
+            mLatencyCount++;
+            mAverageLatencyNanos = mLatencySumNanos / mLatencyCount;
+        }
+
+        mStartedCount = 0;
+    }
+
+    private void startRequested() {
+        long head = mHead.get();
+        long tail = mTail.get();
+        mStartedCount = 0;
+
+        for (long i = head; i < tail; i++) {
+            int slot = (int) i & mMask;
+            int clip = mRequestClip[slot];
+            short[] samples = clip >= 0 && clip < mClips.length() ? mClips.get(clip) : null;
+
+            if (samples == null) {
+                continue;
+            }
+
+            int voice = mVoiceCount;
+
+            if (voice == mVoiceSamples.length) {
+                voice = closestToFinishing();
+            }
+
+            else {
+                mVoiceCount++;
+            }
+
+            mVoiceSamples[voice] = samples;
+            mVoicePosition[voice] = 0;
+            mStartedNanos[mStartedCount++] = mRequestNanos[slot];
+        }
+
+        mHead.lazySet(tail);
+    }
+
+    private int closestToFinishing() {
+        int result = 0;
+        int leastLeft = Integer.MAX_VALUE;
+
+        for (int v = 0; v < mVoiceCount; v++) {
+            int left = mVoiceSamples[v].length - mVoicePosition[v];
+
+            if (left < leastLeft) {
+                leastLeft = left;
+                result = v;
+            }
+        }
+
+        return result;
+    }
+
+    private void removeFinished() {
+        int v = 0;
+
+        while (v < mVoiceCount) {
+            if (mVoicePosition[v] >= mVoiceSamples[v].length) {
+                // Order does not matter, move the last voice into the gap.
+                mVoiceCount--;
+                mVoiceSamples[v] = mVoiceSamples[mVoiceCount];
+                mVoicePosition[v] = mVoicePosition[mVoiceCount];
+                mVoiceSamples[mVoiceCount] = null;
+            }
+
+            else {
+                v++;
+            }
+        }
+    }
+
+    /** @return number of clips playing after the last mix(). */
+    public int getActiveVoices() {
+        return mVoiceCount;
+    }
+
+    /** @return number of play requests dropped so far because the ring was full. */
+    public long getDropped() {
+        return mDropped.get();
+    }
+
+    /** @return event to sound latency of the most recent sound, in nanoseconds. */
+    public long getLastLatencyNanos() {
+        return mLastLatencyNanos;
+    }
+
+    /** @return highest event to sound latency seen, in nanoseconds. */
+    public long getMaxLatencyNanos() {
+        return mMaxLatencyNanos;
+    }
+
+    /** @return average event to sound latency, in nanoseconds, 0 before the first sound. */
+    public long getAverageLatencyNanos() {
+        return mAverageLatencyNanos;
+    }
+
+    /**
+     * Converts a clip to another sample rate by linear interpolation, good enough for short effects and cheap enough to
+     * do at load time so mixing never has to.
+     * @param samples 16 bit mono PCM at fromRate.
+     * @param fromRate sample rate of samples, in Hz.
+     * @param toRate sample rate wanted, in Hz.
+     * @return the clip at toRate (samples itself if the rates match).
+     */
+    public static short[] resample(short[] samples, int fromRate, int toRate) {
+        if (fromRate == toRate || samples.length == 0) {
+            return samples;
+        }
+
+        int length = (int) ((long) samples.length * toRate / fromRate);
+        short[] result = new short[length];
+        double step = (double) fromRate / toRate;
+
+        for (int i = 0; i < length; i++) {
+            double position = i * step;
+            int index = (int) position;
+            int next = Math.min(index + 1, samples.length - 1);
+            double fraction = position - index;
+            result[i] = (short) Math.round(samples[index] + (samples[next] - samples[index]) * fraction);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,191 @@
+package com.gamecodeschool.pong;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes a game state (the bytes PongSimulation#saveState writes) as the difference from an earlier state the other
+ * side already has, the baseline, so a network packet only carries what changed. Used by:
+ * @see NetSession
+ *
+ * The two states are XORed byte by byte: whatever did not change (tuning, sizes, the score most of the time, the
+ * upper bytes of a float that only moved a little) comes out as zeros. The result is written as runs:
+ *  length of the state (varint), then pairs of: number of zero bytes (varint), number of literal bytes (varint) and
+ *  the literal XOR bytes themselves, until the whole length is covered.
+ * Zero runs shorter than MIN_ZERO_RUN are kept in the literal instead, they would cost more to skip than to send.
+ * Without a baseline the state is encoded against all zeros, i.e. sent whole.
+ */
+public final class StateDelta {
+
+    /** Largest state accepted, anything bigger would not fit a datagram anyway. */
+    public static final int MAX_STATE_BYTES = 65507;
+    private static final int MIN_ZERO_RUN = 3;
+
+    private StateDelta() {
+    }
+
+    /**
+     * Writes state as its difference from baseline.
+     * @param state the state to send.
+     * @param length number of bytes of state to use.
+     * @param baseline the state the receiver already has, null for none.
+     * @param baselineLength number of bytes of baseline to use, bytes past it count as zeros.
+     * @param out where to write, from its position.
+     */
+    public static void encode(byte[] state, int length, byte[] baseline, int baselineLength, ByteBuffer out) {
+        putVarInt(out, length);
+        int i = 0;
+
+        while (i < length) {
+            int zeros = 0;
+
+            while (i + zeros < length && xor(state, baseline, baselineLength, i + zeros) == 0) {
+                zeros++;
+            }
+
+            i += zeros;
+            int literals = 0;
+
+            // Up to the next zero run long enough to be worth skipping, or the end.
+            while (i + literals < length) {
+                int run = 0;
+
+                while (run < MIN_ZERO_RUN && i + literals + run < length
+                        && xor(state, baseline, baselineLength, i + literals + run) == 0) {
+                    run++;
+                }
+
+                if (run == MIN_ZERO_RUN || i + literals + run == length) {
+                    break;
+                }
+
+                literals += run + 1;
+            }
+
+            putVarInt(out, zeros);
+            putVarInt(out, literals);
+
+            for (int n = 0; n < literals; n++) {
+                out.put(xor(state, baseline, baselineLength, i + n));
+            }
+
+            i += literals;
+        }
+    }
+
+    /**
+     * @param in an encoded state, at its start. Its position is not moved.
+     * @return number of bytes decode() will write.
+     * @throws IllegalArgumentException if the length is out of range.
+     */
+    public static int decodedLength(ByteBuffer in) {
+        int length = getVarInt(in, in.position());
+
+        if (length < 0 || length > MAX_STATE_BYTES) {
+            throw new IllegalArgumentException("Bad state length " + length);
+        }
+
+        return length;
+    }
+
+    /**
+     * Rebuilds a state written by encode(). out may be the baseline array itself, each byte is only read before it
+     * is written.
+     * @param in the encoded state, read from its position.
+     * @param baseline the same baseline it was encoded against, null for none.
+     * @param baselineLength number of bytes of baseline to use.
+     * @param out where to write the state, at least decodedLength(in) bytes.
+     * @return the state's length.
+     * @throws IllegalArgumentException if the data is malformed.
+     * @throws java.nio.BufferUnderflowException if the data is cut short.
+     */
+    public static int decode(ByteBuffer in, byte[] baseline, int baselineLength, byte[] out) {
+        int length = decodedLength(in);
+
+        if (out.length < length) {
+            throw new IllegalArgumentException("State of " + length + " bytes does not fit " + out.length);
+        }
+
+        in.position(in.position() + varIntSize(length));
+        int i = 0;
+
+        while (i < length) {
+            int zeros = readVarInt(in);
+            int literals = readVarInt(in);
+
+            // Each run on its own, their sum could overflow.
+            if (zeros < 0 || literals < 0 || zeros > length - i || literals > length - i - zeros) {
+                throw new IllegalArgumentException("Bad run at byte " + i);
+            }
+
+            for (int end = i + zeros; i < end; i++) {
+                out[i] = i < baselineLength && baseline != null ? baseline[i] : 0;
+            }
+
+            for (int end = i + literals; i < end; i++) {
+                out[i] = (byte) (in.get() ^ (i < baselineLength && baseline != null ? baseline[i] : 0));
+            }
+
+            if (zeros + literals == 0) {
+                throw new IllegalArgumentException("Empty run at byte " + i);
+            }
+        }
+
+        return length;
+    }
+
+    private static byte xor(byte[] state, byte[] baseline, int baselineLength, int i) {
+        return baseline != null && i < baselineLength ? (byte) (state[i] ^ baseline[i]) : state[i];
+    }
+
+    // Little endian base 128, as in InputLog: 7 bits per byte, top bit set on every byte but the last.
+    private static void putVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        out.put((byte) value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    // Same as readVarInt, at an absolute position.
+    private static int getVarInt(ByteBuffer in, int position) {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get(position++);
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,121 @@
+package com.gamecodeschool.pong;
+
+/**
+ * Continuous (swept) collision test between two boxes. Instead of asking "do these boxes overlap right now?", it asks
+ * "if this box moves by (dx, dy), at what point during that move does it first touch the other box?". This catches
+ * hits that a plain overlap test misses when something moves further than the other box is thick in one step
+ * (tunnelling). Used by:
+ * @see PongSimulation#detectCollisions()
+ *
+ * One instance is reused for every test, the result of the last successful sweep is kept in its fields so nothing is
+ * allocated per test.
+ */
+public class SweptAabb {
+
+    // Time of impact as a fraction (0 to 1) of the move, valid after sweep() returned true.
+    private float mTime;
+    // Direction the touched face of the target points in (-1, 0 or 1 on each axis).
+    private float mNormalX;
+    private float mNormalY;
+
+    /**
+     * Sweeps moving by (dx, dy) against a target that stays still. For a target that also moves, pass the movement
+     * relative to the target (moving's motion minus the target's motion).
+     * @param moving box at the start of the move.
+     * @param dx horizontal distance moved over the whole step.
+     * @param dy vertical distance moved over the whole step.
+     * @param target box that may be hit.
+     * @return true if moving touches target during the move, boxes that already overlap at the start do not count.
+     */
+    public boolean sweep(Aabb moving, float dx, float dy, Aabb target) {
+        return sweep(moving.left, moving.top, moving.right, moving.bottom, dx, dy,
+                target.left, target.top, target.right, target.bottom);
+    }
+
+    /**
+     * Same as sweep(Aabb, float, float, Aabb) with the boxes given as plain coordinates, for callers that keep their
+     * positions in arrays (EntityStore) rather than Aabb objects.
+     * @see SweptAabb#sweep(Aabb, float, float, Aabb)
+     */
+    public boolean sweep(float left, float top, float right, float bottom, float dx, float dy,
+                         float targetLeft, float targetTop, float targetRight, float targetBottom) {
+        float xEntry;
+        float xExit;
+        float yEntry;
+        float yExit;
+
+        if (dx == 0) {
+            if (right <= targetLeft || left >= targetRight) {
+                return false;
+            }
+
+            xEntry = Float.NEGATIVE_INFINITY;
+            xExit = Float.POSITIVE_INFINITY;
+        }
+
+        else if (dx > 0) {
+            xEntry = (targetLeft - right) / dx;
+            xExit = (targetRight - left) / dx;
+        }
+
+        else {
+            xEntry = (targetRight - left) / dx;
+            xExit = (targetLeft - right) / dx;
+        }
+
+        if (dy == 0) {
+            if (bottom <= targetTop || top >= targetBottom) {
+                return false;
+            }
+
+            yEntry = Float.NEGATIVE_INFINITY;
+            yExit = Float.POSITIVE_INFINITY;
+        }
+
+        else if (dy > 0) {
+            yEntry = (targetTop - bottom) / dy;
+            yExit = (targetBottom - top) / dy;
+        }
+
+        else {
+            yEntry = (targetBottom - top) / dy;
+            yExit = (targetTop - bottom) / dy;
+        }
+
+        float entry = Math.max(xEntry, yEntry);
+        float exit = Math.min(xExit, yExit);
+
+        if (entry > exit || entry < 0 || entry > 1) {
+            return false;
+        }
+
+        mTime = entry;
+
+        if (xEntry > yEntry) {
+            mNormalX = dx > 0 ? -1 : 1;
+            mNormalY = 0;
+        }
+
+        else {
+            mNormalX = 0;
+            mNormalY = dy > 0 ? -1 : 1;
+        }
+
+        return true;
+    }
+
+    /** @return fraction of the move (0 to 1) at which the boxes first touched. */
+    public float getTime() {
+        return mTime;
+    }
+
+    /** @return -1 or 1 if the hit was on the target's left or right face, 0 otherwise. */
+    public float getNormalX() {
+        return mNormalX;
+    }
+
+    /** @return -1 or 1 if the hit was on the target's top or bottom face, 0 otherwise. */
+    public float getNormalY() {
+        return mNormalY;
+    }
+}
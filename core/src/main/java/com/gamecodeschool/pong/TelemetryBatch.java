@@ -0,0 +1,251 @@
+package com.gamecodeschool.pong;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One batch of performance telemetry from a play session: a minute or so of frame times, garbage collections,
+ * collisions and scoring, from one device. A session writes a batch every so often and one when it pauses, so a session
+ * that is killed loses at most one batch.
+ *
+ * Batches are appended to a telemetry file one after another, each as its length, the batch and a CRC32 of it, so a
+ * file can only ever be added to and a batch cut short by the process dying is recognised and skipped on reading.
+ * @see TelemetryReport
+ */
+public class TelemetryBatch {
+
+    private static final int MAGIC = 0x504e4754; // "PNGT"
+    private static final int VERSION = 1;
+    // No real batch comes anywhere near this, anything bigger is a corrupt length.
+    private static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    long mSessionId;
+    String mDevice = "";
+    int mSdk;
+    int mBatchIndex;
+    long mStartMillis;
+    long mDurationNanos;
+    long mFrameBudgetNanos;
+    boolean mStressTest;
+    final FrameHistogram mFrames = new FrameHistogram();
+    // -1 where the device can not tell.
+    long mGcCount = -1;
+    long mBlockingGcCount = -1;
+    long mCollisions;
+    long mPoints;
+    long mLivesLost;
+    long mGamesOver;
+    int mBestScore;
+    long mDroppedBatches;
+
+    /** @return random id shared by every batch of one session. */
+    public long getSessionId() {
+        return mSessionId;
+    }
+
+    /** @return manufacturer and model of the device. */
+    public String getDevice() {
+        return mDevice;
+    }
+
+    /** @return Android API level of the device. */
+    public int getSdk() {
+        return mSdk;
+    }
+
+    /** @return position of this batch in its session, from 0. */
+    public int getBatchIndex() {
+        return mBatchIndex;
+    }
+
+    /** @return wall clock time the batch started, in milliseconds since the epoch. */
+    public long getStartMillis() {
+        return mStartMillis;
+    }
+
+    /** @return how much play time the batch covers, in nanoseconds. */
+    public long getDurationNanos() {
+        return mDurationNanos;
+    }
+
+    /** @return time between display refreshes on the device, in nanoseconds. */
+    public long getFrameBudgetNanos() {
+        return mFrameBudgetNanos;
+    }
+
+    /** @return true if a stress test ran during the batch, so its numbers are not from normal play. */
+    public boolean isStressTest() {
+        return mStressTest;
+    }
+
+    /** @return frame times of the batch. */
+    public FrameHistogram getFrames() {
+        return mFrames;
+    }
+
+    /** @return garbage collections during the batch, -1 if unknown. */
+    public long getGcCount() {
+        return mGcCount;
+    }
+
+    /** @return garbage collections that paused the app during the batch, -1 if unknown. */
+    public long getBlockingGcCount() {
+        return mBlockingGcCount;
+    }
+
+    /** @return ball bounces off the bat, obstacles and walls during the batch. */
+    public long getCollisions() {
+        return mCollisions;
+    }
+
+    /** @return points scored during the batch. */
+    public long getPoints() {
+        return mPoints;
+    }
+
+    /** @return lives lost during the batch. */
+    public long getLivesLost() {
+        return mLivesLost;
+    }
+
+    /** @return games that ended during the batch. */
+    public long getGamesOver() {
+        return mGamesOver;
+    }
+
+    /** @return highest final score of the session's games so far. */
+    public int getBestScore() {
+        return mBestScore;
+    }
+
+    /**
+     * @return batches thrown away on the device (by the same process) before this one because the writer could not
+     * keep up.
+     */
+    public long getDroppedBatches() {
+        return mDroppedBatches;
+    }
+
+    /**
+     * Appends this batch to a telemetry file.
+     * @param out the file, opened for appending.
+     * @throws IOException if the write fails.
+     */
+    public void appendTo(OutputStream out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream data = new DataOutputStream(bytes);
+
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(mSessionId);
+        data.writeUTF(mDevice);
+        data.writeShort(mSdk);
+        data.writeInt(mBatchIndex);
+        data.writeLong(mStartMillis);
+        data.writeLong(mDurationNanos);
+        data.writeLong(mFrameBudgetNanos);
+        data.writeBoolean(mStressTest);
+        mFrames.writeTo(data);
+        data.writeLong(mGcCount);
+        data.writeLong(mBlockingGcCount);
+        data.writeLong(mCollisions);
+        data.writeLong(mPoints);
+        data.writeLong(mLivesLost);
+        data.writeLong(mGamesOver);
+        data.writeInt(mBestScore);
+        data.writeLong(mDroppedBatches);
+        data.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+
+        DataOutputStream record = new DataOutputStream(out);
+        record.writeInt(bytes.size());
+        bytes.writeTo(record);
+        record.writeInt((int) crc.getValue());
+        record.flush();
+    }
+
+    /**
+     * Reads every complete batch of a telemetry file. Stops quietly at a batch that was cut short or does not match its
+     * CRC (the end of a file being written when the process died), everything before it is still returned.
+     * @param in the file.
+     * @return the batches, oldest first.
+     * @throws IOException if reading fails or the file holds a batch version this code does not know.
+     */
+    public static List<TelemetryBatch> readAll(InputStream in) throws IOException {
+        DataInputStream records = new DataInputStream(in);
+        List<TelemetryBatch> batches = new ArrayList<>();
+
+        while (true) {
+            byte[] bytes;
+            int crcValue;
+
+            try {
+                int length = records.readInt();
+
+                if (length <= 0 || length > MAX_BATCH_BYTES) {
+                    return batches;
+                }
+
+                bytes = new byte[length];
+                records.readFully(bytes);
+                crcValue = records.readInt();
+            }
+
+            catch (EOFException e) {
+                return batches;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+
+            if ((int) crc.getValue() != crcValue) {
+                return batches;
+            }
+
+            batches.add(read(new DataInputStream(new ByteArrayInputStream(bytes))));
+        }
+    }
+
+    private static TelemetryBatch read(DataInputStream data) throws IOException {
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a telemetry batch");
+        }
+
+        int version = data.readUnsignedByte();
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported telemetry version " + version);
+        }
+
+        TelemetryBatch batch = new TelemetryBatch();
+        batch.mSessionId = data.readLong();
+        batch.mDevice = data.readUTF();
+        batch.mSdk = data.readUnsignedShort();
+        batch.mBatchIndex = data.readInt();
+        batch.mStartMillis = data.readLong();
+        batch.mDurationNanos = data.readLong();
+        batch.mFrameBudgetNanos = data.readLong();
+        batch.mStressTest = data.readBoolean();
+        batch.mFrames.readFrom(data);
+        batch.mGcCount = data.readLong();
+        batch.mBlockingGcCount = data.readLong();
+        batch.mCollisions = data.readLong();
+        batch.mPoints = data.readLong();
+        batch.mLivesLost = data.readLong();
+        batch.mGamesOver = data.readLong();
+        batch.mBestScore = data.readInt();
+        batch.mDroppedBatches = data.readLong();
+        return batch;
+    }
+}
@@ -0,0 +1,238 @@
+package com.gamecodeschool.pong;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges telemetry files from any number of devices into one fleet wide performance report: frame time percentiles,
+ * jank rate, garbage collections, collisions and scoring, overall and per device model. Batches from stress tests are
+ * counted but left out of the numbers, they are not normal play.
+ * @see TelemetryBatch
+ *
+ * Run from the command line on files pulled off devices (directories are searched for .pngt files), e.g.
+ *  adb pull /data/data/com.gamecodeschool.pong/files/telemetry.pngt pixel7.pngt
+ *  java -cp core.jar com.gamecodeschool.pong.TelemetryReport pixel7.pngt more-devices/
+ */
+public class TelemetryReport {
+
+    private final long NANOS_IN_SECOND = 1000000000L;
+
+    /** Everything added up for one group of batches (the whole fleet or one device model). */
+    private static final class Totals {
+        final FrameHistogram frames = new FrameHistogram();
+        final Set<Long> sessions = new HashSet<>();
+        long jankFrames;
+        long durationNanos;
+        // Play time of the batches whose GC counts are known.
+        long gcDurationNanos;
+        long gcCount;
+        long blockingGcCount;
+        long collisions;
+        long points;
+        long livesLost;
+        long gamesOver;
+        int bestScore;
+
+        void add(TelemetryBatch batch) {
+            frames.add(batch.getFrames());
+            sessions.add(batch.getSessionId());
+            // Janky is more than one and a half frame budgets, as in FrameProfiler.
+            jankFrames += batch.getFrames().countAbove(batch.getFrameBudgetNanos() * 3 / 2);
+            durationNanos += batch.getDurationNanos();
+
+            if (batch.getGcCount() >= 0) {
+                gcDurationNanos += batch.getDurationNanos();
+                gcCount += batch.getGcCount();
+                blockingGcCount += Math.max(0, batch.getBlockingGcCount());
+            }
+
+            collisions += batch.getCollisions();
+            points += batch.getPoints();
+            livesLost += batch.getLivesLost();
+            gamesOver += batch.getGamesOver();
+            bestScore = Math.max(bestScore, batch.getBestScore());
+        }
+    }
+
+    private final Totals mFleet = new Totals();
+    private final Map<String, Totals> mDevices = new HashMap<>();
+    // Highest dropped count reported per session, the count only ever grows while a process lives.
+    private final Map<Long, Long> mDropped = new HashMap<>();
+    private int mBatches;
+    private int mStressBatches;
+
+    /**
+     * Adds one batch to the report.
+     * @param batch a batch read from a telemetry file.
+     */
+    public void add(TelemetryBatch batch) {
+        mBatches++;
+
+        Long dropped = mDropped.get(batch.getSessionId());
+        mDropped.put(batch.getSessionId(), Math.max(dropped == null ? 0 : dropped, batch.getDroppedBatches()));
+
+        if (batch.isStressTest()) {
+            mStressBatches++;
+            return;
+        }
+
+        mFleet.add(batch);
+
+        Totals device = mDevices.get(batch.getDevice());
+
+        if (device == null) {
+            device = new Totals();
+            mDevices.put(batch.getDevice(), device);
+        }
+
+        device.add(batch);
+    }
+
+    /** @return frame times of every normal play batch added. */
+    public FrameHistogram getFrames() {
+        return mFleet.frames;
+    }
+
+    /** @return fraction (0 to 1) of frames that missed at least one display refresh. */
+    public double getJankRate() {
+        return mFleet.frames.getCount() == 0 ? 0 : (double) mFleet.jankFrames / mFleet.frames.getCount();
+    }
+
+    /** @return number of distinct sessions seen in normal play batches. */
+    public int getSessions() {
+        return mFleet.sessions.size();
+    }
+
+    /** @return number of device models seen in normal play batches. */
+    public int getDevices() {
+        return mDevices.size();
+    }
+
+    /** @return garbage collections per minute of play, over the batches that know them, 0 if none do. */
+    public double getGcPerMinute() {
+        return perMinute(mFleet.gcCount, mFleet.gcDurationNanos);
+    }
+
+    /**
+     * Writes the report as plain text.
+     * @param out where to write.
+     */
+    public void print(PrintStream out) {
+        long dropped = 0;
+
+        for (long sessionDropped : mDropped.values()) {
+            dropped += sessionDropped;
+        }
+
+        out.println(String.format(Locale.US, "%d batches (%d stress test, not counted, %d dropped on devices)",
+                mBatches, mStressBatches, dropped));
+        out.println(String.format(Locale.US, "%d sessions on %d device models, %.1f hours of play, %d frames",
+                getSessions(), getDevices(), mFleet.durationNanos / 3600.0 / NANOS_IN_SECOND,
+                mFleet.frames.getCount()));
+        out.println();
+        out.println("Fleet:");
+        printTotals(out, mFleet);
+
+        List<Map.Entry<String, Totals>> devices = new ArrayList<>(mDevices.entrySet());
+        // Most frames first, the devices that matter most for the numbers above.
+        Collections.sort(devices, new Comparator<Map.Entry<String, Totals>>() {
+            @Override
+            public int compare(Map.Entry<String, Totals> a, Map.Entry<String, Totals> b) {
+                return Long.compare(b.getValue().frames.getCount(), a.getValue().frames.getCount());
+            }
+        });
+
+        for (Map.Entry<String, Totals> device : devices) {
+            out.println();
+            out.println(device.getKey() + " (" + device.getValue().sessions.size() + " sessions):");
+            printTotals(out, device.getValue());
+        }
+    }
+
+    private void printTotals(PrintStream out, Totals totals) {
+        FrameHistogram frames = totals.frames;
+
+        out.println(String.format(Locale.US,
+                "  frame time (ms) p50 %.2f  p90 %.2f  p95 %.2f  p99 %.2f  p99.9 %.2f  (max bucket %d ms)",
+                millis(frames.percentile(50)), millis(frames.percentile(90)), millis(frames.percentile(95)),
+                millis(frames.percentile(99)), millis(frames.percentile(99.9)),
+                FrameHistogram.BUCKETS * FrameHistogram.BUCKET_NANOS / 1000000));
+        out.println(String.format(Locale.US, "  janky frames %.2f%%",
+                frames.getCount() == 0 ? 0 : 100.0 * totals.jankFrames / frames.getCount()));
+        out.println(String.format(Locale.US, "  GCs per minute %.2f (%.2f blocking)",
+                perMinute(totals.gcCount, totals.gcDurationNanos),
+                perMinute(totals.blockingGcCount, totals.gcDurationNanos)));
+        out.println(String.format(Locale.US, "  collisions per second %.1f",
+                totals.durationNanos == 0 ? 0 : (double) totals.collisions * NANOS_IN_SECOND / totals.durationNanos));
+        out.println(String.format(Locale.US, "  games %d, points per game %.1f, lives lost %d, best score %d",
+                totals.gamesOver, totals.gamesOver == 0 ? 0 : (double) totals.points / totals.gamesOver,
+                totals.livesLost, totals.bestScore));
+    }
+
+    private double perMinute(long count, long durationNanos) {
+        return durationNanos == 0 ? 0 : count * 60.0 * NANOS_IN_SECOND / durationNanos;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    /**
+     * Command line entry point: reads every file given (and every .pngt file in directories given) and prints the
+     * merged report.
+     * @param args telemetry files or directories of them.
+     * @throws IOException if a file can not be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: TelemetryReport <telemetry.pngt | directory>...");
+            System.exit(2);
+        }
+
+        TelemetryReport report = new TelemetryReport();
+        List<File> files = new ArrayList<>();
+
+        for (String path : args) {
+            collect(new File(path), files);
+        }
+
+        for (File file : files) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                for (TelemetryBatch batch : TelemetryBatch.readAll(in)) {
+                    report.add(batch);
+                }
+            }
+        }
+
+        System.out.println(files.size() + " files");
+        report.print(System.out);
+    }
+
+    private static void collect(File file, List<File> files) {
+        File[] children = file.listFiles();
+
+        if (children == null) {
+            files.add(file);
+            return;
+        }
+
+        for (File child : children) {
+            if (child.isDirectory() || child.getName().endsWith(".pngt")) {
+                collect(child, files);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.gamecodeschool.pong;
+
+/**
+ * Works out where a ball will cross a horizontal line without stepping the simulation: O(1) however far away the line
+ * is and however many times the ball bounces off the side walls on the way. Used by:
+ * @see AiOpponent
+ *
+ * Side walls reflect the ball perfectly (PongSimulation only reverses its horizontal velocity), so the path bouncing
+ * between them is the straight path through a row of mirrored copies of the playing area. The ball is moved along the
+ * straight path and the result folded back into the real one: every span of walls it passed flips it over once.
+ * A ball moving away from the line is assumed to bounce straight back off bounceY (the far bat) the same way, which
+ * holds for its vertical speed but not always for its direction, the far bat decides that. Speed-ups on bat hits are
+ * not known in advance either, so a prediction is only as good as the next bounce off a bat.
+ *
+ * All positions are of the ball's top left corner: minX and maxX bound its left edge (0 and screen width minus ball
+ * width), lineY and bounceY are where its top edge is when it touches the line or the far bat.
+ */
+public final class TrajectoryPredictor {
+
+    private TrajectoryPredictor() {
+    }
+
+    /**
+     * @param y the ball's top.
+     * @param vy vertical speed, in units per second.
+     * @param lineY where the ball's top is when it crosses the line.
+     * @param bounceY where the ball's top is when it bounces off the far side, if moving away from the line.
+     * @return seconds until the ball crosses the line, infinite if it never does (no vertical movement).
+     */
+    public static float timeToLine(float y, float vy, float lineY, float bounceY) {
+        if (vy == 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        float distance = lineY - y;
+
+        // Moving away: there and back from the far side first.
+        if (distance * vy < 0) {
+            distance = Math.abs(bounceY - y) + Math.abs(bounceY - lineY);
+        }
+
+        return Math.abs(distance / vy);
+    }
+
+    /**
+     * @param x the ball's left.
+     * @param y the ball's top.
+     * @param vx horizontal speed, in units per second.
+     * @param vy vertical speed, in units per second.
+     * @param minX smallest left the ball can have.
+     * @param maxX largest left the ball can have.
+     * @param lineY where the ball's top is when it crosses the line.
+     * @param bounceY where the ball's top is when it bounces off the far side, if moving away from the line.
+     * @return the ball's left when it crosses the line, x itself if it never does.
+     */
+    public static float interceptX(float x, float y, float vx, float vy, float minX, float maxX, float lineY,
+                                   float bounceY) {
+        float time = timeToLine(y, vy, lineY, bounceY);
+
+        if (Float.isInfinite(time)) {
+            return x;
+        }
+
+        return fold(x + vx * time, minX, maxX);
+    }
+
+    /**
+     * Folds a position on the straight (unbounced) path back between the walls.
+     * @param x position on the straight path.
+     * @param minX one wall.
+     * @param maxX the other wall.
+     * @return where the bouncing ball is.
+     */
+    public static float fold(float x, float minX, float maxX) {
+        float span = maxX - minX;
+
+        if (span <= 0) {
+            return minX;
+        }
+
+        // Position within one there-and-back period of two spans, the second span mirrored.
+        float offset = (x - minX) % (2 * span);
+
+        if (offset < 0) {
+            offset += 2 * span;
+        }
+
+        return minX + (offset > span ? 2 * span - offset : offset);
+    }
+}
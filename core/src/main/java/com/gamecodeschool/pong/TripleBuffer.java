@@ -0,0 +1,75 @@
+package com.gamecodeschool.pong;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passes the latest version of some state from one writer thread to one reader thread without locks and without
+ * either side ever waiting for the other. The app uses one to hand Snapshots from its simulation thread to its render
+ * thread.
+ *
+ * There are three slots. The writer fills its back slot and publishes it by swapping it with the middle slot; the
+ * reader takes the newest published state by swapping its front slot with the middle slot. Each side always owns one
+ * slot nobody else touches, so the writer can fill the next state while the reader is still drawing the previous one.
+ * States the reader never got round to are simply overwritten, the reader always sees the newest complete one.
+ * @param <T> type of the state, reused over and over (never copied or allocated by the buffer).
+ */
+public class TripleBuffer<T> {
+
+    // Set in mMiddle when the middle slot holds a state the reader has not taken yet.
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+
+    private final Object[] mSlots;
+    // Index of the middle slot, plus FRESH. The only field both threads touch.
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+    // Owned by the writer.
+    private int mBack = 0;
+    // Owned by the reader.
+    private int mFront = 2;
+
+    /**
+     * Parametrized constructor below.
+     * @param first one of the three slots, the reader sees this one until the first publish().
+     * @param second another slot.
+     * @param third another slot.
+     */
+    public TripleBuffer(T first, T second, T third) {
+        mSlots = new Object[] {second, third, first};
+    }
+
+    /**
+     * Writer side: the slot to fill with the next state. Owned by the writer until publish().
+     * @return the back slot.
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) mSlots[mBack];
+    }
+
+    /** Writer side: makes the filled back slot the newest state and gets a new back slot. Never blocks. */
+    public void publish() {
+        mBack = mMiddle.getAndSet(mBack | FRESH) & INDEX;
+    }
+
+    /**
+     * Reader side: takes the newest published state, if there is one the reader has not seen. Never blocks.
+     * @return true if getFront() changed.
+     */
+    public boolean update() {
+        if ((mMiddle.get() & FRESH) == 0) {
+            return false;
+        }
+
+        mFront = mMiddle.getAndSet(mFront) & INDEX;
+        return true;
+    }
+
+    /**
+     * Reader side: the state to read, owned by the reader until the next update().
+     * @return the front slot.
+     */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        return (T) mSlots[mFront];
+    }
+}
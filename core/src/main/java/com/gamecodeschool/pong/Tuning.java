@@ -0,0 +1,43 @@
+package com.gamecodeschool.pong;
+
+/**
+ * The difficulty constants of the game in one place, so batch runs can try other values without touching the game
+ * code. A normal game uses DEFAULT. Immutable, so one instance can be shared by any number of simulations running on
+ * different threads.
+ * @see PongSimulation#PongSimulation(int, int, Tuning, long)
+ * @see BatchRunner
+ */
+public final class Tuning {
+
+    /** The values the game has always been played with. */
+    public static final Tuning DEFAULT = new Tuning(1.1f, 3, 8);
+
+    // Ball velocity is multiplied by this on every bat hit.
+    public final float ballSpeedUp;
+    // Obstacles move at screen width / this pixels per second.
+    public final int obstacleSpeedDivisor;
+    // The bat is screen width / this pixels long.
+    public final int batLengthDivisor;
+
+    /**
+     * Parametrized constructor below.
+     * @param ballSpeedUp factor applied to the ball velocity on every bat hit (1.1 by default).
+     * @param obstacleSpeedDivisor obstacle speed is screen width divided by this (3 by default).
+     * @param batLengthDivisor bat length is screen width divided by this (8 by default).
+     */
+    public Tuning(float ballSpeedUp, int obstacleSpeedDivisor, int batLengthDivisor) {
+        if (ballSpeedUp <= 0 || obstacleSpeedDivisor <= 0 || batLengthDivisor <= 0) {
+            throw new IllegalArgumentException("Tuning values must be positive");
+        }
+
+        this.ballSpeedUp = ballSpeedUp;
+        this.obstacleSpeedDivisor = obstacleSpeedDivisor;
+        this.batLengthDivisor = batLengthDivisor;
+    }
+
+    @Override
+    public String toString() {
+        return "speedUp=" + ballSpeedUp + " obstacleSpeed=sx/" + obstacleSpeedDivisor
+                + " batLength=sx/" + batLengthDivisor;
+    }
+}
@@ -0,0 +1,198 @@
+package com.gamecodeschool.pong;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * NetTransport over UDP, one non-blocking DatagramChannel per peer. The host listens on a port and takes the first
+ * peer it hears from as its client (the channel is then connected to it, datagrams from anywhere else are dropped by
+ * the system), the client connects to the host's address on its first send. Connecting does no network I/O for UDP,
+ * but Android's StrictMode counts it as network access, so it is left to whichever thread sends (the simulation
+ * thread) rather than the one that opens the transport (the UI thread).
+ *
+ * Sending before the host has heard from its client drops the packet, like any other lost packet. An ICMP port
+ * unreachable (the peer is not running yet, or has gone) is treated the same way.
+ */
+public class UdpTransport implements NetTransport, Closeable {
+
+    private final DatagramChannel mChannel;
+    // Client: the host's address, until connected to it.
+    private SocketAddress mPeer;
+
+    private UdpTransport(DatagramChannel channel, SocketAddress peer) throws IOException {
+        mChannel = channel;
+        mPeer = peer;
+        mChannel.configureBlocking(false);
+    }
+
+    /**
+     * Opens the host's side.
+     * @param port UDP port to listen on, 0 for any free one (see getLocalPort()).
+     * @return the transport.
+     * @throws IOException if the port can not be opened.
+     */
+    public static UdpTransport host(int port) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+
+        try {
+            channel.socket().bind(new InetSocketAddress(port));
+            return new UdpTransport(channel, null);
+        }
+
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the client's side.
+     * @param host where the host listens.
+     * @return the transport.
+     * @throws IOException if no channel could be opened.
+     */
+    public static UdpTransport join(SocketAddress host) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+
+        try {
+            return new UdpTransport(channel, host);
+        }
+
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Parses a host's address without touching the network: only a numeric IPv4 address is accepted, as resolving a
+     * host name blocks the calling thread (the UI thread, when joining from the intent).
+     * @param address e.g. 192.168.1.20:7777.
+     * @return the address, already resolved.
+     * @throws IllegalArgumentException if it is not an IPv4 address and port.
+     */
+    public static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+
+        if (colon < 0) {
+            throw new IllegalArgumentException("No port in " + address);
+        }
+
+        String[] parts = address.substring(0, colon).split("\\.", -1);
+        byte[] ip = new byte[4];
+
+        if (parts.length != ip.length) {
+            throw new IllegalArgumentException("Not an IPv4 address: " + address);
+        }
+
+        for (int i = 0; i < ip.length; i++) {
+            ip[i] = (byte) parseNumber(parts[i], 255, address);
+        }
+
+        int port = parseNumber(address.substring(colon + 1), 65535, address);
+
+        try {
+            return new InetSocketAddress(InetAddress.getByAddress(ip), port);
+        }
+
+        catch (UnknownHostException e) {
+            // Only thrown for an address of the wrong length.
+            throw new IllegalArgumentException(address, e);
+        }
+    }
+
+    // Digits only (Integer.parseInt would take a sign), 1 to 5 of them and at most max.
+    private static int parseNumber(String digits, int max, String address) {
+        if (digits.isEmpty() || digits.length() > 5) {
+            throw new IllegalArgumentException("Bad number in " + address);
+        }
+
+        int value = 0;
+
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Bad number in " + address);
+            }
+
+            value = value * 10 + (c - '0');
+        }
+
+        if (value > max) {
+            throw new IllegalArgumentException("Bad number in " + address);
+        }
+
+        return value;
+    }
+
+    /** @return the local UDP port. */
+    public int getLocalPort() {
+        return mChannel.socket().getLocalPort();
+    }
+
+    /** @return true once connected: the host once it heard from the client, the client once it first sent. */
+    public boolean isConnected() {
+        return mChannel.isConnected();
+    }
+
+    @Override
+    public void send(ByteBuffer packet) throws IOException {
+        if (!mChannel.isConnected() && mPeer != null) {
+            mChannel.connect(mPeer);
+            mPeer = null;
+        }
+
+        if (!mChannel.isConnected()) {
+            packet.position(packet.limit());
+            return;
+        }
+
+        try {
+            mChannel.write(packet);
+        }
+
+        catch (PortUnreachableException e) {
+            packet.position(packet.limit());
+        }
+    }
+
+    @Override
+    public boolean receive(ByteBuffer packet) throws IOException {
+        packet.clear();
+
+        try {
+            if (mChannel.isConnected()) {
+                mChannel.read(packet);
+            }
+
+            // A client that has not sent yet has nothing to receive.
+            else if (mPeer == null) {
+                SocketAddress from = mChannel.receive(packet);
+
+                if (from != null) {
+                    mChannel.connect(from);
+                }
+            }
+        }
+
+        catch (PortUnreachableException e) {
+            packet.clear();
+        }
+
+        packet.flip();
+        return packet.hasRemaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
@@ -0,0 +1,133 @@
+package com.gamecodeschool.pong;
+
+import java.util.Arrays;
+
+/**
+ * Broadphase for the collision pass: splits the playing area into equal square cells and remembers which objects
+ * touch which cells. A ball then only needs the exact (swept) test against objects sharing a cell with it, instead of
+ * against every object in the game. Used by:
+ * @see PongSimulation#detectCollisions()
+ *
+ * Everything is kept in int arrays that only grow (never shrink), so rebuilding the grid every step does not allocate
+ * once it has reached its working size. Objects are referred to by an int id chosen by the caller.
+ */
+public class UniformGrid {
+
+    private final float mCellSize;
+    private final int mColumns;
+    private final int mRows;
+    // First entry of each cell's linked list, -1 when the cell is empty.
+    private final int[] mCellHead;
+    // Linked list entries: which id the entry is for and the next entry in the same cell.
+    private int[] mEntryId = new int[64];
+    private int[] mEntryNext = new int[64];
+    private int mEntryCount;
+    // Stops an id that spans several cells being returned more than once by one query.
+    private int[] mQueryStamp = new int[16];
+    private int mStamp;
+
+    /**
+     * Parametrized constructor below.
+     * @param width width of the area covered (objects outside it are clamped into the edge cells).
+     * @param height height of the area covered.
+     * @param cellSize side length of one cell, roughly the size of the objects stored works best.
+     */
+    public UniformGrid(float width, float height, float cellSize) {
+        mCellSize = cellSize;
+        mColumns = Math.max(1, (int) Math.ceil(width / cellSize));
+        mRows = Math.max(1, (int) Math.ceil(height / cellSize));
+        mCellHead = new int[mColumns * mRows];
+        clear();
+    }
+
+    /** Removes every object, ready to insert this step's positions. */
+    public void clear() {
+        Arrays.fill(mCellHead, -1);
+        mEntryCount = 0;
+    }
+
+    /**
+     * Adds an object to every cell its bounds touch.
+     * @param id caller's id for the object (0 or more), returned by query().
+     * @param bounds area the object may cover this step.
+     */
+    public void insert(int id, Aabb bounds) {
+        if (id >= mQueryStamp.length) {
+            mQueryStamp = Arrays.copyOf(mQueryStamp, Math.max(id + 1, mQueryStamp.length * 2));
+        }
+
+        int firstColumn = column(bounds.left);
+        int lastColumn = column(bounds.right);
+        int firstRow = row(bounds.top);
+        int lastRow = row(bounds.bottom);
+
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                if (mEntryCount == mEntryId.length) {
+                    mEntryId = Arrays.copyOf(mEntryId, mEntryCount * 2);
+                    mEntryNext = Arrays.copyOf(mEntryNext, mEntryCount * 2);
+                }
+
+                int cell = r * mColumns + c;
+                mEntryId[mEntryCount] = id;
+                mEntryNext[mEntryCount] = mCellHead[cell];
+                mCellHead[cell] = mEntryCount;
+                mEntryCount++;
+            }
+        }
+    }
+
+    /**
+     * Finds every object sharing a cell with the given bounds. The result may include objects that do not actually
+     * overlap, the exact test is up to the caller.
+     * @param bounds area to look in.
+     * @param out receives the ids found, must be big enough to hold every inserted id.
+     * @return how many ids were written to out.
+     */
+    public int query(Aabb bounds, int[] out) {
+        mStamp++;
+
+        if (mStamp == 0) {
+            // Wrapped around after ~4 billion queries, start the stamps again.
+            Arrays.fill(mQueryStamp, 0);
+            mStamp = 1;
+        }
+
+        int found = 0;
+        int firstColumn = column(bounds.left);
+        int lastColumn = column(bounds.right);
+        int firstRow = row(bounds.top);
+        int lastRow = row(bounds.bottom);
+
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                for (int e = mCellHead[r * mColumns + c]; e != -1; e = mEntryNext[e]) {
+                    int id = mEntryId[e];
+
+                    if (mQueryStamp[id] != mStamp) {
+                        mQueryStamp[id] = mStamp;
+                        out[found++] = id;
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    private int column(float x) {
+        return clamp((int) Math.floor(x / mCellSize), mColumns);
+    }
+
+    private int row(float y) {
+        return clamp((int) Math.floor(y / mCellSize), mRows);
+    }
+
+    private static int clamp(int index, int count) {
+        if (index < 0) {
+            return 0;
+        }
+
+        return Math.min(index, count - 1);
+    }
+}
@@ -0,0 +1,205 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the closed form trajectory predictor and the computer player built on it.
+ */
+public class AiOpponentTest {
+
+    private static final int WORLD_X = PongSimulation.WORLD_WIDTH;
+    private static final int WORLD_Y = PongSimulation.WORLD_HEIGHT;
+
+    /** Counts what the computer player (the top bat) did in a game. */
+    private static class Counter implements GameEvents {
+        int hits;
+        int misses;
+
+        @Override
+        public void onOpponentBatHit(int score) {
+            hits++;
+        }
+
+        @Override
+        public void onOpponentMiss(int livesLeft) {
+            misses++;
+        }
+    }
+
+    /**
+     * Moves a point in small steps, reversing at the walls like the simulation does, until it crosses lineY, the
+     * slow way of doing what TrajectoryPredictor does in one go.
+     */
+    private static double stepToLine(double x, double y, double vx, double vy, double minX, double maxX,
+                                     double lineY, double bounceY) {
+        double dt = 1e-5;
+        boolean bounced = (lineY - y) * vy >= 0;
+
+        for (int i = 0; i < 10000000; i++) {
+            x += vx * dt;
+            y += vy * dt;
+
+            if (x < minX) {
+                x = 2 * minX - x;
+                vx = -vx;
+            }
+
+            else if (x > maxX) {
+                x = 2 * maxX - x;
+                vx = -vx;
+            }
+
+            if (!bounced && (bounceY - y) * vy <= 0) {
+                vy = -vy;
+                bounced = true;
+            }
+
+            if (bounced && (lineY - y) * vy <= 0) {
+                return x;
+            }
+        }
+
+        throw new AssertionError("Never reached the line");
+    }
+
+    @Test
+    public void foldReflectsBetweenTheWalls() {
+        assertEquals(30, TrajectoryPredictor.fold(30, 0, 100), 1e-4);
+        assertEquals(70, TrajectoryPredictor.fold(130, 0, 100), 1e-4);
+        assertEquals(30, TrajectoryPredictor.fold(230, 0, 100), 1e-4);
+        assertEquals(30, TrajectoryPredictor.fold(-30, 0, 100), 1e-4);
+        assertEquals(90, TrajectoryPredictor.fold(-110, 0, 100), 1e-4);
+        assertEquals(10, TrajectoryPredictor.fold(10, 10, 10), 0);
+    }
+
+    @Test
+    public void interceptMatchesSteppingThePath() {
+        float maxX = WORLD_X - 16;
+        float lineY = 22.5f;
+        float bounceY = WORLD_Y - 38.5f;
+        float[][] balls = {
+                // Straight up, one side bounce, many side bounces, moving away first.
+                {800, 600, 0, -300},
+                {1500, 800, 800, -300},
+                {100, 850, -6000, -450},
+                {400, 300, 1200, 300},
+        };
+
+        for (float[] ball : balls) {
+            double expected = stepToLine(ball[0], ball[1], ball[2], ball[3], 0, maxX, lineY, bounceY);
+            float predicted = TrajectoryPredictor.interceptX(ball[0], ball[1], ball[2], ball[3], 0, maxX, lineY,
+                    bounceY);
+
+            assertEquals(expected, predicted, 1);
+        }
+
+        // Never arriving leaves it where it is.
+        assertEquals(400, TrajectoryPredictor.interceptX(400, 300, 100, 0, 0, maxX, lineY, bounceY), 0);
+        assertEquals(Float.POSITIVE_INFINITY, TrajectoryPredictor.timeToLine(300, 0, lineY, bounceY), 0);
+    }
+
+    @Test
+    public void interceptMatchesTheSimulation() {
+        PongSimulation simulation = new PongSimulation(WORLD_X, WORLD_Y, Tuning.DEFAULT, 1);
+        simulation.startVersus();
+        simulation.unpause();
+
+        Ball ball = simulation.getBall();
+        Aabb top = simulation.getOpponentBat().getRect();
+        Aabb rect = ball.getRect();
+
+        // The ball starts moving down, past the bottom bat (which stays put) off the bottom and back up, bouncing off
+        // the sides.
+        float predicted = TrajectoryPredictor.interceptX(rect.left, rect.top, ball.getXVelocity(),
+                ball.getYVelocity(), 0, WORLD_X - rect.width(), top.bottom, WORLD_Y - rect.height());
+        float previousLeft = rect.left;
+        float previousTop = rect.top;
+
+        while (ball.getRect().top > top.bottom || ball.getYVelocity() > 0) {
+            previousLeft = ball.getRect().left;
+            previousTop = ball.getRect().top;
+            simulation.step();
+
+            assertTrue(simulation.getTick() < 10000);
+        }
+
+        // Crossed the line during the last step, within one step's movement of the prediction.
+        float step = Math.abs(ball.getXVelocity()) / simulation.getTickRate();
+        assertTrue(previousTop >= top.bottom);
+        assertEquals(previousLeft, predicted, step + 1);
+    }
+
+    @Test
+    public void perfectPlayerNeverMissesAndEasierOnesDo() {
+        AiOpponent.Difficulty perfect = new AiOpponent.Difficulty(0, 0);
+
+        for (long seed = 0; seed < 3; seed++) {
+            Counter counter = play(perfect, seed);
+            assertEquals(0, counter.misses);
+            assertTrue(counter.hits > 20);
+        }
+
+        int normal = 0;
+        int easy = 0;
+
+        for (long seed = 0; seed < 5; seed++) {
+            normal += play(AiOpponent.Difficulty.NORMAL, seed).misses;
+            easy += play(AiOpponent.Difficulty.EASY, seed).misses;
+        }
+
+        assertTrue(normal > 0);
+        assertTrue(easy > normal);
+    }
+
+    @Test
+    public void sameSeedSameGame() {
+        PongSimulation first = playGame(AiOpponent.Difficulty.EASY, 7);
+        PongSimulation second = playGame(AiOpponent.Difficulty.EASY, 7);
+
+        assertEquals(first.checksum(), second.checksum());
+    }
+
+    @Test
+    public void leavesSinglePlayerGamesAlone() {
+        PongSimulation simulation = new PongSimulation(WORLD_X, WORLD_Y, Tuning.DEFAULT, 1);
+        simulation.setInputSource(new AiOpponent(new SeededPlayer(1, 0.3f), AiOpponent.Difficulty.HARD, 1));
+
+        for (int i = 0; i < 600; i++) {
+            simulation.step();
+        }
+
+        assertFalse(simulation.isVersus());
+        assertEquals(Bat.STOPPED, simulation.getOpponentBat().getMovementState());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDifficultyIsRejected() {
+        new AiOpponent.Difficulty(-1, 0.5f);
+    }
+
+    /** Two minutes of a versus game against a seeded player at the bottom. */
+    private static Counter play(AiOpponent.Difficulty difficulty, long seed) {
+        Counter counter = new Counter();
+        playGame(difficulty, seed, counter);
+        return counter;
+    }
+
+    private static PongSimulation playGame(AiOpponent.Difficulty difficulty, long seed) {
+        return playGame(difficulty, seed, new Counter());
+    }
+
+    private static PongSimulation playGame(AiOpponent.Difficulty difficulty, long seed, GameEvents events) {
+        PongSimulation simulation = new PongSimulation(WORLD_X, WORLD_Y, Tuning.DEFAULT, seed);
+        simulation.startVersus();
+        simulation.setInputSource(new AiOpponent(new SeededPlayer(seed, 0.3f), difficulty, seed));
+        simulation.setEvents(events);
+
+        for (int i = 0; i < simulation.getTickRate() * 120; i++) {
+            simulation.step();
+        }
+
+        return simulation;
+    }
+}
@@ -0,0 +1,84 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the parallel batch runner.
+ */
+public class BatchRunnerTest {
+
+    private static final int SCREEN_X = 1920;
+    private static final int SCREEN_Y = 1080;
+    private static final long MAX_TICKS = 120 * 60 * 10;
+
+    @Test
+    public void gamesEndWithEveryLifeLost() {
+        BatchRunner runner = new BatchRunner(ForkJoinPool.commonPool(), SCREEN_X, SCREEN_Y, Tuning.DEFAULT, MAX_TICKS);
+
+        for (GameStats stats : runner.run(100, 16)) {
+            assertTrue(stats.toString(), stats.isGameOver());
+            assertEquals(3, stats.getLivesLost());
+            assertTrue(stats.getLongestRally() <= stats.getScore());
+            assertTrue(stats.getRallies() >= stats.getLivesLost());
+        }
+    }
+
+    @Test
+    public void resultsDoNotDependOnThreadCount() {
+        GameStats[] single = run(1, 40);
+        GameStats[] parallel = run(4, 40);
+
+        for (int i = 0; i < single.length; i++) {
+            assertEquals(100 + i, parallel[i].getSeed());
+            assertEquals(single[i].toString(), parallel[i].toString());
+        }
+    }
+
+    @Test
+    public void seedsPlayDifferentGames() {
+        GameStats[] results = run(2, 16);
+        boolean differ = false;
+
+        for (GameStats stats : results) {
+            differ |= stats.getTicks() != results[0].getTicks();
+        }
+
+        assertTrue(differ);
+    }
+
+    @Test
+    public void fasterBallShortensRallies() {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int normal = totalScore(new BatchRunner(pool, SCREEN_X, SCREEN_Y, Tuning.DEFAULT, MAX_TICKS).run(1, 32));
+        int faster = totalScore(new BatchRunner(pool, SCREEN_X, SCREEN_Y, new Tuning(1.5f, 3, 8), MAX_TICKS)
+                .run(1, 32));
+
+        assertTrue(normal + " vs " + faster, faster < normal);
+    }
+
+    private static GameStats[] run(int threads, int games) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        try {
+            return new BatchRunner(pool, SCREEN_X, SCREEN_Y, Tuning.DEFAULT, MAX_TICKS).run(100, games);
+        }
+
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static int totalScore(GameStats[] results) {
+        int total = 0;
+
+        for (GameStats stats : results) {
+            total += stats.getScore();
+        }
+
+        return total;
+    }
+}
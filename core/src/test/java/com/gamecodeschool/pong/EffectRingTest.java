@@ -0,0 +1,89 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the lock-free effect ring.
+ */
+public class EffectRingTest {
+
+    /** Checks effects arrive complete and in order. */
+    private static class Checker implements EffectRing.Sink {
+        int expected;
+
+        @Override
+        public void onEffect(int type, float x, float y) {
+            assertEquals(expected % 3, type);
+            assertEquals(expected, x, 0f);
+            assertEquals(-expected, y, 0f);
+            expected++;
+        }
+    }
+
+    @Test
+    public void drainsEffectsInOrder() {
+        EffectRing ring = new EffectRing(8);
+        Checker checker = new Checker();
+
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 5; i++) {
+                int n = round * 5 + i;
+                assertTrue(ring.offer(n % 3, n, -n));
+            }
+
+            assertEquals(5, ring.drain(checker));
+            assertEquals(0, ring.drain(checker));
+        }
+
+        assertEquals(50, checker.expected);
+    }
+
+    @Test
+    public void dropsEffectsWhenFull() {
+        EffectRing ring = new EffectRing(4);
+        Checker checker = new Checker();
+
+        for (int i = 0; i < 6; i++) {
+            ring.offer(i % 3, i, -i);
+        }
+
+        assertEquals(4, ring.capacity());
+        assertEquals(2, ring.getDropped());
+        assertEquals(4, ring.drain(checker));
+    }
+
+    @Test
+    public void handsEffectsBetweenThreads() throws InterruptedException {
+        final EffectRing ring = new EffectRing(64);
+        final int effects = 200000;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int n = 0; n < effects; ) {
+                    if (ring.offer(n % 3, n, -n)) {
+                        n++;
+                    }
+
+                    else {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+
+        Checker checker = new Checker();
+        producer.start();
+
+        while (checker.expected < effects) {
+            if (ring.drain(checker) == 0) {
+                Thread.yield();
+            }
+        }
+
+        producer.join();
+        assertEquals(effects, checker.expected);
+    }
+}
@@ -0,0 +1,101 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the frame profiler's rings, percentiles and jank count, and the simulation's phase timing.
+ */
+public class FrameProfilerTest {
+
+    private static final long BUDGET = 16000000L;
+
+    @Test
+    public void percentilesUseNearestRank() {
+        FrameProfiler profiler = new FrameProfiler(100, BUDGET);
+
+        for (int i = 100; i >= 1; i--) {
+            profiler.record(FrameProfiler.DRAW, i);
+        }
+
+        profiler.updateStats();
+
+        assertEquals(50, profiler.getP50(FrameProfiler.DRAW));
+        assertEquals(95, profiler.getP95(FrameProfiler.DRAW));
+        assertEquals(99, profiler.getP99(FrameProfiler.DRAW));
+        assertEquals(0, profiler.getP50(FrameProfiler.LOCK));
+    }
+
+    @Test
+    public void ringKeepsOnlyTheNewestSamples() {
+        FrameProfiler profiler = new FrameProfiler(4, BUDGET);
+
+        for (int i = 1; i <= 6; i++) {
+            profiler.record(FrameProfiler.POST, i);
+        }
+
+        assertEquals(4, profiler.getSampleCount(FrameProfiler.POST));
+        assertEquals(6, profiler.getSample(FrameProfiler.POST, 0));
+        assertEquals(3, profiler.getSample(FrameProfiler.POST, 3));
+
+        profiler.updateStats();
+        assertEquals(4, profiler.getP50(FrameProfiler.POST));
+    }
+
+    @Test
+    public void framesOverOneAndAHalfBudgetsAreJanky() {
+        FrameProfiler profiler = new FrameProfiler(8, BUDGET);
+
+        profiler.record(FrameProfiler.FRAME, BUDGET);
+        profiler.record(FrameProfiler.FRAME, BUDGET * 3 / 2);
+        profiler.record(FrameProfiler.FRAME, BUDGET * 2);
+        profiler.record(FrameProfiler.DRAW, BUDGET * 5);
+
+        assertEquals(3, profiler.getFrames());
+        assertEquals(1, profiler.getJankFrames());
+
+        profiler.reset();
+        assertEquals(0, profiler.getFrames());
+        assertEquals(0, profiler.getJankFrames());
+        assertEquals(0, profiler.getSampleCount(FrameProfiler.FRAME));
+    }
+
+    @Test
+    public void simulationOnlyTimesStepsWhileProfiling() {
+        PongSimulation simulation = new PongSimulation(1000, 500);
+        Snapshot snapshot = new Snapshot();
+        simulation.unpause();
+
+        simulation.step();
+        simulation.copyTo(snapshot);
+        assertEquals(0, snapshot.getProfiledSteps());
+
+        simulation.setProfiling(true);
+
+        for (int i = 0; i < 10; i++) {
+            simulation.step();
+        }
+
+        simulation.copyTo(snapshot);
+        assertEquals(10, snapshot.getProfiledSteps());
+        assertTrue(snapshot.getPhaseNanos(FrameProfiler.COLLISION) > 0);
+        assertEquals(11, snapshot.getTick());
+    }
+
+    @Test
+    public void profilingDoesNotChangeTheGame() {
+        PongSimulation plain = new PongSimulation(1000, 500);
+        PongSimulation profiled = new PongSimulation(1000, 500);
+        profiled.setProfiling(true);
+        plain.unpause();
+        profiled.unpause();
+
+        for (int i = 0; i < 500; i++) {
+            plain.step();
+            profiled.step();
+        }
+
+        assertEquals(plain.checksum(), profiled.checksum());
+    }
+}
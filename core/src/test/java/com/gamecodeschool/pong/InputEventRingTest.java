@@ -0,0 +1,91 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the lock-free input event ring.
+ */
+public class InputEventRingTest {
+
+    /** Checks events arrive complete and in order. */
+    private static class Checker implements InputEventRing.Sink {
+        long expected;
+
+        @Override
+        public void onInputEvent(long timeNanos, int type, int pointerId, float x, float y) {
+            assertEquals(expected, timeNanos);
+            assertEquals((int) (expected % 3), type);
+            assertEquals((int) expected, pointerId);
+            assertEquals(expected, x, 0f);
+            assertEquals(-expected, y, 0f);
+            expected++;
+        }
+    }
+
+    @Test
+    public void drainsEventsInOrder() {
+        InputEventRing ring = new InputEventRing(8);
+        Checker checker = new Checker();
+
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 5; i++) {
+                long n = round * 5 + i;
+                assertTrue(ring.offer(n, (int) (n % 3), (int) n, n, -n));
+            }
+
+            assertEquals(5, ring.drain(checker));
+            assertEquals(0, ring.drain(checker));
+        }
+
+        assertEquals(50, checker.expected);
+    }
+
+    @Test
+    public void dropsEventsWhenFull() {
+        InputEventRing ring = new InputEventRing(4);
+        Checker checker = new Checker();
+
+        for (int i = 0; i < 6; i++) {
+            ring.offer(i, i % 3, i, i, -i);
+        }
+
+        assertEquals(4, ring.capacity());
+        assertEquals(2, ring.getDropped());
+        assertEquals(4, ring.drain(checker));
+    }
+
+    @Test
+    public void handsEventsBetweenThreads() throws InterruptedException {
+        final InputEventRing ring = new InputEventRing(64);
+        final int events = 200000;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (long n = 0; n < events; ) {
+                    if (ring.offer(n, (int) (n % 3), (int) n, n, -n)) {
+                        n++;
+                    }
+
+                    else {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+
+        Checker checker = new Checker();
+        producer.start();
+
+        while (checker.expected < events) {
+            if (ring.drain(checker) == 0) {
+                Thread.yield();
+            }
+        }
+
+        producer.join();
+        assertEquals(events, checker.expected);
+    }
+}
@@ -0,0 +1,93 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for recording a session and replaying it.
+ */
+public class InputLogTest {
+
+    private static final int SCREEN_X = 1920;
+    private static final int SCREEN_Y = 1080;
+
+    /** Plays a few minutes with a computer player (several game overs included) while recording. */
+    private static PongSimulation recordSession(long ticks) {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y, Tuning.DEFAULT, 42);
+        simulation.startRecording();
+        simulation.setInputSource(new SeededPlayer(7, 0.75f));
+
+        for (long i = 0; i < ticks; i++) {
+            simulation.step();
+
+            if (i == ticks / 2) {
+                simulation.startStressTest(20);
+            }
+        }
+
+        return simulation;
+    }
+
+    @Test
+    public void replayEndsInTheRecordedState() {
+        PongSimulation recorded = recordSession(120 * 60 * 3);
+        InputLog log = recorded.getRecording();
+
+        PongSimulation replayed = InputReplay.replay(log);
+
+        assertEquals(recorded.getTick(), replayed.getTick());
+        assertEquals(recorded.getScore(), replayed.getScore());
+        assertEquals(recorded.checksum(), replayed.checksum());
+        assertEquals(log.getChecksum(), replayed.checksum());
+    }
+
+    @Test
+    public void logSurvivesWritingAndReading() throws IOException {
+        PongSimulation recorded = recordSession(120 * 60);
+        InputLog log = recorded.getRecording();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        log.writeTo(bytes);
+        assertEquals(log.size(), bytes.size());
+
+        InputLog read = InputLog.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(log.getLength(), read.getLength());
+        assertEquals(log.getChecksum(), read.getChecksum());
+        assertFalse(read.isTruncated());
+        assertEquals(recorded.checksum(), InputReplay.replay(read).checksum());
+    }
+
+    @Test
+    public void logOnlyGrowsWhenInputChanges() throws IOException {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y);
+        simulation.startRecording();
+        simulation.unpause();
+        simulation.setBatMovement(Bat.LEFT);
+
+        for (int i = 0; i < 120 * 60; i++) {
+            simulation.setBatMovement(Bat.LEFT);
+            simulation.step();
+        }
+
+        // Header, two events and the end marker, however long the session.
+        assertTrue(simulation.getRecording().size() < 64);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        InputLog.readFrom(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void recordingMustStartAtTheFirstStep() {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y);
+        simulation.step();
+        simulation.startRecording();
+    }
+}
@@ -0,0 +1,228 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the reusable game loop thread.
+ */
+public class LoopThreadTest {
+
+    private static final long TIMEOUT_NANOS = 2000000000L;
+
+    /** A body that counts its iterations and parks a little between them, like the game loops. */
+    private static class Counting implements Runnable {
+        final AtomicInteger iterations = new AtomicInteger();
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        LoopThread loop;
+
+        @Override
+        public void run() {
+            thread.set(Thread.currentThread());
+
+            while (loop.isRunning()) {
+                iterations.incrementAndGet();
+                LockSupport.parkNanos(this, 1000000000L);
+            }
+        }
+    }
+
+    private static void waitFor(AtomicInteger value, int atLeast) {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+
+        while (value.get() < atLeast) {
+            assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.yield();
+        }
+    }
+
+    @Test
+    public void stopBeforeAnyStartIsSafe() {
+        LoopThread loop = new LoopThread("Test", new Counting());
+
+        assertTrue(loop.stop(TIMEOUT_NANOS));
+        assertFalse(loop.isActive());
+        assertTrue(loop.quit(TIMEOUT_NANOS));
+    }
+
+    @Test
+    public void startStopCyclesReuseOneThread() {
+        Counting body = new Counting();
+        LoopThread loop = new LoopThread("Test", body);
+        body.loop = loop;
+        Thread first = null;
+
+        for (int i = 0; i < 20; i++) {
+            int before = body.iterations.get();
+            loop.start();
+            waitFor(body.iterations, before + 1);
+
+            // The body parks for a second per iteration, stop() has to wake it to return this quickly.
+            long start = System.nanoTime();
+            assertTrue(loop.stop(TIMEOUT_NANOS));
+            assertTrue(System.nanoTime() - start < 500000000L);
+            assertFalse(loop.isActive());
+
+            if (first == null) {
+                first = body.thread.get();
+            }
+
+            assertSame(first, body.thread.get());
+        }
+
+        assertEquals(20, loop.getStarts());
+        assertTrue(loop.quit(TIMEOUT_NANOS));
+    }
+
+    @Test
+    public void stopRightAfterStartNeverRunsTheBody() {
+        Counting body = new Counting();
+        LoopThread loop = new LoopThread("Test", body);
+        body.loop = loop;
+
+        for (int i = 0; i < 1000; i++) {
+            loop.start();
+            assertTrue(loop.stop(TIMEOUT_NANOS));
+            assertFalse(loop.isActive());
+        }
+
+        // Whichever starts were picked up in time ran and returned, none is left running.
+        assertTrue(loop.getStarts() <= 1000);
+        assertTrue(loop.quit(TIMEOUT_NANOS));
+    }
+
+    @Test
+    public void stopIsBoundedForAStuckBody() {
+        final AtomicInteger release = new AtomicInteger();
+        LoopThread loop = new LoopThread("Test", new Runnable() {
+            @Override
+            public void run() {
+                // Ignores isRunning() until released.
+                while (release.get() == 0) {
+                    LockSupport.parkNanos(1000000L);
+                }
+            }
+        });
+
+        loop.start();
+        waitForStart(loop);
+
+        assertFalse(loop.stop(50000000L));
+        assertTrue(loop.isActive());
+
+        release.set(1);
+        assertTrue(loop.stop(TIMEOUT_NANOS));
+        assertTrue(loop.quit(TIMEOUT_NANOS));
+    }
+
+    @Test
+    public void bodyThatReturnsByItselfWaitsForTheNextStart() {
+        final AtomicInteger runs = new AtomicInteger();
+        LoopThread loop = new LoopThread("Test", new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        });
+
+        loop.start();
+        waitFor(runs, 1);
+        assertTrue(loop.stop(TIMEOUT_NANOS));
+        assertEquals(1, runs.get());
+
+        loop.start();
+        waitFor(runs, 2);
+        assertTrue(loop.quit(TIMEOUT_NANOS));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void quitThatTimesOutEndsTheThreadOnceTheBodyReturns() throws InterruptedException {
+        final AtomicInteger release = new AtomicInteger();
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        LoopThread loop = new LoopThread("Test", new Runnable() {
+            @Override
+            public void run() {
+                thread.set(Thread.currentThread());
+
+                while (release.get() == 0) {
+                    LockSupport.parkNanos(1000000L);
+                }
+            }
+        });
+
+        loop.start();
+        waitForStart(loop);
+
+        assertFalse(loop.quit(50000000L));
+        assertTrue(loop.isActive());
+
+        release.set(1);
+        thread.get().join(TIMEOUT_NANOS / 1000000);
+        assertFalse(thread.get().isAlive());
+        assertFalse(loop.isActive());
+    }
+
+    @Test
+    public void bodyThatThrowsEndsTheThread() throws InterruptedException {
+        final RuntimeException failure = new RuntimeException("Test");
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        final AtomicReference<Throwable> reported = new AtomicReference<>();
+        LoopThread loop = new LoopThread("Test", new Runnable() {
+            @Override
+            public void run() {
+                Thread current = Thread.currentThread();
+                current.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                    @Override
+                    public void uncaughtException(Thread t, Throwable e) {
+                        reported.set(e);
+                    }
+                });
+                thread.set(current);
+                throw failure;
+            }
+        });
+
+        loop.start();
+        waitForStart(loop);
+
+        while (thread.get() == null) {
+            Thread.yield();
+        }
+
+        thread.get().join(TIMEOUT_NANOS / 1000000);
+        assertFalse(thread.get().isAlive());
+        assertSame(failure, reported.get());
+        assertFalse(loop.isActive());
+
+        try {
+            loop.start();
+            fail("Started after the body threw");
+        }
+
+        catch (IllegalStateException expected) {
+            // The thread is gone, it can not be woken.
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void startAfterQuitFails() {
+        LoopThread loop = new LoopThread("Test", new Counting());
+        loop.quit(TIMEOUT_NANOS);
+        loop.start();
+    }
+
+    private static void waitForStart(LoopThread loop) {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+
+        while (loop.getStarts() == 0) {
+            assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.gamecodeschool.pong;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests playing a versus game between two simulations over UDP on loopback, with the latency, jitter and
+ * loss of a bad network injected by LossyTransport.
+ */
+public class NetSessionTest {
+
+    private static final int WORLD_X = PongSimulation.WORLD_WIDTH;
+    private static final int WORLD_Y = PongSimulation.WORLD_HEIGHT;
+
+    private UdpTransport mHostSocket;
+    private UdpTransport mClientSocket;
+    private LossyTransport mHostLink;
+    private LossyTransport mClientLink;
+    private NetSession mHost;
+    private NetSession mClient;
+
+    private void connect(int latency, int jitter, double loss) throws IOException {
+        mHostSocket = UdpTransport.host(0);
+        mClientSocket = UdpTransport.join(new InetSocketAddress("127.0.0.1", mHostSocket.getLocalPort()));
+        mHostLink = new LossyTransport(mHostSocket, latency, jitter, loss, 1);
+        mClientLink = new LossyTransport(mClientSocket, latency, jitter, loss, 2);
+        mHost = new NetSession(new PongSimulation(WORLD_X, WORLD_Y, Tuning.DEFAULT, 3), mHostLink, NetSession.HOST);
+        mClient = new NetSession(new PongSimulation(WORLD_X, WORLD_Y, Tuning.DEFAULT, 3), mClientLink,
+                NetSession.CLIENT);
+    }
+
+    @After
+    public void close() throws IOException {
+        if (mHostSocket != null) {
+            mHostSocket.close();
+        }
+
+        if (mClientSocket != null) {
+            mClientSocket.close();
+        }
+    }
+
+    /** Runs both sides for a number of ticks with the given inputs. */
+    private void play(int ticks, int hostInput, int clientInput) throws IOException {
+        for (int i = 0; i < ticks; i++) {
+            mHostLink.tick();
+            mClientLink.tick();
+            mHost.tick(hostInput);
+            mClient.tick(clientInput);
+
+            // Loopback is fast but not instant, give the packets just sent time to arrive.
+            if (i % 16 == 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /** Changes both players' inputs every so often, like two people playing. */
+    private void playChanging(int ticks, int every) throws IOException {
+        int[] moves = { Bat.LEFT, Bat.STOPPED, Bat.RIGHT, Bat.RIGHT, Bat.LEFT, Bat.STOPPED, Bat.LEFT };
+
+        for (int i = 0; i < ticks; i += every) {
+            int n = i / every;
+            play(every, moves[n % moves.length] | NetSession.INPUT_START, moves[(n * 3 + 1) % moves.length]);
+        }
+    }
+
+    @Test
+    public void stateDeltaRoundTrips() {
+        PongSimulation simulation = new PongSimulation(WORLD_X, WORLD_Y, Tuning.DEFAULT, 3);
+        simulation.startVersus();
+        simulation.unpause();
+        byte[] before = save(simulation);
+
+        for (int i = 0; i < 2; i++) {
+            simulation.step();
+        }
+
+        byte[] after = save(simulation);
+        ByteBuffer whole = ByteBuffer.allocate(1024);
+        StateDelta.encode(after, after.length, null, 0, whole);
+        ByteBuffer delta = ByteBuffer.allocate(1024);
+        StateDelta.encode(after, after.length, before, before.length, delta);
+
+        // Two ticks only move the ball and the clock.
+        assertTrue("Delta of " + delta.position() + " bytes", delta.position() < whole.position() / 4);
+
+        whole.flip();
+        delta.flip();
+        byte[] decoded = new byte[StateDelta.decodedLength(whole)];
+        StateDelta.decode(whole, null, 0, decoded);
+        assertArrayEquals(after, decoded);
+
+        // In place, over the baseline itself.
+        assertEquals(after.length, StateDelta.decode(delta, before, before.length, before));
+        assertArrayEquals(after, before);
+    }
+
+    @Test
+    public void badStateDeltaIsRejected() {
+        ByteBuffer bad = ByteBuffer.wrap(new byte[] { 10, 2, 20, 1, 2 });
+
+        try {
+            StateDelta.decode(bad, null, 0, new byte[10]);
+            fail("Run past the end accepted");
+        }
+
+        catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void overflowingRunsAreRejected() throws IOException {
+        // A 200 byte state whose first runs are 1 << 30 zeros and 1 << 30 literals, together past Integer.MAX_VALUE.
+        byte[] runs = { (byte) 0xC8, 0x01, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x04, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x04 };
+
+        try {
+            StateDelta.decode(ByteBuffer.wrap(runs), null, 0, new byte[200]);
+            fail("Overflowing runs accepted");
+        }
+
+        catch (IllegalArgumentException expected) {
+        }
+
+        // Sent to a client it is one bad packet, not an exception out of tick().
+        final ByteBuffer packet = ByteBuffer.allocate(64);
+        packet.put((byte) 1).putLong(10).putLong(-1).put((byte) 0).put(runs).flip();
+        NetTransport transport = new NetTransport() {
+            @Override
+            public void send(ByteBuffer out) {
+                out.position(out.limit());
+            }
+
+            @Override
+            public boolean receive(ByteBuffer in) {
+                in.clear();
+
+                if (!packet.hasRemaining()) {
+                    in.flip();
+                    return false;
+                }
+
+                in.put(packet).flip();
+                return true;
+            }
+        };
+        NetSession client = new NetSession(new PongSimulation(WORLD_X, WORLD_Y, Tuning.DEFAULT, 3), transport,
+                NetSession.CLIENT);
+
+        client.tick(Bat.STOPPED);
+        assertEquals(1, client.getBadPackets());
+    }
+
+    @Test
+    public void joinAddressMustBeNumeric() {
+        InetSocketAddress address = UdpTransport.parseAddress("192.168.1.20:7777");
+        assertFalse(address.isUnresolved());
+        assertEquals("192.168.1.20", address.getAddress().getHostAddress());
+        assertEquals(7777, address.getPort());
+
+        String[] bad = { "192.168.1.20", "localhost:7777", "example.com:7777", "192.168.1:7777", "192.168.1.256:7777",
+                "192.168.1.20:65536", "192.168.1.20:", "192.168.1.20:-1", "192.168..20:7777", ":7777" };
+
+        for (String join : bad) {
+            try {
+                UdpTransport.parseAddress(join);
+                fail(join + " accepted");
+            }
+
+            catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void eachPlayerMovesTheirOwnBat() throws IOException {
+        connect(1, 0, 0);
+
+        play(60, NetSession.INPUT_START, Bat.STOPPED);
+        assertTrue(mClient.isConnected());
+        assertFalse(mHost.getSimulation().isPaused());
+
+        float hostBat = mHost.getSimulation().getBat().getRect().left;
+        float clientBat = mHost.getSimulation().getOpponentBat().getRect().left;
+
+        play(60, Bat.RIGHT, Bat.LEFT);
+        play(30, Bat.STOPPED, Bat.STOPPED);
+
+        PongSimulation host = mHost.getSimulation();
+        PongSimulation client = mClient.getSimulation();
+
+        // The host's bat went right, the client's left, and both sides agree on where they ended up.
+        assertTrue(host.getBat().getRect().left > hostBat);
+        assertTrue(host.getOpponentBat().getRect().left < clientBat);
+        assertEquals(host.getBat().getRect().left, client.getBat().getRect().left, 0);
+        assertEquals(host.getOpponentBat().getRect().left, client.getOpponentBat().getRect().left, 0);
+        assertEquals(0, mHost.getBadPackets() + mClient.getBadPackets());
+    }
+
+    @Test
+    public void badNetworkCostsRollbacksButStaysSmallAndConverges() throws IOException {
+        // About 40 ms each way at 120 Hz, give or take 16 ms, and one packet in ten lost.
+        connect(5, 2, 0.1);
+
+        playChanging(1800, 45);
+
+        assertTrue(mClient.isConnected());
+        assertTrue(mHostLink.getDropped() > 0);
+        assertTrue(mClient.getRollbacks() > 0);
+        assertTrue(mClient.getResimulatedTicks() >= mClient.getRollbacks());
+        assertTrue(mClient.getPredictionHits() > 0);
+
+        // A few dozen bytes per tick each way: deltas are small and inputs one byte each.
+        long hostBytesPerTick = mHost.getBytesSent() / mHost.getTicks();
+        long clientBytesPerTick = mClient.getBytesSent() / mClient.getTicks();
+        assertTrue("Host sends " + hostBytesPerTick + " bytes per tick", hostBytesPerTick < 40);
+        assertTrue("Client sends " + clientBytesPerTick + " bytes per tick", clientBytesPerTick < 40);
+
+        // A rollback runs a few dozen ticks again at most, well within a frame.
+        long ticksPerRollback = mClient.getResimulatedTicks() / mClient.getRollbacks();
+        assertTrue("Rollbacks run " + ticksPerRollback + " ticks again", ticksPerRollback < 40);
+        assertTrue("Longest rollback took " + mClient.getMaxRollbackNanos() + " ns",
+                mClient.getMaxRollbackNanos() < 100000000L);
+
+        // Once nobody changes their input, the predictions come true and the rollbacks stop.
+        play(240, Bat.STOPPED, Bat.STOPPED);
+        long rollbacks = mClient.getRollbacks();
+        long hits = mClient.getPredictionHits();
+        play(600, Bat.STOPPED, Bat.STOPPED);
+
+        assertEquals(rollbacks, mClient.getRollbacks());
+        assertTrue(mClient.getPredictionHits() > hits + 100);
+        assertEquals(mHost.getSimulation().getBat().getRect().left,
+                mClient.getSimulation().getBat().getRect().left, 0);
+        assertEquals(0, mHost.getBadPackets() + mClient.getBadPackets());
+    }
+
+    private static byte[] save(PongSimulation simulation) {
+        ByteBuffer state = ByteBuffer.allocate(simulation.getStateBytes());
+        simulation.saveState(state);
+        return Arrays.copyOf(state.array(), state.position());
+    }
+}
@@ -0,0 +1,98 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the particle pool's free-list, culling, batching and budget.
+ */
+public class ParticlePoolTest {
+
+    @Test
+    public void particlesMoveAndExpireBackToTheFreeList() {
+        ParticlePool pool = new ParticlePool(4);
+
+        assertEquals(0, pool.emit(0, 10, 20, 100, 0, 0.5f));
+        pool.emit(1, 0, 0, 0, 0, 0.1f);
+        assertEquals(2, pool.getLiveCount());
+
+        pool.update(0.2f, 0);
+
+        assertEquals(1, pool.getLiveCount());
+        assertEquals(30, pool.x[0], 1e-4);
+        assertEquals(0.3f, pool.life[0], 1e-6);
+
+        // Slots come back and are handed out again, never more than the capacity live.
+        for (int i = 0; i < 3; i++) {
+            assertTrue(pool.emit(2, 0, 0, 0, 0, 1) >= 0);
+        }
+
+        assertEquals(-1, pool.emit(2, 0, 0, 0, 0, 1));
+        assertEquals(1, pool.getDropped());
+
+        pool.update(2, 0);
+
+        assertEquals(0, pool.getLiveCount());
+        assertEquals(4, pool.getCapacity());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(pool.emit(0, 0, 0, 0, 0, 1) >= 0);
+        }
+    }
+
+    @Test
+    public void gravityPullsParticlesDown() {
+        ParticlePool pool = new ParticlePool(1);
+        int i = pool.emit(0, 0, 0, 0, -10, 10);
+
+        pool.update(1, 20);
+
+        assertEquals(10, pool.vy[i], 1e-4);
+        assertEquals(10, pool.y[i], 1e-4);
+    }
+
+    @Test
+    public void writePointsBatchesOneKind() {
+        ParticlePool pool = new ParticlePool(8);
+        pool.emit(0, 1, 2, 0, 0, 1);
+        pool.emit(1, 3, 4, 0, 0, 1);
+        pool.emit(0, 5, 6, 0, 0, 1);
+        float[] points = new float[16];
+
+        assertEquals(4, pool.writePoints(0, points, 8));
+        assertArrayEquals(new float[] {1, 2, 5, 6}, Arrays.copyOf(points, 4), 0);
+        assertEquals(2, pool.writePoints(1, points, 8));
+        assertEquals(2, pool.writePoints(0, points, 1));
+    }
+
+    @Test
+    public void budgetCapsLiveParticlesOnceMeasured() {
+        ParticlePool pool = new ParticlePool(10000);
+
+        // Not measured yet, nothing changes.
+        pool.setBudget(1.0);
+        assertEquals(10000, pool.getLimit());
+
+        // Too few particles to time.
+        pool.recordCost(10, 1000000);
+        assertEquals(0, pool.getParticlesPerMilli(), 0);
+
+        // 500 particles in 2 ms: 250 per ms, 1 ms of budget holds 250.
+        pool.recordCost(500, 2000000);
+        assertEquals(250, pool.getParticlesPerMilli(), 1e-9);
+
+        pool.setBudget(1.0);
+        assertEquals(250, pool.getLimit());
+
+        for (int i = 0; i < 300; i++) {
+            pool.emit(0, 0, 0, 0, 0, 1);
+        }
+
+        assertEquals(250, pool.getLiveCount());
+        assertEquals(50, pool.getDropped());
+        assertEquals(250, pool.getEmitted());
+    }
+}
@@ -0,0 +1,282 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests running the simulation headless, no Android classes involved.
+ */
+public class PongSimulationTest {
+
+    private static final int SCREEN_X = 1920;
+    private static final int SCREEN_Y = 1080;
+
+    /** Starts the game on the first step and keeps the bat under the ball. */
+    private static class FollowBall implements InputSource {
+        @Override
+        public void applyInput(long tick, PongSimulation simulation) {
+            simulation.unpause();
+
+            float ball = simulation.getBall().getRect().centerX();
+            float bat = simulation.getBat().getRect().centerX();
+
+            if (ball < bat - 5) {
+                simulation.setBatMovement(Bat.LEFT);
+            }
+
+            else if (ball > bat + 5) {
+                simulation.setBatMovement(Bat.RIGHT);
+            }
+
+            else {
+                simulation.setBatMovement(Bat.STOPPED);
+            }
+        }
+    }
+
+    /**
+     * Same as FollowBall, but judges where the ball and bat are from where the app would draw them on a surface of a
+     * given size: the world fitted to it and centred, as PongGame#draw(Snapshot, float, boolean) does.
+     */
+    private static class FollowOnSurface implements InputSource {
+        private final float mScale;
+        private final float mDx;
+
+        FollowOnSurface(int width, int height) {
+            mScale = Math.min((float) width / PongSimulation.WORLD_WIDTH, (float) height / PongSimulation.WORLD_HEIGHT);
+            mDx = (width - PongSimulation.WORLD_WIDTH * mScale) / 2;
+        }
+
+        @Override
+        public void applyInput(long tick, PongSimulation simulation) {
+            simulation.unpause();
+
+            float ball = simulation.getBall().getRect().centerX() * mScale + mDx;
+            float bat = simulation.getBat().getRect().centerX() * mScale + mDx;
+
+            if (ball < bat) {
+                simulation.setBatMovement(Bat.LEFT);
+            }
+
+            else if (ball > bat) {
+                simulation.setBatMovement(Bat.RIGHT);
+            }
+
+            else {
+                simulation.setBatMovement(Bat.STOPPED);
+            }
+        }
+    }
+
+    /** Counts what happened during a run. */
+    private static class Counter implements GameEvents {
+        int batHits;
+        int misses;
+        int gameOvers;
+
+        @Override
+        public void onBatHit(int score) {
+            batHits++;
+        }
+
+        @Override
+        public void onMiss(int livesLeft) {
+            misses++;
+        }
+
+        @Override
+        public void onGameOver(int finalScore) {
+            gameOvers++;
+        }
+    }
+
+    @Test
+    public void staysPausedWithoutInput() {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y);
+        float ballTop = simulation.getBall().getRect().top;
+
+        for (int i = 0; i < 1000; i++) {
+            simulation.step();
+        }
+
+        assertTrue(simulation.isPaused());
+        assertEquals(1000, simulation.getTick());
+        assertEquals(ballTop, simulation.getBall().getRect().top, 0f);
+    }
+
+    @Test
+    public void idlePlayerLosesAllLivesAndGameRestartsPaused() {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y);
+        Counter counter = new Counter();
+        simulation.setEvents(counter);
+        simulation.unpause();
+
+        for (int i = 0; i < 120 * 120 && counter.gameOvers == 0; i++) {
+            simulation.step();
+        }
+
+        assertEquals(1, counter.gameOvers);
+        assertEquals(3, counter.misses);
+        assertTrue(simulation.isPaused());
+        assertEquals(3, simulation.getLives());
+        assertEquals(0, simulation.getScore());
+    }
+
+    @Test
+    public void ballStaysInsideTheScreen() {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y);
+        simulation.setInputSource(new FollowBall());
+        Counter counter = new Counter();
+        simulation.setEvents(counter);
+
+        for (int i = 0; i < 120 * 60; i++) {
+            simulation.step();
+
+            Aabb ball = simulation.getBall().getRect();
+            // The ball may poke past an edge by at most one step before it is bounced back.
+            assertTrue(ball.left > -SCREEN_X / 10f && ball.right < SCREEN_X * 1.1f);
+            assertTrue(ball.top > -SCREEN_Y / 10f && ball.bottom < SCREEN_Y * 1.1f);
+        }
+
+        assertTrue(counter.batHits > 0);
+    }
+
+    @Test
+    public void fastBallDoesNotTunnelThroughBat() {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y);
+        Counter counter = new Counter();
+        simulation.setEvents(counter);
+        simulation.unpause();
+
+        Ball ball = simulation.getBall();
+        Aabb bat = simulation.getBat().getRect();
+
+        // Fast enough to move further than the bat and ball are tall in a single step (30 speed-ups), just above the
+        // left part of the bat and heading down.
+        float speed = (float) Math.pow(Tuning.DEFAULT.ballSpeedUp, 30);
+        float height = ball.getRect().height();
+        ball.launch(bat.left + 50, bat.top - 1 - height, ball.getXVelocity() * speed,
+                -ball.getYVelocity() * speed);
+
+        float stepDistance = ball.getYVelocity() / simulation.getTickRate();
+        assertTrue(stepDistance > bat.height() + height);
+
+        simulation.step();
+
+        assertEquals(1, counter.batHits);
+        assertEquals(0, counter.misses);
+        assertTrue(ball.getYVelocity() < 0);
+        assertTrue(ball.getRect().bottom <= bat.top);
+    }
+
+    @Test
+    public void fastBallNeverLeavesTheScreen() {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y);
+        simulation.unpause();
+
+        // 60 speed-ups.
+        Ball fast = simulation.getBall();
+        Aabb start = fast.getRect();
+        float speed = (float) Math.pow(Tuning.DEFAULT.ballSpeedUp, 60);
+        fast.launch(start.left, start.top, fast.getXVelocity() * speed, fast.getYVelocity() * speed);
+
+        for (int i = 0; i < 120 * 10 && !simulation.isPaused(); i++) {
+            simulation.step();
+
+            Aabb ball = simulation.getBall().getRect();
+            assertTrue(ball.left >= -0.01f && ball.right <= SCREEN_X + 0.01f);
+            assertTrue(ball.top >= -0.01f && ball.bottom <= SCREEN_Y + 0.01f);
+        }
+    }
+
+    @Test
+    public void stressTestKeepsEveryBallInPlay() {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y);
+        for (int i = 0; i < 30; i++) {
+            simulation.addObstacle(i * 60, 200 + i * 20);
+        }
+
+        simulation.startStressTest(2000);
+
+        for (int i = 0; i < 120 * 5; i++) {
+            simulation.step();
+        }
+
+        assertTrue(simulation.isStressTest());
+        assertFalse(simulation.isPaused());
+        assertEquals(3, simulation.getLives());
+        assertEquals(2000, simulation.getBallCount());
+
+        for (int i = 0; i < simulation.getBallCount(); i++) {
+            Aabb ball = simulation.getBall(i).getRect();
+            assertTrue(ball.left >= -0.01f && ball.right <= SCREEN_X + 0.01f);
+            assertTrue(ball.top >= -0.01f && ball.bottom <= SCREEN_Y + 0.01f);
+        }
+
+        simulation.startNewGame();
+        assertFalse(simulation.isStressTest());
+        assertEquals(1, simulation.getBallCount());
+    }
+
+    @Test
+    public void sameInputGivesSameGame() {
+        PongSimulation first = new PongSimulation(SCREEN_X, SCREEN_Y);
+        PongSimulation second = new PongSimulation(SCREEN_X, SCREEN_Y);
+        first.setInputSource(new FollowBall());
+        second.setInputSource(new FollowBall());
+
+        for (int i = 0; i < 120 * 30; i++) {
+            first.step();
+            second.step();
+        }
+
+        assertEquals(first.getScore(), second.getScore());
+        assertEquals(first.getLives(), second.getLives());
+        assertEquals(first.getBall().getRect().left, second.getBall().getRect().left, 0f);
+        assertEquals(first.getBall().getRect().top, second.getBall().getRect().top, 0f);
+    }
+
+    @Test
+    public void worldGamePlaysTheSameOnAnySurface() {
+        // Phone, tablet, 4K and portrait displays, all drawing the one world.
+        int[][] surfaces = { {1920, 1080}, {1280, 720}, {2560, 1600}, {3840, 2160}, {720, 1280} };
+        long expected = 0;
+
+        for (int i = 0; i < surfaces.length; i++) {
+            PongSimulation simulation = new PongSimulation(PongSimulation.WORLD_WIDTH, PongSimulation.WORLD_HEIGHT);
+            Counter counter = new Counter();
+            simulation.setInputSource(new FollowOnSurface(surfaces[i][0], surfaces[i][1]));
+            simulation.setEvents(counter);
+
+            for (int step = 0; step < 120 * 30; step++) {
+                simulation.step();
+            }
+
+            if (i == 0) {
+                assertTrue(counter.batHits > 0);
+                expected = simulation.checksum();
+            }
+
+            else {
+                assertEquals(surfaces[i][0] + "x" + surfaces[i][1], expected, simulation.checksum());
+            }
+        }
+    }
+
+    @Test
+    public void versusGameHasNoObstacles() {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y);
+        assertNotNull(simulation.getObstacle());
+        assertNotNull(simulation.getAddObstacle());
+
+        simulation.startVersus();
+        assertEquals(0, simulation.getObstacleCount());
+        assertNull(simulation.getObstacle());
+        assertNull(simulation.getAddObstacle());
+
+        // And back for a normal game.
+        simulation.startNewGame();
+        assertNotNull(simulation.getAddObstacle());
+    }
+}
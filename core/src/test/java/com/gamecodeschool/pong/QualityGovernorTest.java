@@ -0,0 +1,114 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the adaptive quality governor's decisions and hysteresis.
+ */
+public class QualityGovernorTest {
+
+    private static final int WINDOW = 10;
+    private static final long TARGET = 16000000L;
+
+    /** Feeds whole windows of identical frames, returns how often the level changed. */
+    private static int feed(QualityGovernor governor, int windows, long frameNanos, long workNanos) {
+        int changes = 0;
+
+        for (int i = 0; i < windows * WINDOW; i++) {
+            if (governor.onFrame(frameNanos, workNanos, TARGET)) {
+                changes++;
+            }
+        }
+
+        return changes;
+    }
+
+    @Test
+    public void steadyFramesKeepFullQuality() {
+        QualityGovernor governor = new QualityGovernor(WINDOW);
+
+        // Vsync paced: every frame takes the target, half of it working.
+        feed(governor, 50, TARGET, TARGET / 2);
+
+        assertEquals(0, governor.getLevel());
+        assertEquals(0, governor.getChanges());
+        assertEquals(TARGET, governor.getFrameP90());
+    }
+
+    @Test
+    public void sustainedOverloadStepsDownButOneBadWindowDoesNot() {
+        QualityGovernor governor = new QualityGovernor(WINDOW);
+
+        feed(governor, 1, TARGET * 2, TARGET * 2);
+        feed(governor, 1, TARGET, TARGET * 3 / 4);
+        assertEquals(0, governor.getLevel());
+
+        feed(governor, 2, TARGET * 2, TARGET * 2);
+        assertEquals(1, governor.getLevel());
+
+        // Keeps going down while overloaded, never past the lowest quality.
+        feed(governor, 100, TARGET * 2, TARGET * 2);
+        assertEquals(QualityGovernor.MAX_LEVEL, governor.getLevel());
+    }
+
+    @Test
+    public void onlyTheSlowestTenPercentCount() {
+        QualityGovernor governor = new QualityGovernor(WINDOW);
+
+        // One janky frame per window is under the 90th percentile.
+        for (int i = 0; i < 5 * WINDOW; i++) {
+            governor.onFrame(i % WINDOW == 0 ? TARGET * 3 : TARGET, TARGET * 3 / 4, TARGET);
+        }
+
+        assertEquals(0, governor.getLevel());
+    }
+
+    @Test
+    public void headroomStepsUpSlowlyAndBacksOffAfterGoingUpTooSoon() {
+        QualityGovernor governor = new QualityGovernor(WINDOW);
+        feed(governor, 4, TARGET * 2, TARGET * 2);
+        assertEquals(2, governor.getLevel());
+
+        // Going up takes longer than going down.
+        feed(governor, 4, TARGET, TARGET / 4);
+        assertEquals(2, governor.getLevel());
+        feed(governor, 1, TARGET, TARGET / 4);
+        assertEquals(1, governor.getLevel());
+
+        // Between the thresholds nothing changes.
+        feed(governor, 20, TARGET, TARGET * 3 / 4);
+        assertEquals(1, governor.getLevel());
+
+        // Overloaded again straight after going up: the next step up takes twice as long.
+        feed(governor, 2, TARGET * 2, TARGET * 2);
+        assertEquals(2, governor.getLevel());
+        feed(governor, 9, TARGET, TARGET / 4);
+        assertEquals(2, governor.getLevel());
+        feed(governor, 1, TARGET, TARGET / 4);
+        assertEquals(1, governor.getLevel());
+    }
+
+    @Test
+    public void floorHoldsTheLevelDown() {
+        QualityGovernor governor = new QualityGovernor(WINDOW);
+        governor.setFloor(3);
+
+        assertTrue(governor.onFrame(TARGET, TARGET / 4, TARGET));
+        assertEquals(3, governor.getLevel());
+
+        // Plenty of headroom, but not below the floor.
+        feed(governor, 100, TARGET, TARGET / 4);
+        assertEquals(3, governor.getLevel());
+
+        // Once the floor goes, quality comes back as usual.
+        governor.setFloor(0);
+        assertEquals(3, governor.getLevel());
+        feed(governor, 5, TARGET, TARGET / 4);
+        assertEquals(2, governor.getLevel());
+
+        governor.setFloor(99);
+        assertEquals(QualityGovernor.MAX_LEVEL, governor.getFloor());
+    }
+}
@@ -0,0 +1,126 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for saving and restoring the complete simulation state.
+ */
+public class SaveStateTest {
+
+    private static final int SCREEN_X = 1920;
+    private static final int SCREEN_Y = 1080;
+
+    /** Keeps the game going with the bat sweeping from side to side. */
+    private static final InputSource SWEEP = new InputSource() {
+        @Override
+        public void applyInput(long tick, PongSimulation simulation) {
+            simulation.unpause();
+            simulation.setBatMovement(tick / 200 % 2 == 0 ? Bat.RIGHT : Bat.LEFT);
+        }
+    };
+
+    private static PongSimulation play(int ticks) {
+        PongSimulation simulation = new PongSimulation(SCREEN_X, SCREEN_Y, Tuning.DEFAULT, 7);
+        simulation.setInputSource(SWEEP);
+
+        for (int i = 0; i < ticks; i++) {
+            simulation.step();
+        }
+
+        return simulation;
+    }
+
+    private static ByteBuffer save(PongSimulation simulation) {
+        ByteBuffer state = ByteBuffer.allocate(simulation.getStateBytes());
+        simulation.saveState(state);
+        assertEquals(0, state.remaining());
+        state.flip();
+        return state;
+    }
+
+    @Test
+    public void restoredGameCarriesOnIdentically() {
+        PongSimulation original = play(1000);
+        PongSimulation restored = new PongSimulation(SCREEN_X, SCREEN_Y, Tuning.DEFAULT, 99);
+        restored.setInputSource(SWEEP);
+
+        restored.restoreState(save(original));
+
+        assertEquals(original.checksum(), restored.checksum());
+
+        for (int i = 0; i < 2000; i++) {
+            original.step();
+            restored.step();
+        }
+
+        assertEquals(original.checksum(), restored.checksum());
+    }
+
+    @Test
+    public void stressTestRoundTrips() {
+        PongSimulation original = play(10);
+        original.startStressTest(500);
+
+        for (int i = 0; i < 100; i++) {
+            original.step();
+        }
+
+        PongSimulation restored = play(0);
+        restored.restoreState(save(original));
+
+        assertEquals(500, restored.getBallCount());
+        assertTrue(restored.isStressTest());
+        assertEquals(original.checksum(), restored.checksum());
+
+        // And back down to a normal game.
+        PongSimulation normal = play(50);
+        restored.restoreState(save(normal));
+
+        assertEquals(1, restored.getBallCount());
+        assertFalse(restored.isStressTest());
+        assertEquals(normal.checksum(), restored.checksum());
+    }
+
+    @Test
+    public void otherScreenSizeIsRejectedAndLeavesTheGameAlone() {
+        PongSimulation game = play(300);
+        long before = game.checksum();
+        PongSimulation other = new PongSimulation(1280, 720, Tuning.DEFAULT, 7);
+
+        try {
+            game.restoreState(save(other));
+            fail("Restored a state for another screen size");
+        }
+
+        catch (IllegalArgumentException expected) {
+        }
+
+        assertEquals(before, game.checksum());
+    }
+
+    @Test
+    public void truncatedStateIsRejectedAndLeavesTheGameAlone() {
+        PongSimulation game = play(300);
+        long before = game.checksum();
+        ByteBuffer state = save(play(600));
+
+        for (int cut = 0; cut < state.limit(); cut += 7) {
+            ByteBuffer truncated = state.duplicate();
+            truncated.limit(cut);
+
+            try {
+                game.restoreState(truncated);
+                fail("Restored a state cut to " + cut + " bytes");
+            }
+
+            catch (IllegalArgumentException expected) {
+            }
+
+            assertEquals(before, game.checksum());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.gamecodeschool.pong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SoundMixerTest {
+
+    @Test
+    public void mixesSilenceWhenNothingPlays() {
+        SoundMixer mixer = new SoundMixer(1, 4, 8);
+        short[] out = {1, 2, 3};
+
+        assertEquals(0, mixer.mix(out, 3));
+        assertArrayEquals(new short[] {0, 0, 0}, out);
+    }
+
+    @Test
+    public void clipPlaysAcrossBuffersThenStops() {
+        SoundMixer mixer = new SoundMixer(1, 4, 8);
+        mixer.setClip(0, new short[] {10, 20, 30, 40, 50});
+        short[] out = new short[3];
+
+        mixer.play(0, 0);
+
+        assertEquals(1, mixer.mix(out, 3));
+        assertArrayEquals(new short[] {10, 20, 30}, out);
+        assertEquals(0, mixer.mix(out, 3));
+        assertArrayEquals(new short[] {40, 50, 0}, out);
+        assertEquals(0, mixer.getActiveVoices());
+    }
+
+    @Test
+    public void overlappingClipsAreSummedAndClipped() {
+        SoundMixer mixer = new SoundMixer(2, 4, 8);
+        mixer.setClip(0, new short[] {100, 30000, -30000});
+        mixer.setClip(1, new short[] {5, 30000, -30000});
+        short[] out = new short[3];
+
+        mixer.play(0, 0);
+        mixer.play(1, 0);
+
+        assertEquals(2, mixer.mix(out, 3));
+        assertArrayEquals(new short[] {105, Short.MAX_VALUE, Short.MIN_VALUE}, out);
+    }
+
+    @Test
+    public void newSoundReplacesTheVoiceClosestToFinishing() {
+        SoundMixer mixer = new SoundMixer(3, 2, 8);
+        mixer.setClip(0, new short[] {1, 1, 1, 1, 1, 1});
+        mixer.setClip(1, new short[] {2, 2, 2});
+        mixer.setClip(2, new short[] {4, 4, 4, 4});
+        short[] out = new short[1];
+
+        mixer.play(0, 0);
+        mixer.play(1, 0);
+        mixer.mix(out, 1);
+        assertEquals(3, out[0]);
+
+        // Clip 1 has two samples left, clip 0 five, so clip 1 makes way.
+        mixer.play(2, 0);
+        mixer.mix(out, 1);
+        assertEquals(5, out[0]);
+        assertEquals(2, mixer.getActiveVoices());
+    }
+
+    @Test
+    public void requestsForMissingClipsAreSkipped() {
+        SoundMixer mixer = new SoundMixer(2, 4, 8);
+        short[] out = new short[2];
+
+        mixer.play(0, 0);
+        mixer.play(7, 0);
+
+        assertEquals(0, mixer.mix(out, 2));
+        assertEquals(0, mixer.getActiveVoices());
+    }
+
+    @Test
+    public void fullQueueDropsRequests() {
+        SoundMixer mixer = new SoundMixer(1, 4, 4);
+        mixer.setClip(0, new short[] {1});
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(mixer.play(0, 0));
+        }
+
+        assertFalse(mixer.play(0, 0));
+        assertEquals(1, mixer.getDropped());
+
+        mixer.mix(new short[1], 1);
+        assertTrue(mixer.play(0, 0));
+    }
+
+    @Test
+    public void latencyRunsFromRequestToPresentation() {
+        SoundMixer mixer = new SoundMixer(1, 4, 8);
+        mixer.setClip(0, new short[] {1, 1});
+        short[] out = new short[2];
+
+        mixer.play(0, 1000);
+        mixer.play(0, 3000);
+        mixer.mix(out, 2);
+        mixer.onPresented(5000);
+
+        assertEquals(2000, mixer.getLastLatencyNanos());
+        assertEquals(4000, mixer.getMaxLatencyNanos());
+        assertEquals(3000, mixer.getAverageLatencyNanos());
+
+        // A buffer that started nothing leaves the numbers alone.
+        mixer.mix(out, 2);
+        mixer.onPresented(90000);
+        assertEquals(2000, mixer.getLastLatencyNanos());
+    }
+
+    @Test
+    public void resampleKeepsDurationAndInterpolates() {
+        short[] clip = {0, 100, 200, 300};
+
+        assertArrayEquals(clip, SoundMixer.resample(clip, 48000, 48000));
+
+        short[] doubled = SoundMixer.resample(clip, 24000, 48000);
+        assertEquals(8, doubled.length);
+        assertEquals(0, doubled[0]);
+        assertEquals(50, doubled[1]);
+        assertEquals(100, doubled[2]);
+
+        assertEquals(2, SoundMixer.resample(clip, 48000, 24000).length);
+    }
+}
@@ -0,0 +1,53 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the swept box test used by the collision pass.
+ */
+public class SweptAabbTest {
+
+    private final SweptAabb mSweep = new SweptAabb();
+
+    @Test
+    public void findsHitThatDiscreteTestWouldMiss() {
+        Aabb ball = new Aabb(0, 0, 10, 10);
+        Aabb wall = new Aabb(50, -100, 55, 100);
+
+        // Moves from x=0 to x=200 in one step, so it never overlaps the thin wall at either end.
+        assertTrue(mSweep.sweep(ball, 200, 0, wall));
+        assertEquals(40f / 200f, mSweep.getTime(), 1e-6f);
+        assertEquals(-1f, mSweep.getNormalX(), 0f);
+        assertEquals(0f, mSweep.getNormalY(), 0f);
+    }
+
+    @Test
+    public void reportsFaceThatWasHit() {
+        Aabb ball = new Aabb(0, 0, 10, 10);
+        Aabb floor = new Aabb(-100, 20, 100, 30);
+
+        assertTrue(mSweep.sweep(ball, 5, 40, floor));
+        assertEquals(0.25f, mSweep.getTime(), 1e-6f);
+        assertEquals(0f, mSweep.getNormalX(), 0f);
+        assertEquals(-1f, mSweep.getNormalY(), 0f);
+    }
+
+    @Test
+    public void ignoresMissesAndBoxesMovingAway() {
+        Aabb ball = new Aabb(0, 0, 10, 10);
+        Aabb box = new Aabb(50, 0, 60, 10);
+
+        assertFalse(mSweep.sweep(ball, 30, 0, box));
+        assertFalse(mSweep.sweep(ball, -100, 0, box));
+        assertFalse(mSweep.sweep(ball, 100, 100, new Aabb(50, -50, 60, -40)));
+    }
+
+    @Test
+    public void alreadyOverlappingDoesNotCount() {
+        Aabb ball = new Aabb(0, 0, 10, 10);
+
+        assertFalse(mSweep.sweep(ball, 5, 5, new Aabb(5, 5, 20, 20)));
+    }
+}
@@ -0,0 +1,135 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the frame histogram, the telemetry file format and the merged report.
+ */
+public class TelemetryTest {
+
+    private static final long MILLI = 1000000L;
+    private static final long BUDGET = 16 * MILLI;
+
+    private static TelemetryBatch batch(long sessionId, String device, long... frameNanos) {
+        TelemetryBatch batch = new TelemetryBatch();
+        batch.mSessionId = sessionId;
+        batch.mDevice = device;
+        batch.mSdk = 30;
+        batch.mFrameBudgetNanos = BUDGET;
+        batch.mDurationNanos = 60000 * MILLI;
+
+        for (long nanos : frameNanos) {
+            batch.mFrames.record(nanos);
+        }
+
+        return batch;
+    }
+
+    @Test
+    public void histogramPercentilesAreBucketUpperEdges() {
+        FrameHistogram histogram = new FrameHistogram();
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(16 * MILLI + 100000);
+        }
+
+        histogram.record(500 * MILLI);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(16 * MILLI + FrameHistogram.BUCKET_NANOS, histogram.percentile(50));
+        assertEquals(16 * MILLI + FrameHistogram.BUCKET_NANOS, histogram.percentile(99));
+        assertEquals(FrameHistogram.BUCKETS * FrameHistogram.BUCKET_NANOS, histogram.percentile(100));
+        assertEquals(1, histogram.countAbove(24 * MILLI));
+    }
+
+    @Test
+    public void histogramsMerge() {
+        FrameHistogram a = new FrameHistogram();
+        FrameHistogram b = new FrameHistogram();
+        a.record(MILLI);
+        b.record(MILLI);
+        b.record(40 * MILLI);
+
+        a.add(b);
+
+        assertEquals(3, a.getCount());
+        assertEquals(1, a.countAbove(30 * MILLI));
+    }
+
+    @Test
+    public void batchesRoundTripThroughAFile() throws IOException {
+        TelemetryBatch first = batch(7, "Acme Phone", 16 * MILLI, 17 * MILLI, 50 * MILLI);
+        first.mCollisions = 120;
+        first.mPoints = 9;
+        first.mLivesLost = 3;
+        first.mGamesOver = 1;
+        first.mBestScore = 9;
+        first.mGcCount = 4;
+        first.mBlockingGcCount = 1;
+        TelemetryBatch second = batch(7, "Acme Phone", 8 * MILLI);
+        second.mBatchIndex = 1;
+        second.mStressTest = true;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        first.appendTo(out);
+        second.appendTo(out);
+
+        List<TelemetryBatch> read = TelemetryBatch.readAll(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(2, read.size());
+        TelemetryBatch copy = read.get(0);
+        assertEquals(7, copy.getSessionId());
+        assertEquals("Acme Phone", copy.getDevice());
+        assertEquals(3, copy.getFrames().getCount());
+        assertEquals(first.getFrames().percentile(99), copy.getFrames().percentile(99));
+        assertEquals(120, copy.getCollisions());
+        assertEquals(9, copy.getBestScore());
+        assertEquals(4, copy.getGcCount());
+        assertEquals(1, read.get(1).getBatchIndex());
+        assertTrue(read.get(1).isStressTest());
+    }
+
+    @Test
+    public void truncatedOrCorruptTailIsSkipped() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batch(1, "A", MILLI).appendTo(out);
+        batch(2, "A", MILLI).appendTo(out);
+        byte[] bytes = out.toByteArray();
+
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+        assertEquals(1, TelemetryBatch.readAll(new ByteArrayInputStream(truncated)).size());
+
+        byte[] corrupt = bytes.clone();
+        corrupt[corrupt.length - 10] ^= 1;
+        assertEquals(1, TelemetryBatch.readAll(new ByteArrayInputStream(corrupt)).size());
+    }
+
+    @Test
+    public void reportMergesDevicesAndLeavesOutStressTests() {
+        TelemetryReport report = new TelemetryReport();
+        report.add(batch(1, "A", 10 * MILLI, 10 * MILLI, 30 * MILLI));
+        report.add(batch(2, "B", 10 * MILLI));
+        TelemetryBatch stress = batch(3, "B", 90 * MILLI);
+        stress.mStressTest = true;
+        report.add(stress);
+
+        assertEquals(2, report.getSessions());
+        assertEquals(2, report.getDevices());
+        assertEquals(4, report.getFrames().getCount());
+        assertEquals(0.25, report.getJankRate(), 1e-9);
+        assertEquals(0, report.getGcPerMinute(), 0);
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        report.print(new PrintStream(text));
+        assertTrue(text.toString().contains("1 stress test"));
+    }
+}
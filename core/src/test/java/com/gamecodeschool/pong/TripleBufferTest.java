@@ -0,0 +1,104 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the triple buffer and the snapshots handed through it.
+ */
+public class TripleBufferTest {
+
+    /** A state the writer fills in two steps, so a torn read shows up as a mismatch. */
+    private static class Pair {
+        long first;
+        long second;
+    }
+
+    @Test
+    public void readerSeesNewestPublishedState() {
+        TripleBuffer<Pair> buffer = new TripleBuffer<>(new Pair(), new Pair(), new Pair());
+
+        assertFalse(buffer.update());
+
+        for (int i = 1; i <= 3; i++) {
+            buffer.getBack().first = i;
+            buffer.publish();
+        }
+
+        assertTrue(buffer.update());
+        assertEquals(3, buffer.getFront().first);
+        assertFalse(buffer.update());
+        assertEquals(3, buffer.getFront().first);
+    }
+
+    @Test
+    public void readerNeverSeesAHalfWrittenState() throws InterruptedException {
+        final TripleBuffer<Pair> buffer = new TripleBuffer<>(new Pair(), new Pair(), new Pair());
+        final long states = 200000;
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (long n = 1; n <= states; n++) {
+                    Pair pair = buffer.getBack();
+                    pair.first = n;
+                    pair.second = n;
+                    buffer.publish();
+                }
+            }
+        });
+
+        writer.start();
+        long last = 0;
+
+        while (last < states) {
+            if (buffer.update()) {
+                Pair pair = buffer.getFront();
+                assertEquals(pair.first, pair.second);
+                assertTrue(pair.first > last);
+                last = pair.first;
+            }
+
+            else {
+                Thread.yield();
+            }
+        }
+
+        writer.join();
+    }
+
+    @Test
+    public void snapshotMatchesTheSimulation() {
+        PongSimulation simulation = new PongSimulation(1920, 1080);
+        simulation.startStressTest(50);
+
+        for (int i = 0; i < 200; i++) {
+            simulation.step();
+        }
+
+        Snapshot snapshot = new Snapshot();
+        simulation.copyTo(snapshot);
+        Aabb drawn = new Aabb();
+
+        assertEquals(simulation.getTick(), snapshot.getTick());
+        assertEquals(simulation.getBallCount(), snapshot.getBallCount());
+        assertEquals(simulation.getObstacleCount(), snapshot.getObstacleCount());
+        assertTrue(snapshot.isStressTest());
+
+        for (int i = 0; i < snapshot.getBallCount(); i++) {
+            snapshot.interpolateBall(i, 1, drawn);
+            assertEquals(simulation.getBall(i).getRect().left, drawn.left, 0f);
+            assertEquals(simulation.getBall(i).getRect().top, drawn.top, 0f);
+        }
+
+        snapshot.interpolateBat(1, drawn);
+        assertEquals(simulation.getBat().getRect().left, drawn.left, 0f);
+
+        // Later steps do not change a snapshot already taken.
+        float batLeft = drawn.left;
+        simulation.step();
+        snapshot.interpolateBat(1, drawn);
+        assertEquals(batLeft, drawn.left, 0f);
+    }
+}
@@ -0,0 +1,58 @@
+package com.gamecodeschool.pong;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the broadphase grid.
+ */
+public class UniformGridTest {
+
+    @Test
+    public void queryFindsEveryOverlappingBoxOnce() {
+        Random random = new Random(42);
+        UniformGrid grid = new UniformGrid(1000, 500, 100);
+        Aabb[] boxes = new Aabb[200];
+
+        for (int i = 0; i < boxes.length; i++) {
+            float x = random.nextFloat() * 1100 - 50;
+            float y = random.nextFloat() * 600 - 50;
+            boxes[i] = new Aabb(x, y, x + random.nextFloat() * 150, y + random.nextFloat() * 80);
+            grid.insert(i, boxes[i]);
+        }
+
+        int[] found = new int[boxes.length];
+
+        for (int q = 0; q < 500; q++) {
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 500;
+            Aabb query = new Aabb(x, y, x + 30, y + 30);
+            int count = grid.query(query, found);
+
+            boolean[] seen = new boolean[boxes.length];
+
+            for (int i = 0; i < count; i++) {
+                assertFalse("id returned twice", seen[found[i]]);
+                seen[found[i]] = true;
+            }
+
+            for (int i = 0; i < boxes.length; i++) {
+                if (Aabb.intersects(query, boxes[i])) {
+                    assertTrue("missed overlapping box " + i, seen[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void clearEmptiesTheGrid() {
+        UniformGrid grid = new UniformGrid(100, 100, 10);
+        grid.insert(0, new Aabb(0, 0, 100, 100));
+        grid.clear();
+
+        assertEquals(0, grid.query(new Aabb(0, 0, 100, 100), new int[1]));
+    }
+}